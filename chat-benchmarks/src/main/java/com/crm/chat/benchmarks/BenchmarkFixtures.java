@@ -0,0 +1,147 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.CallParticipant;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Detached entities and payloads shaped like the ones the application builds at runtime
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setFullName("Benchmark User " + id);
+        user.setDepartment("Engineering");
+        user.setDesignation("Developer");
+        user.setStatus(User.UserStatus.AVAILABLE);
+        user.setLastSeen(LocalDateTime.now());
+        user.setActive(true);
+        return user;
+    }
+
+    static Conversation conversation(long id, User first, User second) {
+        Conversation conversation = new Conversation();
+        conversation.setId(id);
+        conversation.getParticipants().add(first);
+        conversation.getParticipants().add(second);
+        return conversation;
+    }
+
+    static ChatRoom chatRoom(long id, User createdBy) {
+        ChatRoom chatRoom = new ChatRoom();
+        chatRoom.setId(id);
+        chatRoom.setName("Room " + id);
+        chatRoom.setCreatedBy(createdBy);
+        return chatRoom;
+    }
+
+    static Message directMessage(long id, User sender, Conversation conversation, String content) {
+        Message message = new Message();
+        message.setId(id);
+        message.setSender(sender);
+        message.setConversation(conversation);
+        message.setContent(content);
+        message.setType(Message.MessageType.TEXT);
+        message.setIsRead(false);
+        message.setIsDelivered(true);
+        message.setDeliveredAt(LocalDateTime.now());
+        message.setDeliveryStatus(Message.DeliveryStatus.DELIVERED);
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    /**
+     * An ongoing group call with the given number of joined participants (the caller included)
+     */
+    static Call groupCall(long id, ChatRoom chatRoom, User caller, int participants) {
+        Call call = new Call();
+        call.setId(id);
+        call.setCallType(Call.CallType.VIDEO);
+        call.setCallMode(Call.CallMode.GROUP);
+        call.setTopology(Call.CallTopology.MESH);
+        call.setChatRoom(chatRoom);
+        call.setCaller(caller);
+        call.setStatus(Call.CallStatus.ONGOING);
+        call.setRoomId("call-" + id);
+        call.setCreatedAt(LocalDateTime.now());
+        call.setStartedAt(LocalDateTime.now());
+
+        for (int i = 0; i < participants; i++) {
+            CallParticipant participant = new CallParticipant();
+            participant.setId(id * 100 + i);
+            participant.setCall(call);
+            participant.setUser(i == 0 ? caller : user(1000 + i));
+            participant.setStatus(CallParticipant.ParticipantStatus.JOINED);
+            participant.setJoinedAt(LocalDateTime.now());
+            call.getParticipants().add(participant);
+        }
+        return call;
+    }
+
+    /**
+     * Same keys as WebSocketController#createCallNotification for a group call
+     */
+    static Map<String, Object> incomingGroupCallNotification(Call call, User caller) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("type", "INCOMING_GROUP_CALL");
+        notification.put("callId", call.getId());
+        notification.put("callType", call.getCallType().toString());
+        notification.put("callMode", call.getCallMode().toString());
+        notification.put("callerId", caller.getId());
+        notification.put("callerName", caller.getFullName());
+        notification.put("roomId", call.getRoomId());
+        notification.put("topology", call.getTopology().name());
+        notification.put("chatRoomId", call.getChatRoom().getId());
+        notification.put("chatRoomName", call.getChatRoom().getName());
+        return notification;
+    }
+
+    /**
+     * Same shape as the typing indicator sent by WebSocketController#handleTyping
+     */
+    static Map<String, Object> typingNotification(User user) {
+        return Map.of(
+                "userId", user.getId(),
+                "username", user.getUsername(),
+                "fullName", user.getFullName(),
+                "isTyping", true
+        );
+    }
+
+    /**
+     * Same keys as the NEW_MESSAGE notification WebSocketController sends to a direct-message recipient
+     */
+    static Map<String, Object> newMessageNotification(Message message) {
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("type", "NEW_MESSAGE");
+        notification.put("messageId", message.getId());
+        notification.put("senderId", message.getSender().getId());
+        notification.put("senderName", message.getSender().getFullName());
+        notification.put("content", message.getContent());
+        notification.put("timestamp", message.getCreatedAt().toString());
+        notification.put("conversationId", message.getConversation().getId());
+        return notification;
+    }
+
+    static String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append("The quick brown fox jumps over the lazy dog. ");
+        }
+        return text.substring(0, length);
+    }
+}
@@ -0,0 +1,137 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.ChatApplication;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.ChatRoomMember;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.UserRepository;
+import com.crm.chat.service.ChatRoomService;
+import com.crm.chat.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Bulk writes before and after JDBC batching:
+ * - adding 100 members to a room one by one (the old /members/batch loop) vs addMembersToChatRoom
+ * - setting all users offline by loading and saving each entity vs the bulk UPDATE
+ * Run with jdbcBatchSize=1 to see the same paths with batching switched off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkPersistenceBenchmark {
+
+    private static final int USERS = 500;
+    private static final int NEW_MEMBERS = 100;
+
+    @Param({"50", "1"})
+    public int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private ChatRoomService chatRoomService;
+    private UserService userService;
+    private UserRepository userRepository;
+    private TransactionTemplate transactionTemplate;
+    private Long ownerId;
+    private List<Long> memberIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        String[] args = Stream.concat(Arrays.stream(ChatApplicationState.ARGS),
+                Stream.of("--spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize)).toArray(String[]::new);
+        context = SpringApplication.run(ChatApplication.class, args);
+        chatRoomService = context.getBean(ChatRoomService.class);
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        List<Long> userIds = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("bulk" + i);
+            user.setEmail("bulk" + i + "@example.com");
+            user.setPassword("password");
+            user.setFullName("Bulk User " + i);
+            userIds.add(userService.registerUser(user).getId());
+        }
+        ownerId = userIds.get(0);
+        memberIds = userIds.subList(1, NEW_MEMBERS + 1);
+    }
+
+    /**
+     * Both offline benchmarks need users that are not offline yet
+     */
+    @Setup(Level.Invocation)
+    public void bringUsersOnline() {
+        transactionTemplate.executeWithoutResult(status ->
+                userRepository.updateAllStatuses(User.UserStatus.AVAILABLE, LocalDateTime.now()));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public Long addMembersOneByOne() {
+        Long chatRoomId = newRoom();
+        for (Long userId : memberIds) {
+            chatRoomService.addMemberToChatRoom(chatRoomId, userId, ChatRoomMember.MemberRole.MEMBER);
+        }
+        return chatRoomId;
+    }
+
+    @Benchmark
+    public int addMembersBatched() {
+        return chatRoomService.addMembersToChatRoom(newRoom(), memberIds, ChatRoomMember.MemberRole.MEMBER);
+    }
+
+    @Benchmark
+    public int setAllUsersOfflineEntityUpdates() {
+        return transactionTemplate.execute(status -> {
+            List<User> users = userRepository.findAll();
+            users.forEach(user -> {
+                user.setStatus(User.UserStatus.OFFLINE);
+                user.setLastSeen(LocalDateTime.now());
+            });
+            userRepository.saveAll(users);
+            return users.size();
+        });
+    }
+
+    @Benchmark
+    public void setAllUsersOfflineBulkUpdate() {
+        userService.setAllUsersOffline();
+    }
+
+    private Long newRoom() {
+        ChatRoom chatRoom = chatRoomService.createChatRoom("Bulk room", "JMH", ownerId, ChatRoom.ChatRoomType.GROUP);
+        return chatRoom.getId();
+    }
+}
@@ -0,0 +1,91 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.ChatApplication;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.ChatRoomMember;
+import com.crm.chat.entity.User;
+import com.crm.chat.service.ChatRoomService;
+import com.crm.chat.service.ConversationService;
+import com.crm.chat.service.UserService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The full application started once per benchmark fork against an in-memory H2 database,
+ * seeded with users, one direct conversation and one group chat room
+ */
+@State(Scope.Benchmark)
+public class ChatApplicationState {
+
+    static final int USERS = 200;
+    static final int ROOM_MEMBERS = 20;
+
+    static final String[] ARGS = {
+            "--spring.datasource.url=jdbc:h2:mem:benchmarks;MODE=MySQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--spring.jpa.show-sql=false",
+            "--server.port=0",
+            "--logging.level.root=WARN",
+            "--logging.level.com.crm.chat=WARN"
+    };
+
+    ConfigurableApplicationContext context;
+    List<Long> userIds;
+    Long senderId;
+    Long conversationId;
+    Long chatRoomId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = SpringApplication.run(ChatApplication.class, ARGS);
+
+        UserService userService = context.getBean(UserService.class);
+        userIds = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("bench" + i);
+            user.setEmail("bench" + i + "@example.com");
+            user.setPassword("password");
+            user.setFullName("Benchmark User " + i);
+            userIds.add(userService.registerUser(user).getId());
+        }
+        // A realistic mix of presence states
+        for (int i = 0; i < USERS; i += 3) {
+            userService.setUserAway(userIds.get(i));
+        }
+
+        senderId = userIds.get(0);
+        conversationId = context.getBean(ConversationService.class)
+                .getOrCreateConversation(senderId, userIds.get(1)).getId();
+
+        ChatRoomService chatRoomService = context.getBean(ChatRoomService.class);
+        ChatRoom chatRoom = chatRoomService.createChatRoom("Benchmark room", "JMH", senderId, ChatRoom.ChatRoomType.GROUP);
+        chatRoomId = chatRoom.getId();
+        for (int i = 1; i < ROOM_MEMBERS; i++) {
+            chatRoomService.addMemberToChatRoom(chatRoomId, userIds.get(i), ChatRoomMember.MemberRole.MEMBER);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
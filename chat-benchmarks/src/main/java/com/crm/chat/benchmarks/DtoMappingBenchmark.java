@@ -0,0 +1,66 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.dto.CallDTO;
+import com.crm.chat.dto.MessageDTO;
+import com.crm.chat.dto.UserDTO;
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping done for every message, call and user sent to clients
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoMappingBenchmark {
+
+    @Param({"2", "10"})
+    private int callParticipants;
+
+    private User user;
+    private Message message;
+    private Call call;
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkFixtures.user(1);
+        User recipient = BenchmarkFixtures.user(2);
+        message = BenchmarkFixtures.directMessage(1, user,
+                BenchmarkFixtures.conversation(1, user, recipient), BenchmarkFixtures.text(120));
+        ChatRoom chatRoom = BenchmarkFixtures.chatRoom(1, user);
+        call = BenchmarkFixtures.groupCall(1, chatRoom, user, callParticipants);
+    }
+
+    @Benchmark
+    public MessageDTO messageFromEntity() {
+        return MessageDTO.fromEntity(message);
+    }
+
+    @Benchmark
+    public CallDTO callFromEntity() {
+        return CallDTO.fromEntity(call);
+    }
+
+    @Benchmark
+    public UserDTO userFromEntity() {
+        return UserDTO.fromEntity(user);
+    }
+}
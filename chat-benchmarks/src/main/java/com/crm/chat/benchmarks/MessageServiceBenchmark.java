@@ -0,0 +1,47 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.entity.Message;
+import com.crm.chat.service.MessageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message persistence path (validation, insert, last-message bookkeeping) against the embedded database
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageServiceBenchmark {
+
+    private static final String CONTENT = BenchmarkFixtures.text(120);
+
+    private MessageService messageService;
+
+    @Setup
+    public void setUp(ChatApplicationState application) {
+        messageService = application.bean(MessageService.class);
+    }
+
+    @Benchmark
+    public Message sendDirectMessage(ChatApplicationState application) {
+        return messageService.sendDirectMessage(application.senderId, application.conversationId, CONTENT);
+    }
+
+    @Benchmark
+    public Message sendGroupMessage(ChatApplicationState application) {
+        return messageService.sendGroupMessage(application.senderId, application.chatRoomId, CONTENT);
+    }
+}
@@ -0,0 +1,74 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.dto.MessageDTO;
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the payloads WebSocketController hands to the broker
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NotificationSerializationBenchmark {
+
+    private JsonMapper jsonMapper;
+    private Map<String, Object> callNotification;
+    private Map<String, Object> typingNotification;
+    private Map<String, Object> newMessageNotification;
+    private MessageDTO messageDTO;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+
+        User sender = BenchmarkFixtures.user(1);
+        Conversation conversation = BenchmarkFixtures.conversation(1, sender, BenchmarkFixtures.user(2));
+        Message message = BenchmarkFixtures.directMessage(1, sender, conversation, BenchmarkFixtures.text(120));
+        Call call = BenchmarkFixtures.groupCall(1, BenchmarkFixtures.chatRoom(1, sender), sender, 4);
+
+        callNotification = BenchmarkFixtures.incomingGroupCallNotification(call, sender);
+        typingNotification = BenchmarkFixtures.typingNotification(sender);
+        newMessageNotification = BenchmarkFixtures.newMessageNotification(message);
+        messageDTO = MessageDTO.fromEntity(message);
+    }
+
+    @Benchmark
+    public byte[] callNotification() {
+        return jsonMapper.writeValueAsBytes(callNotification);
+    }
+
+    @Benchmark
+    public byte[] typingNotification() {
+        return jsonMapper.writeValueAsBytes(typingNotification);
+    }
+
+    @Benchmark
+    public byte[] newMessageNotification() {
+        return jsonMapper.writeValueAsBytes(newMessageNotification);
+    }
+
+    @Benchmark
+    public byte[] messageDTO() {
+        return jsonMapper.writeValueAsBytes(messageDTO);
+    }
+}
@@ -0,0 +1,66 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.entity.User;
+import com.crm.chat.service.ActiveCallIndex;
+import com.crm.chat.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Presence lookups made when rendering user lists and routing calls
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresenceBenchmark {
+
+    private UserService userService;
+    private ActiveCallIndex activeCallIndex;
+    private List<Long> userIds;
+
+    @Setup
+    public void setUp(ChatApplicationState application) {
+        userService = application.bean(UserService.class);
+        activeCallIndex = application.bean(ActiveCallIndex.class);
+        userIds = application.userIds;
+    }
+
+    @Benchmark
+    public boolean isUserOnline() {
+        return userService.isUserOnline(randomUserId());
+    }
+
+    @Benchmark
+    public User.UserStatus getUserStatus() {
+        return userService.getUserStatus(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getOnlineUsers() {
+        return userService.getOnlineUsers();
+    }
+
+    @Benchmark
+    public boolean isUserInActiveCall() {
+        return activeCallIndex.isUserInActiveCall(randomUserId());
+    }
+
+    private Long randomUserId() {
+        return userIds.get(ThreadLocalRandom.current().nextInt(userIds.size()));
+    }
+}
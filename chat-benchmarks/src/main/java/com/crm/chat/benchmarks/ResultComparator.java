@@ -0,0 +1,88 @@
+package com.crm.chat.benchmarks;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files and exits with status 1 when any benchmark regressed
+ * by more than the threshold (default 10%) beyond the measurement error of both runs
+ *
+ * Usage: ResultComparator baseline.json current.json [thresholdPercent]
+ */
+public final class ResultComparator {
+
+    private ResultComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ResultComparator <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        Map<String, Score> baseline = read(Path.of(args[0]));
+        Map<String, Score> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", now.value, "new");
+                continue;
+            }
+
+            // Positive change = worse, whichever direction the mode counts as better
+            double change = (now.value - before.value) / before.value * (now.higherIsBetter ? -1 : 1);
+            boolean beyondError = Math.abs(now.value - before.value) > before.error + now.error;
+            boolean regressed = change > threshold && beyondError;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before.value, now.value,
+                    change * 100, regressed ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + Math.round(threshold * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        JsonNode results;
+        try (InputStream in = Files.newInputStream(file)) {
+            results = JsonMapper.builder().build().readTree(in);
+        }
+
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asString())
+                    .append(" [").append(result.path("mode").asString()).append(']');
+            JsonNode params = result.path("params");
+            for (String name : params.propertyNames()) {
+                key.append(' ').append(name).append('=').append(params.path(name).asString());
+            }
+
+            JsonNode metric = result.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble();
+            scores.put(key.toString(), new Score(
+                    metric.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error,
+                    "thrpt".equals(result.path("mode").asString())));
+        }
+        return scores;
+    }
+
+    private record Score(double value, double error, boolean higherIsBetter) {
+    }
+}
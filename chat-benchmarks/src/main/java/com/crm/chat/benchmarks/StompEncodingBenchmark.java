@@ -0,0 +1,73 @@
+package com.crm.chat.benchmarks;
+
+import com.crm.chat.dto.MessageDTO;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encoding of a broker MESSAGE frame, the last step before every push reaches a session
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StompEncodingBenchmark {
+
+    private final StompEncoder encoder = new StompEncoder();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private JsonMapper jsonMapper;
+    private MessageDTO messageDTO;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+        User sender = BenchmarkFixtures.user(1);
+        Conversation conversation = BenchmarkFixtures.conversation(1, sender, BenchmarkFixtures.user(2));
+        messageDTO = MessageDTO.fromEntity(
+                BenchmarkFixtures.directMessage(1, sender, conversation, BenchmarkFixtures.text(120)));
+        payload = jsonMapper.writeValueAsBytes(messageDTO);
+    }
+
+    @Benchmark
+    public byte[] encodeFrame() {
+        return encoder.encode(frame(payload));
+    }
+
+    @Benchmark
+    public byte[] serializeAndEncodeFrame() {
+        return encoder.encode(frame(jsonMapper.writeValueAsBytes(messageDTO)));
+    }
+
+    private Message<byte[]> frame(byte[] body) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/conversation.1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId(Long.toString(messageIds.incrementAndGet()));
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,102 @@
+package com.crm.chat.loadgen;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Logs a seeded user in through the same form login a browser uses and reads its fixture ids
+ * The resulting session cookie authenticates the user's WebSocket handshake.
+ */
+final class FormLogin {
+
+    private static final String SESSION_COOKIE = "CHAT_SESSION";
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"|value=\"([^\"]+)\"\\s+name=\"_csrf\"");
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    /**
+     * Session and ids of a logged-in virtual user
+     * partnerId/conversationId/chatRoomId are null when the seeder did not create them
+     */
+    record Session(String username, String cookie, Long userId, Long partnerId, Long conversationId, Long chatRoomId) {
+    }
+
+    private FormLogin() {
+    }
+
+    static Session login(URI baseUrl, String username, String password) throws IOException, InterruptedException {
+        CookieManager cookies = new CookieManager();
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(cookies)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(TIMEOUT)
+                .build();
+
+        // The login page carries the CSRF token the form post must echo
+        HttpResponse<String> page = client.send(
+                HttpRequest.newBuilder(baseUrl.resolve("/login")).timeout(TIMEOUT).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher csrf = CSRF_INPUT.matcher(page.body());
+        if (!csrf.find()) {
+            throw new IOException("No CSRF token on the login page (HTTP " + page.statusCode() + ")");
+        }
+        String token = csrf.group(1) != null ? csrf.group(1) : csrf.group(2);
+
+        String form = "username=" + encode(username) + "&password=" + encode(password) + "&_csrf=" + encode(token);
+        HttpResponse<Void> login = client.send(
+                HttpRequest.newBuilder(baseUrl.resolve("/login"))
+                        .timeout(TIMEOUT)
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        String location = login.headers().firstValue("Location").orElse("");
+        if (login.statusCode() != 302 || location.contains("error")) {
+            throw new IOException("Login of " + username + " failed (HTTP " + login.statusCode() + " -> " + location + ")");
+        }
+
+        String sessionCookie = cookies.getCookieStore().getCookies().stream()
+                .filter(cookie -> SESSION_COOKIE.equals(cookie.getName()))
+                .map(HttpCookie::getValue)
+                .findFirst()
+                .orElseThrow(() -> new IOException("No " + SESSION_COOKIE + " cookie after logging in " + username));
+
+        HttpResponse<String> fixture = client.send(
+                HttpRequest.newBuilder(baseUrl.resolve("/api/loadtest/fixture"))
+                        .timeout(TIMEOUT)
+                        .header("Accept", "application/json")
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (fixture.statusCode() != 200) {
+            throw new IOException("Fixture lookup for " + username + " failed (HTTP " + fixture.statusCode()
+                    + "); is the application running with the loadtest profile?");
+        }
+        JsonNode ids = JSON.readTree(fixture.body());
+
+        return new Session(username, SESSION_COOKIE + "=" + sessionCookie,
+                id(ids, "userId"), id(ids, "partnerId"), id(ids, "conversationId"), id(ids, "chatRoomId"));
+    }
+
+    private static Long id(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asLong();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
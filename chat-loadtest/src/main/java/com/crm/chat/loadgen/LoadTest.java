@@ -0,0 +1,153 @@
+package com.crm.chat.loadgen;
+
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless load generator for the chat application
+ * Logs in --users seeded accounts, opens one STOMP session per account at --connect-rate, then drives
+ * the --mix of frames for --duration seconds and reports latency percentiles, throughput and errors.
+ * The application must run with the "loadtest" profile (embedded database plus seeded users).
+ */
+public final class LoadTest {
+
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+    private static final long DRAIN_SECONDS = 3;
+    private static final int LOGIN_THREADS = 32;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (!new LoadTest().run(config)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return false when a measured latency recorded nothing
+     */
+    private boolean run(LoadTestConfig config) throws Exception {
+        LoadTestMetrics metrics = new LoadTestMetrics();
+        Map<Long, Long> ringStarts = new ConcurrentHashMap<>();
+        List<VirtualUser> users = new CopyOnWriteArrayList<>();
+        List<ScheduledFuture<?>> drivers = new CopyOnWriteArrayList<>();
+        LoadTestConfig.Action[] weightedActions = weightedActions(config);
+
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(2);
+        heartbeats.setThreadNamePrefix("stomp-heartbeat-");
+        heartbeats.initialize();
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new JacksonJsonMessageConverter());
+        client.setTaskScheduler(heartbeats);
+        client.setDefaultHeartbeat(new long[]{10_000, 10_000});
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(config.threads());
+        ExecutorService logins = Executors.newFixedThreadPool(LOGIN_THREADS);
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.actionsPerUserPerSecond());
+
+        System.out.printf("Ramping up %d users against %s at %d/s%n", config.users(), config.baseUrl(), config.connectRate());
+        ScheduledFuture<?> reporter = scheduler.scheduleAtFixedRate(
+                () -> metrics.printInterval(System.out), REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        // ==================== RAMP-UP ====================
+
+        CountDownLatch rampedUp = new CountDownLatch(config.users());
+        for (int i = 0; i < config.users(); i++) {
+            String username = config.usernamePrefix() + (config.firstUser() + i);
+            long startDelayMillis = i * 1000L / Math.max(config.connectRate(), 1);
+
+            scheduler.schedule(() -> logins.execute(() -> {
+                try {
+                    FormLogin.Session login = FormLogin.login(config.baseUrl(), username, config.password());
+                    VirtualUser user = new VirtualUser(config, metrics, login, ringStarts);
+                    user.connect(client).whenComplete((session, error) -> {
+                        if (error != null) {
+                            metrics.failed(LoadTestMetrics.Failure.CONNECT);
+                        } else {
+                            users.add(user);
+                            drivers.add(scheduler.scheduleAtFixedRate(
+                                    () -> user.perform(weightedActions[ThreadLocalRandom.current().nextInt(weightedActions.length)]),
+                                    ThreadLocalRandom.current().nextLong(periodNanos), periodNanos, TimeUnit.NANOSECONDS));
+                        }
+                        rampedUp.countDown();
+                    });
+                } catch (Exception e) {
+                    metrics.failed(LoadTestMetrics.Failure.LOGIN);
+                    rampedUp.countDown();
+                }
+            }), startDelayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        long rampSeconds = config.users() / Math.max(config.connectRate(), 1) + 60;
+        if (!rampedUp.await(rampSeconds, TimeUnit.SECONDS)) {
+            System.out.printf("Ramp-up incomplete after %ds; measuring with %d sessions%n", rampSeconds, users.size());
+        }
+
+        // ==================== STEADY STATE ====================
+
+        System.out.printf("%d sessions connected; measuring for %ds%n", users.size(), config.duration().toSeconds());
+        metrics.markSteadyState();
+        Thread.sleep(config.duration().toMillis());
+
+        for (ScheduledFuture<?> driver : drivers) {
+            driver.cancel(false);
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(DRAIN_SECONDS)); // let in-flight frames arrive
+        reporter.cancel(false);
+        List<LoadTestMetrics.Latency> missing = metrics.writeReport(System.out, config.outputDirectory());
+
+        // ==================== SHUTDOWN ====================
+
+        for (VirtualUser user : users) {
+            user.disconnect();
+        }
+        logins.shutdownNow();
+        scheduler.shutdownNow();
+        client.stop();
+        heartbeats.shutdown();
+        return missing.isEmpty();
+    }
+
+    /**
+     * Actions repeated by weight, so a uniform pick follows the configured mix
+     */
+    private static LoadTestConfig.Action[] weightedActions(LoadTestConfig config) {
+        List<LoadTestConfig.Action> actions = new ArrayList<>();
+        config.mix().forEach((action, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                actions.add(action);
+            }
+        });
+        if (actions.isEmpty()) {
+            throw new IllegalArgumentException("--mix must give at least one action a positive weight");
+        }
+        return actions.toArray(LoadTestConfig.Action[]::new);
+    }
+}
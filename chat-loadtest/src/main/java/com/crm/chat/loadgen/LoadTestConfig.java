@@ -0,0 +1,109 @@
+package com.crm.chat.loadgen;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load test options, parsed from --name=value arguments
+ */
+record LoadTestConfig(
+        URI baseUrl,
+        int users,
+        int firstUser,
+        String usernamePrefix,
+        String password,
+        int connectRate,
+        Duration duration,
+        double actionsPerUserPerSecond,
+        Map<Action, Integer> mix,
+        double groupShare,
+        int messageSize,
+        int threads,
+        Path outputDirectory) {
+
+    /**
+     * Frames a virtual user can send
+     */
+    enum Action {
+        SEND_MESSAGE("sendMessage"),
+        TYPING("typing"),
+        MESSAGE_READ("messageRead"),
+        CALL("call");
+
+        private final String key;
+
+        Action(String key) {
+            this.key = key;
+        }
+
+        static Action fromKey(String key) {
+            for (Action action : values()) {
+                if (action.key.equals(key)) {
+                    return action;
+                }
+            }
+            throw new IllegalArgumentException("Unknown action in --mix: " + key);
+        }
+    }
+
+    static final String USAGE = """
+            Usage: LoadTest [options]
+              --url=http://localhost:9090   application base URL (run it with the loadtest profile)
+              --users=1000                  concurrent virtual users (STOMP sessions)
+              --first-user=0                index of the first seeded user to log in as
+              --username-prefix=loadtest    seeded usernames are <prefix><index>
+              --password=loadtest           password of the seeded users
+              --connect-rate=50             new sessions opened per second during ramp-up
+              --duration=60                 seconds of steady load after ramp-up
+              --rate=0.5                    actions per user per second
+              --mix=sendMessage:60,typing:25,messageRead:10,call:5
+              --group-share=0.5             share of messages/typing sent to the chat room
+              --message-size=100            message body length in characters
+              --threads=8                   scheduler threads driving the actions
+              --out=target/loadtest         directory for the report and histogram files
+            """;
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        Map<Action, Integer> mix = new EnumMap<>(Action.class);
+        for (String entry : options.getOrDefault("mix", "sendMessage:60,typing:25,messageRead:10,call:5").split(",")) {
+            String[] weight = entry.split(":");
+            mix.put(Action.fromKey(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+
+        return new LoadTestConfig(
+                URI.create(options.getOrDefault("url", "http://localhost:9090")),
+                Integer.parseInt(options.getOrDefault("users", "1000")),
+                Integer.parseInt(options.getOrDefault("first-user", "0")),
+                options.getOrDefault("username-prefix", "loadtest"),
+                options.getOrDefault("password", "loadtest"),
+                Integer.parseInt(options.getOrDefault("connect-rate", "50")),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60"))),
+                Double.parseDouble(options.getOrDefault("rate", "0.5")),
+                mix,
+                Double.parseDouble(options.getOrDefault("group-share", "0.5")),
+                Integer.parseInt(options.getOrDefault("message-size", "100")),
+                Integer.parseInt(options.getOrDefault("threads", "8")),
+                Path.of(options.getOrDefault("out", "target/loadtest")));
+    }
+
+    URI webSocketUri() {
+        String scheme = "https".equals(baseUrl.getScheme()) ? "wss" : "ws";
+        return URI.create(scheme + "://" + baseUrl.getAuthority() + "/ws");
+    }
+}
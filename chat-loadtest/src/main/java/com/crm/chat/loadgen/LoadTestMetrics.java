@@ -0,0 +1,255 @@
+package com.crm.chat.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms (HdrHistogram, microseconds), throughput and error counters of one run
+ * Recording is lock-free; the reporter drains interval histograms into run totals.
+ */
+final class LoadTestMetrics {
+
+    /**
+     * Send-to-receive latencies that are measured
+     */
+    enum Latency {
+        MESSAGE_RECEIVED("message.received", LoadTestConfig.Action.SEND_MESSAGE,
+                "chat.sendMessage -> MessageDTO on the conversation/chat room topic"),
+        MESSAGE_DELIVERED("message.delivered", LoadTestConfig.Action.SEND_MESSAGE,
+                "chat.sendMessage -> MESSAGE_DELIVERED on /user/queue/delivery"),
+        CALL_RING("call.ring", LoadTestConfig.Action.CALL, "call.initiate -> INCOMING_CALL at the callee");
+
+        private final String key;
+        // Action whose frames this latency measures; a run that sent some must record samples
+        private final LoadTestConfig.Action source;
+        private final String description;
+
+        Latency(String key, LoadTestConfig.Action source, String description) {
+            this.key = key;
+            this.source = source;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Failures that are counted
+     */
+    enum Failure {
+        LOGIN, CONNECT, STOMP_ERROR, TRANSPORT, SEND
+    }
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Map<Latency, Recorder> recorders = new EnumMap<>(Latency.class);
+    private final Map<Latency, Histogram> totals = new EnumMap<>(Latency.class);
+    private final Map<Latency, Histogram> intervals = new EnumMap<>(Latency.class);
+    private final Map<LoadTestConfig.Action, LongAdder> sent = new EnumMap<>(LoadTestConfig.Action.class);
+    private final Map<Failure, LongAdder> failures = new EnumMap<>(Failure.class);
+    private final LongAdder received = new LongAdder();
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private long steadyStartNanos;
+    private long steadySent;
+    private long steadyReceived;
+    private long lastReportNanos = System.nanoTime();
+    private long lastSent;
+    private long lastReceived;
+
+    LoadTestMetrics() {
+        for (Latency latency : Latency.values()) {
+            recorders.put(latency, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+            totals.put(latency, new Histogram(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+        for (LoadTestConfig.Action action : LoadTestConfig.Action.values()) {
+            sent.put(action, new LongAdder());
+        }
+        for (Failure failure : Failure.values()) {
+            failures.put(failure, new LongAdder());
+        }
+    }
+
+    // ==================== RECORDING ====================
+
+    void recordLatency(Latency latency, long sentNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos);
+        recorders.get(latency).recordValue(Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    void sent(LoadTestConfig.Action action) {
+        sent.get(action).increment();
+    }
+
+    void received() {
+        received.increment();
+    }
+
+    void failed(Failure failure) {
+        failures.get(failure).increment();
+    }
+
+    void sessionOpened() {
+        sessions.incrementAndGet();
+    }
+
+    void sessionClosed() {
+        sessions.decrementAndGet();
+    }
+
+    // ==================== REPORTING ====================
+
+    /**
+     * Start of the steady-state window used for the final throughput figures
+     */
+    synchronized void markSteadyState() {
+        drain();
+        steadyStartNanos = System.nanoTime();
+        steadySent = totalSent();
+        steadyReceived = received.sum();
+        for (Histogram total : totals.values()) {
+            total.reset(); // ramp-up latencies are not part of the result
+        }
+    }
+
+    /**
+     * One progress line covering the time since the previous one
+     */
+    synchronized void printInterval(PrintStream out) {
+        drain();
+        long now = System.nanoTime();
+        double seconds = (now - lastReportNanos) / 1e9;
+        long sentNow = totalSent();
+        long receivedNow = received.sum();
+        Histogram delivered = intervals.get(Latency.MESSAGE_DELIVERED);
+
+        out.printf(Locale.ROOT, "sessions=%d sent/s=%.0f received/s=%.0f errors=%d delivered p50=%.1fms p99=%.1fms max=%.1fms%n",
+                sessions.get(),
+                (sentNow - lastSent) / seconds,
+                (receivedNow - lastReceived) / seconds,
+                totalFailures(),
+                delivered.getValueAtPercentile(50) / 1000.0,
+                delivered.getValueAtPercentile(99) / 1000.0,
+                delivered.getMaxValue() / 1000.0);
+
+        lastReportNanos = now;
+        lastSent = sentNow;
+        lastReceived = receivedNow;
+    }
+
+    /**
+     * Final report on stdout, plus report.json and one .hgrm percentile file per latency in the output directory
+     * @return the latencies that recorded no samples although their action was sent (a broken measurement)
+     */
+    synchronized List<Latency> writeReport(PrintStream out, Path directory) throws IOException {
+        drain();
+        double seconds = Math.max((System.nanoTime() - steadyStartNanos) / 1e9, 1e-9);
+        long sentTotal = totalSent() - steadySent;
+        long receivedTotal = received.sum() - steadyReceived;
+
+        Files.createDirectories(directory);
+        StringBuilder json = new StringBuilder(1024)
+                .append("{\"durationSeconds\":").append(format(seconds))
+                .append(",\"throughput\":{\"sentPerSecond\":").append(format(sentTotal / seconds))
+                .append(",\"receivedPerSecond\":").append(format(receivedTotal / seconds)).append('}');
+
+        out.println();
+        out.printf(Locale.ROOT, "Steady state: %.0fs, sent %d (%.0f/s), received %d (%.0f/s)%n",
+                seconds, sentTotal, sentTotal / seconds, receivedTotal, receivedTotal / seconds);
+
+        json.append(",\"sent\":{");
+        boolean first = true;
+        for (Map.Entry<LoadTestConfig.Action, LongAdder> entry : sent.entrySet()) {
+            json.append(first ? "" : ",").append('"').append(entry.getKey().name()).append("\":").append(entry.getValue().sum());
+            first = false;
+        }
+
+        long attempts = Math.max(totalSent(), 1);
+        json.append("},\"errors\":{");
+        first = true;
+        for (Map.Entry<Failure, LongAdder> entry : failures.entrySet()) {
+            json.append(first ? "" : ",").append('"').append(entry.getKey().name()).append("\":").append(entry.getValue().sum());
+            first = false;
+        }
+        json.append("},\"errorRate\":").append(format((double) totalFailures() / attempts));
+        out.printf(Locale.ROOT, "Errors: %s (%.3f%% of frames sent)%n", failures, 100.0 * totalFailures() / attempts);
+
+        List<Latency> missing = new ArrayList<>();
+        json.append(",\"latencyMillis\":{");
+        first = true;
+        for (Latency latency : Latency.values()) {
+            Histogram histogram = totals.get(latency);
+            out.printf(Locale.ROOT, "%-18s n=%-9d p50=%8.2fms p90=%8.2fms p99=%8.2fms p99.9=%8.2fms max=%8.2fms  (%s)%n",
+                    latency.key, histogram.getTotalCount(),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0, latency.description);
+
+            json.append(first ? "" : ",").append('"').append(latency.key).append("\":{")
+                    .append("\"count\":").append(histogram.getTotalCount())
+                    .append(",\"p50\":").append(format(millis(histogram, 50)))
+                    .append(",\"p90\":").append(format(millis(histogram, 90)))
+                    .append(",\"p99\":").append(format(millis(histogram, 99)))
+                    .append(",\"p999\":").append(format(millis(histogram, 99.9)))
+                    .append(",\"max\":").append(format(histogram.getMaxValue() / 1000.0))
+                    .append('}');
+            first = false;
+
+            try (PrintStream file = new PrintStream(Files.newOutputStream(directory.resolve(latency.key + ".hgrm")))) {
+                histogram.outputPercentileDistribution(file, 1000.0); // values in milliseconds
+            }
+            if (histogram.getTotalCount() == 0 && sent.get(latency.source).sum() > 0) {
+                missing.add(latency);
+            }
+        }
+        json.append('}');
+
+        json.append(",\"missingLatencies\":[");
+        for (int i = 0; i < missing.size(); i++) {
+            json.append(i == 0 ? "" : ",").append('"').append(missing.get(i).key).append('"');
+        }
+        json.append("]}");
+        for (Latency latency : missing) {
+            out.printf("WARNING: no %s samples although %s frames were sent; the reply is not reaching the client%n",
+                    latency.key, latency.source.name());
+        }
+
+        Files.writeString(directory.resolve("report.json"), json);
+        out.println("Report written to " + directory.toAbsolutePath());
+        return missing;
+    }
+
+    private void drain() {
+        for (Latency latency : Latency.values()) {
+            Histogram interval = recorders.get(latency).getIntervalHistogram(intervals.get(latency));
+            intervals.put(latency, interval);
+            totals.get(latency).add(interval);
+        }
+    }
+
+    private long totalSent() {
+        return sent.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private long totalFailures() {
+        return failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
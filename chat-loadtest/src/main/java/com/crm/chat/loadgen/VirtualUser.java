@@ -0,0 +1,298 @@
+package com.crm.chat.loadgen;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated browser tab: a STOMP session with the same subscriptions and frames as chat.html
+ * Messages carry their send time (System.nanoTime) in the content, so fan-out latency can be
+ * measured by any receiver in this JVM.
+ */
+final class VirtualUser extends StompSessionHandlerAdapter {
+
+    private static final String CONTENT_MARKER = "lt|";
+    private static final long STALE_RING_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int MAX_SEEN_CALLS = 1024;
+
+    private static final AtomicLong TEMP_IDS = new AtomicLong();
+
+    private final LoadTestConfig config;
+    private final LoadTestMetrics metrics;
+    private final FormLogin.Session login;
+    private final Map<Long, Long> ringStarts;
+    private final String filler;
+
+    private final Map<Long, Long> pendingAcks = new ConcurrentHashMap<>();
+    private final Set<Long> seenCalls = ConcurrentHashMap.newKeySet();
+    private volatile Long lastReceivedMessageId;
+    private volatile StompSession session;
+
+    /**
+     * @param ringStarts call.initiate send times by conversation id, shared by all virtual users
+     */
+    VirtualUser(LoadTestConfig config, LoadTestMetrics metrics, FormLogin.Session login, Map<Long, Long> ringStarts) {
+        this.config = config;
+        this.metrics = metrics;
+        this.login = login;
+        this.ringStarts = ringStarts;
+        this.filler = "x".repeat(Math.max(config.messageSize() - 24, 0));
+    }
+
+    CompletableFuture<StompSession> connect(WebSocketStompClient client) {
+        WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+        handshakeHeaders.add("Cookie", login.cookie());
+        return client.connectAsync(config.webSocketUri(), handshakeHeaders, new StompHeaders(), this);
+    }
+
+    void disconnect() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+
+    boolean isConnected() {
+        StompSession current = session;
+        return current != null && current.isConnected();
+    }
+
+    // ==================== SESSION CALLBACKS ====================
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        metrics.sessionOpened();
+
+        if (login.conversationId() != null) {
+            session.subscribe("/topic/conversation." + login.conversationId(), this);
+            session.subscribe("/topic/conversation." + login.conversationId() + ".typing", this);
+        }
+        if (login.chatRoomId() != null) {
+            session.subscribe("/topic/chatroom." + login.chatRoomId(), this);
+            session.subscribe("/topic/chatroom." + login.chatRoomId() + ".typing", this);
+        }
+        // User destinations resolve to this session's queues; "/user/{id}/..." would never receive anything
+        session.subscribe("/user/queue/delivery", this);
+        session.subscribe("/user/queue/notifications", this);
+        session.subscribe("/user/queue/read-receipts", this);
+        session.subscribe("/user/queue/call", this);
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return Map.class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        metrics.received();
+        if (!(payload instanceof Map<?, ?> frame)) {
+            return;
+        }
+
+        String destination = headers.getDestination();
+        if (destination != null && destination.startsWith("/topic/") && !destination.endsWith(".typing")) {
+            onTopicMessage(frame);
+            return;
+        }
+
+        Object type = frame.get("type");
+        if ("MESSAGE_DELIVERED".equals(type)) {
+            Long sentAt = pendingAcks.remove(asLong(frame.get("tempId")));
+            if (sentAt != null) {
+                metrics.recordLatency(LoadTestMetrics.Latency.MESSAGE_DELIVERED, sentAt);
+            }
+        } else if ("INCOMING_CALL".equals(type)) {
+            onIncomingCall(frame);
+        }
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                byte[] payload, Throwable exception) {
+        metrics.failed(LoadTestMetrics.Failure.STOMP_ERROR);
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        metrics.failed(LoadTestMetrics.Failure.TRANSPORT);
+        if (this.session != null && !session.isConnected()) {
+            metrics.sessionClosed();
+            this.session = null;
+        }
+    }
+
+    private void onTopicMessage(Map<?, ?> message) {
+        Long senderId = asLong(message.get("senderId"));
+        if (login.userId().equals(senderId)) {
+            return; // own echo; the sender's latency is the delivery ack
+        }
+        lastReceivedMessageId = asLong(message.get("id"));
+
+        Object content = message.get("content");
+        if (content instanceof String text && text.startsWith(CONTENT_MARKER)) {
+            int end = text.indexOf('|', CONTENT_MARKER.length());
+            if (end > 0) {
+                long sentAt = Long.parseLong(text.substring(CONTENT_MARKER.length(), end));
+                metrics.recordLatency(LoadTestMetrics.Latency.MESSAGE_RECEIVED, sentAt);
+            }
+        }
+    }
+
+    private void onIncomingCall(Map<?, ?> call) {
+        Long callId = asLong(call.get("callId"));
+        if (callId == null || !seenCalls.add(callId)) {
+            return;
+        }
+        if (seenCalls.size() > MAX_SEEN_CALLS) {
+            seenCalls.clear();
+            seenCalls.add(callId);
+        }
+
+        Long sentAt = ringStarts.remove(asLong(call.get("conversationId")));
+        if (sentAt != null) {
+            metrics.recordLatency(LoadTestMetrics.Latency.CALL_RING, sentAt);
+        }
+
+        // Decline straight away so the pair is free for the next call
+        Map<String, Object> reject = new HashMap<>();
+        reject.put("callId", callId);
+        reject.put("callerId", call.get("callerId"));
+        send("/app/call.reject", reject);
+    }
+
+    // ==================== ACTIONS ====================
+
+    /**
+     * Send one frame of the given kind; false when the user has nothing to send for it right now
+     */
+    boolean perform(LoadTestConfig.Action action) {
+        return switch (action) {
+            case SEND_MESSAGE -> sendMessage();
+            case TYPING -> sendTyping();
+            case MESSAGE_READ -> sendMessageRead();
+            case CALL -> initiateCall();
+        };
+    }
+
+    private boolean sendMessage() {
+        String[] target = pickChat();
+        if (target == null) {
+            return false;
+        }
+        long tempId = TEMP_IDS.incrementAndGet();
+        long now = System.nanoTime();
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("chatType", target[0]);
+        message.put("chatId", Long.valueOf(target[1]));
+        message.put("content", CONTENT_MARKER + now + "|" + filler);
+        message.put("tempId", tempId);
+
+        pendingAcks.put(tempId, now);
+        if (!send("/app/chat.sendMessage", message)) {
+            pendingAcks.remove(tempId);
+            return false;
+        }
+        metrics.sent(LoadTestConfig.Action.SEND_MESSAGE);
+        return true;
+    }
+
+    private boolean sendTyping() {
+        String[] target = pickChat();
+        if (target == null) {
+            return false;
+        }
+        Map<String, Object> typing = new HashMap<>();
+        typing.put("chatType", target[0]);
+        typing.put("chatId", Long.valueOf(target[1]));
+        typing.put("isTyping", ThreadLocalRandom.current().nextBoolean());
+        return send("/app/chat.typing", typing) && countSent(LoadTestConfig.Action.TYPING);
+    }
+
+    private boolean sendMessageRead() {
+        Long messageId = lastReceivedMessageId;
+        if (messageId == null) {
+            return false;
+        }
+        return send("/app/chat.messageRead", Map.of("messageId", messageId))
+                && countSent(LoadTestConfig.Action.MESSAGE_READ);
+    }
+
+    private boolean initiateCall() {
+        Long conversationId = login.conversationId();
+        if (conversationId == null || login.partnerId() == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        Long previous = ringStarts.putIfAbsent(conversationId, now);
+        if (previous != null) {
+            if (now - previous < STALE_RING_NANOS) {
+                return false; // this pair is already ringing
+            }
+            ringStarts.put(conversationId, now); // never rang (call refused); try again
+        }
+
+        Map<String, Object> call = new HashMap<>();
+        call.put("callType", "AUDIO");
+        call.put("callMode", "DIRECT");
+        call.put("conversationId", conversationId);
+        call.put("recipientId", login.partnerId());
+        if (!send("/app/call.initiate", call)) {
+            ringStarts.remove(conversationId, now);
+            return false;
+        }
+        return countSent(LoadTestConfig.Action.CALL);
+    }
+
+    private String[] pickChat() {
+        boolean group = login.chatRoomId() != null
+                && (login.conversationId() == null || ThreadLocalRandom.current().nextDouble() < config.groupShare());
+        if (group) {
+            return new String[]{"chatroom", login.chatRoomId().toString()};
+        }
+        return login.conversationId() != null
+                ? new String[]{"conversation", login.conversationId().toString()}
+                : null;
+    }
+
+    private boolean send(String destination, Object payload) {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            return false;
+        }
+        try {
+            current.send(destination, payload);
+            return true;
+        } catch (RuntimeException e) {
+            metrics.failed(LoadTestMetrics.Failure.SEND);
+            return false;
+        }
+    }
+
+    private boolean countSent(LoadTestConfig.Action action) {
+        metrics.sent(action);
+        return true;
+    }
+
+    private static Long asLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return value == null ? null : Long.valueOf(value.toString());
+    }
+}
@@ -0,0 +1,51 @@
+package com.crm.chat.config;
+
+import com.crm.chat.entity.IdGenerators;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aligns the id_generators rows with the ids already present before the first insert
+ * Tables created with IDENTITY ids keep their existing rows; without this the first allocated block
+ * would start at 1 and collide with them. Runs after the schema update (it depends on the
+ * EntityManagerFactory) and before any runner or request can insert.
+ */
+@Component
+@Slf4j
+public class IdGeneratorInitializer implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        IdGenerators.SEGMENT_TABLES.forEach(this::align);
+    }
+
+    private void align(String segment, String table) {
+        long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Long.class);
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + IdGenerators.TABLE + " WHERE " + IdGenerators.SEGMENT_COLUMN + " = ?",
+                Integer.class, segment);
+
+        if (rows == null || rows == 0) {
+            jdbcTemplate.update("INSERT INTO " + IdGenerators.TABLE + " (" + IdGenerators.SEGMENT_COLUMN + ", "
+                    + IdGenerators.VALUE_COLUMN + ") VALUES (?, ?)", segment, next);
+            log.info("Id allocation for {} starts at {}", table, next);
+            return;
+        }
+        int updated = jdbcTemplate.update("UPDATE " + IdGenerators.TABLE + " SET " + IdGenerators.VALUE_COLUMN
+                + " = ? WHERE " + IdGenerators.SEGMENT_COLUMN + " = ? AND " + IdGenerators.VALUE_COLUMN + " < ?",
+                next, segment, next);
+        // An empty table (fresh install) only moves the freshly created row from its initial value to 1
+        if (updated > 0 && next > 1) {
+            log.warn("Id allocation for {} was behind the table; moved to {}", table, next);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.crm.chat.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Scheduler for the long-running maintenance jobs (retention, archiving)
+ * A run may sleep between batches for up to its max run time, so these jobs get their own thread
+ * instead of holding one of the taskScheduler threads that drive heartbeats and presence. A single
+ * thread also keeps two jobs that delete from the same tables from overlapping.
+ */
+@Configuration
+public class MaintenanceConfig {
+
+    @Bean
+    public TaskScheduler maintenanceScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("maintenance-");
+        scheduler.initialize();
+        return scheduler;
+    }
+}
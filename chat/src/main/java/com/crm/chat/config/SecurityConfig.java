@@ -45,6 +45,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/", "/register", "/login", "/css/**", "/js/**", "/images/**", "/uploads/**").permitAll()
                         .requestMatchers("/ws/**").permitAll() // Allow WebSocket connections
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll() // Probes and metrics scraping
                         .requestMatchers("/api/**").authenticated()
                         .anyRequest().authenticated()
                 )
@@ -68,8 +69,9 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf
                         .ignoringRequestMatchers("/ws/**", "/api/**")  // Added /api/**
                 )
+                // Any number of devices per user; their connections are tracked by DeviceSessionRegistry
                 .sessionManagement(session -> session
-                        .maximumSessions(1)
+                        .maximumSessions(-1)
                         .maxSessionsPreventsLogin(false)
                 );
 
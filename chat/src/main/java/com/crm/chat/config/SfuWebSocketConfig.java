@@ -0,0 +1,27 @@
+package com.crm.chat.config;
+
+import com.crm.chat.sfu.SfuWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Raw binary WebSocket endpoint for the SFU media relay
+ * Kept outside /ws/** so it cannot collide with the SockJS transport URLs of the STOMP endpoint,
+ * and so it stays behind the authenticated session like the rest of the app.
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class SfuWebSocketConfig implements WebSocketConfigurer {
+
+    private final SfuWebSocketHandler sfuWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(sfuWebSocketHandler, "/sfu")
+                .setAllowedOriginPatterns("*");
+    }
+}
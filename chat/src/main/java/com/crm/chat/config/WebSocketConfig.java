@@ -1,5 +1,11 @@
 package com.crm.chat.config;
 
+import com.crm.chat.logging.StompLoggingInterceptor;
+import com.crm.chat.presence.IdleDetector;
+import com.crm.chat.profiling.QueryProfiler;
+import com.crm.chat.tracing.StompTracing;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
@@ -23,8 +29,14 @@ import java.security.Principal;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompTracing stompTracing;
+    private final QueryProfiler queryProfiler;
+    private final IdleDetector idleDetector;
+
     @Bean
     public TaskScheduler taskScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
@@ -42,6 +54,9 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+
+        // Spans around messagingTemplate sends; kept open until the resulting frames are written
+        config.configureBrokerChannel().interceptors(stompTracing.brokerInterceptor());
     }
 
     @Override
@@ -59,7 +74,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
+        // Tracing first: the trace starts at frame receipt, before the message waits for an inbound thread
+        registration.interceptors(stompTracing.inboundInterceptor(), new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
                 StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
@@ -69,15 +85,15 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
                     if (authentication != null) {
                         accessor.setUser(authentication);
-                        System.out.println("✅ WebSocket CONNECT: User " + authentication.getName() + " authenticated");
+                        log.debug("WebSocket CONNECT: user {} authenticated", authentication.getName());
                     } else {
-                        System.out.println("⚠️ WebSocket CONNECT: No authentication found");
+                        log.warn("WebSocket CONNECT: no authentication found");
                     }
                 }
                 
                 return message;
             }
-        });
+        }, new StompLoggingInterceptor(), queryProfiler.stompInterceptor(), idleDetector.activityInterceptor());
         
         registration.taskExecutor()
                 .corePoolSize(4)
@@ -87,6 +103,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompTracing.outboundInterceptor());
         registration.taskExecutor()
                 .corePoolSize(4)
                 .maxPoolSize(8)
@@ -4,16 +4,23 @@ import com.crm.chat.dto.CallDTO;
 import com.crm.chat.entity.Call;
 import com.crm.chat.entity.User;
 import com.crm.chat.service.CallService;
+import com.crm.chat.service.CallTelemetryService;
+import com.crm.chat.service.RingDispatcher;
 import com.crm.chat.service.UserService;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +34,12 @@ public class CallController {
 
     private final CallService callService;
     private final UserService userService;
+    private final CallTelemetryService callTelemetryService;
+    private final RingDispatcher ringDispatcher;
+
+    // Usernames allowed to see live telemetry of every call (the same operators as /api/logging/verbose)
+    @Value("${chat.logging.operators:}")
+    private Set<String> operators;
 
     /**
      * Get current user ID from authentication
@@ -43,6 +56,10 @@ public class CallController {
         return userService.findByUsername(username).orElseThrow();
     }
 
+    private boolean isOperator() {
+        return operators.contains(SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
 
     // ==================== CALL INITIATION ====================
 
@@ -113,6 +130,7 @@ public class CallController {
         try {
             Long userId = getCurrentUserId(authentication);
             Call call = callService.acceptCall(callId, userId);
+            ringDispatcher.resolve(call, userId);
             return ResponseEntity.ok(CallDTO.fromEntity(call));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
@@ -130,6 +148,7 @@ public class CallController {
         try {
             Long userId = getCurrentUserId(authentication);
             Call call = callService.rejectCall(callId, userId);
+            ringDispatcher.resolve(call, userId);
             return ResponseEntity.ok(CallDTO.fromEntity(call));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
@@ -147,6 +166,7 @@ public class CallController {
         try {
             Long userId = getCurrentUserId(authentication);
             Call call = callService.endCall(callId, userId);
+            ringDispatcher.cancel(call);
             return ResponseEntity.ok(CallDTO.fromEntity(call));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
@@ -164,6 +184,7 @@ public class CallController {
         try {
             Long userId = getCurrentUserId(authentication);
             Call call = callService.cancelCall(callId, userId);
+            ringDispatcher.cancel(call);
             return ResponseEntity.ok(CallDTO.fromEntity(call));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
@@ -298,29 +319,63 @@ public class CallController {
     @GetMapping("/check-availability/{userId}")
     public ResponseEntity<Boolean> checkAvailability(@PathVariable Long userId) {
         User user = userService.findById(userId).orElseThrow();
-        // User is available if ONLINE and not currently in a call status
-        return ResponseEntity.ok(user.getStatus() == User.UserStatus.ONLINE);
+        // User is available if their status allows calls and they are not already in a call
+        return ResponseEntity.ok(user.isAvailable() && !callService.isUserInActiveCall(userId));
     }
 
     
     // ==================== STATISTICS ====================
 
     /**
-     * Get call statistics for current user
-     * GET /api/calls/statistics
+     * Get call statistics for current user, optionally limited to a date range
+     * GET /api/calls/statistics?from=2025-01-01&to=2025-01-31
      */
     @GetMapping("/statistics")
     public ResponseEntity<Map<String, Object>> getCallStatistics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             Authentication authentication) {
         try {
             Long userId = getCurrentUserId(authentication);
-            Map<String, Object> stats = callService.getCallStatistics(userId);
+            Map<String, Object> stats = (from == null && to == null)
+                    ? callService.getCallStatistics(userId)
+                    : callService.getCallStatistics(userId,
+                            from != null ? from : LocalDate.EPOCH,
+                            to != null ? to : LocalDate.now());
             return ResponseEntity.ok(stats);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    // ==================== QUALITY TELEMETRY ====================
+
+    /**
+     * Rolling-window quality of all calls currently reporting stats (operators only)
+     * GET /api/calls/telemetry
+     */
+    @GetMapping("/telemetry")
+    public ResponseEntity<List<Map<String, Object>>> getLiveTelemetry() {
+        if (!isOperator()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(callTelemetryService.getLiveOverview());
+    }
+
+    /**
+     * Live quality of one call, overall and per participant (operators only)
+     * GET /api/calls/telemetry/{callId}
+     */
+    @GetMapping("/telemetry/{callId}")
+    public ResponseEntity<Map<String, Object>> getLiveCallTelemetry(@PathVariable Long callId) {
+        if (!isOperator()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return callTelemetryService.getLiveCallQuality(callId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Cleanup missed calls (Admin only - manual trigger)
      * POST /api/calls/cleanup/missed
@@ -0,0 +1,101 @@
+package com.crm.chat.controller;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.User;
+import com.crm.chat.service.CallRecordingService;
+import com.crm.chat.service.CallService;
+import com.crm.chat.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * REST API Controller for call recording
+ * Chunk uploads use a raw binary body (no multipart) so they can be streamed straight to disk
+ */
+@RestController
+@RequestMapping("/api/calls/{callId}/recording")
+@RequiredArgsConstructor
+public class CallRecordingController {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final CallRecordingService callRecordingService;
+    private final CallService callService;
+    private final UserService userService;
+
+    private User getCurrentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userService.findByUsername(username).orElseThrow();
+    }
+
+    /**
+     * Upload the next chunk of the current user's recording
+     * POST /api/calls/{callId}/recording/chunks?seq=0 (body: MediaRecorder output)
+     */
+    @PostMapping(value = "/chunks", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+            @PathVariable Long callId,
+            @RequestParam("seq") long sequence,
+            HttpServletRequest request) throws IOException {
+        if (!callRecordingService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        CallRecordingService.UploadResult result = callRecordingService.upload(
+                callId, getCurrentUser().getId(), sequence, request.getInputStream());
+        Map<String, Object> body = Map.of(
+                "status", result.status().name(),
+                "nextSeq", result.nextSequence());
+
+        return switch (result.status()) {
+            case WRITTEN, DUPLICATE -> ResponseEntity.ok(body);
+            case OUT_OF_ORDER -> ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+            case TOO_LARGE -> ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(body);
+            case NOT_IN_CALL -> ResponseEntity.status(HttpStatus.FORBIDDEN).body(body);
+            case BUSY -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(body);
+            case DISABLED -> ResponseEntity.notFound().build();
+        };
+    }
+
+    /**
+     * Get the recording manifest of a finished call
+     * GET /api/calls/{callId}/recording
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getManifest(@PathVariable Long callId) {
+        try {
+            Call call = callService.findById(callId)
+                    .orElseThrow(() -> new RuntimeException("Call not found"));
+
+            // Only the caller and participants who actually joined may read the recording
+            Long userId = getCurrentUser().getId();
+            boolean member = call.getCaller().getId().equals(userId)
+                    || callService.getCallParticipants(callId).stream()
+                            .anyMatch(p -> p.getUser().getId().equals(userId) && p.getJoinedAt() != null);
+            if (!member) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            return callRecordingService.readManifest(call)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.crm.chat.controller;
+
+import com.crm.chat.service.ActiveCallIndex;
+import com.crm.chat.service.CallTelemetryService;
+import com.crm.chat.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * WebSocket controller for call quality stats reported by clients
+ */
+@Controller
+@RequiredArgsConstructor
+public class CallTelemetryWebSocketController {
+
+    private static final String USER_ID_ATTRIBUTE = "userId";
+
+    private final CallTelemetryService callTelemetryService;
+    private final ActiveCallIndex activeCallIndex;
+    private final UserService userService;
+
+    /**
+     * Periodic WebRTC stats from a call participant
+     * Receives message from /app/call.stats
+     *
+     * Payload structure (any metric may be omitted):
+     * {
+     *   "callId": Long,
+     *   "rtt": Number,        // round-trip time, ms
+     *   "jitter": Number,     // ms
+     *   "packetLoss": Number, // percent of packets lost since the previous report
+     *   "bitrate": Number     // outgoing kbps
+     * }
+     */
+    @MessageMapping("/call.stats")
+    public void reportStats(@Payload Map<String, Object> stats, Principal principal,
+                            SimpMessageHeaderAccessor headerAccessor) {
+        if (principal == null || !(stats.get("callId") instanceof Number callId)) {
+            return;
+        }
+
+        Long userId = resolveUserId(principal, headerAccessor);
+        if (userId == null) {
+            return;
+        }
+
+        // Only accept reports for the call the user is actually in (in-memory check)
+        Optional<Long> ongoingCallId = activeCallIndex.findOngoingCallIdForUser(userId);
+        if (ongoingCallId.isEmpty() || ongoingCallId.get() != callId.longValue()) {
+            return;
+        }
+
+        callTelemetryService.record(callId.longValue(), userId,
+                metric(stats.get("rtt"), 1),
+                metric(stats.get("jitter"), 1),
+                metric(stats.get("packetLoss"), 10), // percent -> permille
+                metric(stats.get("bitrate"), 1));
+    }
+
+    /**
+     * User id cached in the STOMP session so reports do not hit the database
+     */
+    private Long resolveUserId(Principal principal, SimpMessageHeaderAccessor headerAccessor) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        if (attributes != null && attributes.get(USER_ID_ATTRIBUTE) instanceof Long cached) {
+            return cached;
+        }
+
+        Long userId = userService.findByUsername(principal.getName()).map(user -> user.getId()).orElse(null);
+        if (attributes != null && userId != null) {
+            attributes.put(USER_ID_ATTRIBUTE, userId);
+        }
+        return userId;
+    }
+
+    private static long metric(Object value, int scale) {
+        return value instanceof Number number ? Math.round(number.doubleValue() * scale) : -1;
+    }
+}
@@ -6,6 +6,7 @@ import com.crm.chat.dto.UserDTO;
 import com.crm.chat.entity.*;
 import com.crm.chat.service.*;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -14,6 +15,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,12 +28,15 @@ import java.util.UUID;
 
 @Controller
 @RequiredArgsConstructor
+@Slf4j
 public class ChatController {
 
     private final UserService userService;
     private final ConversationService conversationService;
     private final ChatRoomService chatRoomService;
     private final MessageService messageService;
+    private final RetentionService retentionService;
+    private final GroupReadService groupReadService;
     private final org.springframework.messaging.simp.SimpMessagingTemplate messagingTemplate;
 
     // Define a storage location
@@ -123,10 +128,7 @@ public class ChatController {
             @RequestParam Long chatId,
             @RequestParam String query) {
 
-        return messageService.searchMessages(chatType, chatId, query)
-                .stream()
-                .map(MessageDTO::fromEntity)
-                .collect(Collectors.toList());
+        return messageService.searchMessages(chatType, chatId, query);
     }
 
     @PostMapping("/api/conversations")
@@ -157,23 +159,33 @@ public class ChatController {
         // Mark messages as read
         messageService.markConversationMessagesAsRead(conversationId, currentUser.getId());
 
-        return messageService.getConversationMessages(conversationId)
-                .stream()
-                .map(MessageDTO::fromEntity)
-                .collect(Collectors.toList());
+        return messageService.getConversationMessages(conversationId);
+    }
+
+    /**
+     * Older conversation messages, newest first; pass the createdAt of the oldest message shown as "before"
+     */
+    @GetMapping("/api/conversations/{conversationId}/messages/history")
+    @ResponseBody
+    public List<MessageDTO> getConversationHistory(@PathVariable Long conversationId,
+            @RequestParam(required = false) LocalDateTime before,
+            @RequestParam(defaultValue = "50") int limit) {
+        User currentUser = getCurrentUser();
+
+        if (!conversationService.isParticipant(conversationId, currentUser.getId())) {
+            throw new RuntimeException("Unauthorized");
+        }
+
+        return messageService.getConversationHistory(conversationId,
+                before != null ? before : LocalDateTime.now(), Math.clamp(limit, 1, 200));
     }
 
     @PostMapping("/api/chatrooms/{chatRoomId}/members/batch")
     @ResponseBody
     public ResponseEntity<String> addMembersBatch(@PathVariable Long chatRoomId,
             @RequestBody List<Long> userIds) {
-        for (Long userId : userIds) {
-            try {
-                chatRoomService.addMemberToChatRoom(chatRoomId, userId, ChatRoomMember.MemberRole.MEMBER);
-            } catch (Exception e) {
-                // Ignore if already a member or log error
-            }
-        }
+        int added = chatRoomService.addMembersToChatRoom(chatRoomId, userIds, ChatRoomMember.MemberRole.MEMBER);
+        log.debug("Added {} of {} users to chat room {}", added, userIds.size(), chatRoomId);
         return ResponseEntity.ok("Members added");
     }
 
@@ -264,10 +276,47 @@ public class ChatController {
         // Update last read time
         chatRoomService.updateMemberLastRead(chatRoomId, currentUser.getId());
 
-        return messageService.getChatRoomMessages(chatRoomId)
-                .stream()
-                .map(MessageDTO::fromEntity)
-                .collect(Collectors.toList());
+        List<MessageDTO> messages = messageService.getChatRoomMessages(chatRoomId);
+        if (!messages.isEmpty()) {
+            groupReadService.markRead(chatRoomId, currentUser.getId(), messages.get(messages.size() - 1).getId());
+        }
+        return messages;
+    }
+
+    /**
+     * "Read by K of N" for a chat room message (N excludes the sender)
+     */
+    @GetMapping("/api/chatrooms/{chatRoomId}/messages/{messageId}/reads")
+    @ResponseBody
+    public GroupReadService.ReadSummary getChatRoomMessageReads(@PathVariable Long chatRoomId,
+            @PathVariable Long messageId) {
+        User currentUser = getCurrentUser();
+
+        if (!chatRoomService.isMember(chatRoomId, currentUser.getId())) {
+            throw new RuntimeException("Unauthorized");
+        }
+        Message message = messageService.findById(messageId)
+                .filter(m -> m.getChatRoom() != null && chatRoomId.equals(m.getChatRoom().getId()))
+                .orElseThrow(() -> new RuntimeException("Message not found"));
+        return groupReadService.readSummary(chatRoomId, messageId, message.getSender().getId());
+    }
+
+    /**
+     * Older chat room messages, newest first; pass the createdAt of the oldest message shown as "before"
+     */
+    @GetMapping("/api/chatrooms/{chatRoomId}/messages/history")
+    @ResponseBody
+    public List<MessageDTO> getChatRoomHistory(@PathVariable Long chatRoomId,
+            @RequestParam(required = false) LocalDateTime before,
+            @RequestParam(defaultValue = "50") int limit) {
+        User currentUser = getCurrentUser();
+
+        if (!chatRoomService.isMember(chatRoomId, currentUser.getId())) {
+            throw new RuntimeException("Unauthorized");
+        }
+
+        return messageService.getChatRoomHistory(chatRoomId,
+                before != null ? before : LocalDateTime.now(), Math.clamp(limit, 1, 200));
     }
 
     @PostMapping("/api/chatrooms/{chatRoomId}/messages")
@@ -283,6 +332,32 @@ public class ChatController {
         return MessageDTO.fromEntity(message);
     }
 
+    /**
+     * Effective retention of the room in days per target (MESSAGES, CALLS); 0 = kept forever
+     */
+    @GetMapping("/api/chatrooms/{chatRoomId}/retention")
+    @ResponseBody
+    public Map<RetentionRule.Target, Integer> getChatRoomRetention(@PathVariable Long chatRoomId) {
+        if (!chatRoomService.isMember(chatRoomId, getCurrentUser().getId())) {
+            throw new RuntimeException("Unauthorized");
+        }
+        return retentionService.getChatRoomRetention(chatRoomId);
+    }
+
+    /**
+     * Set the room's retention, e.g. {"MESSAGES": 90, "CALLS": null}; null goes back to the default
+     */
+    @PutMapping("/api/chatrooms/{chatRoomId}/retention")
+    @ResponseBody
+    public Map<RetentionRule.Target, Integer> updateChatRoomRetention(@PathVariable Long chatRoomId,
+            @RequestBody Map<RetentionRule.Target, Integer> payload) {
+        if (!isCurrentUserAdmin(chatRoomId)) {
+            throw new RuntimeException("Unauthorized: Only group admins can change retention.");
+        }
+        payload.forEach((target, days) -> retentionService.setChatRoomRetention(chatRoomId, target, days));
+        return retentionService.getChatRoomRetention(chatRoomId);
+    }
+
     @PostMapping("/api/chatrooms/{chatRoomId}/members")
     @ResponseBody
     public ResponseEntity<String> addMember(@PathVariable Long chatRoomId, @RequestBody Map<String, Object> payload) {
@@ -1,6 +1,6 @@
 package com.crm.chat.controller;
 
-import com.crm.chat.entity.ConversationSettings;
+import com.crm.chat.dto.ConversationSettingsDTO;
 import com.crm.chat.entity.User;
 import com.crm.chat.service.ConversationSettingsService;
 import com.crm.chat.service.UserService;
@@ -131,7 +131,7 @@ public class ConversationController {
     public ResponseEntity<?> getPinnedConversations() {
         try {
             User currentUser = getCurrentUser();
-            List<ConversationSettings> pinnedList = 
+            List<ConversationSettingsDTO> pinnedList = 
                 settingsService.getPinnedConversations(currentUser.getId());
             
             return ResponseEntity.ok(Map.of(
@@ -154,7 +154,7 @@ public class ConversationController {
     public ResponseEntity<?> getMutedConversations() {
         try {
             User currentUser = getCurrentUser();
-            List<ConversationSettings> mutedList = 
+            List<ConversationSettingsDTO> mutedList = 
                 settingsService.getMutedConversations(currentUser.getId());
             
             return ResponseEntity.ok(Map.of(
@@ -169,6 +169,28 @@ public class ConversationController {
         }
     }
 
+    /**
+     * Get all of the current user's conversation settings in one call (for the sidebar)
+     * GET /api/conversations/settings
+     */
+    @GetMapping("/settings")
+    public ResponseEntity<?> getAllConversationSettings() {
+        try {
+            User currentUser = getCurrentUser();
+            List<ConversationSettingsDTO> settings = settingsService.getAllSettings(currentUser.getId());
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "settings", settings
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", "Failed to get conversation settings: " + e.getMessage()
+            ));
+        }
+    }
+
     /**
      * Get settings for a specific conversation
      * GET /api/conversations/settings/{otherUserId}
@@ -177,7 +199,7 @@ public class ConversationController {
     public ResponseEntity<?> getConversationSettings(@PathVariable Long otherUserId) {
         try {
             User currentUser = getCurrentUser();
-            ConversationSettings settings = settingsService.getSettings(currentUser.getId(), otherUserId);
+            ConversationSettingsDTO settings = settingsService.getSettings(currentUser.getId(), otherUserId);
             if (settings == null) {
                 return ResponseEntity.ok(Map.of("isPinned", false, "isMuted", false, "isHidden", false));
             }
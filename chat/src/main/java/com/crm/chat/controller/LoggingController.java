@@ -0,0 +1,147 @@
+package com.crm.chat.controller;
+
+import com.crm.chat.logging.VerboseTargets;
+import com.crm.chat.presence.DeviceSessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * REST API Controller for per-user / per-session log verbosity
+ * DEBUG lines of the targeted user or STOMP session are logged without raising the global level.
+ * Users may only target themselves and their own sessions; the operators listed in chat.logging.operators
+ * may target anyone.
+ */
+@RestController
+@RequestMapping("/api/logging/verbose")
+@Slf4j
+public class LoggingController {
+
+    private static final int DEFAULT_MINUTES = 15;
+    private static final int MAX_MINUTES = 240;
+
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final Set<String> operators;
+
+    public LoggingController(DeviceSessionRegistry deviceSessionRegistry,
+                             @Value("${chat.logging.operators:}") Set<String> operators) {
+        this.deviceSessionRegistry = deviceSessionRegistry;
+        this.operators = operators;
+    }
+
+    /**
+     * List verbose targets and their expiry (operators see all, others their own)
+     * GET /api/logging/verbose
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Instant>> getTargets() {
+        String caller = currentUsername();
+        Map<String, Instant> targets = new TreeMap<>(VerboseTargets.list());
+        if (!isOperator(caller)) {
+            targets.keySet().removeIf(target -> !mayTarget(caller, target));
+        }
+        return ResponseEntity.ok(targets);
+    }
+
+    /**
+     * Make a user or session verbose for a while
+     * POST /api/logging/verbose
+     * Body: { "username": "alice" } or { "sessionId": "abc123", "minutes": 30 }
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> enable(@RequestBody Map<String, Object> request) {
+        String target = target(request.get("username"), request.get("sessionId"));
+        if (target == null) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "username or sessionId is required"));
+        }
+        String caller = currentUsername();
+        if (!mayTarget(caller, target)) {
+            return forbidden();
+        }
+
+        int minutes = request.get("minutes") != null
+                ? Math.clamp(Long.parseLong(request.get("minutes").toString()), 1, MAX_MINUTES)
+                : DEFAULT_MINUTES;
+        if (!VerboseTargets.enable(target, Duration.ofMinutes(minutes))) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of(
+                    "success", false,
+                    "message", "At most " + VerboseTargets.MAX_TARGETS + " verbose targets"));
+        }
+
+        log.info("Verbose logging enabled for {} by {} for {} minutes", target, caller, minutes);
+        return ResponseEntity.ok(Map.of("success", true, "target", target, "minutes", minutes));
+    }
+
+    /**
+     * Restore normal verbosity
+     * DELETE /api/logging/verbose?username=alice or ?sessionId=abc123
+     */
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> disable(@RequestParam(required = false) String username,
+                                                       @RequestParam(required = false) String sessionId) {
+        String target = target(username, sessionId);
+        if (target == null) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "username or sessionId is required"));
+        }
+        String caller = currentUsername();
+        if (!mayTarget(caller, target)) {
+            return forbidden();
+        }
+        VerboseTargets.disable(target);
+        log.info("Verbose logging disabled for {} by {}", target, caller);
+        return ResponseEntity.ok(Map.of("success", true, "target", target));
+    }
+
+    /**
+     * Operators may target anyone; other users only themselves and their own STOMP sessions
+     */
+    private boolean mayTarget(String caller, String target) {
+        if (isOperator(caller)) {
+            return true;
+        }
+        if (target.startsWith(VerboseTargets.USER_PREFIX)) {
+            return target.substring(VerboseTargets.USER_PREFIX.length()).equals(caller);
+        }
+        return deviceSessionRegistry.sessionIds(caller)
+                .contains(target.substring(VerboseTargets.SESSION_PREFIX.length()));
+    }
+
+    private boolean isOperator(String username) {
+        return operators.contains(username);
+    }
+
+    private static String currentUsername() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    private static ResponseEntity<Map<String, Object>> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                "success", false,
+                "message", "Only your own user and sessions can be made verbose"));
+    }
+
+    private static String target(Object username, Object sessionId) {
+        if (username != null && !username.toString().isBlank()) {
+            return VerboseTargets.USER_PREFIX + username;
+        }
+        if (sessionId != null && !sessionId.toString().isBlank()) {
+            return VerboseTargets.SESSION_PREFIX + sessionId;
+        }
+        return null;
+    }
+}
@@ -1,29 +1,86 @@
 package com.crm.chat.controller;
 
+import com.crm.chat.entity.User;
+import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.presence.PresenceService;
+import com.crm.chat.service.UserService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
- * WebSocket controller for broadcasting user status changes
+ * WebSocket controller for user status changes and presence interest
+ * Changes reach other users through PresenceService, only those interested in this user.
  */
 @Controller
 @RequiredArgsConstructor
+@Slf4j
 public class StatusWebSocketController {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserService userService;
+    private final PresenceService presenceService;
 
     /**
      * Handle status update messages from clients
-     * Receives message from /app/user.status.update
-     * Broadcasts to /topic/user.status
+     * Receives message from /app/user.status.update: { "status": "BUSY" }
+     * The status is checked and applied to the sender only; the rest of the payload is ignored.
      */
     @MessageMapping("/user.status.update")
-    public void handleStatusUpdate(Map<String, Object> statusUpdate) {
-        // Broadcast the status update to all connected clients
-        messagingTemplate.convertAndSend("/topic/user.status", (Object) statusUpdate);
+    public void handleStatusUpdate(@Payload Map<String, Object> statusUpdate, Principal principal) {
+        if (principal == null) {
+            log.warn("Principal is null in handleStatusUpdate");
+            return;
+        }
+        Object requested = statusUpdate.get("status");
+        UserStatus status;
+        try {
+            status = requested != null ? UserStatus.valueOf(requested.toString()) : null;
+        } catch (IllegalArgumentException e) {
+            status = null;
+        }
+        if (!userService.isSelectableStatus(status)) {
+            log.warn("Rejected status update to {} from {}", requested, principal.getName());
+            return;
+        }
+
+        User user = userService.findByUsername(principal.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        userService.updateUserStatus(user.getId(), status);
+    }
+
+    /**
+     * Activity ping from a client whose user is using the page without sending anything
+     * Receives message from /app/presence.active; the frame itself is what IdleDetector counts.
+     */
+    @MessageMapping("/presence.active")
+    public void activityPing() {
+        // Nothing to do
+    }
+
+    /**
+     * Contacts the client is showing, whose presence it wants on /user/queue/presence
+     * Receives message from /app/presence.watch: { "userIds": [1, 2, 3] } (replaces the previous list)
+     */
+    @MessageMapping("/presence.watch")
+    public void watchPresence(@Payload Map<String, Object> payload, SimpMessageHeaderAccessor headerAccessor) {
+        List<Long> userIds = new ArrayList<>();
+        if (payload.get("userIds") instanceof List<?> ids) {
+            for (Object id : ids) {
+                try {
+                    userIds.add(Long.valueOf(id.toString()));
+                } catch (NumberFormatException e) {
+                    // Skip anything that is not a user id
+                }
+            }
+        }
+        presenceService.watch(headerAccessor.getSessionId(), userIds);
     }
-}
\ No newline at end of file
+}
@@ -5,7 +5,6 @@ import com.crm.chat.entity.User.UserStatus;
 import com.crm.chat.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,7 +14,7 @@ import java.util.Map;
 
 /**
  * REST API Controller for User Status Management
- * Handles status changes and broadcasts updates to connected users
+ * Handles status changes; PresenceService pushes them to interested users
  */
 @RestController
 @RequestMapping("/api/users")
@@ -24,7 +23,6 @@ import java.util.Map;
 public class UserStatusController {
 
     private final UserService userService;
-    private final SimpMessagingTemplate messagingTemplate;
 
     /**
      * Get current authenticated user
@@ -57,24 +55,17 @@ public class UserStatusController {
             } catch (IllegalArgumentException e) {
                 return ResponseEntity.badRequest().body(createErrorResponse("Invalid status: " + statusString));
             }
+            if (!userService.isSelectableStatus(newStatus)) {
+                return ResponseEntity.badRequest().body(createErrorResponse("Status cannot be set: " + statusString));
+            }
             
             // Update user status in database using UserService
+            // (PresenceService sends the change to the users interested in this one)
             userService.updateUserStatus(currentUser.getId(), newStatus);
             
             // Get display text for status
             String statusText = getStatusText(statusString);
             
-            // Broadcast status change to all connected users via WebSocket
-            Map<String, Object> statusUpdate = new HashMap<>();
-            statusUpdate.put("userId", currentUser.getId());
-            statusUpdate.put("username", currentUser.getUsername());
-            statusUpdate.put("fullName", currentUser.getFullName());
-            statusUpdate.put("status", statusString);
-            statusUpdate.put("statusText", statusText);
-            
-            // Fix: Cast to Object to resolve ambiguity
-            messagingTemplate.convertAndSend("/topic/user.status", (Object) statusUpdate);
-            
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Status updated successfully");
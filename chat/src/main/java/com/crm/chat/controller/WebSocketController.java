@@ -5,24 +5,36 @@ import com.crm.chat.entity.Message;
 import com.crm.chat.entity.User;
 import com.crm.chat.entity.Call;
 import com.crm.chat.entity.Conversation;
+import com.crm.chat.logging.LogContext;
 import com.crm.chat.service.MessageService;
 import com.crm.chat.service.UserService;
 import com.crm.chat.service.CallService;
+import com.crm.chat.service.CatchUpQueue;
 import com.crm.chat.service.ConversationService;
+import com.crm.chat.service.DeliveryService;
+import com.crm.chat.service.GroupReadService;
+import com.crm.chat.service.NotificationRouter;
+import com.crm.chat.service.RingDispatcher;
+import com.crm.chat.sfu.SfuRelay;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
 @Controller
 @RequiredArgsConstructor
+@Slf4j
 public class WebSocketController {
 
     private final SimpMessagingTemplate messagingTemplate;
@@ -30,6 +42,12 @@ public class WebSocketController {
     private final UserService userService;
     private final CallService callService;
     private final ConversationService conversationService; // ✅ ADDED THIS
+    private final SfuRelay sfuRelay;
+    private final RingDispatcher ringDispatcher;
+    private final DeliveryService deliveryService;
+    private final GroupReadService groupReadService;
+    private final NotificationRouter notificationRouter;
+    private final CatchUpQueue catchUpQueue;
 
 
     /**
@@ -39,7 +57,7 @@ public class WebSocketController {
     public void sendGroupMessage(@Payload Map<String, Object> messageData, Principal principal) {
         try {
             if (principal == null) {
-                System.err.println("Principal is null in sendGroupMessage");
+                log.warn("Principal is null in sendGroupMessage");
                 return;
             }
 
@@ -52,6 +70,7 @@ public class WebSocketController {
 
             // Save message to database
             Message message = messageService.sendGroupMessage(sender.getId(), chatRoomId, content);
+            LogContext.correlate("msg", message.getId());
             MessageDTO messageDTO = MessageDTO.fromEntity(message);
 
             // Broadcast to chatroom subscribers
@@ -59,7 +78,7 @@ public class WebSocketController {
             messagingTemplate.convertAndSend(destination, (Object) messageDTO);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in sendGroupMessage", e);
         }
     }
 
@@ -77,7 +96,7 @@ public class WebSocketController {
             if (principal == null) {
                 username = (String) userData.get("username");
                 if (username == null || username.isEmpty()) {
-                    System.err.println("❌ Principal is null and no username in payload");
+                    log.warn("Principal is null and no username in payload");
                     return;
                 }
                 user = userService.findByUsername(username)
@@ -88,28 +107,15 @@ public class WebSocketController {
                         .orElseThrow(() -> new RuntimeException("User not found"));
             }
 
-            // Set user as online
-            userService.setUserOnline(user.getId());
+            // Coming online is handled per connection by DeviceSessionRegistry, keeping the status the user picked
 
             // Store username in websocket session
             headerAccessor.getSessionAttributes().put("username", username);
 
-            // Notify all users about new user online
-            Map<String, Object> notification = Map.of(
-                    "type", "USER_ONLINE",
-                    "userId", user.getId(),
-                    "username", user.getUsername(),
-                    "fullName", user.getFullName(),
-                    "status", user.getStatus().name()
-            );
-
-            String destination = "/topic/public";
-            messagingTemplate.convertAndSend(destination, (Object) notification);
-            
-            System.out.println("✅ User online: " + user.getFullName());
+            log.debug("User online: {}", user.getId());
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in addUser", e);
         }
     }
 
@@ -121,7 +127,7 @@ public class WebSocketController {
     public void handleTyping(@Payload Map<String, Object> typingData, Principal principal) {
         try {
             if (principal == null) {
-                System.err.println("❌ Principal is null in handleTyping");
+                log.warn("Principal is null in handleTyping");
                 return;
             }
 
@@ -152,7 +158,7 @@ public class WebSocketController {
             messagingTemplate.convertAndSend(destination, (Object) notification);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in handleTyping", e);
         }
     }
 
@@ -176,12 +182,10 @@ public class WebSocketController {
 @MessageMapping("/call.initiate")
 public void initiateCall(@Payload Map<String, Object> callData, Principal principal) {
     try {
-        System.out.println("=== CALL INITIATE DEBUG START ===");
-        System.out.println("Principal: " + (principal != null ? principal.getName() : "NULL"));
-        System.out.println("Call Data: " + callData);
+        log.debug("Call initiate: {}", callData);
         
         if (principal == null) {
-            System.err.println("❌ Principal is null in initiateCall");
+            log.warn("Principal is null in initiateCall");
             return;
         }
 
@@ -195,9 +199,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
         Call.CallType callType = Call.CallType.valueOf(callTypeStr);
         Call.CallMode callMode = Call.CallMode.valueOf(callModeStr);
 
-        System.out.println("📞 Call Type: " + callType);
-        System.out.println("📞 Call Mode: " + callMode);
-        System.out.println("📞 Caller: " + caller.getFullName() + " (ID: " + caller.getId() + ")");
+        log.debug("Call type {} mode {} from caller {}", callType, callMode, caller.getId());
 
         Call call;
 
@@ -205,19 +207,17 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             Long conversationId = Long.valueOf(callData.get("conversationId").toString());
             Long recipientId = Long.valueOf(callData.get("recipientId").toString());
             
-            System.out.println("📞 Conversation ID: " + conversationId);
-            System.out.println("📞 Recipient ID: " + recipientId);
+            log.debug("Direct call in conversation {} to user {}", conversationId, recipientId);
             
             // Create call in database
             call = callService.initiateDirectCall(caller.getId(), conversationId, callType);
-            System.out.println("✅ Call created in DB with ID: " + call.getId());
+            LogContext.correlate("call", call.getId());
+            log.debug("Call created");
 
             // Get recipient user
             User recipient = userService.findById(recipientId)
                     .orElseThrow(() -> new RuntimeException("Recipient not found"));
             
-            System.out.println("📞 Recipient: " + recipient.getFullName() + " (ID: " + recipient.getId() + ")");
-            
             // Create notification
             Map<String, Object> notification = new HashMap<>();
             notification.put("type", "INCOMING_CALL");
@@ -230,7 +230,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             notification.put("conversationId", conversationId);
             notification.put("roomId", call.getRoomId());
             
-            System.out.println("📤 Notification to send: " + notification);
+            log.debug("Incoming call notification: {}", notification);
             
             // Try BOTH methods to ensure delivery
             try {
@@ -240,18 +240,16 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
                     "/queue/call",
                     notification
                 );
-                System.out.println("✅ Method 1: Sent via convertAndSendToUser to user: " + recipientId);
             } catch (Exception e) {
-                System.err.println("❌ Method 1 failed: " + e.getMessage());
+                log.warn("Incoming call delivery by user id failed: {}", e.getMessage());
             }
             
             try {
                 // Method 2: Direct destination
                 String destination = "/user/" + recipientId + "/queue/call";
                 messagingTemplate.convertAndSend(destination, (Object) notification);
-                System.out.println("✅ Method 2: Sent to destination: " + destination);
             } catch (Exception e) {
-                System.err.println("❌ Method 2 failed: " + e.getMessage());
+                log.warn("Incoming call delivery by destination failed: {}", e.getMessage());
             }
             
             try {
@@ -261,28 +259,28 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
                     "/queue/call",
                     notification
                 );
-                System.out.println("✅ Method 3: Sent via username: " + recipient.getUsername());
             } catch (Exception e) {
-                System.err.println("❌ Method 3 failed: " + e.getMessage());
+                log.warn("Incoming call delivery by username failed: {}", e.getMessage());
             }
 
         } else {
             // Group call handling...
             Long chatRoomId = Long.valueOf(callData.get("chatRoomId").toString());
-            call = callService.initiateGroupCall(caller.getId(), chatRoomId, callType);
+            Call.CallTopology topology = callData.get("topology") != null
+                    ? Call.CallTopology.valueOf(callData.get("topology").toString())
+                    : Call.CallTopology.MESH;
+            call = callService.initiateGroupCall(caller.getId(), chatRoomId, callType, topology);
+            LogContext.correlate("call", call.getId());
             
+            // Ring only reachable members, one targeted frame each, with delivery tracking
             Map<String, Object> notification = createCallNotification(call, "INCOMING_GROUP_CALL", caller);
-            String destination = "/topic/chatroom." + chatRoomId + ".call";
-            messagingTemplate.convertAndSend(destination, (Object) notification);
+            ringDispatcher.ringGroupCall(call, caller, notification);
             
-            System.out.println("✅ Group call notification sent to: " + destination);
+            log.debug("Group call {} ringing in chat room {}", call.getId(), chatRoomId);
         }
 
-        System.out.println("=== CALL INITIATE DEBUG END ===");
-
     } catch (Exception e) {
-        System.err.println("❌ Error in initiateCall: " + e.getMessage());
-        e.printStackTrace();
+        log.error("Error in initiateCall", e);
     }
 }
     /**
@@ -304,6 +302,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User sender = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(offerData.get("callId").toString());
+            LogContext.correlate("call", callId);
             Map<String, Object> offer = (Map<String, Object>) offerData.get("offer");
 
             Call call = callService.findById(callId)
@@ -331,7 +330,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in handleOffer", e);
             sendCallError(principal, "Failed to send offer: " + e.getMessage());
         }
     }
@@ -355,6 +354,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User sender = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(answerData.get("callId").toString());
+            LogContext.correlate("call", callId);
             Map<String, Object> answer = (Map<String, Object>) answerData.get("answer");
             Long recipientId = Long.valueOf(answerData.get("recipientId").toString());
 
@@ -376,7 +376,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             );
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in handleAnswer", e);
             sendCallError(principal, "Failed to send answer: " + e.getMessage());
         }
     }
@@ -400,6 +400,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User sender = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(candidateData.get("callId").toString());
+            LogContext.correlate("call", callId);
             Map<String, Object> candidate = (Map<String, Object>) candidateData.get("candidate");
             
             Call call = callService.findById(callId)
@@ -426,7 +427,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in handleIceCandidate", e);
         }
     }
 
@@ -447,11 +448,15 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User user = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(joinData.get("callId").toString());
+            LogContext.correlate("call", callId);
             
             // Add user to call participants
             callService.addParticipantToCall(callId, user.getId());
 
             Call call = callService.findById(callId).orElseThrow();
+            if (call.isGroupCall()) {
+                ringDispatcher.resolve(call, user.getId());
+            }
 
             // Notify other participants that someone joined
             Map<String, Object> notification = new HashMap<>();
@@ -477,7 +482,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in joinCall", e);
             sendCallError(principal, "Failed to join call: " + e.getMessage());
         }
     }
@@ -499,11 +504,15 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User user = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(leaveData.get("callId").toString());
+            LogContext.correlate("call", callId);
             
             // Remove user from call
             callService.removeParticipantFromCall(callId, user.getId());
 
             Call call = callService.findById(callId).orElseThrow();
+            if (call.isGroupCall()) {
+                ringDispatcher.cancel(call);
+            }
 
             // Notify other participants that someone left
             Map<String, Object> notification = new HashMap<>();
@@ -532,7 +541,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in leaveCall", e);
             sendCallError(principal, "Failed to leave call: " + e.getMessage());
         }
     }
@@ -555,14 +564,26 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User user = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(rejectData.get("callId").toString());
+            LogContext.correlate("call", callId);
             Long callerId = Long.valueOf(rejectData.get("callerId").toString());
             
             // Mark call as rejected
-            callService.rejectCall(callId, user.getId());
+            Call call = callService.rejectCall(callId, user.getId());
+
+            // In a group call one member declining only ends the call once nobody else is left ringing
+            String type = "CALL_REJECTED";
+            if (call.isGroupCall()) {
+                ringDispatcher.resolve(call, user.getId());
+                if (!call.hasEnded()) {
+                    type = "PARTICIPANT_REJECTED";
+                } else if (call.getStatus() != Call.CallStatus.REJECTED) {
+                    return;
+                }
+            }
 
             // Notify caller that call was rejected
             Map<String, Object> notification = new HashMap<>();
-            notification.put("type", "CALL_REJECTED");
+            notification.put("type", type);
             notification.put("callId", callId);
             notification.put("userId", user.getId());
             notification.put("userName", user.getFullName());
@@ -574,11 +595,27 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             );
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in rejectCall", e);
             sendCallError(principal, "Failed to reject call: " + e.getMessage());
         }
     }
 
+    /**
+     * Acknowledge that a group-call ring reached this device
+     * 
+     * Payload structure:
+     * {
+     *   "callId": Long
+     * }
+     */
+    @MessageMapping("/call.ringAck")
+    public void acknowledgeRing(@Payload Map<String, Object> ackData, Principal principal) {
+        if (principal == null || ackData.get("callId") == null) return;
+
+        userService.findByUsername(principal.getName()).ifPresent(user ->
+                ringDispatcher.acknowledge(Long.valueOf(ackData.get("callId").toString()), user.getId()));
+    }
+
     /**
      * Toggle microphone (mute/unmute)
      * 
@@ -597,6 +634,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User user = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(micData.get("callId").toString());
+            LogContext.correlate("call", callId);
             
             callService.toggleMicrophone(callId, user.getId());
 
@@ -612,7 +650,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             broadcastToCallParticipants(call, notification);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in toggleMicrophone", e);
         }
     }
 
@@ -634,6 +672,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User user = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(cameraData.get("callId").toString());
+            LogContext.correlate("call", callId);
             
             callService.toggleCamera(callId, user.getId());
 
@@ -649,7 +688,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             broadcastToCallParticipants(call, notification);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in toggleCamera", e);
         }
     }
 
@@ -671,6 +710,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             User user = userService.findByUsername(username).orElseThrow();
 
             Long callId = Long.valueOf(screenData.get("callId").toString());
+            LogContext.correlate("call", callId);
             
             callService.toggleScreenShare(callId, user.getId());
 
@@ -687,7 +727,44 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             broadcastToCallParticipants(call, notification);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in toggleScreenShare", e);
+        }
+    }
+
+    /**
+     * Choose whose video the SFU relay forwards to this participant (audio is always forwarded)
+     * 
+     * Payload structure:
+     * {
+     *   "callId": Long,
+     *   "userIds": [Long] // empty or missing = everyone
+     * }
+     */
+    @MessageMapping("/call.sfu.select")
+    public void selectSfuVideo(@Payload Map<String, Object> selectData, Principal principal) {
+        try {
+            if (principal == null) return;
+
+            String username = principal.getName();
+            User user = userService.findByUsername(username).orElseThrow();
+
+            Long callId = Long.valueOf(selectData.get("callId").toString());
+            LogContext.correlate("call", callId);
+            Call call = callService.findById(callId).orElseThrow();
+            if (!call.usesSfu()) {
+                sendCallError(principal, "Call is not using the SFU relay");
+                return;
+            }
+
+            List<Long> userIds = new ArrayList<>();
+            if (selectData.get("userIds") instanceof List<?> ids) {
+                ids.forEach(id -> userIds.add(Long.valueOf(id.toString())));
+            }
+
+            sfuRelay.select(call.getRoomId(), user.getId(), userIds);
+
+        } catch (Exception e) {
+            log.error("Error in selectSfuVideo", e);
         }
     }
 
@@ -707,6 +784,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
         notification.put("callerId", caller.getId());
         notification.put("callerName", caller.getFullName());
         notification.put("roomId", call.getRoomId());
+        notification.put("topology", call.usesSfu() ? Call.CallTopology.SFU.name() : Call.CallTopology.MESH.name());
         
         if (call.isDirectCall()) {
             notification.put("conversationId", call.getConversation().getId());
@@ -758,7 +836,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
                 );
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to send call error", e);
         }
     }
 
@@ -772,7 +850,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
     public void sendMessage(@Payload Map<String, Object> messageData, Principal principal) {
         try {
             if (principal == null) {
-                System.err.println("❌ Principal is null in sendMessage");
+                log.warn("Principal is null in sendMessage");
                 return;
             }
 
@@ -793,29 +871,21 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
                 message = messageService.sendDirectMessage(sender.getId(), chatId, content);
                 destination = "/topic/conversation." + chatId;
                 
-                // Get recipient for status check
+                // Recipient for the notification; DELIVERED comes from their devices' acks (DeliveryService)
                 Conversation conversation = conversationService.findById(chatId);
                 recipient = conversation.getOtherParticipant(sender);
-                
-                // Check if recipient is online and mark as delivered immediately
-                if (recipient != null && userService.isUserOnline(recipient.getId())) {
-                    message.markAsDelivered();
-                    messageService.updateMessage(message);
-                }
-                
+
             } else if ("group".equals(chatType) || "chatroom".equals(chatType)) {
                 // Group message
                 message = messageService.sendGroupMessage(sender.getId(), chatId, content);
                 destination = "/topic/chatroom." + chatId;
-                
-                // Group messages are marked as delivered immediately
-                message.markAsDelivered();
-                messageService.updateMessage(message);
             } else {
-                System.err.println("❌ Invalid chat type: " + chatType);
+                log.warn("Invalid chat type: {}", chatType);
                 return;
             }
 
+            LogContext.correlate("msg", message.getId());
+
             // Create message DTO with delivery status
             MessageDTO messageDTO = MessageDTO.fromEntity(message);
             
@@ -831,55 +901,57 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             deliveryAck.put("deliveryStatus", message.getDeliveryStatus().name());
             
             messagingTemplate.convertAndSendToUser(
-                sender.getId().toString(),
+                sender.getUsername(),
                 "/queue/delivery",
                 deliveryAck
             );
 
             // Send notification to recipient if it's a direct message
             if (recipient != null) {
-                sendMessageNotification(recipient, sender, message);
+                notificationRouter.route(recipient, sender, message);
             }
 
-            System.out.println("✅ Message sent successfully: " + message.getId() + " Status: " + message.getDeliveryStatus());
+            log.debug("Message sent with status {}", message.getDeliveryStatus());
 
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("❌ Error in sendMessage: " + e.getMessage());
+            log.error("Error in sendMessage", e);
         }
     }
 
 
     /**
-     * Send notification to recipient about new message
+     * What arrived while this user was offline, drained in one CATCH_UP frame sent back to the subscribing session
+     * Handles: SUBSCRIBE /app/notifications.catch-up
      */
-    private void sendMessageNotification(User recipient, User sender, Message message) {
+    @SubscribeMapping("/notifications.catch-up")
+    public Map<String, Object> catchUp(Principal principal) {
+        if (principal == null) {
+            log.warn("Principal is null in catchUp");
+            return Map.of("type", "CATCH_UP", "items", List.of());
+        }
+        return catchUpQueue.drain(principal.getName());
+    }
+
+    /**
+     * Cumulative delivery ack from a client: every message of the chat up to upTo has reached this device
+     * Handles: /app/chat.delivered { "chatType": "conversation", "chatId": 12, "upTo": 3456 }
+     */
+    @MessageMapping("/chat.delivered")
+    public void handleDelivered(@Payload Map<String, Object> ackData,
+                                SimpMessageHeaderAccessor headerAccessor,
+                                Principal principal) {
+        if (principal == null) {
+            log.warn("Principal is null in handleDelivered");
+            return;
+        }
         try {
-            Map<String, Object> notification = new HashMap<>();
-            notification.put("type", "NEW_MESSAGE");
-            notification.put("messageId", message.getId());
-            notification.put("senderId", sender.getId());
-            notification.put("senderName", sender.getFullName());
-            notification.put("content", message.getContent());
-            notification.put("timestamp", message.getCreatedAt().toString());
-            
-            if (message.getConversation() != null) {
-                notification.put("conversationId", message.getConversation().getId());
-            } else if (message.getChatRoom() != null) {
-                notification.put("chatRoomId", message.getChatRoom().getId());
-                notification.put("chatRoomName", message.getChatRoom().getName());
-            }
-            
-            messagingTemplate.convertAndSendToUser(
-                recipient.getId().toString(),
-                "/queue/notifications",
-                notification
-            );
-            
-            System.out.println("🔔 Notification sent to user: " + recipient.getId());
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error sending notification: " + e.getMessage());
+            DeliveryService.ChatRef chat = new DeliveryService.ChatRef(
+                    DeliveryService.ChatType.parse(ackData.get("chatType").toString()),
+                    Long.valueOf(ackData.get("chatId").toString()));
+            long upTo = Long.parseLong(ackData.get("upTo").toString());
+            deliveryService.acknowledge(principal.getName(), headerAccessor.getSessionId(), chat, upTo);
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed delivery ack from {}: {}", principal.getName(), e.getMessage());
         }
     }
 
@@ -892,7 +964,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
     public void handleMessageRead(@Payload Map<String, Object> readData, Principal principal) {
         try {
             if (principal == null) {
-                System.err.println("❌ Principal is null in handleMessageRead");
+                log.warn("Principal is null in handleMessageRead");
                 return;
             }
 
@@ -901,6 +973,7 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
                     .orElseThrow(() -> new RuntimeException("User not found"));
 
             Long messageId = Long.valueOf(readData.get("messageId").toString());
+            LogContext.correlate("msg", messageId);
             
             // Mark message as read (sets deliveryStatus to READ)
             messageService.markMessageAsRead(messageId);
@@ -920,16 +993,37 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             
             // Send to original sender
             messagingTemplate.convertAndSendToUser(
-                message.getSender().getId().toString(),
+                message.getSender().getUsername(),
                 "/queue/read-receipts",
                 readReceipt
             );
             
-            System.out.println("✅ Read receipt sent for message: " + messageId);
+            log.debug("Read receipt sent");
+
+        } catch (Exception e) {
+            log.error("Error in handleMessageRead", e);
+        }
+    }
+
+    /**
+     * A member has read a chat room up to a message id; senders get throttled READ_COUNTS frames
+     * Handles: /app/chatroom.read { "chatRoomId": 7, "upTo": 3456 }
+     */
+    @MessageMapping("/chatroom.read")
+    public void markChatRoomRead(@Payload Map<String, Object> readData, Principal principal) {
+        try {
+            if (principal == null) return;
+
+            User reader = userService.findByUsername(principal.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+            Long chatRoomId = Long.valueOf(readData.get("chatRoomId").toString());
+            long upTo = Long.parseLong(readData.get("upTo").toString());
+
+            // Non-members are ignored: they have no watermark in the room
+            groupReadService.markRead(chatRoomId, reader.getId(), upTo);
 
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("❌ Error in handleMessageRead: " + e.getMessage());
+            log.error("Error in markChatRoomRead", e);
         }
     }
 
@@ -965,15 +1059,15 @@ public void initiateCall(@Payload Map<String, Object> callData, Principal princi
             batchReadReceipt.put("deliveryStatus", "READ");
             
             messagingTemplate.convertAndSendToUser(
-                otherUser.getId().toString(),
+                otherUser.getUsername(),
                 "/queue/read-receipts",
                 batchReadReceipt
             );
 
-            System.out.println("✅ Conversation marked as read: " + conversationId);
+            log.debug("Conversation {} marked as read", conversationId);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error in markConversationRead", e);
         }
     }
 
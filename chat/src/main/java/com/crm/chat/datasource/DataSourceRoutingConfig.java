@@ -0,0 +1,77 @@
+package com.crm.chat.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.TaskScheduler;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read/write split, active when chat.datasource.replica.jdbc-url is set
+ * - primary pool: spring.datasource.* with spring.datasource.hikari.* (pool "primary")
+ * - replica pool: chat.datasource.replica.* (Hikari properties, pool "replica")
+ * - "dataSource": writes and non-transactional work use the primary; @Transactional(readOnly = true)
+ *   uses the replica unless ReplicaGuard routes it to the primary (lag, read-your-writes)
+ * Both pools publish hikaricp.* metrics tagged with their pool name.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "chat.datasource.replica.jdbc-url")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("chat.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaGuard replicaGuard(@Qualifier("primaryDataSource") DataSource primary,
+                                     @Qualifier("replicaDataSource") DataSource replica,
+                                     MeterRegistry meterRegistry,
+                                     @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                                     @Value("${chat.datasource.replica.max-lag:5s}") Duration maxLag,
+                                     @Value("${chat.datasource.replica.heartbeat-interval:1s}") Duration heartbeatInterval) {
+        ReplicaGuard guard = new ReplicaGuard(primary, replica, maxLag, meterRegistry);
+        taskScheduler.scheduleWithFixedDelay(guard::heartbeat, heartbeatInterval);
+        return guard;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaGuard guard) {
+        return routingDataSource(primary, replica, guard);
+    }
+
+    /**
+     * Connections are fetched lazily, on the first statement, so the pool is chosen once the transaction's
+     * read-only flag has been applied to the connection
+     */
+    static DataSource routingDataSource(DataSource primary, DataSource replica, ReplicaGuard guard) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primary);
+        routing.setReadOnlyDataSource(new ReadOnlyRoutingDataSource(primary, replica, guard));
+        return routing;
+    }
+}
@@ -0,0 +1,28 @@
+package com.crm.chat.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Connection source for read-only transactions: the replica, unless ReplicaGuard sends the read to the primary
+ * Installed as the read-only variant of the LazyConnectionDataSourceProxy built in DataSourceRoutingConfig,
+ * so it is only asked for a connection once the transaction is known to be read-only.
+ */
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaGuard guard;
+
+    public ReadOnlyRoutingDataSource(DataSource primary, DataSource replica, ReplicaGuard guard) {
+        this.guard = guard;
+        setTargetDataSources(Map.of(ReplicaGuard.Route.PRIMARY, primary, ReplicaGuard.Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return guard.routeRead();
+    }
+}
@@ -0,0 +1,174 @@
+package com.crm.chat.datasource;
+
+import com.crm.chat.logging.LogContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether a read-only transaction may use the replica
+ * - replica lag: the application writes a heartbeat row on the primary and reads it back from the
+ *   replica; the replica is skipped while its copy is older than max-lag (or cannot be read)
+ * - read-your-writes: after a user's write transaction commits, that user's reads stay on the primary
+ *   until the replica has a heartbeat written after the commit (so the write has replicated too)
+ * Registered as a TransactionExecutionListener to see write commits.
+ */
+@Slf4j
+public class ReplicaGuard implements TransactionExecutionListener {
+
+    static final String HEARTBEAT_TABLE = "replica_heartbeat";
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+
+    // Last write commit per user; dropped once the replica has caught up past it
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    // Heartbeat timestamp the replica has applied (everything committed before it is on the replica)
+    private volatile long replicatedUpTo;
+    private volatile boolean replicaUsable;
+    private volatile long lagMillis = -1;
+
+    private final Counter replicaReads;
+    private final Counter laggingReads;
+    private final Counter readYourWritesReads;
+    private final Counter writes;
+
+    public ReplicaGuard(DataSource primary, DataSource replica, Duration maxLag, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMillis = maxLag.toMillis();
+
+        replicaReads = route(meterRegistry, "replica", "read-only");
+        laggingReads = route(meterRegistry, "primary", "replica-lag");
+        readYourWritesReads = route(meterRegistry, "primary", "read-your-writes");
+        writes = route(meterRegistry, "primary", "write");
+        Gauge.builder("chat.datasource.replica.lag", this, guard -> guard.lagMillis / 1000.0)
+                .description("Replication lag seen through the heartbeat row (-1 when the replica cannot be read)")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    private static Counter route(MeterRegistry meterRegistry, String route, String reason) {
+        return Counter.builder("chat.datasource.route")
+                .description("Transactions by the pool they were routed to")
+                .tags("route", route, "reason", reason)
+                .register(meterRegistry);
+    }
+
+    // ==================== ROUTING ====================
+
+    /**
+     * Route for a read-only transaction about to take its connection
+     */
+    public Route routeRead() {
+        if (!replicaUsable) {
+            laggingReads.increment();
+            return Route.PRIMARY;
+        }
+        String user = currentUser();
+        Long lastWrite = user != null ? lastWrites.get(user) : null;
+        if (lastWrite != null && lastWrite >= replicatedUpTo) {
+            readYourWritesReads.increment();
+            return Route.PRIMARY;
+        }
+        replicaReads.increment();
+        return Route.REPLICA;
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (commitFailure != null || transaction.isReadOnly() || !transaction.isNewTransaction()) {
+            return;
+        }
+        writes.increment();
+        String user = currentUser();
+        if (user != null) {
+            lastWrites.put(user, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The authenticated user of an HTTP request, or the STOMP user bound to the logging context
+     */
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return authentication.getName();
+        }
+        return MDC.get(LogContext.USER);
+    }
+
+    // ==================== HEARTBEAT ====================
+
+    /**
+     * Write a heartbeat on the primary, then check how far the replica has got; run on a fixed delay
+     */
+    public void heartbeat() {
+        writeHeartbeat();
+        readReplicaHeartbeat();
+    }
+
+    void writeHeartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            if (primary.update("UPDATE " + HEARTBEAT_TABLE + " SET beat_at = ? WHERE id = 1", now) == 0) {
+                primary.update("INSERT INTO " + HEARTBEAT_TABLE + " (id, beat_at) VALUES (1, ?)", now);
+            }
+        } catch (DataAccessException e) {
+            // First run on a new schema: the table replicates to the replica like any other DDL
+            primary.execute("CREATE TABLE IF NOT EXISTS " + HEARTBEAT_TABLE + " (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+            log.info("Created {} on the primary", HEARTBEAT_TABLE);
+        }
+    }
+
+    void readReplicaHeartbeat() {
+        Long beat;
+        try {
+            beat = replica.queryForObject("SELECT MAX(beat_at) FROM " + HEARTBEAT_TABLE, Long.class);
+        } catch (DataAccessException e) {
+            beat = null;
+        }
+
+        boolean wasUsable = replicaUsable;
+        if (beat == null) {
+            lagMillis = -1;
+            replicaUsable = false;
+        } else {
+            replicatedUpTo = Math.max(replicatedUpTo, beat);
+            lagMillis = Math.max(0, System.currentTimeMillis() - beat);
+            replicaUsable = lagMillis <= maxLagMillis;
+            long caughtUp = replicatedUpTo;
+            lastWrites.values().removeIf(written -> written < caughtUp);
+        }
+
+        if (wasUsable != replicaUsable) {
+            if (replicaUsable) {
+                log.info("Replica in use for read-only transactions (lag {} ms)", lagMillis);
+            } else {
+                log.warn("Replica skipped, reads go to the primary (lag {} ms, max {} ms)", lagMillis, maxLagMillis);
+            }
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+}
@@ -33,6 +33,8 @@ public class CallDTO {
     private LocalDateTime createdAt;
     private List<CallParticipantDTO> participants;
     private String roomId; // Used for WebRTC signaling
+    private CallTopology topology; // MESH (peer-to-peer) or SFU (server relay)
+    private boolean recorded; // A recording manifest is available at /api/calls/{id}/recording
     
     // Enums matching the Call entity
     public enum CallType {
@@ -46,6 +48,11 @@ public class CallDTO {
         GROUP      // Group call (multiple participants)
     }
 
+    public enum CallTopology {
+        MESH,      // Peer-to-peer between every pair of participants
+        SFU        // Media relayed through the server
+    }
+
     public enum CallStatus {
         INITIATED,  // Call just created
         RINGING,    // Ringing on recipient's end
@@ -85,6 +92,8 @@ public class CallDTO {
         dto.setDuration(call.getDuration());
         dto.setCreatedAt(call.getCreatedAt());
         dto.setRoomId(call.getRoomId());
+        dto.setTopology(call.usesSfu() ? CallTopology.SFU : CallTopology.MESH);
+        dto.setRecorded(call.getRecordingManifest() != null);
         
         // Map participants if available
         if (call.getParticipants() != null && !call.getParticipants().isEmpty()) {
@@ -150,9 +159,11 @@ public class CallDTO {
         
         public enum ParticipantStatus {
             INVITED,   // Invited but not yet responded
+            RINGING,   // Ringing on the participant's device
             JOINED,    // Actively in the call
             LEFT,      // Left the call
-            REJECTED   // Rejected the invitation
+            REJECTED,  // Rejected the invitation
+            MISSED     // Never reached or never answered
         }
         
         /**
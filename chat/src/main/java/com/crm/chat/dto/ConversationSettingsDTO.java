@@ -0,0 +1,25 @@
+package com.crm.chat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A user's pin/mute/hide settings for the conversation with another user
+ * Field names match the ConversationSettings entity, which the API used to return directly.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSettingsDTO {
+
+    private Long otherUserId;
+    private Boolean isPinned;
+    private Boolean isMuted;
+    private Boolean isHidden;
+    private LocalDateTime pinnedAt;
+    private LocalDateTime mutedAt;
+    private LocalDateTime hiddenAt;
+}
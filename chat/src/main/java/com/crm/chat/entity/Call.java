@@ -26,7 +26,10 @@ import java.util.Objects;
 public class Call {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "call_id")
+    @TableGenerator(name = "call_id", table = IdGenerators.TABLE,
+            pkColumnName = IdGenerators.SEGMENT_COLUMN, valueColumnName = IdGenerators.VALUE_COLUMN,
+            pkColumnValue = IdGenerators.CALLS, allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -75,6 +78,16 @@ public class Call {
     @Column(columnDefinition = "TEXT")
     private String metadata; // Additional JSON metadata (e.g., screen share settings, quality)
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private CallTopology topology = CallTopology.MESH; // Media path for group calls (null on legacy rows = MESH)
+
+    @Column(columnDefinition = "TEXT")
+    private String qualitySummary; // Compact JSON quality summary (RTT, jitter, loss, bitrate) written at call end
+
+    @Column(length = 255)
+    private String recordingManifest; // Recording manifest path, relative to webrtc.recording.storage-path
+
     /**
      * Call Types
      */
@@ -92,6 +105,14 @@ public class Call {
         GROUP     // Group/conference call
     }
 
+    /**
+     * Media Topologies
+     */
+    public enum CallTopology {
+        MESH,     // Every participant sends to every other participant (peer-to-peer)
+        SFU       // Every participant sends once to the server relay, which forwards to the others
+    }
+
     /**
      * Call Status
      */
@@ -138,6 +159,13 @@ public class Call {
                status == CallStatus.FAILED;
     }
 
+    /**
+     * Check if media is relayed through the server SFU instead of a peer mesh
+     */
+    public boolean usesSfu() {
+        return topology == CallTopology.SFU;
+    }
+
     /**
      * Start the call
      */
@@ -22,7 +22,10 @@ import java.util.Objects;
 public class CallParticipant {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "call_participant_id")
+    @TableGenerator(name = "call_participant_id", table = IdGenerators.TABLE,
+            pkColumnName = IdGenerators.SEGMENT_COLUMN, valueColumnName = IdGenerators.VALUE_COLUMN,
+            pkColumnValue = IdGenerators.CALL_PARTICIPANTS, allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -55,6 +58,9 @@ public class CallParticipant {
     @Column(length = 100)
     private String peerId; // WebRTC peer connection ID
 
+    @Column(columnDefinition = "TEXT")
+    private String qualitySummary; // Compact JSON quality summary of this participant's reports
+
     /**
      * Participant Status in Call
      */
@@ -63,7 +69,8 @@ public class CallParticipant {
         RINGING,    // Call is ringing on participant's device
         JOINED,     // Participant has joined the call
         LEFT,       // Participant has left the call
-        REJECTED    // Participant rejected the call
+        REJECTED,   // Participant rejected the call
+        MISSED      // Ring was never delivered or never answered
     }
 
     // Helper methods
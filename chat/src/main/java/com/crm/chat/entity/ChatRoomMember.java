@@ -22,7 +22,10 @@ import java.util.Objects;
 public class ChatRoomMember {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "chat_room_member_id")
+    @TableGenerator(name = "chat_room_member_id", table = IdGenerators.TABLE,
+            pkColumnName = IdGenerators.SEGMENT_COLUMN, valueColumnName = IdGenerators.VALUE_COLUMN,
+            pkColumnValue = IdGenerators.CHAT_ROOM_MEMBERS, allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -43,6 +46,18 @@ public class ChatRoomMember {
     @Column
     private LocalDateTime lastReadAt;
 
+    /**
+     * Highest message id of the room the member has read (GroupReadService)
+     */
+    @Column
+    private Long lastReadMessageId;
+
+    /**
+     * Highest message id of the room acknowledged by one of the member's devices
+     */
+    @Column
+    private Long lastDeliveredMessageId;
+
     @Column(nullable = false)
     private Boolean active = true;
 
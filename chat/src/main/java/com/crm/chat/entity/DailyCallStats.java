@@ -0,0 +1,73 @@
+package com.crm.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Per-user, per-day, per-call-type call counters
+ * Used to answer date-range statistics without scanning the calls table
+ */
+@Entity
+@Table(name = "daily_call_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_call_stats_bucket",
+                columnNames = {"user_id", "stat_date", "call_type"}),
+        indexes = @Index(name = "idx_daily_call_stats_user_date", columnList = "user_id,stat_date"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyCallStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "call_type", nullable = false, length = 20)
+    private Call.CallType callType;
+
+    @Column(nullable = false)
+    private Long totalCalls = 0L;
+
+    @Column(nullable = false)
+    private Long missedCalls = 0L;
+
+    @Column(nullable = false)
+    private Long rejectedCalls = 0L;
+
+    @Column(nullable = false)
+    private Long completedCalls = 0L;
+
+    @Column(nullable = false)
+    private Long totalDuration = 0L; // Duration in seconds
+
+    public DailyCallStats(Long userId, LocalDate statDate, Call.CallType callType) {
+        this.userId = userId;
+        this.statDate = statDate;
+        this.callType = callType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DailyCallStats that)) return false;
+        return id != null && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
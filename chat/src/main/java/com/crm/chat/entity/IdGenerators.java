@@ -0,0 +1,35 @@
+package com.crm.chat.entity;
+
+import java.util.Map;
+
+/**
+ * Table-backed id allocation for high-volume entities
+ * IDENTITY columns force Hibernate to insert rows one at a time (it needs the generated key back);
+ * ids reserved in blocks of ALLOCATION_SIZE from the id_generators table let inserts be batched.
+ * Used with the pooled-lo optimizer (hibernate.id.optimizer.pooled.preferred): a stored next_val is the
+ * first id of the next block, so IdGeneratorInitializer can align it with ids already in the tables.
+ */
+public final class IdGenerators {
+
+    public static final String TABLE = "id_generators";
+    public static final String SEGMENT_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String MESSAGES = "messages";
+    public static final String CALLS = "calls";
+    public static final String CALL_PARTICIPANTS = "call_participants";
+    public static final String CHAT_ROOM_MEMBERS = "chat_room_members";
+
+    /**
+     * Segment name -> table whose id column it allocates for
+     */
+    public static final Map<String, String> SEGMENT_TABLES = Map.of(
+            MESSAGES, "messages",
+            CALLS, "calls",
+            CALL_PARTICIPANTS, "call_participants",
+            CHAT_ROOM_MEMBERS, "chat_room_members");
+
+    private IdGenerators() {
+    }
+}
@@ -15,7 +15,8 @@ import java.util.Objects;
 @Entity
 @Table(name = "messages", indexes = {
         @Index(name = "idx_conversation_created", columnList = "conversation_id,created_at"),
-        @Index(name = "idx_chatroom_created", columnList = "chat_room_id,created_at")
+        @Index(name = "idx_chatroom_created", columnList = "chat_room_id,created_at"),
+        @Index(name = "idx_message_created", columnList = "created_at")
 })
 // @Data
 @Getter
@@ -25,7 +26,10 @@ import java.util.Objects;
 public class Message {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "message_id")
+    @TableGenerator(name = "message_id", table = IdGenerators.TABLE,
+            pkColumnName = IdGenerators.SEGMENT_COLUMN, valueColumnName = IdGenerators.VALUE_COLUMN,
+            pkColumnValue = IdGenerators.MESSAGES, allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -70,6 +74,9 @@ public class Message {
     @Column(nullable = false)
     private Boolean deleted = false;
 
+    @Column
+    private LocalDateTime deletedAt; // When the message was soft-deleted; deleted-message retention counts from here
+
     public enum MessageType {
         TEXT, IMAGE, FILE, SYSTEM
     }
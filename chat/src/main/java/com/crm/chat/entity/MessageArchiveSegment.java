@@ -0,0 +1,81 @@
+package com.crm.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Index entry for the archived messages of one conversation or chat room in one month
+ * The messages are a gzip member at [fileOffset, fileOffset + length) of a monthly segment file
+ * (see MessageArchiveService); each member decompresses on its own, so a history read touches one block.
+ */
+@Entity
+@Table(name = "message_archive_segments", indexes = {
+        @Index(name = "idx_archive_scope_first", columnList = "scope_type,scope_id,first_created_at"),
+        @Index(name = "idx_archive_month", columnList = "archive_month")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageArchiveSegment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scope_type", nullable = false, length = 20)
+    private ScopeType scopeType;
+
+    @Column(name = "scope_id", nullable = false)
+    private Long scopeId;
+
+    /**
+     * Month of the messages, "yyyy-MM"
+     */
+    @Column(name = "archive_month", nullable = false, length = 7)
+    private String archiveMonth;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "file_offset", nullable = false)
+    private Long fileOffset;
+
+    @Column(nullable = false)
+    private Long length;
+
+    @Column(nullable = false)
+    private Integer messageCount;
+
+    @Column(name = "first_created_at", nullable = false)
+    private LocalDateTime firstCreatedAt;
+
+    @Column(name = "last_created_at", nullable = false)
+    private LocalDateTime lastCreatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    public enum ScopeType {
+        CONVERSATION, CHAT_ROOM
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MessageArchiveSegment that)) return false;
+        return id != null && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -0,0 +1,72 @@
+package com.crm.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * New messages in one conversation that arrived while the user was offline
+ * One row per (user, conversation), compacted to a count and the latest message; written behind the in-memory
+ * queue (see CatchUpQueue) and deleted once the user has caught up.
+ */
+@Entity
+@Table(name = "pending_notifications", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_pending_user_conversation", columnNames = {"user_id", "conversation_id"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Column(name = "sender_id", nullable = false)
+    private Long senderId;
+
+    @Column(name = "sender_name")
+    private String senderName;
+
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+
+    /**
+     * Latest message of the conversation
+     */
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+
+    @Column(nullable = false)
+    private Boolean silent = false;
+
+    @Column(length = 500)
+    private String preview;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PendingNotification that)) return false;
+        return id != null && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -0,0 +1,56 @@
+package com.crm.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Progress of one retention task through its table
+ * Saved in the same transaction as each batch delete, so an interrupted run resumes after the last
+ * committed batch; lastId goes back to 0 once a pass reaches the end of the table.
+ */
+@Entity
+@Table(name = "retention_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionCheckpoint {
+
+    @Id
+    @Column(length = 100)
+    private String task;
+
+    @Column(nullable = false)
+    private Long lastId = 0L;
+
+    /**
+     * Rows removed by this task since it was created
+     */
+    @Column(nullable = false)
+    private Long reclaimed = 0L;
+
+    @Column
+    private LocalDateTime updatedAt;
+
+    public RetentionCheckpoint(String task) {
+        this.task = task;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RetentionCheckpoint that)) return false;
+        return task != null && task.equals(that.task);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(task);
+    }
+}
@@ -0,0 +1,60 @@
+package com.crm.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * How long one kind of data is kept, for one chat room or (chatRoomId null) as the default
+ * A default row overrides the chat.retention.* property of the same target; 0 days keeps data forever.
+ */
+@Entity
+@Table(name = "retention_rules",
+        uniqueConstraints = @UniqueConstraint(name = "uk_retention_rule_target_room",
+                columnNames = {"target", "chat_room_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Target target;
+
+    @Column(name = "chat_room_id")
+    private Long chatRoomId;
+
+    @Column(nullable = false)
+    private Integer retentionDays;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum Target {
+        MESSAGES,           // All messages, hot table and archive
+        DELETED_MESSAGES,   // Soft-deleted messages (default only)
+        CALLS               // Finished calls and their participants
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RetentionRule that)) return false;
+        return id != null && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
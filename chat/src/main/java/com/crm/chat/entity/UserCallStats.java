@@ -0,0 +1,82 @@
+package com.crm.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Lifetime call counters for a single user
+ * Updated once per call when it reaches a terminal status, so reads are a primary-key lookup
+ */
+@Entity
+@Table(name = "user_call_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserCallStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long totalCalls = 0L;
+
+    @Column(nullable = false)
+    private Long missedCalls = 0L;
+
+    @Column(nullable = false)
+    private Long rejectedCalls = 0L;
+
+    @Column(nullable = false)
+    private Long completedCalls = 0L; // Calls that ended normally with a measured duration
+
+    @Column(nullable = false)
+    private Long totalDuration = 0L; // Duration in seconds
+
+    @Column(nullable = false)
+    private Long audioCalls = 0L;
+
+    @Column(nullable = false)
+    private Long videoCalls = 0L;
+
+    @Column(nullable = false)
+    private Long screenShareCalls = 0L;
+
+    @Column
+    private LocalDateTime lastCallAt;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public UserCallStats(Long userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Average duration of completed calls in seconds
+     */
+    public double getAverageDuration() {
+        return completedCalls == null || completedCalls == 0 ? 0.0 : (double) totalDuration / completedCalls;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserCallStats that)) return false;
+        return userId != null && userId.equals(that.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId);
+    }
+}
@@ -0,0 +1,106 @@
+package com.crm.chat.loadtest;
+
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.ChatRoomMember;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import com.crm.chat.repository.ChatRoomRepository;
+import com.crm.chat.repository.UserRepository;
+import com.crm.chat.service.ConversationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the embedded database of the "loadtest" profile
+ * Users loadtest0..N-1 share one password; users 2k and 2k+1 have a direct conversation and
+ * every run of room-size consecutive users shares a group chat room
+ */
+@Component
+@Profile("loadtest")
+@RequiredArgsConstructor
+@Slf4j
+public class LoadTestDataSeeder implements ApplicationRunner {
+
+    static final String USERNAME_PREFIX = "loadtest";
+
+    private final UserRepository userRepository;
+    private final ChatRoomRepository chatRoomRepository;
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final ConversationService conversationService;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${loadtest.users:2000}")
+    private int userCount;
+
+    @Value("${loadtest.room-size:10}")
+    private int roomSize;
+
+    @Value("${loadtest.password:loadtest}")
+    private String password;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (userRepository.existsByUsername(USERNAME_PREFIX + 0)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        String encodedPassword = passwordEncoder.encode(password); // hashed once, not per user
+        LocalDateTime now = LocalDateTime.now();
+
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = new User();
+            user.setUsername(USERNAME_PREFIX + i);
+            user.setEmail(USERNAME_PREFIX + i + "@loadtest.local");
+            user.setPassword(encodedPassword);
+            user.setFullName("Load Test " + i);
+            user.setActive(true);
+            user.setStatus(User.UserStatus.AVAILABLE);
+            user.setStatusUpdatedAt(now);
+            user.setCreatedAt(now);
+            user.setUpdatedAt(now);
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        for (int i = 0; i + 1 < users.size(); i += 2) {
+            conversationService.createConversation(users.get(i).getId(), users.get(i + 1).getId());
+        }
+
+        for (int first = 0; first < users.size(); first += roomSize) {
+            ChatRoom chatRoom = new ChatRoom();
+            chatRoom.setName("Load test room " + first / roomSize);
+            chatRoom.setCreatedBy(users.get(first));
+            chatRoom.setType(ChatRoom.ChatRoomType.GROUP);
+            chatRoom.setActive(true);
+            chatRoom.setCreatedAt(now);
+            chatRoom.setUpdatedAt(now);
+            chatRoom = chatRoomRepository.save(chatRoom);
+
+            List<ChatRoomMember> members = new ArrayList<>(roomSize);
+            for (int i = first; i < Math.min(first + roomSize, users.size()); i++) {
+                ChatRoomMember member = new ChatRoomMember();
+                member.setChatRoom(chatRoom);
+                member.setUser(users.get(i));
+                member.setRole(i == first ? ChatRoomMember.MemberRole.ADMIN : ChatRoomMember.MemberRole.MEMBER);
+                member.setJoinedAt(now);
+                member.setActive(true);
+                members.add(member);
+            }
+            chatRoomMemberRepository.saveAll(members);
+        }
+
+        log.info("Seeded {} load test users in {} ms", userCount, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,60 @@
+package com.crm.chat.loadtest;
+
+import com.crm.chat.entity.ChatRoomMember;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.User;
+import com.crm.chat.service.ConversationService;
+import com.crm.chat.service.UserService;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells a load-test client which ids belong to it (only in the "loadtest" profile)
+ */
+@RestController
+@RequestMapping("/api/loadtest")
+@Profile("loadtest")
+@RequiredArgsConstructor
+public class LoadTestFixtureController {
+
+    private final UserService userService;
+    private final ConversationService conversationService;
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+
+    /**
+     * Ids of the current user, its conversation partner and its chat room
+     * GET /api/loadtest/fixture
+     */
+    @GetMapping("/fixture")
+    public ResponseEntity<Map<String, Object>> getFixture() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userService.findByUsername(username).orElseThrow();
+
+        Map<String, Object> fixture = new HashMap<>();
+        fixture.put("userId", user.getId());
+
+        int index = Integer.parseInt(username.substring(LoadTestDataSeeder.USERNAME_PREFIX.length()));
+        userService.findByUsername(LoadTestDataSeeder.USERNAME_PREFIX + (index ^ 1)).ifPresent(partner -> {
+            fixture.put("partnerId", partner.getId());
+            conversationService.findConversationBetweenUsers(user.getId(), partner.getId())
+                    .map(Conversation::getId)
+                    .ifPresent(id -> fixture.put("conversationId", id));
+        });
+
+        List<ChatRoomMember> memberships = chatRoomMemberRepository.findByUserId(user.getId());
+        if (!memberships.isEmpty()) {
+            fixture.put("chatRoomId", memberships.getFirst().getChatRoom().getId());
+        }
+        return ResponseEntity.ok(fixture);
+    }
+}
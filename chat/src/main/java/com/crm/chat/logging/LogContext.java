@@ -0,0 +1,42 @@
+package com.crm.chat.logging;
+
+import org.slf4j.MDC;
+
+/**
+ * MDC keys carried by every log line of a request or STOMP message
+ * user/session are bound by LoggingContextFilter and StompLoggingInterceptor; handlers add the
+ * correlation id (message or call id) once they know it. VerbosityTurboFilter reads all three.
+ */
+public final class LogContext {
+
+    public static final String USER = "user";
+    public static final String SESSION = "session";
+    public static final String CORRELATION = "corr";
+
+    private LogContext() {
+    }
+
+    public static void bind(String user, String session) {
+        if (user != null) {
+            MDC.put(USER, user);
+        }
+        if (session != null) {
+            MDC.put(SESSION, session);
+        }
+    }
+
+    /**
+     * Tag the following log lines with a correlation id such as "msg-42" or "call-7"
+     */
+    public static void correlate(String kind, Object id) {
+        if (id != null) {
+            MDC.put(CORRELATION, kind + "-" + id);
+        }
+    }
+
+    public static void clear() {
+        MDC.remove(USER);
+        MDC.remove(SESSION);
+        MDC.remove(CORRELATION);
+    }
+}
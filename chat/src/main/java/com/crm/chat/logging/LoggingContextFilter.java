@@ -0,0 +1,33 @@
+package com.crm.chat.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Binds the authenticated user to the MDC of an HTTP request
+ * Registered with the default (lowest) order, i.e. after the security filter chain has set the user.
+ */
+@Component
+public class LoggingContextFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // The HTTP session id is a credential, so only the user is bound here
+        LogContext.bind(authentication != null ? authentication.getName() : null, null);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            LogContext.clear();
+        }
+    }
+}
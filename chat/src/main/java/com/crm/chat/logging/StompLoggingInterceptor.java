@@ -0,0 +1,28 @@
+package com.crm.chat.logging;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+import java.security.Principal;
+
+/**
+ * Binds the STOMP user and session to the MDC of the inbound channel thread handling a message
+ */
+public class StompLoggingInterceptor implements ExecutorChannelInterceptor {
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        LogContext.bind(user != null ? user.getName() : null,
+                SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        LogContext.clear();
+    }
+}
@@ -0,0 +1,79 @@
+package com.crm.chat.logging;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users and sessions whose log lines are emitted at DEBUG regardless of the configured level
+ * Shared between the REST toggle (Spring) and VerbosityTurboFilter (created by Logback), hence static.
+ * Every entry expires, so a forgotten toggle cannot keep production logging verbose.
+ */
+public final class VerboseTargets {
+
+    public static final String USER_PREFIX = "user:";
+    public static final String SESSION_PREFIX = "session:";
+    public static final int MAX_TARGETS = 50;
+
+    private static final Map<String, Instant> TARGETS = new ConcurrentHashMap<>();
+
+    // Checked first on every log call; avoids map lookups while nothing is enabled (the normal case)
+    private static volatile boolean active;
+
+    private VerboseTargets() {
+    }
+
+    /**
+     * @return false when the maximum number of targets is already enabled
+     */
+    public static boolean enable(String target, Duration ttl) {
+        purgeExpired();
+        if (TARGETS.size() >= MAX_TARGETS && !TARGETS.containsKey(target)) {
+            return false;
+        }
+        TARGETS.put(target, Instant.now().plus(ttl));
+        active = true;
+        return true;
+    }
+
+    public static void disable(String target) {
+        TARGETS.remove(target);
+        active = !TARGETS.isEmpty();
+    }
+
+    /**
+     * Enabled targets and their expiry
+     */
+    public static Map<String, Instant> list() {
+        purgeExpired();
+        return new TreeMap<>(TARGETS);
+    }
+
+    static boolean matches(String user, String session) {
+        if (!active) {
+            return false;
+        }
+        return (user != null && isEnabled(USER_PREFIX + user))
+                || (session != null && isEnabled(SESSION_PREFIX + session));
+    }
+
+    private static boolean isEnabled(String target) {
+        Instant expiry = TARGETS.get(target);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry.isBefore(Instant.now())) {
+            disable(target);
+            return false;
+        }
+        return true;
+    }
+
+    private static void purgeExpired() {
+        Instant now = Instant.now();
+        TARGETS.values().removeIf(expiry -> expiry.isBefore(now));
+        active = !TARGETS.isEmpty();
+    }
+}
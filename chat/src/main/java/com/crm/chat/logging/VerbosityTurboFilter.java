@@ -0,0 +1,49 @@
+package com.crm.chat.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+/**
+ * Lets DEBUG lines of application loggers through without lowering their level, when either
+ * - the current user or session was made verbose through /api/logging/verbose, or
+ * - the current correlation id is sampled (one in sampleEvery, decided by the id's hash, so every line
+ *   of a sampled message or call is kept together)
+ * Declared in logback-spring.xml. Anything else is left to the normal level check.
+ */
+public class VerbosityTurboFilter extends TurboFilter {
+
+    private String loggerPrefix = "com.crm.chat";
+    private int sampleEvery;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || !level.isGreaterOrEqual(Level.DEBUG)
+                || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+
+        if (VerboseTargets.matches(MDC.get(LogContext.USER), MDC.get(LogContext.SESSION))) {
+            return FilterReply.ACCEPT;
+        }
+
+        if (sampleEvery > 0) {
+            String correlation = MDC.get(LogContext.CORRELATION);
+            if (correlation != null && Math.floorMod(correlation.hashCode(), sampleEvery) == 0) {
+                return FilterReply.ACCEPT;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+}
@@ -0,0 +1,49 @@
+package com.crm.chat.metrics;
+
+import org.springframework.aop.ClassFilter;
+import org.springframework.aop.MethodMatcher;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.StaticMethodMatcher;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Pointcuts shared by the timing (MetricsConfig) and tracing (TracingConfig) advisors
+ * New instances per call, since ComposablePointcut is mutable.
+ */
+public final class ApplicationPointcuts {
+
+    private static final String SERVICE_PACKAGE = "com.crm.chat.service";
+
+    private static final MethodMatcher PUBLIC_APPLICATION_METHODS = new StaticMethodMatcher() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return Modifier.isPublic(method.getModifiers()) && method.getDeclaringClass() != Object.class;
+        }
+    };
+
+    private static final ClassFilter SERVICES = type -> type.getPackageName().equals(SERVICE_PACKAGE)
+            && AnnotatedElementUtils.hasAnnotation(type, Service.class);
+
+    private ApplicationPointcuts() {
+    }
+
+    /**
+     * Public methods of the @Service classes in com.crm.chat.service
+     */
+    public static Pointcut services() {
+        return new ComposablePointcut(SERVICES, PUBLIC_APPLICATION_METHODS);
+    }
+
+    /**
+     * Public methods of Spring Data repositories
+     */
+    public static Pointcut repositories() {
+        return new ComposablePointcut(Repository.class::isAssignableFrom, PUBLIC_APPLICATION_METHODS);
+    }
+}
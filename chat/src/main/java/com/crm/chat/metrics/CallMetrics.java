@@ -0,0 +1,46 @@
+package com.crm.chat.metrics;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.service.ActiveCallIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Call metrics: chat.calls.active (from the in-memory index) and chat.call.setup (initiate to first answer)
+ */
+@Component
+public class CallMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public CallMetrics(MeterRegistry meterRegistry, ActiveCallIndex activeCallIndex) {
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("chat.calls.active", activeCallIndex, ActiveCallIndex::getActiveCallCount)
+                .description("Calls currently RINGING or ONGOING")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record the setup latency of a call that just became ONGOING
+     */
+    public void recordSetup(Call call) {
+        if (call.getCreatedAt() == null || call.getStartedAt() == null) {
+            return;
+        }
+        Duration setup = Duration.between(call.getCreatedAt(), call.getStartedAt());
+        Timer.builder("chat.call.setup")
+                .description("Time from call initiation until the first callee answered")
+                .tag("mode", call.getCallMode().name())
+                .tag("type", call.getCallType().name())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(100))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .register(meterRegistry)
+                .record(setup.isNegative() ? Duration.ZERO : setup);
+    }
+}
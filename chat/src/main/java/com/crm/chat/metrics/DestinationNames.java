@@ -0,0 +1,27 @@
+package com.crm.chat.metrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Maps STOMP destinations to low-cardinality names for metric tags
+ * Ids and user names are dropped: /topic/chatroom.42.typing -> /topic/chatroom.typing,
+ * /user/17/queue/call -> /user/queue/call.
+ */
+public final class DestinationNames {
+
+    private static final Pattern USER_PREFIX = Pattern.compile("^/user/(?!queue/)[^/]+/");
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("[./]\\d+(?=[./]|$)");
+    private static final Pattern RESOLVED_USER_SUFFIX = Pattern.compile("-user[^/]+$");
+
+    private DestinationNames() {
+    }
+
+    public static String normalize(String destination) {
+        if (destination == null || destination.isEmpty()) {
+            return "none";
+        }
+        String name = USER_PREFIX.matcher(destination).replaceFirst("/user/");
+        name = RESOLVED_USER_SUFFIX.matcher(name).replaceFirst("");
+        return NUMERIC_SEGMENT.matcher(name).replaceAll("");
+    }
+}
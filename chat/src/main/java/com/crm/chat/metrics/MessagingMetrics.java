@@ -0,0 +1,196 @@
+package com.crm.chat.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket/STOMP metrics:
+ * - chat.websocket.channel.queued/active/rejected for the inbound, outbound and broker channel executors
+ * - chat.websocket.users/sessions/subscriptions from the user registry
+ * - chat.websocket.fanout: sessions reached by each broadcast (topics) or user-destination send
+ */
+@Component
+public class MessagingMetrics {
+
+    private final SimpUserRegistry userRegistry;
+    private final MeterRegistry meterRegistry;
+
+    // Subscriber count per /topic destination, plus what each session subscribed to (for unsubscribe/disconnect)
+    private final Map<String, AtomicInteger> topicSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> sessionTopics = new ConcurrentHashMap<>();
+
+    public MessagingMetrics(MeterRegistry meterRegistry,
+                            SimpUserRegistry userRegistry,
+                            @Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+                            @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor,
+                            @Qualifier("brokerChannelExecutor") Executor brokerExecutor,
+                            @Qualifier("brokerChannel") AbstractSubscribableChannel brokerChannel) {
+        this.meterRegistry = meterRegistry;
+        this.userRegistry = userRegistry;
+
+        bindExecutor("inbound", inboundExecutor);
+        bindExecutor("outbound", outboundExecutor);
+        bindExecutor("broker", brokerExecutor);
+
+        Gauge.builder("chat.websocket.users", userRegistry, SimpUserRegistry::getUserCount)
+                .description("Users with at least one STOMP session")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.sessions", this, MessagingMetrics::countSessions)
+                .description("Open STOMP sessions")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.subscriptions", this, MessagingMetrics::countSubscriptions)
+                .description("Active STOMP subscriptions")
+                .register(meterRegistry);
+
+        brokerChannel.addInterceptor(new FanoutInterceptor());
+    }
+
+    // ==================== CHANNEL EXECUTORS ====================
+
+    private void bindExecutor(String channel, Executor executor) {
+        // Only thread pools have a queue to report (the broker channel has none unless configured with one)
+        if (!(executor instanceof ThreadPoolTaskExecutor taskExecutor)) {
+            return;
+        }
+        ThreadPoolExecutor pool = taskExecutor.getThreadPoolExecutor();
+
+        Gauge.builder("chat.websocket.channel.queued", pool, p -> p.getQueue().size())
+                .description("Messages waiting in the channel executor queue")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.channel.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("Channel executor threads busy handling messages")
+                .tag("channel", channel)
+                .register(meterRegistry);
+
+        // Count rejections, then let the original handler decide (it throws, so the sender still sees the failure)
+        Counter rejected = Counter.builder("chat.websocket.channel.rejected")
+                .description("Messages rejected because the channel executor queue was full")
+                .tag("channel", channel)
+                .register(meterRegistry);
+        RejectedExecutionHandler delegate = pool.getRejectedExecutionHandler();
+        pool.setRejectedExecutionHandler((task, executorPool) -> {
+            rejected.increment();
+            delegate.rejectedExecution(task, executorPool);
+        });
+    }
+
+    // ==================== SESSIONS ====================
+
+    private double countSessions() {
+        int sessions = 0;
+        for (SimpUser user : userRegistry.getUsers()) {
+            sessions += user.getSessions().size();
+        }
+        return sessions;
+    }
+
+    private double countSubscriptions() {
+        int subscriptions = 0;
+        for (SimpUser user : userRegistry.getUsers()) {
+            for (var session : user.getSessions()) {
+                subscriptions += session.getSubscriptions().size();
+            }
+        }
+        return subscriptions;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith("/topic/")
+                || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String previous = sessionTopics.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), destination);
+        if (previous == null) {
+            topicSubscribers.computeIfAbsent(destination, d -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> topics = accessor.getSessionId() != null ? sessionTopics.get(accessor.getSessionId()) : null;
+        if (topics != null && accessor.getSubscriptionId() != null) {
+            removeSubscriber(topics.remove(accessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> topics = sessionTopics.remove(event.getSessionId());
+        if (topics != null) {
+            topics.values().forEach(this::removeSubscriber);
+        }
+    }
+
+    private void removeSubscriber(String destination) {
+        if (destination == null) {
+            return;
+        }
+        topicSubscribers.computeIfPresent(destination, (d, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    // ==================== FAN-OUT ====================
+
+    /**
+     * Records how many sessions each message sent through the broker channel reaches
+     * Resolved user destinations (/queue/x-user{session}) are skipped; they were counted as /user/{name}/...
+     */
+    private final class FanoutInterceptor implements ChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (destination == null) {
+                return message;
+            }
+
+            int sessions;
+            if (destination.startsWith("/topic/")) {
+                AtomicInteger subscribers = topicSubscribers.get(destination);
+                sessions = subscribers != null ? subscribers.get() : 0;
+            } else if (destination.startsWith("/user/")) {
+                int end = destination.indexOf('/', "/user/".length());
+                SimpUser user = end > 0 ? userRegistry.getUser(destination.substring("/user/".length(), end)) : null;
+                sessions = user != null ? user.getSessions().size() : 0;
+            } else {
+                return message;
+            }
+
+            DistributionSummary.builder("chat.websocket.fanout")
+                    .description("Sessions reached by one broadcast or user-destination send")
+                    .baseUnit("sessions")
+                    .tag("destination", DestinationNames.normalize(destination))
+                    .register(meterRegistry)
+                    .record(sessions);
+            return message;
+        }
+    }
+}
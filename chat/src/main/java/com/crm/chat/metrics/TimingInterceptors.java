@@ -0,0 +1,165 @@
+package com.crm.chat.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method interceptors behind the timing advisors in MetricsConfig
+ * The registry is looked up on first use: advisors are created while bean post-processors are being
+ * registered, and resolving the registry that early would skip its own customization.
+ */
+final class TimingInterceptors {
+
+    private TimingInterceptors() {
+    }
+
+    /**
+     * chat.stomp.handler: time spent in each @MessageMapping method, tagged with its destination
+     */
+    static final class MessageMappingTimer implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> registry;
+
+        MessageMappingTimer(ObjectProvider<MeterRegistry> registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            long start = System.nanoTime();
+            String exception = "none";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                exception = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                Timer.builder("chat.stomp.handler")
+                        .description("Time spent handling an inbound STOMP message")
+                        .tag("destination", "/app" + destination(invocation.getMethod()))
+                        .tag("exception", exception)
+                        .publishPercentileHistogram()
+                        .register(registry.getObject())
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private static String destination(Method method) {
+            MessageMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, MessageMapping.class);
+            return mapping != null && mapping.value().length > 0 ? mapping.value()[0] : method.getName();
+        }
+    }
+
+    /**
+     * chat.service.time and chat.db.time: wall time of each service method and the part of it spent in
+     * repository calls (inclusive of nested service calls)
+     */
+    static final class ServiceTimer implements MethodInterceptor {
+
+        private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<>();
+
+        private final ObjectProvider<MeterRegistry> registry;
+
+        ServiceTimer(ObjectProvider<MeterRegistry> registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Frame frame = new Frame(CURRENT.get());
+            CURRENT.set(frame);
+            long start = System.nanoTime();
+            String exception = "none";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                exception = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (frame.parent != null) {
+                    CURRENT.set(frame.parent);
+                } else {
+                    CURRENT.remove();
+                }
+
+                String type = invocation.getMethod().getDeclaringClass().getSimpleName();
+                String method = invocation.getMethod().getName();
+                MeterRegistry meterRegistry = registry.getObject();
+                Timer.builder("chat.service.time")
+                        .description("Time spent in a service method")
+                        .tags("class", type, "method", method, "exception", exception)
+                        .register(meterRegistry)
+                        .record(elapsed, TimeUnit.NANOSECONDS);
+                Timer.builder("chat.db.time")
+                        .description("Time a service method spent in repository calls")
+                        .tags("class", type, "method", method)
+                        .register(meterRegistry)
+                        .record(frame.databaseNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Add repository time to every service method on the current thread's call stack
+         *
+         * @return false when no service method is running (the repository was called directly)
+         */
+        static boolean addDatabaseTime(long nanos) {
+            Frame frame = CURRENT.get();
+            if (frame == null) {
+                return false;
+            }
+            for (; frame != null; frame = frame.parent) {
+                frame.databaseNanos += nanos;
+            }
+            return true;
+        }
+
+        private static final class Frame {
+
+            private final Frame parent;
+            private long databaseNanos;
+
+            private Frame(Frame parent) {
+                this.parent = parent;
+            }
+        }
+    }
+
+    /**
+     * Feeds repository call time into ServiceTimer; calls made outside any service are recorded as class "none"
+     */
+    static final class RepositoryTimer implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> registry;
+
+        RepositoryTimer(ObjectProvider<MeterRegistry> registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (!ServiceTimer.addDatabaseTime(elapsed)) {
+                    Timer.builder("chat.db.time")
+                            .description("Time a service method spent in repository calls")
+                            .tags("class", "none", "method", "none")
+                            .register(registry.getObject())
+                            .record(elapsed, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The devices and STOMP sessions of each connected user
+ * A device is identified by the device-id header the client sends on CONNECT (one per browser, shared by its
+ * tabs; the session id when absent) and may hold several sessions. Presence is aggregated over devices: the
+ * first session of a user brings them back from OFFLINE to the status they had, and once their last session
+ * is gone for offline-grace (page reloads reconnect within it) they go OFFLINE.
+ * Each device keeps a delivered watermark per chat, the highest message id it has acknowledged, so the
+ * delivered state of a user (the best of their devices) is known without querying.
+ */
+@Component
+@Slf4j
+public class DeviceSessionRegistry {
+
+    public static final String DEVICE_HEADER = "device-id";
+    private static final Set<UserStatus> ONLINE_STATUSES = EnumSet.complementOf(EnumSet.of(UserStatus.OFFLINE));
+
+    private final StatusTransitions statusTransitions;
+    private final TaskScheduler taskScheduler;
+    private final Duration offlineGrace;
+
+    // Username -> their connected devices
+    private final Map<String, Map<String, Device>> users = new ConcurrentHashMap<>();
+    // STOMP session id -> where it is registered
+    private final Map<String, SessionRef> sessions = new ConcurrentHashMap<>();
+    // Users whose last session is gone, waiting out the grace period
+    private final Map<String, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+    // Status a user had when they went OFFLINE, restored when they come back
+    private final Map<String, UserStatus> statusBeforeOffline = new ConcurrentHashMap<>();
+
+    public DeviceSessionRegistry(StatusTransitions statusTransitions,
+                                 @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                                 @Value("${chat.presence.offline-grace:15s}") Duration offlineGrace) {
+        this.statusTransitions = statusTransitions;
+        this.taskScheduler = taskScheduler;
+        this.offlineGrace = offlineGrace;
+    }
+
+    // ==================== LOOKUPS ====================
+
+    public boolean isOnline(String username) {
+        return users.containsKey(username);
+    }
+
+    public int deviceCount(String username) {
+        Map<String, Device> devices = users.get(username);
+        return devices != null ? devices.size() : 0;
+    }
+
+    /**
+     * Ids of all STOMP sessions of a user, across devices
+     */
+    public List<String> sessionIds(String username) {
+        Map<String, Device> devices = users.get(username);
+        if (devices == null) {
+            return List.of();
+        }
+        return devices.values().stream().flatMap(device -> device.sessionIds.stream()).toList();
+    }
+
+    /**
+     * Device a session belongs to, or null for an unknown session
+     */
+    public String deviceOf(String sessionId) {
+        SessionRef ref = sessions.get(sessionId);
+        return ref != null ? ref.deviceId() : null;
+    }
+
+    // ==================== DELIVERY WATERMARKS ====================
+
+    /**
+     * Record that the device of a session has received everything in a chat up to a message id
+     * @return whether this raised the user's delivered watermark for the chat (no device had it yet)
+     */
+    public boolean markDelivered(String sessionId, String chatKey, long messageId) {
+        SessionRef ref = sessions.get(sessionId);
+        Map<String, Device> devices = ref != null ? users.get(ref.username()) : null;
+        Device device = devices != null ? devices.get(ref.deviceId()) : null;
+        if (device == null) {
+            return false;
+        }
+        long userBefore = deliveredUpTo(devices, chatKey);
+        device.delivered.merge(chatKey, messageId, Math::max);
+        return messageId > userBefore;
+    }
+
+    /**
+     * Highest message id of a chat delivered to any device of the user (0 when none, or not connected)
+     */
+    public long deliveredUpTo(String username, String chatKey) {
+        Map<String, Device> devices = users.get(username);
+        return devices != null ? deliveredUpTo(devices, chatKey) : 0;
+    }
+
+    private static long deliveredUpTo(Map<String, Device> devices, String chatKey) {
+        long max = 0;
+        for (Device device : devices.values()) {
+            max = Math.max(max, device.delivered.getOrDefault(chatKey, 0L));
+        }
+        return max;
+    }
+
+    // ==================== CONNECTIONS ====================
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        Principal principal = event.getUser();
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        if (principal == null || sessionId == null) {
+            return;
+        }
+        String username = principal.getName();
+        String header = accessor.getFirstNativeHeader(DEVICE_HEADER);
+        String deviceId = header != null && !header.isBlank() ? header : sessionId;
+
+        boolean[] firstSession = {false};
+        users.compute(username, (name, devices) -> {
+            if (devices == null) {
+                devices = new ConcurrentHashMap<>();
+                firstSession[0] = true;
+            }
+            devices.computeIfAbsent(deviceId, Device::new).sessionIds.add(sessionId);
+            return devices;
+        });
+        sessions.put(sessionId, new SessionRef(username, deviceId));
+        log.debug("Session {} of {} on device {} ({} devices)", sessionId, username, deviceId, deviceCount(username));
+
+        if (firstSession[0]) {
+            ScheduledFuture<?> offline = pendingOffline.remove(username);
+            // Still online when the grace period had not run out
+            if (offline == null || !offline.cancel(false)) {
+                comeOnline(username);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionRef ref = sessions.remove(event.getSessionId());
+        if (ref == null) {
+            return;
+        }
+        boolean[] lastSession = {false};
+        users.computeIfPresent(ref.username(), (name, devices) -> {
+            Device device = devices.get(ref.deviceId());
+            if (device != null) {
+                device.sessionIds.remove(event.getSessionId());
+                if (device.sessionIds.isEmpty()) {
+                    devices.remove(ref.deviceId());
+                }
+            }
+            lastSession[0] = devices.isEmpty();
+            return devices.isEmpty() ? null : devices;
+        });
+
+        if (lastSession[0]) {
+            pendingOffline.put(ref.username(),
+                    taskScheduler.schedule(() -> goOffline(ref.username()), Instant.now().plus(offlineGrace)));
+        }
+    }
+
+    private synchronized void comeOnline(String username) {
+        UserStatus restored = statusBeforeOffline.getOrDefault(username, UserStatus.AVAILABLE);
+        if (!statusTransitions.move(List.of(username), Set.of(UserStatus.OFFLINE), restored, LocalDateTime.now()).isEmpty()) {
+            statusBeforeOffline.remove(username);
+        }
+    }
+
+    private synchronized void goOffline(String username) {
+        pendingOffline.remove(username);
+        if (users.containsKey(username)) {
+            return;
+        }
+        for (UserStatusChangedEvent event : statusTransitions.move(List.of(username), ONLINE_STATUSES,
+                UserStatus.OFFLINE, LocalDateTime.now())) {
+            statusBeforeOffline.put(username, event.previous());
+        }
+    }
+
+    private record SessionRef(String username, String deviceId) {
+    }
+
+    /**
+     * One client device of a user
+     */
+    private static final class Device {
+        final String deviceId;
+        final Set<String> sessionIds = ConcurrentHashMap.newKeySet();
+        // Chat key (e.g. "conversation:12") -> highest message id acknowledged by this device
+        final Map<String, Long> delivered = new ConcurrentHashMap<>();
+
+        Device(String deviceId) {
+            this.deviceId = deviceId;
+        }
+    }
+}
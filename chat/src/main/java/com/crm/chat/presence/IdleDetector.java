@@ -0,0 +1,229 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idle/away detection from STOMP traffic
+ * Every inbound frame from a user (other than passive ones such as call stats) pushes that user's idle
+ * deadline out to now + idle-timeout in a timing wheel; heartbeats only start tracking a connected user the
+ * wheel does not know yet. A single thread advances the wheel each tick: users whose deadline passed while
+ * AVAILABLE / AVAILABLE_COLLAB are moved to AWAY in one UPDATE per tick, and the first activity after that
+ * restores their previous status. Each transition publishes one UserStatusChangedEvent (StatusTransitions).
+ * The cost is per frame O(1) and per tick O(transitions), with no scan of the users table.
+ */
+@Component
+@Slf4j
+public class IdleDetector implements DisposableBean {
+
+    private static final Set<UserStatus> AUTO_AWAY_FROM = Set.of(UserStatus.AVAILABLE, UserStatus.AVAILABLE_COLLAB);
+
+    private final StatusTransitions statusTransitions;
+    private final ObjectProvider<SimpUserRegistry> simpUserRegistry;
+    private final long idleTimeoutMillis;
+    private final long tickMillis;
+    private final Set<String> passiveDestinations;
+
+    private final TimingWheel<String> wheel;
+    // Last activity per username; the wheel is only touched when it moves by a tick or more
+    private final Map<String, Long> lastActivity = new ConcurrentHashMap<>();
+    // Users this detector moved to AWAY, with the status to restore
+    private final Map<String, UserStatus> idle = new ConcurrentHashMap<>();
+    // Idle users seen active again, restored on the next tick
+    private final ConcurrentLinkedQueue<String> wakeups = new ConcurrentLinkedQueue<>();
+
+    private final Counter awayTransitions;
+    private final Counter restoreTransitions;
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "presence-idle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IdleDetector(StatusTransitions statusTransitions,
+                        ObjectProvider<SimpUserRegistry> simpUserRegistry,
+                        MeterRegistry meterRegistry,
+                        @Value("${chat.presence.idle-timeout:5m}") Duration idleTimeout,
+                        @Value("${chat.presence.wheel-tick:1s}") Duration tick,
+                        @Value("${chat.presence.wheel-size:512}") int wheelSize,
+                        @Value("${chat.presence.passive-destinations:}") List<String> passiveDestinations) {
+        this.statusTransitions = statusTransitions;
+        this.simpUserRegistry = simpUserRegistry;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.tickMillis = tick.toMillis();
+        this.passiveDestinations = Set.copyOf(passiveDestinations);
+        this.wheel = new TimingWheel<>(tick, wheelSize, System.currentTimeMillis());
+
+        awayTransitions = transitions(meterRegistry, "away");
+        restoreTransitions = transitions(meterRegistry, "restore");
+        Gauge.builder("chat.presence.idle.tracked", this, detector -> detector.lastActivity.size())
+                .description("Users with an idle deadline in the timing wheel")
+                .register(meterRegistry);
+    }
+
+    private static Counter transitions(MeterRegistry meterRegistry, String to) {
+        return Counter.builder("chat.presence.idle.transitions")
+                .description("Automatic status changes made by idle detection")
+                .tag("to", to)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        ticker.shutdownNow();
+    }
+
+    // ==================== ACTIVITY ====================
+
+    /**
+     * Inbound channel interceptor feeding frames to the detector
+     */
+    public ChannelInterceptor activityInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+                if (user != null) {
+                    SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+                    if (type == SimpMessageType.HEARTBEAT) {
+                        onHeartbeat(user.getName());
+                    } else if (type != SimpMessageType.DISCONNECT && !passiveDestinations.contains(
+                            SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                        onActivity(user.getName());
+                    }
+                }
+                return message;
+            }
+        };
+    }
+
+    /**
+     * The user did something: push their deadline out, and wake them if they were set AWAY
+     */
+    public void onActivity(String username) {
+        long now = System.currentTimeMillis();
+        Long previous = lastActivity.put(username, now);
+        if (previous == null || now - previous >= tickMillis) {
+            synchronized (wheel) {
+                wheel.schedule(username, now + idleTimeoutMillis);
+            }
+        }
+        if (idle.containsKey(username)) {
+            wakeups.add(username);
+        }
+    }
+
+    /**
+     * The connection is alive; start tracking a user we have no deadline for (e.g. after a restart)
+     */
+    public void onHeartbeat(String username) {
+        if (lastActivity.containsKey(username) || idle.containsKey(username)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (lastActivity.putIfAbsent(username, now) == null) {
+            synchronized (wheel) {
+                wheel.scheduleIfAbsent(username, now + idleTimeoutMillis);
+            }
+        }
+    }
+
+    // ==================== TICK ====================
+
+    void tick() {
+        try {
+            List<String> expired;
+            synchronized (wheel) {
+                expired = wheel.advance(System.currentTimeMillis());
+            }
+            if (!expired.isEmpty()) {
+                goAway(expired);
+            }
+            if (!wakeups.isEmpty()) {
+                restore();
+            }
+        } catch (RuntimeException e) {
+            log.error("Idle detection tick failed", e);
+        }
+    }
+
+    private void goAway(List<String> expired) {
+        SimpUserRegistry registry = simpUserRegistry.getIfAvailable();
+        List<String> connected = new ArrayList<>(expired.size());
+        for (String username : expired) {
+            Long last = lastActivity.get(username);
+            if (last != null && System.currentTimeMillis() - last < idleTimeoutMillis) {
+                // Active again between the wheel move and now
+                synchronized (wheel) {
+                    wheel.schedule(username, last + idleTimeoutMillis);
+                }
+                continue;
+            }
+            lastActivity.remove(username);
+            // Disconnected users are not idle; their connections decide their status
+            if (registry == null || registry.getUser(username) != null) {
+                connected.add(username);
+            }
+        }
+        if (connected.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime lastSeen = LocalDateTime.now().minusNanos(idleTimeoutMillis * 1_000_000);
+        for (UserStatusChangedEvent event : statusTransitions.move(connected, AUTO_AWAY_FROM, UserStatus.AWAY, lastSeen)) {
+            idle.put(event.username(), event.previous());
+            awayTransitions.increment();
+        }
+    }
+
+    private void restore() {
+        Map<UserStatus, List<String>> byStatus = new EnumMap<>(UserStatus.class);
+        String username;
+        while ((username = wakeups.poll()) != null) {
+            UserStatus previous = idle.remove(username);
+            if (previous != null) {
+                byStatus.computeIfAbsent(previous, status -> new ArrayList<>()).add(username);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        byStatus.forEach((status, usernames) -> {
+            // Only users still AWAY: a status picked by hand in the meantime wins
+            restoreTransitions.increment(statusTransitions.move(usernames, Set.of(UserStatus.AWAY), status, now).size());
+        });
+    }
+}
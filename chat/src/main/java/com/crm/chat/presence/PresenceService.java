@@ -0,0 +1,297 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import com.crm.chat.repository.ConversationRepository;
+import com.crm.chat.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Presence fan-out by interest
+ * A STOMP session that subscribes to /user/queue/presence is given an interest set: its user's DM peers
+ * and chat room co-members, derived at subscribe time, plus the contacts the client says it is showing
+ * (/app/presence.watch). It gets a PRESENCE_SNAPSHOT of those users, then status changes are queued per
+ * user and flushed every flush-interval as one PRESENCE_DIFF frame per interested session, carrying only
+ * the latest status of each user that changed.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+    private static final String PRESENCE_DESTINATION = "/user" + PRESENCE_QUEUE;
+
+    private final UserRepository userRepository;
+    private final ConversationRepository conversationRepository;
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Duration flushInterval;
+    private final int maxWatched;
+
+    // STOMP session id -> the session's interest
+    private final Map<String, Watcher> watchers = new ConcurrentHashMap<>();
+    // Watched user id -> ids of the sessions interested in them
+    private final Map<Long, Set<String>> interested = new ConcurrentHashMap<>();
+    // Latest status not yet sent, per user
+    private final Map<Long, PresenceUpdate> pending = new ConcurrentHashMap<>();
+
+    public PresenceService(UserRepository userRepository,
+                           ConversationRepository conversationRepository,
+                           ChatRoomMemberRepository chatRoomMemberRepository,
+                           SimpMessagingTemplate messagingTemplate,
+                           @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                           @Value("${chat.presence.flush-interval:1s}") Duration flushInterval,
+                           @Value("${chat.presence.max-watched:500}") int maxWatched) {
+        this.userRepository = userRepository;
+        this.conversationRepository = conversationRepository;
+        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.taskScheduler = taskScheduler;
+        this.flushInterval = flushInterval;
+        this.maxWatched = maxWatched;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleFlush() {
+        taskScheduler.scheduleWithFixedDelay(this::flush, flushInterval);
+    }
+
+    // ==================== INTEREST ====================
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Principal principal = event.getUser();
+        if (principal == null || !PRESENCE_DESTINATION.equals(accessor.getDestination())) {
+            return;
+        }
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null) {
+            return;
+        }
+
+        Set<Long> derived = new HashSet<>(conversationRepository.findPeerIds(user.getId()));
+        derived.addAll(chatRoomMemberRepository.findCoMemberUserIds(user.getId()));
+        Watcher watcher = new Watcher(accessor.getSessionId(), accessor.getSubscriptionId(),
+                principal.getName(), user.getId());
+        Watcher previous = watchers.put(watcher.sessionId, watcher);
+        if (previous != null) {
+            unwatchAll(previous);
+        }
+        Set<Long> added = watcher.setDerived(derived);
+        watchAll(watcher, added);
+        sendSnapshot(watcher, added);
+        log.debug("Presence interest for session {}: {} users", watcher.sessionId, added.size());
+    }
+
+    /**
+     * Replace the contacts a session declared visible (on top of its derived interest)
+     */
+    public void watch(String sessionId, Collection<Long> userIds) {
+        Watcher watcher = watchers.get(sessionId);
+        if (watcher == null) {
+            return;
+        }
+        Set<Long> declared = new HashSet<>();
+        for (Long userId : userIds) {
+            if (declared.size() >= maxWatched) {
+                log.debug("Session {} declared more than {} contacts, rest ignored", sessionId, maxWatched);
+                break;
+            }
+            if (userId != null && !userId.equals(watcher.userId)) {
+                declared.add(userId);
+            }
+        }
+        Watcher.Change change = watcher.setDeclared(declared);
+        unwatch(watcher.sessionId, change.removed());
+        watchAll(watcher, change.added());
+        sendSnapshot(watcher, change.added());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Watcher watcher = watchers.get(accessor.getSessionId());
+        if (watcher != null && watcher.subscriptionId != null
+                && watcher.subscriptionId.equals(accessor.getSubscriptionId())) {
+            remove(accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        remove(event.getSessionId());
+    }
+
+    private void remove(String sessionId) {
+        Watcher watcher = watchers.remove(sessionId);
+        if (watcher != null) {
+            unwatchAll(watcher);
+        }
+    }
+
+    private void watchAll(Watcher watcher, Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            interested.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(watcher.sessionId);
+        }
+    }
+
+    private void unwatchAll(Watcher watcher) {
+        unwatch(watcher.sessionId, watcher.all());
+    }
+
+    private void unwatch(String sessionId, Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            interested.computeIfPresent(userId, (id, sessions) -> {
+                sessions.remove(sessionId);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+
+    // ==================== CHANGES ====================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(UserStatusChangedEvent event) {
+        if (!interested.containsKey(event.userId())) {
+            return;
+        }
+        pending.put(event.userId(), PresenceUpdate.of(event.userId(), event.username(), event.fullName(), event.status()));
+    }
+
+    /**
+     * Send the queued changes, one frame per interested session
+     */
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, List<PresenceUpdate>> bySession = new HashMap<>();
+        for (Long userId : List.copyOf(pending.keySet())) {
+            PresenceUpdate update = pending.remove(userId);
+            Set<String> sessions = update != null ? interested.get(userId) : null;
+            if (sessions == null) {
+                continue;
+            }
+            for (String sessionId : sessions) {
+                bySession.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(update);
+            }
+        }
+        bySession.forEach((sessionId, updates) -> {
+            Watcher watcher = watchers.get(sessionId);
+            if (watcher != null) {
+                send(watcher, "PRESENCE_DIFF", updates);
+            }
+        });
+    }
+
+    private void sendSnapshot(Watcher watcher, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<PresenceUpdate> users = new ArrayList<>(userIds.size());
+        for (Object[] row : userRepository.findPresenceByIdIn(userIds)) {
+            users.add(PresenceUpdate.of((Long) row[0], (String) row[1], (String) row[2], (User.UserStatus) row[3]));
+        }
+        send(watcher, "PRESENCE_SNAPSHOT", users);
+    }
+
+    private void send(Watcher watcher, String type, List<PresenceUpdate> users) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", type);
+        frame.put("users", users);
+        messagingTemplate.convertAndSendToUser(watcher.username, PRESENCE_QUEUE, frame, sessionHeaders(watcher.sessionId));
+    }
+
+    /**
+     * Headers that route a user-destination message to one session of the user only
+     */
+    private static MessageHeaders sessionHeaders(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * Number of sessions currently interested in a user (0 when nobody would see a change)
+     */
+    public int interestIn(Long userId) {
+        Set<String> sessions = interested.get(userId);
+        return sessions != null ? sessions.size() : 0;
+    }
+
+    /**
+     * Interest of one STOMP session
+     */
+    private static final class Watcher {
+        final String sessionId;
+        final String subscriptionId;
+        final String username;
+        final Long userId;
+        private Set<Long> derived = Set.of();
+        private Set<Long> declared = Set.of();
+
+        Watcher(String sessionId, String subscriptionId, String username, Long userId) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.username = username;
+            this.userId = userId;
+        }
+
+        synchronized Set<Long> setDerived(Set<Long> derived) {
+            this.derived = derived;
+            return Set.copyOf(derived);
+        }
+
+        /**
+         * Users that became watched / stopped being watched, taking the derived set into account
+         */
+        synchronized Change setDeclared(Set<Long> declared) {
+            Set<Long> added = new HashSet<>(declared);
+            added.removeAll(this.declared);
+            added.removeAll(derived);
+            Set<Long> removed = new HashSet<>(this.declared);
+            removed.removeAll(declared);
+            removed.removeAll(derived);
+            this.declared = declared;
+            return new Change(added, removed);
+        }
+
+        synchronized Set<Long> all() {
+            Set<Long> all = new HashSet<>(derived);
+            all.addAll(declared);
+            return all;
+        }
+
+        record Change(Set<Long> added, Set<Long> removed) {
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Live per-status counts and members of the active users
+ * Seeded from the database once the application is up, then kept in step with every committed
+ * UserStatusChangedEvent, so "how many users are BUSY" or "who is online" is answered in O(1) / O(result)
+ * without reading the users table. Also exported as the chat.presence.users{status} gauge.
+ */
+@Component
+@Slf4j
+public class PresenceStatistics {
+
+    private final UserRepository userRepository;
+
+    // Current status per user; the member sets and counters follow it
+    private final Map<Long, UserStatus> statuses = new ConcurrentHashMap<>();
+    private final Map<UserStatus, Set<Long>> members = new EnumMap<>(UserStatus.class);
+    private final Map<UserStatus, AtomicLong> counts = new EnumMap<>(UserStatus.class);
+
+    public PresenceStatistics(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        for (UserStatus status : UserStatus.values()) {
+            members.put(status, ConcurrentHashMap.newKeySet());
+            AtomicLong count = new AtomicLong();
+            counts.put(status, count);
+            Gauge.builder("chat.presence.users", count, AtomicLong::get)
+                    .description("Active users per status")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    // ==================== LOOKUPS ====================
+
+    public long count(UserStatus status) {
+        return counts.get(status).get();
+    }
+
+    /**
+     * Count per status, leaving out statuses nobody is in
+     */
+    public Map<UserStatus, Long> distribution() {
+        Map<UserStatus, Long> distribution = new EnumMap<>(UserStatus.class);
+        counts.forEach((status, count) -> {
+            long value = count.get();
+            if (value > 0) {
+                distribution.put(status, value);
+            }
+        });
+        return distribution;
+    }
+
+    /**
+     * Current status of an active user, or null when unknown
+     */
+    public UserStatus status(Long userId) {
+        return statuses.get(userId);
+    }
+
+    /**
+     * Ids of the users in a status
+     */
+    public Set<Long> userIds(UserStatus status) {
+        return Set.copyOf(members.get(status));
+    }
+
+    /**
+     * Ids of the users in any status matching the predicate (e.g. UserStatus::isAvailable)
+     */
+    public Set<Long> userIds(Predicate<UserStatus> statusFilter) {
+        Set<Long> userIds = new HashSet<>();
+        members.forEach((status, ids) -> {
+            if (statusFilter.test(status)) {
+                userIds.addAll(ids);
+            }
+        });
+        return userIds;
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(UserStatusChangedEvent event) {
+        apply(event.userId(), event.status());
+    }
+
+    /**
+     * Record a bulk change that moved every user to one status (no per-user events are published for it)
+     * Applied after commit when called inside a transaction.
+     */
+    public void moveAll(UserStatus status) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAll(status);
+                }
+            });
+        } else {
+            applyAll(status);
+        }
+    }
+
+    /**
+     * Seed the counters from the database once the application is up
+     * UserService.resetStatusesOnStartup has already set everyone OFFLINE by then.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Map<Long, UserStatus> loaded = new HashMap<>();
+        for (Object[] row : userRepository.findActiveUserStatuses()) {
+            loaded.put((Long) row[0], (UserStatus) row[1]);
+        }
+        synchronized (this) {
+            statuses.clear();
+            members.values().forEach(Set::clear);
+            counts.values().forEach(count -> count.set(0));
+            loaded.forEach(this::apply);
+        }
+        log.info("Presence statistics seeded with {} users: {}", loaded.size(), distribution());
+    }
+
+    synchronized void apply(Long userId, UserStatus status) {
+        UserStatus previous = statuses.put(userId, status);
+        if (previous == status) {
+            return;
+        }
+        if (previous != null) {
+            members.get(previous).remove(userId);
+            counts.get(previous).decrementAndGet();
+        }
+        members.get(status).add(userId);
+        counts.get(status).incrementAndGet();
+    }
+
+    private synchronized void applyAll(UserStatus status) {
+        Set<Long> target = members.get(status);
+        members.forEach((from, ids) -> {
+            if (from != status) {
+                target.addAll(ids);
+                ids.clear();
+                counts.get(from).set(0);
+            }
+        });
+        statuses.replaceAll((userId, previous) -> status);
+        counts.get(status).set(target.size());
+    }
+}
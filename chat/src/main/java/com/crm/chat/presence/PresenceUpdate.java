@@ -0,0 +1,14 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+
+/**
+ * Status of one user as other users see it: INVISIBLE is shown as OFFLINE
+ */
+public record PresenceUpdate(Long userId, String username, String fullName, String status, String statusText) {
+
+    public static PresenceUpdate of(Long userId, String username, String fullName, UserStatus status) {
+        UserStatus visible = status == UserStatus.INVISIBLE ? UserStatus.OFFLINE : status;
+        return new PresenceUpdate(userId, username, fullName, visible.name(), visible.getDisplayText());
+    }
+}
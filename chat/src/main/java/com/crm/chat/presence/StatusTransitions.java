@@ -0,0 +1,60 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Automatic status changes made by the server (idle, last device gone, first device back)
+ * Users are moved with one UPDATE guarded by their current status, so a status picked by hand in the
+ * meantime is never overwritten, and each change made publishes one UserStatusChangedEvent.
+ */
+@Component
+public class StatusTransitions {
+
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transitionTransaction;
+
+    public StatusTransitions(UserRepository userRepository,
+                             ApplicationEventPublisher eventPublisher,
+                             PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.transitionTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Move the users currently in one of the from statuses to the target, in one transaction
+     * @return the changes made, already published
+     */
+    public List<UserStatusChangedEvent> move(Collection<String> usernames, Collection<UserStatus> from, UserStatus to,
+                                             LocalDateTime lastSeen) {
+        LocalDateTime now = LocalDateTime.now();
+        List<UserStatusChangedEvent> events = transitionTransaction.execute(status -> {
+            List<Object[]> rows = userRepository.findPresenceByUsernameInAndStatusIn(usernames, from);
+            if (rows.isEmpty()) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>(rows.size());
+            List<UserStatusChangedEvent> changes = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                ids.add((Long) row[0]);
+                changes.add(new UserStatusChangedEvent((Long) row[0], (String) row[1], (String) row[2],
+                        (UserStatus) row[3], to));
+            }
+            userRepository.updateStatuses(ids, from, to, now, lastSeen);
+            return changes;
+        });
+        events.forEach(eventPublisher::publishEvent);
+        return events;
+    }
+}
@@ -0,0 +1,125 @@
+package com.crm.chat.presence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel of per-key deadlines
+ * A key sits in the slot of its deadline tick; advancing the wheel visits only the slots of the ticks that
+ * elapsed, so (re)scheduling is O(1) and expiry costs O(expired + keys sharing those slots) rather than a
+ * scan of every key. Deadlines further out than one revolution stay in their slot until their lap comes.
+ * A key has at most one deadline: scheduling it again moves it. Expiry fires up to one tick late.
+ * Not thread-safe; callers synchronize.
+ */
+public class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final List<Set<Entry<K>>> slots;
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    // Last tick advance() has processed; new entries always land after it
+    private long currentTick;
+
+    public TimingWheel(Duration tick, int size, long startMillis) {
+        this.tickMillis = tick.toMillis();
+        this.slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new HashSet<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Set (or move) the deadline of a key
+     */
+    public void schedule(K key, long deadlineMillis) {
+        // Round up, so the slot is only visited once the deadline has passed
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        Entry<K> entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry<>(key);
+            entries.put(key, entry);
+        } else {
+            slot(entry.tick).remove(entry);
+        }
+        entry.deadline = deadlineMillis;
+        entry.tick = tick;
+        slot(tick).add(entry);
+    }
+
+    /**
+     * Set a deadline only for a key that has none
+     * @return whether the key was added
+     */
+    public boolean scheduleIfAbsent(K key, long deadlineMillis) {
+        if (entries.containsKey(key)) {
+            return false;
+        }
+        schedule(key, deadlineMillis);
+        return true;
+    }
+
+    public boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        slot(entry.tick).remove(entry);
+        return true;
+    }
+
+    /**
+     * Deadline of a key, or -1 when it has none
+     */
+    public long deadline(K key) {
+        Entry<K> entry = entries.get(key);
+        return entry != null ? entry.deadline : -1;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Move the wheel up to the given time and remove the keys whose deadline has passed
+     * @return the expired keys
+     */
+    public List<K> advance(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        List<K> expired = new ArrayList<>();
+        // After a long pause every slot is due once; no need to go round more than one revolution
+        long ticks = Math.min(nowTick - currentTick, slots.size());
+        for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+            Iterator<Entry<K>> due = slot(tick).iterator();
+            while (due.hasNext()) {
+                Entry<K> entry = due.next();
+                if (entry.tick <= nowTick) {
+                    due.remove();
+                    entries.remove(entry.key);
+                    expired.add(entry.key);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+        return expired;
+    }
+
+    private Set<Entry<K>> slot(long tick) {
+        return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+    }
+
+    private static final class Entry<K> {
+        final K key;
+        long deadline;
+        long tick;
+
+        Entry(K key) {
+            this.key = key;
+        }
+    }
+}
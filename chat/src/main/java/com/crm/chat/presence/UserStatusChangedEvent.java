@@ -0,0 +1,12 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+
+/**
+ * Published by UserService when a user's status actually changes
+ * previous is null for a newly registered user.
+ * Listeners that fan the change out should use @TransactionalEventListener so they only see committed changes.
+ */
+public record UserStatusChangedEvent(Long userId, String username, String fullName,
+                                     UserStatus previous, UserStatus status) {
+}
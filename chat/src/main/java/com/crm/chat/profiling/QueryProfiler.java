@@ -0,0 +1,273 @@
+package com.crm.chat.profiling;
+
+import com.crm.chat.metrics.DestinationNames;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the SQL statements of each unit of work (HTTP request or inbound STOMP message) and reports:
+ * - chat.db.statements: statements per unit, tagged with the endpoint
+ * - chat.db.nplusone: units that ran one statement shape at least n-plus-one-threshold times (lazy-load storms)
+ * - chat.db.slow: statements slower than slow-query, logged with their endpoint
+ * Query budgets (per endpoint, or a default) turn the same counts into an assertion API for integration tests.
+ */
+@Component
+@Slf4j
+public class QueryProfiler {
+
+    private static final ThreadLocal<Unit> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern LITERALS = Pattern.compile("'(?:[^']|'')*'|\\b\\d+\\b");
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryNanos;
+    private final int nPlusOneThreshold;
+    private final int defaultBudget;
+
+    private final Map<String, Integer> budgets = new ConcurrentHashMap<>();
+    private final List<String> violations = new CopyOnWriteArrayList<>();
+    // Last time a finding (endpoint + shape) was logged, so a hot endpoint logs it once a minute
+    private final Map<String, Long> reported = new ConcurrentHashMap<>();
+
+    public QueryProfiler(MeterRegistry meterRegistry,
+                         @Value("${chat.profiling.slow-query:200ms}") Duration slowQuery,
+                         @Value("${chat.profiling.n-plus-one-threshold:5}") int nPlusOneThreshold,
+                         @Value("${chat.profiling.default-budget:0}") int defaultBudget) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = slowQuery.toNanos();
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.defaultBudget = defaultBudget;
+    }
+
+    // ==================== UNITS OF WORK ====================
+
+    /**
+     * Start counting statements on this thread; nested units are counted in the outermost one
+     *
+     * @return false when a unit was already running (the caller must not end it)
+     */
+    public boolean begin(String endpoint) {
+        if (CURRENT.get() != null) {
+            return false;
+        }
+        CURRENT.set(new Unit(endpoint));
+        return true;
+    }
+
+    /**
+     * Finish the current unit: record its meters, report N+1 shapes and check its budget
+     *
+     * @param endpoint endpoint to attribute the unit to, or null to keep the one given to begin
+     */
+    public UnitSummary end(String endpoint) {
+        Unit unit = CURRENT.get();
+        CURRENT.remove();
+        if (unit == null) {
+            return null;
+        }
+        if (endpoint != null) {
+            unit.endpoint = endpoint;
+        }
+
+        DistributionSummary.builder("chat.db.statements")
+                .description("SQL statements run by one HTTP request or STOMP message")
+                .tag("endpoint", unit.endpoint)
+                .register(meterRegistry)
+                .record(unit.statements);
+        if (unit.slow > 0) {
+            Counter.builder("chat.db.slow")
+                    .description("SQL statements slower than chat.profiling.slow-query")
+                    .tag("endpoint", unit.endpoint)
+                    .register(meterRegistry)
+                    .increment(unit.slow);
+        }
+
+        Map<String, Integer> repeated = new HashMap<>();
+        unit.shapes.forEach((shape, count) -> {
+            if (count >= nPlusOneThreshold) {
+                repeated.put(shape, count);
+            }
+        });
+        if (!repeated.isEmpty()) {
+            Counter.builder("chat.db.nplusone")
+                    .description("Requests/messages repeating one statement shape (likely N+1 lazy loading)")
+                    .tag("endpoint", unit.endpoint)
+                    .register(meterRegistry)
+                    .increment();
+            repeated.forEach((shape, count) -> {
+                if (shouldReport(unit.endpoint + shape)) {
+                    log.warn("Possible N+1 on {}: {} x {}", unit.endpoint, count, shape);
+                }
+            });
+        }
+
+        int budget = budgets.getOrDefault(unit.endpoint, defaultBudget);
+        if (budget > 0 && unit.statements > budget) {
+            String violation = unit.endpoint + " ran " + unit.statements + " statements (budget " + budget + ")";
+            violations.add(violation);
+            log.warn("Query budget exceeded: {}", violation);
+        }
+        return new UnitSummary(unit.endpoint, unit.statements, TimeUnit.NANOSECONDS.toMillis(unit.nanos),
+                repeated);
+    }
+
+    /**
+     * Called by the profiling data source after every statement round-trip (one per executeBatch)
+     */
+    void record(String sql, long nanos) {
+        Unit unit = CURRENT.get();
+        String shape = shape(sql);
+        if (unit != null) {
+            unit.statements++;
+            unit.nanos += nanos;
+            unit.shapes.merge(shape, 1, Integer::sum);
+        }
+        if (nanos >= slowQueryNanos) {
+            String endpoint = unit != null ? unit.endpoint : "background";
+            if (unit != null) {
+                unit.slow++;
+            }
+            if (shouldReport(endpoint + shape)) {
+                log.warn("Slow query on {} ({} ms): {}", endpoint, TimeUnit.NANOSECONDS.toMillis(nanos), shape);
+            }
+        }
+    }
+
+    /**
+     * Statement text with literals and IN-list lengths removed, so repeated queries compare equal
+     */
+    static String shape(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        shape = LITERALS.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("(?)");
+    }
+
+    private boolean shouldReport(String key) {
+        long now = System.nanoTime();
+        Long last = reported.get(key);
+        if (last != null && now - last < REPORT_INTERVAL_NANOS) {
+            return false;
+        }
+        if (reported.size() > 10_000) {
+            reported.clear();
+        }
+        reported.put(key, now);
+        return true;
+    }
+
+    // ==================== BUDGETS (TEST MODE) ====================
+
+    /**
+     * Allow at most maxStatements per unit on an endpoint ("GET /api/conversations/{id}", "/app/chat.send")
+     */
+    public void setBudget(String endpoint, int maxStatements) {
+        budgets.put(endpoint, maxStatements);
+    }
+
+    public List<String> getViolations() {
+        return List.copyOf(violations);
+    }
+
+    public void clearViolations() {
+        violations.clear();
+    }
+
+    /**
+     * Fail when any unit since the last clear exceeded its budget; for integration tests
+     */
+    public void assertWithinBudgets() {
+        List<String> current = getViolations();
+        if (!current.isEmpty()) {
+            throw new AssertionError("Query budget exceeded:\n  " + String.join("\n  ", current));
+        }
+    }
+
+    /**
+     * Run work on this thread as its own unit and fail if it runs more than maxStatements statements
+     */
+    public <T> T withinBudget(int maxStatements, Supplier<T> work) {
+        if (!begin("test")) {
+            throw new IllegalStateException("withinBudget cannot run inside another profiled unit");
+        }
+        T result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            end(null);
+            throw e;
+        }
+        UnitSummary summary = end(null);
+        if (summary.statements() > maxStatements) {
+            throw new AssertionError("Expected at most " + maxStatements + " statements but ran "
+                    + summary.statements() + (summary.repeated().isEmpty() ? "" : "; repeated: " + summary.repeated()));
+        }
+        return result;
+    }
+
+    // ==================== STOMP ====================
+
+    /**
+     * Profiles @MessageMapping handling; registered on the inbound channel in WebSocketConfig
+     */
+    public ExecutorChannelInterceptor stompInterceptor() {
+        return new ExecutorChannelInterceptor() {
+            @Override
+            public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+                String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                if (handler instanceof SimpAnnotationMethodMessageHandler && destination != null) {
+                    begin(DestinationNames.normalize(destination));
+                }
+                return message;
+            }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                            Exception ex) {
+                if (handler instanceof SimpAnnotationMethodMessageHandler) {
+                    end(null);
+                }
+            }
+        };
+    }
+
+    // ==================== MODEL ====================
+
+    public record UnitSummary(String endpoint, int statements, long millis, Map<String, Integer> repeated) {
+    }
+
+    private static final class Unit {
+
+        private String endpoint;
+        private int statements;
+        private int slow;
+        private long nanos;
+        private final Map<String, Integer> shapes = new HashMap<>();
+
+        private Unit(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.crm.chat.profiling;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Profiles the statements of each HTTP request (including lazy loads during view rendering)
+ * The unit is attributed to the matched mapping pattern, e.g. "GET /api/conversations/{id}".
+ */
+@Component
+@RequiredArgsConstructor
+public class QueryProfilingFilter extends OncePerRequestFilter {
+
+    private final QueryProfiler queryProfiler;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!queryProfiler.begin(request.getMethod() + " " + request.getRequestURI())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            // Unmapped requests (static resources, security redirects) share one endpoint tag
+            queryProfiler.end(request.getMethod() + " " + (pattern != null ? pattern : "unmapped"));
+        }
+    }
+}
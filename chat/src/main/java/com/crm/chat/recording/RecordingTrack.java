@@ -0,0 +1,189 @@
+package com.crm.chat.recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recording of one participant's media in one call
+ * Chunks (MediaRecorder output) must arrive in sequence; each is streamed straight from the request
+ * into the current segment file through a FileChannel, and a new segment is started once the current
+ * one reaches the size limit. Writes are serialized per track; different tracks never contend.
+ */
+public final class RecordingTrack {
+
+    /**
+     * Outcome of appending a chunk
+     */
+    public enum AppendResult {
+        WRITTEN,      // Chunk appended
+        DUPLICATE,    // Chunk already written (client retry), body ignored
+        OUT_OF_ORDER, // A previous chunk is missing; client must resend from the expected sequence
+        TOO_LARGE,    // Chunk exceeded the size limit; nothing was kept
+        CLOSED        // Track already finalized
+    }
+
+    private final Long userId;
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxChunkSize;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private FileChannel channel;
+    private long nextSequence;
+    private long bytes;
+    private boolean closed;
+
+    public RecordingTrack(Long userId, Path directory, long segmentSize, long maxChunkSize) {
+        this.userId = userId;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Stream one chunk from the request body to disk, using the caller's transfer buffer
+     */
+    public synchronized AppendResult append(long sequence, InputStream body, ByteBuffer buffer) throws IOException {
+        if (closed) {
+            return AppendResult.CLOSED;
+        }
+        if (sequence < nextSequence) {
+            return AppendResult.DUPLICATE;
+        }
+        if (sequence > nextSequence) {
+            return AppendResult.OUT_OF_ORDER;
+        }
+
+        if (channel == null || channel.position() >= segmentSize) {
+            rotate();
+        }
+
+        long start = channel.position();
+        long written = 0;
+        boolean complete = false;
+        try {
+            ReadableByteChannel source = Channels.newChannel(body);
+            buffer.clear();
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                written += buffer.remaining();
+                if (written > maxChunkSize) {
+                    return AppendResult.TOO_LARGE;
+                }
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                // Drop the partial chunk (too large, or the upload/write failed) so the segment stays a clean
+                // concatenation of whole chunks and a retry of this sequence starts at the same offset
+                channel.truncate(start);
+                channel.position(start);
+            }
+        }
+
+        Segment segment = segments.getLast();
+        segment.bytes += written;
+        segment.lastSequence = sequence;
+        bytes += written;
+        nextSequence++;
+        return AppendResult.WRITTEN;
+    }
+
+    /**
+     * Flush and close the current segment; later chunks are refused
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Segments written so far, oldest first
+     */
+    public synchronized List<Segment> getSegments() {
+        return segments.stream().map(Segment::copy).toList();
+    }
+
+    private void rotate() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        Files.createDirectories(directory);
+        Segment segment = new Segment(String.format("segment-%05d.webm", segments.size() + 1), nextSequence);
+        channel = FileChannel.open(directory.resolve(segment.file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segments.add(segment);
+    }
+
+    /**
+     * One segment file and the chunk range it holds
+     */
+    public static final class Segment {
+
+        private final String file;
+        private final long firstSequence;
+        private long lastSequence = -1;
+        private long bytes;
+
+        private Segment(String file, long firstSequence) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+        }
+
+        private Segment copy() {
+            Segment copy = new Segment(file, firstSequence);
+            copy.lastSequence = lastSequence;
+            copy.bytes = bytes;
+            return copy;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -3,10 +3,12 @@ package com.crm.chat.repository;
 import com.crm.chat.entity.Call;
 import com.crm.chat.entity.CallParticipant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +31,12 @@ public interface CallParticipantRepository extends JpaRepository<CallParticipant
     @Query("SELECT cp FROM CallParticipant cp WHERE cp.call.id = :callId")
     List<CallParticipant> findByCallId(@Param("callId") Long callId);
 
+    /**
+     * Participants of several calls, with their users
+     */
+    @Query("SELECT cp FROM CallParticipant cp JOIN FETCH cp.user WHERE cp.call.id IN :callIds")
+    List<CallParticipant> findByCallIdIn(@Param("callIds") Collection<Long> callIds);
+
     /**
      * Find active participants (currently joined) in a call
      */
@@ -41,9 +49,29 @@ public interface CallParticipantRepository extends JpaRepository<CallParticipant
     @Query("SELECT COUNT(cp) FROM CallParticipant cp WHERE cp.call.id = :callId AND cp.status = 'JOINED'")
     Long countActiveParticipants(@Param("callId") Long callId);
 
+    /**
+     * Find ids of users currently joined in a call
+     */
+    @Query("SELECT cp.user.id FROM CallParticipant cp WHERE cp.call.id = :callId AND cp.status = 'JOINED'")
+    List<Long> findJoinedUserIdsByCallId(@Param("callId") Long callId);
+
+    /**
+     * Find (callId, userId) pairs of joined participants across all active calls
+     */
+    @Query("SELECT cp.call.id, cp.user.id FROM CallParticipant cp " +
+           "WHERE cp.status = 'JOINED' AND cp.call.status IN ('ONGOING', 'RINGING')")
+    List<Object[]> findJoinedUserIdsOfActiveCalls();
+
     /**
      * Find all calls a user has participated in
      */
     @Query("SELECT cp FROM CallParticipant cp WHERE cp.user.id = :userId ORDER BY cp.joinedAt DESC")
     List<CallParticipant> findByUserId(@Param("userId") Long userId);
+
+    /**
+     * Delete the participants of the given calls
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM CallParticipant cp WHERE cp.call.id IN :callIds")
+    int deleteByCallIdIn(@Param("callIds") Collection<Long> callIds);
 }
\ No newline at end of file
@@ -1,12 +1,15 @@
 package com.crm.chat.repository;
 
 import com.crm.chat.entity.Call;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +25,11 @@ public interface CallRepository extends JpaRepository<Call, Long> {
            "ORDER BY c.createdAt DESC")
     List<Call> findActiveCalls();
 
+    /**
+     * Find call by room ID
+     */
+    Optional<Call> findByRoomId(String roomId);
+
     /**
      * Find active call by room ID
      */
@@ -166,8 +174,8 @@ public interface CallRepository extends JpaRepository<Call, Long> {
     @Query("SELECT COUNT(DISTINCT c) FROM Call c " +
            "LEFT JOIN c.participants p " +
            "WHERE p.user.id = :userId " +
-           "AND p.status = 'INVITED' " +
-           "AND c.status = 'MISSED'")
+           "AND (p.status = 'MISSED' " +
+           "OR (p.status IN ('INVITED', 'RINGING') AND c.status = 'MISSED'))")
     Long countMissedCallsForUser(@Param("userId") Long userId);
 
     // ==================== FIND BY TYPE ====================
@@ -302,6 +310,23 @@ public interface CallRepository extends JpaRepository<Call, Long> {
            "AND (p.status = 'JOINED' OR c.caller.id = :userId)")
     boolean isUserInActiveCall(@Param("userId") Long userId);
 
+    /**
+     * Count the calls in progress (ringing or ongoing) a user is the caller or a participant of
+     */
+    @Query("SELECT COUNT(DISTINCT c) FROM Call c " +
+           "LEFT JOIN c.participants p " +
+           "WHERE (c.caller.id = :userId OR p.user.id = :userId) " +
+           "AND c.status IN ('INITIATED', 'RINGING', 'ONGOING')")
+    long countCallsInProgressForUser(@Param("userId") Long userId);
+
+    /**
+     * Calls in one of the statuses, with their callers, in id order after afterId
+     */
+    @Query("SELECT c FROM Call c JOIN FETCH c.caller WHERE c.status IN :statuses AND c.id > :afterId ORDER BY c.id")
+    List<Call> findByStatusInAfter(@Param("statuses") Collection<Call.CallStatus> statuses,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
+
     // ==================== DELETE OPERATIONS ====================
 
     /**
@@ -310,6 +335,37 @@ public interface CallRepository extends JpaRepository<Call, Long> {
     @Query("DELETE FROM Call c WHERE c.createdAt < :cutoffDate AND c.status NOT IN ('ONGOING', 'RINGING')")
     void deleteCallsOlderThan(@Param("cutoffDate") LocalDateTime cutoffDate);
 
+    /**
+     * Id and recording manifest of finished calls in a chat room created before the cutoff, in id order
+     * after afterId (the manifest so the recording can be removed with the call)
+     */
+    @Query("SELECT c.id, c.recordingManifest FROM Call c WHERE c.chatRoom.id = :chatRoomId " +
+           "AND c.status IN :statuses AND c.createdAt < :cutoff AND c.id > :afterId ORDER BY c.id")
+    List<Object[]> findExpiredChatRoomCalls(@Param("chatRoomId") Long chatRoomId,
+                                            @Param("statuses") Collection<Call.CallStatus> statuses,
+                                            @Param("cutoff") LocalDateTime cutoff,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    /**
+     * Id and recording manifest of finished calls created before the cutoff, outside the excluded chat rooms
+     */
+    @Query("SELECT c.id, c.recordingManifest FROM Call c WHERE c.status IN :statuses AND c.createdAt < :cutoff " +
+           "AND (c.chatRoom IS NULL OR c.chatRoom.id NOT IN :excludedChatRoomIds) " +
+           "AND c.id > :afterId ORDER BY c.id")
+    List<Object[]> findExpiredCalls(@Param("statuses") Collection<Call.CallStatus> statuses,
+                                    @Param("cutoff") LocalDateTime cutoff,
+                                    @Param("excludedChatRoomIds") Collection<Long> excludedChatRoomIds,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    /**
+     * Delete calls by id (participants must be deleted first)
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Call c WHERE c.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Delete calls by conversation
      */
@@ -1,11 +1,14 @@
 package com.crm.chat.repository;
 
 import com.crm.chat.entity.ChatRoomMember;
+import com.crm.chat.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +33,49 @@ public interface ChatRoomMemberRepository extends JpaRepository<ChatRoomMember,
     List<ChatRoomMember> findByChatRoomIdAndRole(@Param("chatRoomId") Long chatRoomId,
                                                  @Param("role") ChatRoomMember.MemberRole role);
 
+    @Query("SELECT crm.user FROM ChatRoomMember crm WHERE crm.chatRoom.id = :chatRoomId " +
+            "AND crm.active = true")
+    List<User> findActiveMemberUsersByChatRoomId(@Param("chatRoomId") Long chatRoomId);
+
+    @Query("SELECT crm.user.id FROM ChatRoomMember crm WHERE crm.chatRoom.id = :chatRoomId " +
+            "AND crm.active = true")
+    List<Long> findActiveMemberUserIds(@Param("chatRoomId") Long chatRoomId);
+
+    @Query("SELECT DISTINCT other.user.id FROM ChatRoomMember mine, ChatRoomMember other " +
+            "WHERE mine.user.id = :userId AND mine.active = true " +
+            "AND other.chatRoom = mine.chatRoom AND other.active = true AND other.user.id <> :userId")
+    List<Long> findCoMemberUserIds(@Param("userId") Long userId);
+
+    // Delivery watermarks (highest message id acknowledged by a device of the member)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ChatRoomMember crm SET crm.lastDeliveredMessageId = :upTo " +
+            "WHERE crm.chatRoom.id = :chatRoomId AND crm.user.id = :userId AND crm.active = true " +
+            "AND (crm.lastDeliveredMessageId IS NULL OR crm.lastDeliveredMessageId < :upTo)")
+    int advanceLastDelivered(@Param("chatRoomId") Long chatRoomId,
+                             @Param("userId") Long userId,
+                             @Param("upTo") Long upTo);
+
+    /**
+     * Highest message id every active member has received (0 while any member has received nothing)
+     */
+    @Query("SELECT MIN(COALESCE(crm.lastDeliveredMessageId, 0)) FROM ChatRoomMember crm " +
+            "WHERE crm.chatRoom.id = :chatRoomId AND crm.active = true")
+    Long findDeliveredWatermark(@Param("chatRoomId") Long chatRoomId);
+
+    // Read watermarks (highest message id the member has read)
+    @Query("SELECT crm.user.id, crm.lastReadMessageId FROM ChatRoomMember crm " +
+            "WHERE crm.chatRoom.id = :chatRoomId AND crm.active = true")
+    List<Object[]> findReadWatermarks(@Param("chatRoomId") Long chatRoomId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ChatRoomMember crm SET crm.lastReadMessageId = :upTo, crm.lastReadAt = :now " +
+            "WHERE crm.chatRoom.id = :chatRoomId AND crm.user.id = :userId " +
+            "AND (crm.lastReadMessageId IS NULL OR crm.lastReadMessageId < :upTo)")
+    int advanceLastRead(@Param("chatRoomId") Long chatRoomId,
+                        @Param("userId") Long userId,
+                        @Param("upTo") Long upTo,
+                        @Param("now") LocalDateTime now);
+
     void deleteByChatRoomIdAndUserId(Long chatRoomId, Long userId);
 
     @Query("SELECT COUNT(crm) FROM ChatRoomMember crm WHERE crm.chatRoom.id = :chatRoomId " +
@@ -42,6 +42,10 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
             "WHERE p = :user ORDER BY c.updatedAt DESC")
     List<Conversation> findRecentConversationsByUser(@Param("user") User user);
 
+    @Query("SELECT DISTINCT p2.id FROM Conversation c JOIN c.participants p1 JOIN c.participants p2 " +
+            "WHERE p1.id = :userId AND p2.id <> :userId")
+    List<Long> findPeerIds(@Param("userId") Long userId);
+
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId " +
             "AND m.isRead = false AND m.sender.id != :userId")
     Long countUnreadMessages(@Param("conversationId") Long conversationId,
@@ -2,8 +2,12 @@ package com.crm.chat.repository;
 
 import com.crm.chat.entity.ConversationSettings;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,10 +38,38 @@ public interface ConversationSettingsRepository extends JpaRepository<Conversati
     List<ConversationSettings> findByUserIdAndIsHiddenTrue(Long userId);
     
     /**
-     * Find all settings for a user (for debugging)
+     * Find all settings for a user (loads the settings cache)
      */
     List<ConversationSettings> findByUserId(Long userId);
     
+    // Single-flag updates; return 0 when the row does not exist
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ConversationSettings cs SET cs.isPinned = :value, cs.pinnedAt = :at, cs.updatedAt = :now " +
+            "WHERE cs.userId = :userId AND cs.otherUserId = :otherUserId")
+    int updatePinned(@Param("userId") Long userId,
+                     @Param("otherUserId") Long otherUserId,
+                     @Param("value") Boolean value,
+                     @Param("at") LocalDateTime at,
+                     @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ConversationSettings cs SET cs.isMuted = :value, cs.mutedAt = :at, cs.updatedAt = :now " +
+            "WHERE cs.userId = :userId AND cs.otherUserId = :otherUserId")
+    int updateMuted(@Param("userId") Long userId,
+                    @Param("otherUserId") Long otherUserId,
+                    @Param("value") Boolean value,
+                    @Param("at") LocalDateTime at,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ConversationSettings cs SET cs.isHidden = :value, cs.hiddenAt = :at, cs.updatedAt = :now " +
+            "WHERE cs.userId = :userId AND cs.otherUserId = :otherUserId")
+    int updateHidden(@Param("userId") Long userId,
+                     @Param("otherUserId") Long otherUserId,
+                     @Param("value") Boolean value,
+                     @Param("at") LocalDateTime at,
+                     @Param("now") LocalDateTime now);
+
     /**
      * Delete all settings for a user
      */
@@ -0,0 +1,44 @@
+package com.crm.chat.repository;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.DailyCallStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository for daily call statistics buckets
+ */
+@Repository
+public interface DailyCallStatsRepository extends JpaRepository<DailyCallStats, Long> {
+
+    /**
+     * Find all buckets of a user within a date range (inclusive)
+     */
+    List<DailyCallStats> findByUserIdAndStatDateBetween(Long userId, LocalDate from, LocalDate to);
+
+    /**
+     * Atomically add one finished call to a daily bucket
+     * Returns the number of rows updated (0 when the bucket does not exist yet)
+     */
+    @Modifying
+    @Query("UPDATE DailyCallStats d SET " +
+           "d.totalCalls = d.totalCalls + 1, " +
+           "d.missedCalls = d.missedCalls + :missed, " +
+           "d.rejectedCalls = d.rejectedCalls + :rejected, " +
+           "d.completedCalls = d.completedCalls + :completed, " +
+           "d.totalDuration = d.totalDuration + :duration " +
+           "WHERE d.userId = :userId AND d.statDate = :statDate AND d.callType = :callType")
+    int increment(@Param("userId") Long userId,
+                  @Param("statDate") LocalDate statDate,
+                  @Param("callType") Call.CallType callType,
+                  @Param("missed") long missed,
+                  @Param("rejected") long rejected,
+                  @Param("completed") long completed,
+                  @Param("duration") long duration);
+}
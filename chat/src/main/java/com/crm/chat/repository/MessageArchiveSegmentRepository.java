@@ -0,0 +1,40 @@
+package com.crm.chat.repository;
+
+import com.crm.chat.entity.MessageArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MessageArchiveSegmentRepository extends JpaRepository<MessageArchiveSegment, Long> {
+
+    /**
+     * Segments of a conversation or chat room holding messages older than the given time, newest first
+     */
+    @Query("SELECT s FROM MessageArchiveSegment s WHERE s.scopeType = :scopeType AND s.scopeId = :scopeId " +
+            "AND s.firstCreatedAt < :before ORDER BY s.firstCreatedAt DESC")
+    List<MessageArchiveSegment> findSegmentsBefore(@Param("scopeType") MessageArchiveSegment.ScopeType scopeType,
+                                                   @Param("scopeId") Long scopeId,
+                                                   @Param("before") LocalDateTime before);
+
+    /**
+     * All segments of a conversation or chat room, oldest first
+     */
+    List<MessageArchiveSegment> findByScopeTypeAndScopeIdOrderByFirstCreatedAtAsc(
+            MessageArchiveSegment.ScopeType scopeType, Long scopeId);
+
+    List<MessageArchiveSegment> findByArchiveMonth(String archiveMonth);
+
+    // Retention
+    List<MessageArchiveSegment> findByScopeTypeAndScopeIdAndLastCreatedAtBefore(MessageArchiveSegment.ScopeType scopeType,
+                                                                               Long scopeId,
+                                                                               LocalDateTime cutoff);
+
+    List<MessageArchiveSegment> findByLastCreatedAtBefore(LocalDateTime cutoff);
+
+    long countByFileName(String fileName);
+}
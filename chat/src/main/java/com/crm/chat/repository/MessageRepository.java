@@ -4,10 +4,13 @@ import com.crm.chat.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -59,6 +62,125 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
            "AND m.deleted = false ORDER BY m.createdAt DESC")
     List<Message> searchChatRoomMessages(@Param("chatRoomId") Long chatRoomId, @Param("query") String query);                               
 
+    // History paging (newest first, before a point in time)
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.conversation.id = :conversationId " +
+            "AND m.createdAt < :before ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findConversationHistory(@Param("conversationId") Long conversationId,
+                                          @Param("before") LocalDateTime before,
+                                          Pageable pageable);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.id = :chatRoomId " +
+            "AND m.createdAt < :before ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findChatRoomHistory(@Param("chatRoomId") Long chatRoomId,
+                                      @Param("before") LocalDateTime before,
+                                      Pageable pageable);
+
+    // Archiving (time range scans use idx_message_created)
+    @Query("SELECT MIN(m.createdAt) FROM Message m")
+    LocalDateTime findOldestCreatedAt();
+
+    @Query("SELECT DISTINCT m.conversation.id FROM Message m WHERE m.conversation IS NOT NULL " +
+            "AND m.createdAt >= :from AND m.createdAt < :to")
+    List<Long> findConversationIdsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT DISTINCT m.chatRoom.id FROM Message m WHERE m.chatRoom IS NOT NULL " +
+            "AND m.createdAt >= :from AND m.createdAt < :to")
+    List<Long> findChatRoomIdsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.conversation.id = :conversationId " +
+            "AND m.createdAt >= :from AND m.createdAt < :to AND m.id > :afterId ORDER BY m.id")
+    List<Message> findConversationMessagesBetween(@Param("conversationId") Long conversationId,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("afterId") Long afterId,
+                                                  Pageable pageable);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.chatRoom.id = :chatRoomId " +
+            "AND m.createdAt >= :from AND m.createdAt < :to AND m.id > :afterId ORDER BY m.id")
+    List<Message> findChatRoomMessagesBetween(@Param("chatRoomId") Long chatRoomId,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to,
+                                              @Param("afterId") Long afterId,
+                                              Pageable pageable);
+
+    // Delivery (cumulative client acks: everything up to a message id has reached a device of the recipient)
+    @Query("SELECT m.sender.username, MAX(m.id) FROM Message m WHERE m.conversation.id = :conversationId " +
+            "AND m.id <= :upTo AND m.deliveryStatus = :sent AND m.sender.id <> :recipientId " +
+            "AND :recipientId IN (SELECT p.id FROM Conversation c JOIN c.participants p WHERE c.id = :conversationId) " +
+            "GROUP BY m.sender.username")
+    List<Object[]> findUndeliveredConversationSenders(@Param("conversationId") Long conversationId,
+                                                      @Param("recipientId") Long recipientId,
+                                                      @Param("upTo") Long upTo,
+                                                      @Param("sent") Message.DeliveryStatus sent);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Message m SET m.deliveryStatus = :delivered, m.isDelivered = true, m.deliveredAt = :now " +
+            "WHERE m.conversation.id = :conversationId AND m.id <= :upTo AND m.deliveryStatus = :sent " +
+            "AND m.sender.id <> :recipientId " +
+            "AND :recipientId IN (SELECT p.id FROM Conversation c JOIN c.participants p WHERE c.id = :conversationId)")
+    int markConversationDelivered(@Param("conversationId") Long conversationId,
+                                  @Param("recipientId") Long recipientId,
+                                  @Param("upTo") Long upTo,
+                                  @Param("now") LocalDateTime now,
+                                  @Param("sent") Message.DeliveryStatus sent,
+                                  @Param("delivered") Message.DeliveryStatus delivered);
+
+    @Query("SELECT m.sender.username, MAX(m.id) FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
+            "AND m.id <= :upTo AND m.deliveryStatus = :sent GROUP BY m.sender.username")
+    List<Object[]> findUndeliveredChatRoomSenders(@Param("chatRoomId") Long chatRoomId,
+                                                  @Param("upTo") Long upTo,
+                                                  @Param("sent") Message.DeliveryStatus sent);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Message m SET m.deliveryStatus = :delivered, m.isDelivered = true, m.deliveredAt = :now " +
+            "WHERE m.chatRoom.id = :chatRoomId AND m.id <= :upTo AND m.deliveryStatus = :sent")
+    int markChatRoomDelivered(@Param("chatRoomId") Long chatRoomId,
+                              @Param("upTo") Long upTo,
+                              @Param("now") LocalDateTime now,
+                              @Param("sent") Message.DeliveryStatus sent,
+                              @Param("delivered") Message.DeliveryStatus delivered);
+
+    // Group read counts: (id, sender id, sender username) of a room's messages in (fromId, toId], newest first
+    @Query("SELECT m.id, m.sender.id, m.sender.username FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
+            "AND m.id > :fromId AND m.id <= :toId ORDER BY m.id DESC")
+    List<Object[]> findChatRoomMessageSenders(@Param("chatRoomId") Long chatRoomId,
+                                              @Param("fromId") Long fromId,
+                                              @Param("toId") Long toId,
+                                              Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Retention (id and content, so uploads can be removed with the message that points at them)
+    @Query("SELECT m.id, m.content FROM Message m WHERE m.chatRoom.id = :chatRoomId " +
+            "AND m.createdAt < :cutoff AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findExpiredChatRoomMessages(@Param("chatRoomId") Long chatRoomId,
+                                               @Param("cutoff") LocalDateTime cutoff,
+                                               @Param("afterId") Long afterId,
+                                               Pageable pageable);
+
+    @Query("SELECT m.id, m.content FROM Message m WHERE m.createdAt < :cutoff " +
+            "AND (m.chatRoom IS NULL OR m.chatRoom.id NOT IN :excludedChatRoomIds) " +
+            "AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findExpiredMessages(@Param("cutoff") LocalDateTime cutoff,
+                                       @Param("excludedChatRoomIds") Collection<Long> excludedChatRoomIds,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
+
+    // Counted from the soft delete; rows deleted before deletedAt existed fall back to createdAt
+    @Query("SELECT m.id, m.content FROM Message m WHERE m.deleted = true " +
+            "AND COALESCE(m.deletedAt, m.createdAt) < :cutoff AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findDeletedMessagesBefore(@Param("cutoff") LocalDateTime cutoff,
+                                             @Param("afterId") Long afterId,
+                                             Pageable pageable);
+
+    @Query("SELECT m.id, m.content FROM Message m WHERE m.createdAt >= :since " +
+            "AND m.content LIKE '/uploads/%' AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findUploadReferencesSince(@Param("since") LocalDateTime since,
+                                             @Param("afterId") Long afterId,
+                                             Pageable pageable);
+
     void deleteByConversationId(Long conversationId);
 
     void deleteByChatRoomId(Long chatRoomId);
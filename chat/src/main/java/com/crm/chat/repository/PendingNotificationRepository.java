@@ -0,0 +1,26 @@
+package com.crm.chat.repository;
+
+import com.crm.chat.entity.PendingNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PendingNotificationRepository extends JpaRepository<PendingNotification, Long> {
+
+    /**
+     * Every pending notification with its user's username (loads the catch-up queue)
+     */
+    @Query("SELECT pn, u.username FROM PendingNotification pn, User u WHERE u.id = pn.userId " +
+            "ORDER BY pn.userId, pn.lastMessageId")
+    List<Object[]> findAllWithUsername();
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM PendingNotification pn WHERE pn.userId IN :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,20 @@
+package com.crm.chat.repository;
+
+import com.crm.chat.entity.RetentionRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RetentionRuleRepository extends JpaRepository<RetentionRule, Long> {
+
+    Optional<RetentionRule> findByTargetAndChatRoomIdIsNull(RetentionRule.Target target);
+
+    Optional<RetentionRule> findByTargetAndChatRoomId(RetentionRule.Target target, Long chatRoomId);
+
+    List<RetentionRule> findByTargetAndChatRoomIdIsNotNull(RetentionRule.Target target);
+
+    List<RetentionRule> findByChatRoomId(Long chatRoomId);
+}
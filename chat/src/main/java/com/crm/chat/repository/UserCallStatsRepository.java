@@ -0,0 +1,44 @@
+package com.crm.chat.repository;
+
+import com.crm.chat.entity.UserCallStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository for the per-user call statistics rollup
+ */
+@Repository
+public interface UserCallStatsRepository extends JpaRepository<UserCallStats, Long> {
+
+    /**
+     * Atomically add one finished call to a user's counters
+     * Returns the number of rows updated (0 when the user has no rollup row yet)
+     */
+    @Modifying
+    @Query("UPDATE UserCallStats s SET " +
+           "s.totalCalls = s.totalCalls + 1, " +
+           "s.missedCalls = s.missedCalls + :missed, " +
+           "s.rejectedCalls = s.rejectedCalls + :rejected, " +
+           "s.completedCalls = s.completedCalls + :completed, " +
+           "s.totalDuration = s.totalDuration + :duration, " +
+           "s.audioCalls = s.audioCalls + :audio, " +
+           "s.videoCalls = s.videoCalls + :video, " +
+           "s.screenShareCalls = s.screenShareCalls + :screenShare, " +
+           "s.lastCallAt = :lastCallAt, " +
+           "s.updatedAt = :lastCallAt " +
+           "WHERE s.userId = :userId")
+    int increment(@Param("userId") Long userId,
+                  @Param("missed") long missed,
+                  @Param("rejected") long rejected,
+                  @Param("completed") long completed,
+                  @Param("duration") long duration,
+                  @Param("audio") long audio,
+                  @Param("video") long video,
+                  @Param("screenShare") long screenShare,
+                  @Param("lastCallAt") LocalDateTime lastCallAt);
+}
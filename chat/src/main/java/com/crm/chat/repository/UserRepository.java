@@ -2,10 +2,13 @@ package com.crm.chat.repository;
 
 import com.crm.chat.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,4 +37,51 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     @Query("SELECT u FROM User u WHERE u.department = :department AND u.active = true")
     List<User> findByDepartment(@Param("department") String department);
+
+    /**
+     * (id, username, fullName, status) of the given users, for presence snapshots
+     */
+    @Query("SELECT u.id, u.username, u.fullName, u.status FROM User u WHERE u.id IN :ids")
+    List<Object[]> findPresenceByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * (username, id) of the given users
+     */
+    @Query("SELECT u.username, u.id FROM User u WHERE u.username IN :usernames")
+    List<Object[]> findIdsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * (id, status) of every active user, to seed the presence statistics
+     */
+    @Query("SELECT u.id, u.status FROM User u WHERE u.active = true")
+    List<Object[]> findActiveUserStatuses();
+
+    /**
+     * (id, username, fullName, status) of the given users that are in one of the statuses
+     */
+    @Query("SELECT u.id, u.username, u.fullName, u.status FROM User u " +
+            "WHERE u.username IN :usernames AND u.status IN :statuses")
+    List<Object[]> findPresenceByUsernameInAndStatusIn(@Param("usernames") Collection<String> usernames,
+                                                       @Param("statuses") Collection<User.UserStatus> statuses);
+
+    /**
+     * Move the given users to a status, only those still in one of the from statuses
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.status = :status, u.statusUpdatedAt = :now, u.lastSeen = :lastSeen, u.updatedAt = :now " +
+            "WHERE u.id IN :ids AND u.status IN :from")
+    int updateStatuses(@Param("ids") Collection<Long> ids,
+                       @Param("from") Collection<User.UserStatus> from,
+                       @Param("status") User.UserStatus status,
+                       @Param("now") LocalDateTime now,
+                       @Param("lastSeen") LocalDateTime lastSeen);
+
+    /**
+     * Move every user not already in the given status to it, in one statement
+     * Bypasses @UpdateTimestamp, so updatedAt is set explicitly.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.status = :status, u.statusUpdatedAt = :now, u.lastSeen = :now, u.updatedAt = :now " +
+            "WHERE u.status <> :status")
+    int updateAllStatuses(@Param("status") User.UserStatus status, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,184 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.repository.CallRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of active calls (RINGING or ONGOING)
+ * Answers "is this user in a call" and "does this conversation/room have a call" without querying.
+ * Kept in sync by CallService lifecycle transitions (applied after commit) and rebuilt from the DB on startup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveCallIndex {
+
+    private final CallRepository callRepository;
+    private final CallParticipantRepository callParticipantRepository;
+
+    private final Map<Long, ActiveCall> calls = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> userCalls = new ConcurrentHashMap<>();
+    private final Map<Long, Long> conversationCalls = new ConcurrentHashMap<>();
+    private final Map<Long, Long> chatRoomCalls = new ConcurrentHashMap<>();
+
+    // ==================== LOOKUPS ====================
+
+    /**
+     * Check if a user is the caller or a joined participant of an ONGOING call
+     */
+    public boolean isUserInActiveCall(Long userId) {
+        return findOngoingCallIdForUser(userId).isPresent();
+    }
+
+    /**
+     * Id of the ONGOING call the user is in (if any)
+     */
+    public Optional<Long> findOngoingCallIdForUser(Long userId) {
+        Set<Long> callIds = userCalls.get(userId);
+        if (callIds == null) {
+            return Optional.empty();
+        }
+        for (Long callId : callIds) {
+            ActiveCall call = calls.get(callId);
+            if (call != null && call.status() == Call.CallStatus.ONGOING) {
+                return Optional.of(callId);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Id of the active call in a conversation (if any)
+     */
+    public Optional<Long> findCallIdForConversation(Long conversationId) {
+        return Optional.ofNullable(conversationCalls.get(conversationId));
+    }
+
+    /**
+     * Id of the active call in a chat room (if any)
+     */
+    public Optional<Long> findCallIdForChatRoom(Long chatRoomId) {
+        return Optional.ofNullable(chatRoomCalls.get(chatRoomId));
+    }
+
+    /**
+     * Number of calls currently RINGING or ONGOING
+     */
+    public int getActiveCallCount() {
+        return calls.size();
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Re-index a call after a lifecycle transition
+     * The snapshot is taken now (inside the caller's transaction) and published after commit
+     */
+    public void update(Call call) {
+        Long callId = call.getId();
+        ActiveCall snapshot = call.isActive()
+                ? snapshot(call, callParticipantRepository.findJoinedUserIdsByCallId(callId))
+                : null;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(callId, snapshot);
+                }
+            });
+        } else {
+            apply(callId, snapshot);
+        }
+    }
+
+    /**
+     * Rebuild the index from the database once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        Map<Long, Set<Long>> joinedByCall = new HashMap<>();
+        for (Object[] row : callParticipantRepository.findJoinedUserIdsOfActiveCalls()) {
+            joinedByCall.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Long) row[1]);
+        }
+
+        List<Call> activeCalls = callRepository.findActiveCalls();
+        for (Call call : activeCalls) {
+            apply(call.getId(), snapshot(call, joinedByCall.getOrDefault(call.getId(), Collections.emptySet())));
+        }
+        log.info("Active call index rebuilt with {} calls", activeCalls.size());
+    }
+
+    private ActiveCall snapshot(Call call, Iterable<Long> joinedUserIds) {
+        Set<Long> members = new HashSet<>();
+        members.add(call.getCaller().getId());
+        joinedUserIds.forEach(members::add);
+
+        return new ActiveCall(call.getStatus(),
+                call.getConversation() != null ? call.getConversation().getId() : null,
+                call.getChatRoom() != null ? call.getChatRoom().getId() : null,
+                Set.copyOf(members));
+    }
+
+    private synchronized void apply(Long callId, ActiveCall snapshot) {
+        ActiveCall previous = snapshot == null ? calls.remove(callId) : calls.put(callId, snapshot);
+
+        // Only drop mappings the new snapshot no longer has, so readers never see a transient gap
+        if (previous != null) {
+            for (Long userId : previous.members()) {
+                if (snapshot != null && snapshot.members().contains(userId)) {
+                    continue;
+                }
+                userCalls.computeIfPresent(userId, (id, callIds) -> {
+                    callIds.remove(callId);
+                    return callIds.isEmpty() ? null : callIds;
+                });
+            }
+            if (previous.conversationId() != null
+                    && (snapshot == null || !previous.conversationId().equals(snapshot.conversationId()))) {
+                conversationCalls.remove(previous.conversationId(), callId);
+            }
+            if (previous.chatRoomId() != null
+                    && (snapshot == null || !previous.chatRoomId().equals(snapshot.chatRoomId()))) {
+                chatRoomCalls.remove(previous.chatRoomId(), callId);
+            }
+        }
+
+        if (snapshot != null) {
+            for (Long userId : snapshot.members()) {
+                userCalls.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(callId);
+            }
+            if (snapshot.conversationId() != null) {
+                conversationCalls.put(snapshot.conversationId(), callId);
+            }
+            if (snapshot.chatRoomId() != null) {
+                chatRoomCalls.put(snapshot.chatRoomId(), callId);
+            }
+        }
+    }
+
+    /**
+     * Immutable view of an active call as seen by the index
+     */
+    private record ActiveCall(Call.CallStatus status, Long conversationId, Long chatRoomId, Set<Long> members) {
+    }
+}
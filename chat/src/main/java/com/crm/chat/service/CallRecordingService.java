@@ -0,0 +1,297 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.recording.RecordingTrack;
+import com.crm.chat.repository.CallRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Opt-in server-side call recording (webrtc.recording.enabled)
+ * Clients upload their MediaRecorder output chunk by chunk; chunks are streamed into per-participant
+ * segment files under {storage-path}/{roomId}/{userId}/. Uploads run on request threads, so their
+ * concurrency is capped and excess uploads are turned away immediately (the client backs off and
+ * retries) instead of holding threads that chat traffic needs. When the call ends the tracks are
+ * closed and a manifest.json describing every segment is written and linked from the Call.
+ */
+@Service
+@Slf4j
+public class CallRecordingService {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Outcome of a chunk upload
+     */
+    public enum UploadStatus {
+        WRITTEN,
+        DUPLICATE,
+        OUT_OF_ORDER,
+        TOO_LARGE,
+        NOT_IN_CALL,
+        BUSY,
+        DISABLED
+    }
+
+    public record UploadResult(UploadStatus status, long nextSequence) {
+    }
+
+    private final CallRepository callRepository;
+    private final ActiveCallIndex activeCallIndex;
+    private final boolean enabled;
+    private final Path storagePath;
+    private final long segmentSize;
+    private final long maxChunkSize;
+    private final long uploadWaitMillis;
+    private final Semaphore uploadPermits;
+    private final BlockingQueue<ByteBuffer> transferBuffers;
+
+    private final Map<Long, CallRecording> recordings = new ConcurrentHashMap<>();
+
+    public CallRecordingService(CallRepository callRepository,
+                                ActiveCallIndex activeCallIndex,
+                                @Value("${webrtc.recording.enabled:false}") boolean enabled,
+                                @Value("${webrtc.recording.storage-path:./recordings}") String storagePath,
+                                @Value("${webrtc.recording.segment-size:67108864}") long segmentSize,
+                                @Value("${webrtc.recording.max-chunk-size:8388608}") long maxChunkSize,
+                                @Value("${webrtc.recording.max-concurrent-uploads:4}") int maxConcurrentUploads,
+                                @Value("${webrtc.recording.upload-wait:200}") long uploadWaitMillis) {
+        this.callRepository = callRepository;
+        this.activeCallIndex = activeCallIndex;
+        this.enabled = enabled;
+        this.storagePath = Paths.get(storagePath).toAbsolutePath().normalize();
+        this.segmentSize = segmentSize;
+        this.maxChunkSize = maxChunkSize;
+        this.uploadWaitMillis = uploadWaitMillis;
+        this.uploadPermits = new Semaphore(maxConcurrentUploads);
+
+        // One transfer buffer per permit, allocated once and reused by every upload
+        this.transferBuffers = new ArrayBlockingQueue<>(maxConcurrentUploads);
+        for (int i = 0; i < maxConcurrentUploads; i++) {
+            transferBuffers.add(ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ==================== UPLOAD ====================
+
+    /**
+     * Append one chunk of a participant's recording
+     */
+    public UploadResult upload(Long callId, Long userId, long sequence, InputStream body) throws IOException {
+        if (!enabled) {
+            return new UploadResult(UploadStatus.DISABLED, 0);
+        }
+
+        // Only participants of the call, while it is active (in-memory check)
+        Optional<Long> ongoingCallId = activeCallIndex.findOngoingCallIdForUser(userId);
+        if (ongoingCallId.isEmpty() || !ongoingCallId.get().equals(callId)) {
+            return new UploadResult(UploadStatus.NOT_IN_CALL, 0);
+        }
+
+        boolean acquired;
+        try {
+            acquired = uploadPermits.tryAcquire(uploadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            return new UploadResult(UploadStatus.BUSY, 0);
+        }
+
+        ByteBuffer buffer = transferBuffers.poll();
+        try {
+            CallRecording recording = Optional.ofNullable(recordings.get(callId))
+                    .orElseGet(() -> openRecording(callId));
+            if (recording == null) {
+                return new UploadResult(UploadStatus.NOT_IN_CALL, 0);
+            }
+
+            RecordingTrack track = recording.tracks.computeIfAbsent(userId, id -> new RecordingTrack(
+                    id, recording.directory.resolve(id.toString()), segmentSize, maxChunkSize));
+            RecordingTrack.AppendResult result = track.append(sequence, body, buffer);
+
+            UploadStatus status = switch (result) {
+                case WRITTEN -> UploadStatus.WRITTEN;
+                case DUPLICATE -> UploadStatus.DUPLICATE;
+                case OUT_OF_ORDER -> UploadStatus.OUT_OF_ORDER;
+                case TOO_LARGE -> UploadStatus.TOO_LARGE;
+                case CLOSED -> UploadStatus.NOT_IN_CALL;
+            };
+            return new UploadResult(status, track.getNextSequence());
+        } finally {
+            transferBuffers.offer(buffer);
+            uploadPermits.release();
+        }
+    }
+
+    private CallRecording openRecording(Long callId) {
+        Call call = callRepository.findById(callId).orElse(null);
+        if (call == null || call.hasEnded()) {
+            return null;
+        }
+        return recordings.computeIfAbsent(callId,
+                id -> new CallRecording(call.getRoomId(), storagePath.resolve(call.getRoomId())));
+    }
+
+    // ==================== FINALIZE ====================
+
+    /**
+     * Link the manifest from the (managed) call and write it once the call's transaction commits
+     * Must run inside the transaction that ends the call
+     */
+    public void finalizeRecording(Call call) {
+        CallRecording recording = recordings.remove(call.getId());
+        if (recording == null) {
+            return;
+        }
+
+        call.setRecordingManifest(storagePath.relativize(recording.directory.resolve(MANIFEST_FILE)).toString());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        writeManifest(call.getId(), recording);
+                    } else {
+                        // The call did not end; keep recording it
+                        recordings.putIfAbsent(call.getId(), recording);
+                    }
+                }
+            });
+        } else {
+            writeManifest(call.getId(), recording);
+        }
+    }
+
+    /**
+     * Read the finalized manifest of a call, if it was recorded
+     */
+    public Optional<String> readManifest(Call call) {
+        if (call.getRecordingManifest() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readString(storagePath.resolve(call.getRecordingManifest()), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("Recording manifest of call {} is unreadable", call.getId(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Delete a finalized recording: the directory holding the manifest and every segment of the call
+     * @param manifest Call.recordingManifest, relative to the storage path
+     * @return true if the directory was removed
+     */
+    public boolean deleteRecording(String manifest) {
+        Path directory = storagePath.resolve(manifest).normalize().getParent();
+        if (directory == null || directory.equals(storagePath) || !directory.startsWith(storagePath)) {
+            log.warn("Ignoring recording manifest outside the storage path: {}", manifest);
+            return false;
+        }
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to delete recording {}", directory, e);
+            return false;
+        }
+    }
+
+    private void writeManifest(Long callId, CallRecording recording) {
+        StringBuilder json = new StringBuilder(512)
+                .append("{\"callId\":").append(callId)
+                .append(",\"roomId\":\"").append(recording.roomId).append('"')
+                .append(",\"startedAt\":\"").append(recording.startedAt).append('"')
+                .append(",\"finalizedAt\":\"").append(LocalDateTime.now()).append('"')
+                .append(",\"tracks\":[");
+
+        boolean firstTrack = true;
+        for (RecordingTrack track : recording.tracks.values()) {
+            try {
+                track.close(); // waits for an in-flight chunk of this track to finish
+            } catch (IOException e) {
+                log.warn("Failed to close recording track of user {} in call {}", track.getUserId(), callId, e);
+            }
+
+            json.append(firstTrack ? "" : ",")
+                    .append("{\"userId\":").append(track.getUserId())
+                    .append(",\"chunks\":").append(track.getNextSequence())
+                    .append(",\"bytes\":").append(track.getBytes())
+                    .append(",\"segments\":[");
+            boolean firstSegment = true;
+            for (RecordingTrack.Segment segment : track.getSegments()) {
+                json.append(firstSegment ? "" : ",")
+                        .append("{\"file\":\"").append(track.getUserId()).append('/').append(segment.getFile()).append('"')
+                        .append(",\"firstSequence\":").append(segment.getFirstSequence())
+                        .append(",\"lastSequence\":").append(segment.getLastSequence())
+                        .append(",\"bytes\":").append(segment.getBytes())
+                        .append('}');
+                firstSegment = false;
+            }
+            json.append("]}");
+            firstTrack = false;
+        }
+        json.append("]}");
+
+        try {
+            Files.createDirectories(recording.directory);
+            Path temp = recording.directory.resolve(MANIFEST_FILE + ".tmp");
+            Files.writeString(temp, json, StandardCharsets.UTF_8);
+            Files.move(temp, recording.directory.resolve(MANIFEST_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to write recording manifest for call {}", callId, e);
+        }
+    }
+
+    /**
+     * Tracks of one recorded call
+     */
+    private static final class CallRecording {
+
+        private final String roomId;
+        private final Path directory;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final Map<Long, RecordingTrack> tracks = new ConcurrentHashMap<>();
+
+        private CallRecording(String roomId, Path directory) {
+            this.roomId = roomId;
+            this.directory = directory;
+        }
+    }
+}
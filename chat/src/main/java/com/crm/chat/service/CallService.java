@@ -5,18 +5,24 @@ import com.crm.chat.entity.CallParticipant;
 import com.crm.chat.entity.ChatRoom;
 import com.crm.chat.entity.Conversation;
 import com.crm.chat.entity.User;
+import com.crm.chat.metrics.CallMetrics;
 import com.crm.chat.repository.CallParticipantRepository;
 import com.crm.chat.repository.CallRepository;
 import com.crm.chat.repository.ChatRoomRepository;
 import com.crm.chat.repository.ConversationRepository;
 import com.crm.chat.repository.UserRepository;
+import com.crm.chat.sfu.SfuRelay;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -25,6 +31,7 @@ import java.util.UUID;
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Slf4j
 public class CallService {
 
     private final CallRepository callRepository;
@@ -32,6 +39,12 @@ public class CallService {
     private final UserRepository userRepository;
     private final ConversationRepository conversationRepository;
     private final ChatRoomRepository chatRoomRepository;
+    private final CallStatisticsService callStatisticsService;
+    private final ActiveCallIndex activeCallIndex;
+    private final SfuRelay sfuRelay;
+    private final CallTelemetryService callTelemetryService;
+    private final CallRecordingService callRecordingService;
+    private final CallMetrics callMetrics;
 
     // ==================== DIRECT CALL METHODS ====================
 
@@ -62,7 +75,9 @@ public class CallService {
         call.setRoomId(generateRoomId());
         call.setCreatedAt(LocalDateTime.now());
 
-        return callRepository.save(call);
+        Call savedCall = callRepository.save(call);
+        activeCallIndex.update(savedCall);
+        return savedCall;
     }
 
     // ==================== GROUP CALL METHODS ====================
@@ -71,6 +86,14 @@ public class CallService {
      * Initiate a group call in a chat room
      */
     public Call initiateGroupCall(Long callerId, Long chatRoomId, Call.CallType callType) {
+        return initiateGroupCall(callerId, chatRoomId, callType, Call.CallTopology.MESH);
+    }
+
+    /**
+     * Initiate a group call in a chat room with an explicit media topology
+     */
+    public Call initiateGroupCall(Long callerId, Long chatRoomId, Call.CallType callType,
+                                  Call.CallTopology topology) {
         // Validate caller
         User caller = userRepository.findById(callerId)
                 .orElseThrow(() -> new RuntimeException("Caller not found"));
@@ -88,6 +111,7 @@ public class CallService {
         Call call = new Call();
         call.setCallType(callType);
         call.setCallMode(Call.CallMode.GROUP);
+        call.setTopology(topology != null ? topology : Call.CallTopology.MESH);
         call.setChatRoom(chatRoom);
         call.setCaller(caller);
         call.setStatus(Call.CallStatus.RINGING);
@@ -111,10 +135,12 @@ public class CallService {
         Call call = callRepository.findById(callId)
                 .orElseThrow(() -> new RuntimeException("Call not found"));
 
+        boolean wasEnded = call.hasEnded();
         call.setStatus(newStatus);
 
         if (newStatus == Call.CallStatus.ONGOING && call.getStartedAt() == null) {
             call.setStartedAt(LocalDateTime.now());
+            callMetrics.recordSetup(call);
         }
 
         if (newStatus == Call.CallStatus.ENDED && call.getEndedAt() == null) {
@@ -122,7 +148,13 @@ public class CallService {
             calculateCallDuration(call);
         }
 
-        return callRepository.save(call);
+        Call saved = callRepository.save(call);
+        if (!wasEnded && saved.hasEnded()) {
+            onCallFinished(saved);
+        } else {
+            activeCallIndex.update(saved);
+        }
+        return saved;
     }
 
     /**
@@ -135,13 +167,24 @@ public class CallService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        // A group call starts when the first invitee picks up
+        if (call.isGroupCall() && call.getStatus() == Call.CallStatus.RINGING
+                && !call.getCaller().getId().equals(userId)) {
+            call.setStatus(Call.CallStatus.ONGOING);
+            call.setStartedAt(LocalDateTime.now());
+            callMetrics.recordSetup(call);
+            callRepository.save(call);
+        }
+
         // Check if participant already exists
         Optional<CallParticipant> existing = callParticipantRepository.findByCallIdAndUserId(callId, userId);
         if (existing.isPresent()) {
             CallParticipant participant = existing.get();
             participant.setStatus(CallParticipant.ParticipantStatus.JOINED);
             participant.setJoinedAt(LocalDateTime.now());
-            return callParticipantRepository.save(participant);
+            CallParticipant saved = callParticipantRepository.save(participant);
+            activeCallIndex.update(call);
+            return saved;
         }
 
         // Create new participant
@@ -154,7 +197,9 @@ public class CallService {
         participant.setCameraEnabled(call.getCallType() == Call.CallType.VIDEO);
         participant.setScreenSharing(false);
 
-        return callParticipantRepository.save(participant);
+        CallParticipant saved = callParticipantRepository.save(participant);
+        activeCallIndex.update(call);
+        return saved;
     }
 
     /**
@@ -170,9 +215,16 @@ public class CallService {
 
         // Check if this was the last active participant
         Long activeCount = callParticipantRepository.countActiveParticipants(callId);
+        if (participant.getCall().usesSfu()) {
+            String roomId = participant.getCall().getRoomId();
+            afterCommit(() -> sfuRelay.removeParticipant(roomId, userId));
+        }
+
         if (activeCount == 0) {
             // Auto-end the call if no one is left
             endCall(callId, userId);
+        } else {
+            activeCallIndex.update(participant.getCall());
         }
     }
 
@@ -183,24 +235,75 @@ public class CallService {
         Call call = callRepository.findById(callId)
                 .orElseThrow(() -> new RuntimeException("Call not found"));
 
-        // Create participant record with REJECTED status
-        CallParticipant participant = new CallParticipant();
-        participant.setCall(call);
-        participant.setUser(userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found")));
-        participant.setStatus(CallParticipant.ParticipantStatus.REJECTED);
+        // Reuse the ringing record when there is one, otherwise create it with REJECTED status
+        CallParticipant participant = callParticipantRepository.findByCallIdAndUserId(callId, userId)
+                .orElseGet(() -> {
+                    CallParticipant created = new CallParticipant();
+                    created.setCall(call);
+                    created.setUser(userRepository.findById(userId)
+                            .orElseThrow(() -> new RuntimeException("User not found")));
+                    return created;
+                });
+        participant.reject();
         callParticipantRepository.save(participant);
 
         // For direct calls, mark as REJECTED if the recipient rejects
-        if (call.isDirectCall()) {
+        if (call.isDirectCall() && !call.hasEnded()) {
             call.setStatus(Call.CallStatus.REJECTED);
             call.setEndedAt(LocalDateTime.now());
             callRepository.save(call);
+            onCallFinished(call);
+        } else if (call.isGroupCall()) {
+            settleUnansweredGroupCall(call);
         }
 
         return call;
     }
 
+    // ==================== GROUP CALL RINGING ====================
+
+    /**
+     * Record who is being rung for a group call: reachable members as RINGING,
+     * members without a live session (or in DND) straight away as MISSED
+     * Returns the call, already MISSED when there was nobody to ring
+     */
+    public Call recordRingTargets(Long callId, List<User> ringing, List<User> unreachable) {
+        Call call = callRepository.findById(callId)
+                .orElseThrow(() -> new RuntimeException("Call not found"));
+
+        List<CallParticipant> participants = new ArrayList<>(ringing.size() + unreachable.size());
+        for (User user : ringing) {
+            participants.add(newInvitee(call, user, CallParticipant.ParticipantStatus.RINGING));
+        }
+        for (User user : unreachable) {
+            participants.add(newInvitee(call, user, CallParticipant.ParticipantStatus.MISSED));
+        }
+        callParticipantRepository.saveAll(participants);
+
+        settleUnansweredGroupCall(call);
+        return call;
+    }
+
+    /**
+     * Mark a ringing participant as MISSED (ring undelivered or unanswered)
+     * Returns the call, which is itself MISSED once nobody is left ringing and nobody picked up
+     */
+    public Call markParticipantMissed(Long callId, Long userId) {
+        Call call = callRepository.findById(callId)
+                .orElseThrow(() -> new RuntimeException("Call not found"));
+
+        callParticipantRepository.findByCallIdAndUserId(callId, userId)
+                .filter(participant -> participant.getStatus() == CallParticipant.ParticipantStatus.RINGING)
+                .ifPresent(participant -> {
+                    participant.setStatus(CallParticipant.ParticipantStatus.MISSED);
+                    participant.setLeftAt(LocalDateTime.now());
+                    callParticipantRepository.save(participant);
+                });
+
+        settleUnansweredGroupCall(call);
+        return call;
+    }
+
     /**
      * End a call
      */
@@ -208,6 +311,8 @@ public class CallService {
         Call call = callRepository.findById(callId)
                 .orElseThrow(() -> new RuntimeException("Call not found"));
 
+        boolean wasEnded = call.hasEnded();
+
         // Mark all active participants as LEFT
         List<CallParticipant> activeParticipants = callParticipantRepository
                 .findActiveParticipantsByCallId(callId);
@@ -223,7 +328,11 @@ public class CallService {
         call.setEndedAt(LocalDateTime.now());
         calculateCallDuration(call);
 
-        return callRepository.save(call);
+        Call saved = callRepository.save(call);
+        if (!wasEnded) {
+            onCallFinished(saved);
+        }
+        return saved;
     }
 
     /**
@@ -247,6 +356,7 @@ public class CallService {
         call.setStatus(Call.CallStatus.REJECTED);
         call.setEndedAt(LocalDateTime.now());
         callRepository.save(call);
+        onCallFinished(call);
 
         // Notify all invited participants
         notifyCallStatusChange(call);
@@ -283,7 +393,7 @@ public class CallService {
      * Get active call for a user (if any)
      */
     public Optional<Call> getActiveCallForUser(Long userId) {
-        return callRepository.findActiveCallByUserId(userId);
+        return activeCallIndex.findOngoingCallIdForUser(userId).flatMap(callRepository::findById);
     }
 
     // ==================== MEDIA CONTROL METHODS ====================
@@ -355,6 +465,23 @@ public class CallService {
         return callRepository.findById(callId);
     }
 
+    /**
+     * Find call by its WebRTC room id
+     */
+    public Optional<Call> findByRoomId(String roomId) {
+        return callRepository.findByRoomId(roomId);
+    }
+
+    /**
+     * Check if a user is the caller or a joined participant of a call
+     */
+    public boolean isCallMember(Long callId, Long userId) {
+        Call call = callRepository.findById(callId)
+                .orElseThrow(() -> new RuntimeException("Call not found"));
+        return call.getCaller().getId().equals(userId)
+                || callParticipantRepository.findJoinedUserIdsByCallId(callId).contains(userId);
+    }
+
     /**
      * Get calls for a conversation
      */
@@ -432,6 +559,7 @@ public class CallService {
                 call.setEndedAt(LocalDateTime.now());
                 calculateCallDuration(call);
                 callRepository.save(call);
+                onCallFinished(call);
             }
         }
     }
@@ -448,6 +576,62 @@ public class CallService {
 
     // ==================== HELPER METHODS ====================
 
+    private CallParticipant newInvitee(Call call, User user, CallParticipant.ParticipantStatus status) {
+        CallParticipant participant = new CallParticipant();
+        participant.setCall(call);
+        participant.setUser(user);
+        participant.setStatus(status);
+        participant.setMicrophoneEnabled(true);
+        participant.setCameraEnabled(call.getCallType() == Call.CallType.VIDEO);
+        participant.setScreenSharing(false);
+        if (status == CallParticipant.ParticipantStatus.MISSED) {
+            participant.setLeftAt(LocalDateTime.now());
+        }
+        return participant;
+    }
+
+    /**
+     * End a still-ringing group call once every invitee has rejected or missed it
+     */
+    private void settleUnansweredGroupCall(Call call) {
+        if (!call.isGroupCall() || call.getStatus() != Call.CallStatus.RINGING) {
+            return;
+        }
+
+        Long callerId = call.getCaller().getId();
+        List<CallParticipant> participants = callParticipantRepository.findByCallId(call.getId());
+        int invitees = 0;
+        boolean allRejected = true;
+        for (CallParticipant participant : participants) {
+            if (participant.getUser().getId().equals(callerId)) {
+                continue;
+            }
+            switch (participant.getStatus()) {
+                case INVITED, RINGING, JOINED -> {
+                    return;
+                }
+                case REJECTED -> invitees++;
+                default -> {
+                    invitees++;
+                    allRejected = false;
+                }
+            }
+        }
+
+        // The caller was left alone in the call
+        for (CallParticipant participant : participants) {
+            if (participant.isActive()) {
+                participant.leave();
+                callParticipantRepository.save(participant);
+            }
+        }
+
+        call.setStatus(invitees > 0 && allRejected ? Call.CallStatus.REJECTED : Call.CallStatus.MISSED);
+        call.setEndedAt(LocalDateTime.now());
+        callRepository.save(call);
+        onCallFinished(call);
+    }
+
     /**
      * Generate unique room ID for WebRTC
      */
@@ -471,7 +655,7 @@ public class CallService {
      */
     private void notifyCallStatusChange(Call call) {
         // Notification is handled by WebSocketController
-        System.out.println("Call " + call.getId() + " status changed to: " + call.getStatus());
+        log.debug("Call {} status changed to {}", call.getId(), call.getStatus());
     }
 
     // ==================== ADDITIONAL METHODS FOR CALL CONTROLLER ====================
@@ -480,7 +664,7 @@ public class CallService {
      * Check if user is in any active call
      */
     public boolean isUserInActiveCall(Long userId) {
-        return callRepository.isUserInActiveCall(userId);
+        return activeCallIndex.isUserInActiveCall(userId);
     }
 
     /**
@@ -497,7 +681,9 @@ public class CallService {
         if (call.isDirectCall() && call.getStatus() == Call.CallStatus.RINGING) {
             call.setStatus(Call.CallStatus.ONGOING);
             call.setStartedAt(LocalDateTime.now());
+            callMetrics.recordSetup(call);
             callRepository.save(call);
+            activeCallIndex.update(call);
         }
 
         return call;
@@ -507,26 +693,28 @@ public class CallService {
      * Get active call for a conversation
      */
     public Optional<Call> getActiveCallForConversation(Long conversationId) {
-        return callRepository.findActiveCallByConversationId(conversationId);
+        return activeCallIndex.findCallIdForConversation(conversationId).flatMap(callRepository::findById);
     }
 
     /**
      * Get active call for a chat room
      */
     public Optional<Call> getActiveCallForChatRoom(Long chatRoomId) {
-        return callRepository.findActiveCallByChatRoomId(chatRoomId);
+        return activeCallIndex.findCallIdForChatRoom(chatRoomId).flatMap(callRepository::findById);
     }
 
     /**
-     * Get call statistics for a user
+     * Get call statistics for a user (served from the pre-aggregated rollup)
      */
     public Map<String, Object> getCallStatistics(Long userId) {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalCalls", getTotalCallCount(userId));
-        stats.put("totalDuration", getTotalCallDuration(userId));
-        stats.put("missedCalls", getMissedCallsCount(userId));
-        stats.put("averageDuration", callRepository.getAverageCallDurationByUserId(userId));
-        return stats;
+        return callStatisticsService.getStatistics(userId);
+    }
+
+    /**
+     * Get call statistics for a user within a date range (inclusive)
+     */
+    public Map<String, Object> getCallStatistics(Long userId, LocalDate from, LocalDate to) {
+        return callStatisticsService.getStatistics(userId, from, to);
     }
 
     /**
@@ -541,7 +729,36 @@ public class CallService {
                 call.setStatus(Call.CallStatus.MISSED);
                 call.setEndedAt(LocalDateTime.now());
                 callRepository.save(call);
+                onCallFinished(call);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs once when a call first reaches a terminal status
+     */
+    private void onCallFinished(Call call) {
+        activeCallIndex.update(call);
+        if (call.usesSfu()) {
+            // A rolled back end must not tear down the live room
+            String roomId = call.getRoomId();
+            afterCommit(() -> sfuRelay.closeRoom(roomId));
+        }
+        callStatisticsService.recordCallEnded(call);
+        callTelemetryService.flushCall(call);
+        callRecordingService.finalizeRecording(call);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
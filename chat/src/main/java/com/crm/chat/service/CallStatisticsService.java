@@ -0,0 +1,334 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.CallParticipant;
+import com.crm.chat.entity.DailyCallStats;
+import com.crm.chat.entity.User;
+import com.crm.chat.entity.UserCallStats;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.repository.CallRepository;
+import com.crm.chat.repository.DailyCallStatsRepository;
+import com.crm.chat.repository.UserCallStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Call statistics rollup
+ * Maintains per-user lifetime counters and per-user daily buckets, updated once when a call ends,
+ * so the statistics endpoint is a point read instead of several aggregate joins over calls and participants.
+ * An empty rollup is backfilled from the calls already in the database on startup.
+ */
+@Service
+@Transactional
+@Slf4j
+public class CallStatisticsService implements SmartInitializingSingleton {
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final Set<Call.CallStatus> FINISHED = EnumSet.of(Call.CallStatus.ENDED, Call.CallStatus.MISSED,
+            Call.CallStatus.REJECTED, Call.CallStatus.FAILED);
+
+    private final UserCallStatsRepository userCallStatsRepository;
+    private final DailyCallStatsRepository dailyCallStatsRepository;
+    private final CallRepository callRepository;
+    private final CallParticipantRepository callParticipantRepository;
+    private final TransactionTemplate rollupTransaction;
+    private final TransactionTemplate readTransaction;
+
+    public CallStatisticsService(UserCallStatsRepository userCallStatsRepository,
+                                 DailyCallStatsRepository dailyCallStatsRepository,
+                                 CallRepository callRepository,
+                                 CallParticipantRepository callParticipantRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.userCallStatsRepository = userCallStatsRepository;
+        this.dailyCallStatsRepository = dailyCallStatsRepository;
+        this.callRepository = callRepository;
+        this.callParticipantRepository = callParticipantRepository;
+        this.rollupTransaction = new TransactionTemplate(transactionManager);
+        this.rollupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    // ==================== ROLLUP UPDATES ====================
+
+    /**
+     * Record a call that just reached a terminal status
+     * Deltas are computed inside the caller's transaction and applied after it commits,
+     * so a rolled-back call never reaches the counters
+     */
+    public void recordCallEnded(Call call) {
+        // Participant rows are queried (not read from the lazy collection) so unflushed joins are included
+        List<CallStatsDelta> deltas = computeDeltas(call, callParticipantRepository.findByCallId(call.getId()));
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyDeltas(deltas);
+                }
+            });
+        } else {
+            applyDeltas(deltas);
+        }
+    }
+
+    /**
+     * Work out what each involved user's counters should gain from this call
+     */
+    static List<CallStatsDelta> computeDeltas(Call call, List<CallParticipant> participants) {
+        Long callerId = call.getCaller().getId();
+        LocalDateTime occurredAt = call.getCreatedAt() != null ? call.getCreatedAt() : LocalDateTime.now();
+        boolean ended = call.getStatus() == Call.CallStatus.ENDED;
+        boolean callRejected = call.getStatus() == Call.CallStatus.REJECTED;
+        boolean callMissed = call.getStatus() == Call.CallStatus.MISSED;
+        long duration = call.getDuration() != null ? call.getDuration() : 0;
+
+        Map<Long, CallParticipant.ParticipantStatus> participantStatus = new HashMap<>();
+        for (CallParticipant participant : participants) {
+            participantStatus.put(participant.getUser().getId(), participant.getStatus());
+        }
+
+        Map<Long, CallParticipant.ParticipantStatus> involved = new LinkedHashMap<>();
+        involved.put(callerId, participantStatus.get(callerId));
+        if (call.isDirectCall() && call.getConversation() != null) {
+            for (User user : call.getConversation().getParticipants()) {
+                involved.putIfAbsent(user.getId(), participantStatus.get(user.getId()));
+            }
+        }
+        participantStatus.forEach(involved::putIfAbsent);
+
+        List<CallStatsDelta> deltas = new ArrayList<>(involved.size());
+        involved.forEach((userId, status) -> {
+            boolean rejected = callRejected || status == CallParticipant.ParticipantStatus.REJECTED;
+            boolean missed = !rejected && !userId.equals(callerId)
+                    && (callMissed || status == CallParticipant.ParticipantStatus.INVITED
+                                   || status == CallParticipant.ParticipantStatus.RINGING
+                                   || status == CallParticipant.ParticipantStatus.MISSED);
+            boolean completed = ended && !missed && !rejected && call.getDuration() != null;
+
+            deltas.add(new CallStatsDelta(userId, occurredAt, call.getCallType(),
+                    missed ? 1 : 0, rejected ? 1 : 0, completed ? 1 : 0, completed ? duration : 0));
+        });
+        return deltas;
+    }
+
+    private void applyDeltas(List<CallStatsDelta> deltas) {
+        // A second attempt covers another call creating the same row concurrently; it takes the UPDATE path
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                rollupTransaction.executeWithoutResult(status -> deltas.forEach(this::applyDelta));
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == 2) {
+                    log.error("Failed to update call statistics rollup: {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to update call statistics rollup: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void applyDelta(CallStatsDelta delta) {
+        int updated = userCallStatsRepository.increment(delta.userId(),
+                delta.missed(), delta.rejected(), delta.completed(), delta.duration(),
+                delta.callType() == Call.CallType.AUDIO ? 1 : 0,
+                delta.callType() == Call.CallType.VIDEO ? 1 : 0,
+                delta.callType() == Call.CallType.SCREEN_SHARE ? 1 : 0,
+                delta.occurredAt());
+        if (updated == 0) {
+            UserCallStats stats = new UserCallStats(delta.userId());
+            add(stats, delta);
+            userCallStatsRepository.saveAndFlush(stats);
+        }
+
+        LocalDate day = delta.occurredAt().toLocalDate();
+        int dailyUpdated = dailyCallStatsRepository.increment(delta.userId(), day, delta.callType(),
+                delta.missed(), delta.rejected(), delta.completed(), delta.duration());
+        if (dailyUpdated == 0) {
+            DailyCallStats bucket = new DailyCallStats(delta.userId(), day, delta.callType());
+            add(bucket, delta);
+            dailyCallStatsRepository.saveAndFlush(bucket);
+        }
+    }
+
+    private static void add(UserCallStats stats, CallStatsDelta delta) {
+        stats.setTotalCalls(stats.getTotalCalls() + 1);
+        stats.setMissedCalls(stats.getMissedCalls() + delta.missed());
+        stats.setRejectedCalls(stats.getRejectedCalls() + delta.rejected());
+        stats.setCompletedCalls(stats.getCompletedCalls() + delta.completed());
+        stats.setTotalDuration(stats.getTotalDuration() + delta.duration());
+        switch (delta.callType()) {
+            case AUDIO -> stats.setAudioCalls(stats.getAudioCalls() + 1);
+            case VIDEO -> stats.setVideoCalls(stats.getVideoCalls() + 1);
+            case SCREEN_SHARE -> stats.setScreenShareCalls(stats.getScreenShareCalls() + 1);
+        }
+        if (stats.getLastCallAt() == null || delta.occurredAt().isAfter(stats.getLastCallAt())) {
+            stats.setLastCallAt(delta.occurredAt());
+        }
+    }
+
+    private static void add(DailyCallStats bucket, CallStatsDelta delta) {
+        bucket.setTotalCalls(bucket.getTotalCalls() + 1);
+        bucket.setMissedCalls(bucket.getMissedCalls() + delta.missed());
+        bucket.setRejectedCalls(bucket.getRejectedCalls() + delta.rejected());
+        bucket.setCompletedCalls(bucket.getCompletedCalls() + delta.completed());
+        bucket.setTotalDuration(bucket.getTotalDuration() + delta.duration());
+    }
+
+    // ==================== BACKFILL ====================
+
+    /**
+     * Build the rollup from the finished calls already stored, when it is still empty (first start after
+     * the upgrade). Runs before the web server and the schedulers start, so no call can end meanwhile and
+     * be counted twice.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void afterSingletonsInstantiated() {
+        if (userCallStatsRepository.count() > 0) {
+            return;
+        }
+        Map<Long, UserCallStats> users = new HashMap<>();
+        Map<DailyKey, DailyCallStats> buckets = new HashMap<>();
+        long calls = 0;
+        Long afterId = 0L;
+        while (true) {
+            Long after = afterId;
+            List<Call> batch = readTransaction.execute(status -> {
+                List<Call> page = callRepository.findByStatusInAfter(FINISHED, after,
+                        PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                Map<Long, List<CallParticipant>> participants = new HashMap<>();
+                for (CallParticipant participant : callParticipantRepository.findByCallIdIn(
+                        page.stream().map(Call::getId).toList())) {
+                    participants.computeIfAbsent(participant.getCall().getId(), id -> new ArrayList<>())
+                            .add(participant);
+                }
+                for (Call call : page) {
+                    computeDeltas(call, participants.getOrDefault(call.getId(), List.of()))
+                            .forEach(delta -> backfill(users, buckets, delta));
+                }
+                return page;
+            });
+            if (batch.isEmpty()) {
+                break;
+            }
+            calls += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        if (calls == 0) {
+            return;
+        }
+        rollupTransaction.executeWithoutResult(status -> {
+            userCallStatsRepository.saveAll(users.values());
+            dailyCallStatsRepository.saveAll(buckets.values());
+        });
+        log.info("Call statistics backfilled from {} calls for {} users", calls, users.size());
+    }
+
+    private static void backfill(Map<Long, UserCallStats> users, Map<DailyKey, DailyCallStats> buckets,
+                                 CallStatsDelta delta) {
+        add(users.computeIfAbsent(delta.userId(), UserCallStats::new), delta);
+        DailyKey key = new DailyKey(delta.userId(), delta.occurredAt().toLocalDate(), delta.callType());
+        add(buckets.computeIfAbsent(key, k -> new DailyCallStats(k.userId(), k.day(), k.callType())), delta);
+    }
+
+    // ==================== ROLLUP READS ====================
+
+    /**
+     * Lifetime statistics for a user (single primary-key read)
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatistics(Long userId) {
+        UserCallStats stats = userCallStatsRepository.findById(userId)
+                .orElseGet(() -> new UserCallStats(userId));
+
+        Map<String, Long> byType = new LinkedHashMap<>();
+        byType.put(Call.CallType.AUDIO.name(), stats.getAudioCalls());
+        byType.put(Call.CallType.VIDEO.name(), stats.getVideoCalls());
+        byType.put(Call.CallType.SCREEN_SHARE.name(), stats.getScreenShareCalls());
+
+        Map<String, Object> result = new HashMap<>();
+        // The rollup counts calls once they finish; calls in progress are added from the calls table
+        result.put("totalCalls", stats.getTotalCalls() + callRepository.countCallsInProgressForUser(userId));
+        result.put("totalDuration", stats.getTotalDuration());
+        result.put("missedCalls", stats.getMissedCalls());
+        result.put("rejectedCalls", stats.getRejectedCalls());
+        result.put("averageDuration", stats.getAverageDuration());
+        result.put("callsByType", byType);
+        return result;
+    }
+
+    /**
+     * Statistics for a user within a date range (inclusive), summed from daily buckets
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStatistics(Long userId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("Invalid date range: from is after to");
+        }
+
+        long total = 0, missed = 0, rejected = 0, completed = 0, duration = 0;
+        Map<Call.CallType, Long> byType = new EnumMap<>(Call.CallType.class);
+        for (Call.CallType type : Call.CallType.values()) {
+            byType.put(type, 0L);
+        }
+
+        for (DailyCallStats bucket : dailyCallStatsRepository.findByUserIdAndStatDateBetween(userId, from, to)) {
+            total += bucket.getTotalCalls();
+            missed += bucket.getMissedCalls();
+            rejected += bucket.getRejectedCalls();
+            completed += bucket.getCompletedCalls();
+            duration += bucket.getTotalDuration();
+            byType.merge(bucket.getCallType(), bucket.getTotalCalls(), Long::sum);
+        }
+
+        Map<String, Long> callsByType = new LinkedHashMap<>();
+        byType.forEach((type, count) -> callsByType.put(type.name(), count));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", from.toString());
+        result.put("to", to.toString());
+        result.put("totalCalls", total);
+        result.put("totalDuration", duration);
+        result.put("missedCalls", missed);
+        result.put("rejectedCalls", rejected);
+        result.put("averageDuration", completed == 0 ? 0.0 : (double) duration / completed);
+        result.put("callsByType", callsByType);
+        return result;
+    }
+
+    /**
+     * What one finished call adds to one user's counters
+     */
+    record CallStatsDelta(Long userId, LocalDateTime occurredAt, Call.CallType callType,
+                          long missed, long rejected, long completed, long duration) {
+    }
+
+    private record DailyKey(Long userId, LocalDate day, Call.CallType callType) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.CallParticipant;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.telemetry.QualityHistogram;
+import com.crm.chat.telemetry.QualityMetric;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Call quality telemetry
+ * Clients report WebRTC stats every few seconds; reports are folded into fixed-bucket histograms
+ * per participant (lifetime + rolling window) and flushed as compact JSON summaries onto
+ * Call/CallParticipant when the call ends. Live aggregates are served from memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CallTelemetryService {
+
+    private static final QualityMetric[] METRICS = QualityMetric.values();
+    private static final int WINDOW_SLICES = 6;
+    private static final long SLICE_MILLIS = 10_000; // 6 x 10s = 60s rolling window
+
+    private final CallParticipantRepository callParticipantRepository;
+
+    private final Map<Long, CallQuality> calls = new ConcurrentHashMap<>();
+
+    // ==================== INGESTION ====================
+
+    /**
+     * Record one stats report; metrics the client could not measure are passed as -1
+     */
+    public void record(Long callId, Long userId, long rttMs, long jitterMs, long lossPermille, long bitrateKbps) {
+        ParticipantQuality participant = calls.computeIfAbsent(callId, id -> new CallQuality())
+                .participants.computeIfAbsent(userId, id -> new ParticipantQuality());
+        participant.record(System.currentTimeMillis(), rttMs, jitterMs, lossPermille, bitrateKbps);
+    }
+
+    // ==================== LIVE AGGREGATES ====================
+
+    /**
+     * Rolling-window quality of every call currently reporting
+     */
+    public List<Map<String, Object>> getLiveOverview() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> overview = new ArrayList<>(calls.size());
+        calls.forEach((callId, call) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("callId", callId);
+            entry.put("participants", call.participants.size());
+            entry.put("window", toMap(window(call.participants.values(), now)));
+            overview.add(entry);
+        });
+        return overview;
+    }
+
+    /**
+     * Rolling-window and lifetime quality of one call, overall and per participant
+     */
+    public Optional<Map<String, Object>> getLiveCallQuality(Long callId) {
+        CallQuality call = calls.get(callId);
+        if (call == null) {
+            return Optional.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("callId", callId);
+        result.put("window", toMap(window(call.participants.values(), now)));
+        result.put("total", toMap(total(call.participants.values())));
+
+        Map<Long, Object> participants = new LinkedHashMap<>();
+        call.participants.forEach((userId, participant) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("window", toMap(window(List.of(participant), now)));
+            entry.put("total", toMap(total(List.of(participant))));
+            participants.put(userId, entry);
+        });
+        result.put("participants", participants);
+        return Optional.of(result);
+    }
+
+    // ==================== FLUSH ====================
+
+    /**
+     * Write summaries onto the (managed) call and its participants and drop the in-memory state
+     * Must run inside the transaction that ends the call
+     */
+    public void flushCall(Call call) {
+        Long callId = call.getId();
+        CallQuality quality = calls.remove(callId);
+
+        // Reports racing the end of the call can recreate state; drop it once the call is settled
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    calls.remove(callId);
+                }
+            });
+        }
+
+        if (quality == null || quality.participants.isEmpty()) {
+            return;
+        }
+
+        call.setQualitySummary(toJson(total(quality.participants.values()), quality.participants.size()));
+        for (CallParticipant participant : callParticipantRepository.findByCallId(callId)) {
+            ParticipantQuality reported = quality.participants.get(participant.getUser().getId());
+            if (reported != null) {
+                participant.setQualitySummary(toJson(total(List.of(reported)), 1));
+            }
+        }
+    }
+
+    // ==================== AGGREGATION ====================
+
+    private QualityHistogram.Accumulator[] total(Iterable<ParticipantQuality> participants) {
+        QualityHistogram.Accumulator[] accumulators = newAccumulators();
+        for (ParticipantQuality participant : participants) {
+            synchronized (participant) {
+                for (int m = 0; m < METRICS.length; m++) {
+                    participant.histograms[m].addTotalTo(accumulators[m]);
+                }
+            }
+        }
+        return accumulators;
+    }
+
+    private QualityHistogram.Accumulator[] window(Iterable<ParticipantQuality> participants, long now) {
+        QualityHistogram.Accumulator[] accumulators = newAccumulators();
+        for (ParticipantQuality participant : participants) {
+            synchronized (participant) {
+                for (int m = 0; m < METRICS.length; m++) {
+                    participant.histograms[m].addWindowTo(accumulators[m], now);
+                }
+            }
+        }
+        return accumulators;
+    }
+
+    private static QualityHistogram.Accumulator[] newAccumulators() {
+        QualityHistogram.Accumulator[] accumulators = new QualityHistogram.Accumulator[METRICS.length];
+        for (int m = 0; m < METRICS.length; m++) {
+            accumulators[m] = new QualityHistogram.Accumulator(METRICS[m]);
+        }
+        return accumulators;
+    }
+
+    private static Map<String, Object> toMap(QualityHistogram.Accumulator[] accumulators) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int m = 0; m < METRICS.length; m++) {
+            QualityHistogram.Accumulator accumulator = accumulators[m];
+            Map<String, Object> metric = new LinkedHashMap<>();
+            metric.put("samples", accumulator.getCount());
+            metric.put("p50", accumulator.percentile(0.50));
+            metric.put("p95", accumulator.percentile(0.95));
+            metric.put("max", accumulator.getMax());
+            result.put(METRICS[m].getKey(), metric);
+        }
+        return result;
+    }
+
+    /**
+     * Compact summary, e.g. {"participants":3,"rtt":{"n":120,"avg":48,"p50":50,"p95":150,"max":212},...}
+     */
+    private static String toJson(QualityHistogram.Accumulator[] accumulators, int participants) {
+        StringBuilder json = new StringBuilder(256).append("{\"participants\":").append(participants);
+        for (int m = 0; m < METRICS.length; m++) {
+            QualityHistogram.Accumulator accumulator = accumulators[m];
+            if (accumulator.getCount() == 0) {
+                continue;
+            }
+            json.append(",\"").append(METRICS[m].getKey()).append("\":{")
+                    .append("\"n\":").append(accumulator.getCount())
+                    .append(",\"avg\":").append(accumulator.average())
+                    .append(",\"p50\":").append(accumulator.percentile(0.50))
+                    .append(",\"p95\":").append(accumulator.percentile(0.95))
+                    .append(",\"max\":").append(accumulator.getMax())
+                    .append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Histograms of every participant in one call
+     */
+    private static final class CallQuality {
+        private final Map<Long, ParticipantQuality> participants = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Histograms of one participant; reports from the same participant arrive sequentially,
+     * so the monitor is effectively uncontended
+     */
+    private static final class ParticipantQuality {
+
+        private final QualityHistogram[] histograms = new QualityHistogram[METRICS.length];
+
+        private ParticipantQuality() {
+            for (int m = 0; m < METRICS.length; m++) {
+                histograms[m] = new QualityHistogram(METRICS[m], WINDOW_SLICES, SLICE_MILLIS);
+            }
+        }
+
+        private synchronized void record(long now, long rtt, long jitter, long loss, long bitrate) {
+            histograms[QualityMetric.RTT.ordinal()].record(rtt, now);
+            histograms[QualityMetric.JITTER.ordinal()].record(jitter, now);
+            histograms[QualityMetric.PACKET_LOSS.ordinal()].record(loss, now);
+            histograms[QualityMetric.BITRATE.ordinal()].record(bitrate, now);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.PendingNotification;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.PendingNotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Notifications for users who were offline when their messages arrived
+ * Per user, one compacted entry per conversation (message count, latest message and preview), at most
+ * max-conversations of them; the conversation updated longest ago is dropped first. Queues live in memory,
+ * are loaded once at startup and written behind every flush-interval (the changed users' rows replaced in
+ * one transaction). A session drains its user's queue by subscribing to /app/notifications.catch-up and gets
+ * one CATCH_UP frame, so a reconnecting client learns what it missed without reloading every conversation.
+ */
+@Service
+@Slf4j
+public class CatchUpQueue {
+
+    private final PendingNotificationRepository repository;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate writeTransaction;
+    private final Duration flushInterval;
+    private final int maxConversations;
+
+    // Username -> that user's queue
+    private final Map<String, UserQueue> queues = new ConcurrentHashMap<>();
+    // Users whose stored rows no longer match their queue: username -> user id
+    private final Map<String, Long> dirty = new ConcurrentHashMap<>();
+
+    public CatchUpQueue(PendingNotificationRepository repository,
+                        @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${chat.catch-up.flush-interval:5s}") Duration flushInterval,
+                        @Value("${chat.catch-up.max-conversations:50}") int maxConversations) {
+        this.repository = repository;
+        this.taskScheduler = taskScheduler;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.flushInterval = flushInterval;
+        this.maxConversations = maxConversations;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        load();
+        taskScheduler.scheduleWithFixedDelay(this::flush, flushInterval);
+    }
+
+    // ==================== QUEUE ====================
+
+    /**
+     * Queue a notification for an offline user, merging it into the entry for its conversation
+     */
+    void add(User recipient, NotificationItem item) {
+        queues.compute(recipient.getUsername(), (username, queue) -> {
+            if (queue == null) {
+                queue = new UserQueue(recipient.getId());
+            }
+            queue.add(item, maxConversations);
+            return queue;
+        });
+        dirty.put(recipient.getUsername(), recipient.getId());
+    }
+
+    /**
+     * Take everything queued for a user as one CATCH_UP frame (empty items when there is nothing)
+     */
+    public Map<String, Object> drain(String username) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        UserQueue queue = queues.remove(username);
+        if (queue != null) {
+            queue.items.values().forEach(item -> items.add(item.toFrame()));
+            dirty.put(username, queue.userId);
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "CATCH_UP");
+        frame.put("items", items);
+        return frame;
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    void load() {
+        int rows = 0;
+        for (Object[] row : repository.findAllWithUsername()) {
+            PendingNotification stored = (PendingNotification) row[0];
+            NotificationItem item = new NotificationItem(stored.getConversationId(), stored.getSenderId(),
+                    stored.getSenderName(), stored.getMessageCount(), stored.getLastMessageId(),
+                    stored.getLastMessageAt(), Boolean.TRUE.equals(stored.getSilent()), stored.getPreview());
+            // Anything queued since startup is newer than the stored entry
+            queues.compute((String) row[1], (username, queue) -> {
+                if (queue == null) {
+                    queue = new UserQueue(stored.getUserId());
+                }
+                queue.items.merge(item.conversationId(), item, (current, loaded) -> loaded.then(current));
+                return queue;
+            });
+            rows++;
+        }
+        log.info("Catch-up queue loaded {} pending notifications for {} users", rows, queues.size());
+    }
+
+    void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<String, Long> taken = new HashMap<>();
+        Map<Long, List<NotificationItem>> batch = new HashMap<>();
+        for (String username : List.copyOf(dirty.keySet())) {
+            Long userId = dirty.remove(username);
+            if (userId == null) {
+                continue;
+            }
+            List<NotificationItem> items = new ArrayList<>();
+            queues.computeIfPresent(username, (name, queue) -> {
+                items.addAll(queue.items.values());
+                return queue;
+            });
+            taken.put(username, userId);
+            batch.put(userId, items);
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                repository.deleteByUserIdIn(batch.keySet());
+                List<PendingNotification> rows = new ArrayList<>();
+                batch.forEach((userId, items) -> items.forEach(item -> rows.add(toEntity(userId, item))));
+                repository.saveAll(rows);
+            });
+        } catch (RuntimeException e) {
+            taken.forEach(dirty::putIfAbsent);
+            log.error("Catch-up queue flush failed", e);
+        }
+    }
+
+    private static PendingNotification toEntity(Long userId, NotificationItem item) {
+        PendingNotification row = new PendingNotification();
+        row.setUserId(userId);
+        row.setConversationId(item.conversationId());
+        row.setSenderId(item.senderId());
+        row.setSenderName(item.senderName());
+        row.setMessageCount(item.count());
+        row.setLastMessageId(item.messageId());
+        row.setLastMessageAt(item.timestamp());
+        row.setSilent(item.silent());
+        row.setPreview(item.preview());
+        return row;
+    }
+
+    /**
+     * Only touched inside queues.compute / computeIfPresent, or after being removed from queues
+     */
+    private static class UserQueue {
+
+        final Long userId;
+        // Conversation id -> entry, the conversation updated longest ago first
+        final LinkedHashMap<Long, NotificationItem> items = new LinkedHashMap<>();
+
+        UserQueue(Long userId) {
+            this.userId = userId;
+        }
+
+        void add(NotificationItem item, int maxConversations) {
+            NotificationItem previous = items.remove(item.conversationId());
+            items.put(item.conversationId(), previous != null ? previous.then(item) : item);
+            if (items.size() > maxConversations) {
+                Iterator<Long> oldest = items.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+    }
+}
@@ -11,8 +11,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +27,7 @@ public class ChatRoomService {
     private final ChatRoomRepository chatRoomRepository;
     private final ChatRoomMemberRepository chatRoomMemberRepository;
     private final UserRepository userRepository;
+    private final GroupReadService groupReadService;
 
     public ChatRoom createChatRoom(String name, String description, Long createdById, ChatRoom.ChatRoomType type) {
         User creator = userRepository.findById(createdById)
@@ -63,8 +69,41 @@ public class ChatRoomService {
         member.setActive(true);
 
         chatRoomMemberRepository.save(member);
+        groupReadService.invalidate(chatRoomId);
     }
 
+    /**
+     * Add several members at once: one lookup for the room, the users and the existing members,
+     * then a single batched insert. Users that are already members or do not exist are skipped.
+     *
+     * @return the number of members added
+     */
+    public int addMembersToChatRoom(Long chatRoomId, Collection<Long> userIds, ChatRoomMember.MemberRole role) {
+        ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
+                .orElseThrow(() -> new RuntimeException("Chat room not found"));
+
+        Set<Long> existing = new HashSet<>(chatRoomMemberRepository.findActiveMemberUserIds(chatRoomId));
+        Set<Long> toAdd = new LinkedHashSet<>(userIds);
+        toAdd.removeAll(existing);
+        if (toAdd.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ChatRoomMember> members = new ArrayList<>(toAdd.size());
+        for (User user : userRepository.findAllById(toAdd)) {
+            ChatRoomMember member = new ChatRoomMember();
+            member.setChatRoom(chatRoom);
+            member.setUser(user);
+            member.setRole(role);
+            member.setJoinedAt(now);
+            member.setActive(true);
+            members.add(member);
+        }
+        chatRoomMemberRepository.saveAll(members);
+        groupReadService.invalidate(chatRoomId);
+        return members.size();
+    }
 
     // New logic for updating member roles
     public void updateMemberRole(Long chatRoomId, Long userId, ChatRoomMember.MemberRole role) {
@@ -78,6 +117,7 @@ public class ChatRoomService {
 
     public void removeMemberFromChatRoom(Long chatRoomId, Long userId) {
         chatRoomMemberRepository.deleteByChatRoomIdAndUserId(chatRoomId, userId);
+        groupReadService.invalidate(chatRoomId);
     }
 
     public List<ChatRoom> getUserChatRooms(Long userId) {
@@ -1,176 +1,326 @@
 package com.crm.chat.service;
 
+import com.crm.chat.dto.ConversationSettingsDTO;
 import com.crm.chat.entity.ConversationSettings;
 import com.crm.chat.repository.ConversationSettingsRepository;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * Service for managing conversation settings (pin, mute, hide)
+ * A user's settings are loaded with one query on first use and then served from memory (the most recently
+ * used users are kept, up to cache-size), so flag checks such as isMuted cost a map lookup and can be made
+ * on every notification. Changes are written through: one UPDATE of the changed flag (an INSERT the first
+ * time), applied to the cache as they are written; a rolled back change evicts the user so the next lookup
+ * reloads. Lookups open no transaction unless they have to load.
  */
 @Service
-@RequiredArgsConstructor
-@Transactional
 public class ConversationSettingsService {
-    
+
     private final ConversationSettingsRepository repository;
-    
+
+    // User id -> (other user id -> settings), least recently used users evicted
+    private final Map<Long, Map<Long, Flags>> cache;
+
+    public ConversationSettingsService(ConversationSettingsRepository repository,
+                                       @Value("${chat.conversation-settings.cache-size:10000}") int cacheSize) {
+        this.repository = repository;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Map<Long, Flags>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    // ==================== CHANGES ====================
+
     /**
      * Pin a conversation for a user
      */
+    @Transactional
     public void pinConversation(Long userId, Long otherUserId) {
-        ConversationSettings settings = getOrCreateSettings(userId, otherUserId);
-        settings.setIsPinned(true);
-        settings.setPinnedAt(LocalDateTime.now());
-        repository.save(settings);
+        change(userId, otherUserId, Flag.PINNED, true);
     }
-    
+
     /**
      * Unpin a conversation for a user
      */
+    @Transactional
     public void unpinConversation(Long userId, Long otherUserId) {
-        ConversationSettings settings = getOrCreateSettings(userId, otherUserId);
-        settings.setIsPinned(false);
-        settings.setPinnedAt(null);
-        repository.save(settings);
+        change(userId, otherUserId, Flag.PINNED, false);
     }
-    
+
     /**
      * Mute a conversation for a user
      */
+    @Transactional
     public void muteConversation(Long userId, Long otherUserId) {
-        ConversationSettings settings = getOrCreateSettings(userId, otherUserId);
-        settings.setIsMuted(true);
-        settings.setMutedAt(LocalDateTime.now());
-        repository.save(settings);
+        change(userId, otherUserId, Flag.MUTED, true);
     }
-    
+
     /**
      * Unmute a conversation for a user
      */
+    @Transactional
     public void unmuteConversation(Long userId, Long otherUserId) {
-        ConversationSettings settings = getOrCreateSettings(userId, otherUserId);
-        settings.setIsMuted(false);
-        settings.setMutedAt(null);
-        repository.save(settings);
+        change(userId, otherUserId, Flag.MUTED, false);
     }
-    
+
     /**
      * Hide a conversation for a user
      */
+    @Transactional
     public void hideConversation(Long userId, Long otherUserId) {
-        ConversationSettings settings = getOrCreateSettings(userId, otherUserId);
-        settings.setIsHidden(true);
-        settings.setHiddenAt(LocalDateTime.now());
-        repository.save(settings);
+        change(userId, otherUserId, Flag.HIDDEN, true);
     }
-    
+
     /**
      * Unhide a conversation for a user
      */
+    @Transactional
     public void unhideConversation(Long userId, Long otherUserId) {
-        ConversationSettings settings = getOrCreateSettings(userId, otherUserId);
-        settings.setIsHidden(false);
-        settings.setHiddenAt(null);
-        repository.save(settings);
+        change(userId, otherUserId, Flag.HIDDEN, false);
+    }
+
+    /**
+     * Changes to one conversation are serialized on its cache entry, so concurrent toggles see each
+     * other's flags and only the first inserts the row
+     */
+    private void change(Long userId, Long otherUserId, Flag flag, boolean value) {
+        settings(userId).compute(otherUserId, (key, cached) -> {
+            Flags current = cached != null ? cached : Flags.NONE;
+            if (flag.get(current) == value) {
+                return cached;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime at = value ? now : null;
+            Flags updated = flag.set(current, value, at);
+
+            if (current == Flags.NONE) {
+                repository.save(toEntity(userId, otherUserId, updated, now));
+            } else {
+                int rows = switch (flag) {
+                    case PINNED -> repository.updatePinned(userId, otherUserId, value, at, now);
+                    case MUTED -> repository.updateMuted(userId, otherUserId, value, at, now);
+                    case HIDDEN -> repository.updateHidden(userId, otherUserId, value, at, now);
+                };
+                if (rows == 0) {
+                    // Deleted behind the cache's back
+                    repository.save(toEntity(userId, otherUserId, updated, now));
+                }
+            }
+            afterRollback(() -> evict(userId));
+            return updated;
+        });
+    }
+
+    // ==================== LOOKUPS ====================
+
+    /**
+     * All of a user's conversation settings, pinned first (most recently pinned first)
+     */
+    public List<ConversationSettingsDTO> getAllSettings(Long userId) {
+        return list(userId, flags -> true);
     }
-    
+
     /**
      * Get all pinned conversations for a user
      */
-    @Transactional(readOnly = true)
-    public List<ConversationSettings> getPinnedConversations(Long userId) {
-        return repository.findByUserIdAndIsPinnedTrue(userId);
+    public List<ConversationSettingsDTO> getPinnedConversations(Long userId) {
+        return list(userId, Flags::pinned);
     }
-    
+
     /**
      * Get all muted conversations for a user
      */
-    @Transactional(readOnly = true)
-    public List<ConversationSettings> getMutedConversations(Long userId) {
-        return repository.findByUserIdAndIsMutedTrue(userId);
+    public List<ConversationSettingsDTO> getMutedConversations(Long userId) {
+        return list(userId, Flags::muted);
     }
-    
+
     /**
      * Get all hidden conversations for a user
      */
-    @Transactional(readOnly = true)
-    public List<ConversationSettings> getHiddenConversations(Long userId) {
-        return repository.findByUserIdAndIsHiddenTrue(userId);
+    public List<ConversationSettingsDTO> getHiddenConversations(Long userId) {
+        return list(userId, Flags::hidden);
     }
-    
+
     /**
-     * Get settings for a specific conversation
+     * Get settings for a specific conversation (null when the user never changed any)
      */
-    @Transactional(readOnly = true)
-    public ConversationSettings getSettings(Long userId, Long otherUserId) {
-        return repository.findByUserIdAndOtherUserId(userId, otherUserId)
-            .orElse(null);
+    public ConversationSettingsDTO getSettings(Long userId, Long otherUserId) {
+        Flags flags = settings(userId).get(otherUserId);
+        return flags != null ? flags.toDto(otherUserId) : null;
     }
-    
+
     /**
      * Check if conversation is pinned
      */
-    @Transactional(readOnly = true)
     public boolean isPinned(Long userId, Long otherUserId) {
-        return repository.findByUserIdAndOtherUserId(userId, otherUserId)
-            .map(ConversationSettings::getIsPinned)
-            .orElse(false);
+        return settings(userId).getOrDefault(otherUserId, Flags.NONE).pinned();
     }
-    
+
     /**
      * Check if conversation is muted
      */
-    @Transactional(readOnly = true)
     public boolean isMuted(Long userId, Long otherUserId) {
-        return repository.findByUserIdAndOtherUserId(userId, otherUserId)
-            .map(ConversationSettings::getIsMuted)
-            .orElse(false);
+        return settings(userId).getOrDefault(otherUserId, Flags.NONE).muted();
     }
-    
+
     /**
      * Check if conversation is hidden
      */
-    @Transactional(readOnly = true)
     public boolean isHidden(Long userId, Long otherUserId) {
-        return repository.findByUserIdAndOtherUserId(userId, otherUserId)
-            .map(ConversationSettings::getIsHidden)
-            .orElse(false);
-    }
-    
-    /**
-     * Get or create settings for a conversation
-     */
-    private ConversationSettings getOrCreateSettings(Long userId, Long otherUserId) {
-        return repository.findByUserIdAndOtherUserId(userId, otherUserId)
-            .orElseGet(() -> {
-                ConversationSettings newSettings = new ConversationSettings();
-                newSettings.setUserId(userId);
-                newSettings.setOtherUserId(otherUserId);
-                newSettings.setIsPinned(false);
-                newSettings.setIsMuted(false);
-                newSettings.setIsHidden(false);
-                newSettings.setCreatedAt(LocalDateTime.now());
-                newSettings.setUpdatedAt(LocalDateTime.now());
-                return newSettings;
+        return settings(userId).getOrDefault(otherUserId, Flags.NONE).hidden();
+    }
+
+    private List<ConversationSettingsDTO> list(Long userId, Predicate<Flags> filter) {
+        return settings(userId).entrySet().stream()
+                .filter(entry -> filter.test(entry.getValue()))
+                .map(entry -> entry.getValue().toDto(entry.getKey()))
+                .sorted(Comparator.comparing(ConversationSettingsDTO::getPinnedAt,
+                        Comparator.nullsLast(Comparator.reverseOrder())))
+                .toList();
+    }
+
+    // ==================== CACHE ====================
+
+    /**
+     * A user's settings, loaded with one query when not cached
+     */
+    private Map<Long, Flags> settings(Long userId) {
+        Map<Long, Flags> userSettings = cached(userId);
+        if (userSettings != null) {
+            return userSettings;
+        }
+        Map<Long, Flags> loaded = new ConcurrentHashMap<>();
+        for (ConversationSettings settings : repository.findByUserId(userId)) {
+            loaded.put(settings.getOtherUserId(), Flags.of(settings));
+        }
+        synchronized (cache) {
+            Map<Long, Flags> raced = cache.putIfAbsent(userId, loaded);
+            return raced != null ? raced : loaded;
+        }
+    }
+
+    private Map<Long, Flags> cached(Long userId) {
+        synchronized (cache) {
+            return cache.get(userId);
+        }
+    }
+
+    private void evict(Long userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
             });
+        } else {
+            action.run();
+        }
     }
-    
+
+    private static void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    private static ConversationSettings toEntity(Long userId, Long otherUserId, Flags flags, LocalDateTime now) {
+        ConversationSettings settings = new ConversationSettings();
+        settings.setUserId(userId);
+        settings.setOtherUserId(otherUserId);
+        settings.setIsPinned(flags.pinned());
+        settings.setIsMuted(flags.muted());
+        settings.setIsHidden(flags.hidden());
+        settings.setPinnedAt(flags.pinnedAt());
+        settings.setMutedAt(flags.mutedAt());
+        settings.setHiddenAt(flags.hiddenAt());
+        settings.setCreatedAt(now);
+        settings.setUpdatedAt(now);
+        return settings;
+    }
+
     /**
      * Delete all settings for a user
      */
+    @Transactional
     public void deleteUserSettings(Long userId) {
         repository.deleteByUserId(userId);
+        afterCommit(() -> evict(userId));
     }
-    
+
     /**
      * Delete settings for a specific conversation
      */
+    @Transactional
     public void deleteConversationSettings(Long userId, Long otherUserId) {
         repository.deleteByUserIdAndOtherUserId(userId, otherUserId);
+        afterCommit(() -> evict(userId));
+    }
+
+    private enum Flag {
+        PINNED, MUTED, HIDDEN;
+
+        boolean get(Flags flags) {
+            return switch (this) {
+                case PINNED -> flags.pinned();
+                case MUTED -> flags.muted();
+                case HIDDEN -> flags.hidden();
+            };
+        }
+
+        Flags set(Flags flags, boolean value, LocalDateTime at) {
+            return switch (this) {
+                case PINNED -> new Flags(value, flags.muted(), flags.hidden(), at, flags.mutedAt(), flags.hiddenAt());
+                case MUTED -> new Flags(flags.pinned(), value, flags.hidden(), flags.pinnedAt(), at, flags.hiddenAt());
+                case HIDDEN -> new Flags(flags.pinned(), flags.muted(), value, flags.pinnedAt(), flags.mutedAt(), at);
+            };
+        }
+    }
+
+    /**
+     * Immutable cached copy of one ConversationSettings row
+     */
+    private record Flags(boolean pinned, boolean muted, boolean hidden,
+                         LocalDateTime pinnedAt, LocalDateTime mutedAt, LocalDateTime hiddenAt) {
+
+        static final Flags NONE = new Flags(false, false, false, null, null, null);
+
+        static Flags of(ConversationSettings settings) {
+            return new Flags(Boolean.TRUE.equals(settings.getIsPinned()), Boolean.TRUE.equals(settings.getIsMuted()),
+                    Boolean.TRUE.equals(settings.getIsHidden()),
+                    settings.getPinnedAt(), settings.getMutedAt(), settings.getHiddenAt());
+        }
+
+        ConversationSettingsDTO toDto(Long otherUserId) {
+            return new ConversationSettingsDTO(otherUserId, pinned, muted, hidden, pinnedAt, mutedAt, hiddenAt);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,212 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Message;
+import com.crm.chat.presence.DeviceSessionRegistry;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import com.crm.chat.repository.MessageRepository;
+import com.crm.chat.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DELIVERED state from client acknowledgements
+ * Clients send one cumulative ack per chat ("everything up to message X has reached this device") to
+ * /app/chat.delivered. Acks only advance in-memory per-device watermarks (DeviceSessionRegistry); the
+ * recipient's watermark, when it moved, is queued and written every flush-interval with one UPDATE per
+ * (chat, recipient). A direct message is delivered once the other participant has it; a chat room message
+ * once every active member has it (the lowest member watermark). Senders then get one MESSAGES_DELIVERED
+ * frame per chat on /user/queue/delivery, covering all their messages delivered in that flush.
+ */
+@Service
+@Slf4j
+public class DeliveryService {
+
+    public static final String DELIVERY_QUEUE = "/queue/delivery";
+
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final MessageRepository messageRepository;
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final UserRepository userRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate flushTransaction;
+    private final Duration flushInterval;
+
+    // (chat, recipient) -> highest acknowledged message id not yet written
+    private final Map<Recipient, Long> pending = new ConcurrentHashMap<>();
+
+    public DeliveryService(DeviceSessionRegistry deviceSessionRegistry,
+                           MessageRepository messageRepository,
+                           ChatRoomMemberRepository chatRoomMemberRepository,
+                           UserRepository userRepository,
+                           SimpMessagingTemplate messagingTemplate,
+                           @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${chat.delivery.flush-interval:1s}") Duration flushInterval) {
+        this.deviceSessionRegistry = deviceSessionRegistry;
+        this.messageRepository = messageRepository;
+        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.userRepository = userRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.taskScheduler = taskScheduler;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushInterval = flushInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleFlush() {
+        taskScheduler.scheduleWithFixedDelay(this::flush, flushInterval);
+    }
+
+    // ==================== ACKS ====================
+
+    /**
+     * A device of the user has received every message of the chat up to a message id
+     */
+    public void acknowledge(String username, String sessionId, ChatRef chat, long upTo) {
+        if (upTo <= 0) {
+            return;
+        }
+        if (deviceSessionRegistry.markDelivered(sessionId, chat.key(), upTo)) {
+            pending.merge(new Recipient(chat, username), upTo, Math::max);
+        }
+    }
+
+    // ==================== FLUSH ====================
+
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Recipient, Long> batch = new HashMap<>();
+        for (Recipient recipient : List.copyOf(pending.keySet())) {
+            Long upTo = pending.remove(recipient);
+            if (upTo != null) {
+                batch.put(recipient, upTo);
+            }
+        }
+
+        Map<String, Map<ChatRef, Long>> notifications;
+        try {
+            notifications = flushTransaction.execute(status -> write(batch));
+        } catch (RuntimeException e) {
+            log.error("Delivery flush of {} watermarks failed, retrying next flush", batch.size(), e);
+            batch.forEach((recipient, upTo) -> pending.merge(recipient, upTo, Math::max));
+            return;
+        }
+
+        String deliveredAt = LocalDateTime.now().toString();
+        notifications.forEach((sender, chats) -> chats.forEach((chat, upTo) -> {
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "MESSAGES_DELIVERED");
+            frame.put("chatType", chat.type().name().toLowerCase());
+            frame.put("chatId", chat.id());
+            frame.put("upTo", upTo);
+            frame.put("deliveredAt", deliveredAt);
+            messagingTemplate.convertAndSendToUser(sender, DELIVERY_QUEUE, frame);
+        }));
+    }
+
+    /**
+     * Write the watermarks and mark what they deliver
+     * @return sender username -> chat -> highest of their message ids that became DELIVERED
+     */
+    private Map<String, Map<ChatRef, Long>> write(Map<Recipient, Long> batch) {
+        Set<String> usernames = new HashSet<>();
+        batch.keySet().forEach(recipient -> usernames.add(recipient.username()));
+        Map<String, Long> userIds = new HashMap<>();
+        for (Object[] row : userRepository.findIdsByUsernameIn(usernames)) {
+            userIds.put((String) row[0], (Long) row[1]);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Map<ChatRef, Long>> notifications = new HashMap<>();
+        Set<Long> advancedRooms = new HashSet<>();
+        batch.forEach((recipient, upTo) -> {
+            Long userId = userIds.get(recipient.username());
+            if (userId == null) {
+                return;
+            }
+            ChatRef chat = recipient.chat();
+            if (chat.type() == ChatType.CONVERSATION) {
+                List<Object[]> senders = messageRepository.findUndeliveredConversationSenders(
+                        chat.id(), userId, upTo, Message.DeliveryStatus.SENT);
+                if (!senders.isEmpty()) {
+                    messageRepository.markConversationDelivered(chat.id(), userId, upTo, now,
+                            Message.DeliveryStatus.SENT, Message.DeliveryStatus.DELIVERED);
+                    collect(notifications, chat, senders);
+                }
+            } else if (chatRoomMemberRepository.advanceLastDelivered(chat.id(), userId, upTo) > 0) {
+                advancedRooms.add(chat.id());
+            }
+        });
+
+        // A room's messages are delivered up to the lowest member watermark, once per room
+        for (Long chatRoomId : advancedRooms) {
+            Long watermark = chatRoomMemberRepository.findDeliveredWatermark(chatRoomId);
+            if (watermark == null || watermark <= 0) {
+                continue;
+            }
+            List<Object[]> senders = messageRepository.findUndeliveredChatRoomSenders(
+                    chatRoomId, watermark, Message.DeliveryStatus.SENT);
+            if (!senders.isEmpty()) {
+                messageRepository.markChatRoomDelivered(chatRoomId, watermark, now,
+                        Message.DeliveryStatus.SENT, Message.DeliveryStatus.DELIVERED);
+                collect(notifications, new ChatRef(ChatType.CHATROOM, chatRoomId), senders);
+            }
+        }
+        return notifications;
+    }
+
+    private static void collect(Map<String, Map<ChatRef, Long>> notifications, ChatRef chat, List<Object[]> senders) {
+        for (Object[] row : senders) {
+            notifications.computeIfAbsent((String) row[0], sender -> new HashMap<>())
+                    .merge(chat, (Long) row[1], Math::max);
+        }
+    }
+
+    public enum ChatType {
+        CONVERSATION, CHATROOM;
+
+        /**
+         * Parse the chatType values clients already send ("conversation"/"direct", "chatroom"/"group")
+         */
+        public static ChatType parse(String value) {
+            return switch (value) {
+                case "conversation", "direct" -> CONVERSATION;
+                case "chatroom", "group" -> CHATROOM;
+                default -> throw new RuntimeException("Invalid chat type: " + value);
+            };
+        }
+    }
+
+    /**
+     * A direct conversation or chat room
+     */
+    public record ChatRef(ChatType type, Long id) {
+        public String key() {
+            return type.name().toLowerCase() + ":" + id;
+        }
+    }
+
+    private record Recipient(ChatRef chat, String username) {
+    }
+}
@@ -0,0 +1,207 @@
+package com.crm.chat.service;
+
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import com.crm.chat.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read state of chat rooms
+ * Each member has a last-read message id (ChatRoomMember.lastReadMessageId); the members' watermarks of a room
+ * are loaded once into a ReadWatermarks, which answers "read by K of N" for any message by binary search.
+ * Reads move the watermarks in memory; every push-interval the moved ones are written (one guarded UPDATE
+ * per member) and each sender whose messages were newly read gets one READ_COUNTS frame per room on
+ * /user/queue/read-receipts with the current counts, instead of one event per reader.
+ */
+@Service
+@Slf4j
+public class GroupReadService {
+
+    public static final String READ_RECEIPT_QUEUE = "/queue/read-receipts";
+
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final MessageRepository messageRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate writeTransaction;
+    private final Duration pushInterval;
+    private final int maxPushMessages;
+
+    private final Map<Long, ReadWatermarks> rooms = new ConcurrentHashMap<>();
+    // Watermarks moved in memory, not yet written
+    private final Map<Member, Long> pendingWrites = new ConcurrentHashMap<>();
+    // Per room, the span of message ids whose read counts changed since the last push
+    private final Map<Long, Range> changed = new ConcurrentHashMap<>();
+
+    public GroupReadService(ChatRoomMemberRepository chatRoomMemberRepository,
+                            MessageRepository messageRepository,
+                            SimpMessagingTemplate messagingTemplate,
+                            @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${chat.read.push-interval:2s}") Duration pushInterval,
+                            @Value("${chat.read.max-push-messages:200}") int maxPushMessages) {
+        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.messageRepository = messageRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.taskScheduler = taskScheduler;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.pushInterval = pushInterval;
+        this.maxPushMessages = maxPushMessages;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePush() {
+        taskScheduler.scheduleWithFixedDelay(this::flush, pushInterval);
+    }
+
+    // ==================== READS ====================
+
+    /**
+     * A member has read the room up to a message id
+     * @return false when the user is not a member or had already read that far
+     */
+    public boolean markRead(Long chatRoomId, Long userId, long upTo) {
+        ReadWatermarks room = room(chatRoomId);
+        long previous = room.watermark(userId);
+        if (!room.advance(userId, upTo)) {
+            return false;
+        }
+        pendingWrites.merge(new Member(chatRoomId, userId), upTo, Math::max);
+        changed.merge(chatRoomId, new Range(previous, upTo), Range::union);
+        return true;
+    }
+
+    /**
+     * How many members other than the sender have read a message, out of how many
+     */
+    public ReadSummary readSummary(Long chatRoomId, long messageId, Long senderId) {
+        ReadWatermarks room = room(chatRoomId);
+        boolean senderIsMember = room.watermark(senderId) >= 0;
+        return new ReadSummary(room.readCount(messageId, senderId), room.memberCount() - (senderIsMember ? 1 : 0));
+    }
+
+    /**
+     * Drop a room's watermarks after its membership changed; reloaded on next use
+     * Applied after commit when called inside a transaction.
+     */
+    public void invalidate(Long chatRoomId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rooms.remove(chatRoomId);
+                }
+            });
+        } else {
+            rooms.remove(chatRoomId);
+        }
+    }
+
+    private ReadWatermarks room(Long chatRoomId) {
+        return rooms.computeIfAbsent(chatRoomId, id -> {
+            Map<Long, Long> watermarks = new HashMap<>();
+            for (Object[] row : chatRoomMemberRepository.findReadWatermarks(id)) {
+                watermarks.put((Long) row[0], (Long) row[1]);
+            }
+            return new ReadWatermarks(watermarks);
+        });
+    }
+
+    // ==================== FLUSH ====================
+
+    void flush() {
+        try {
+            writePending();
+            pushChanged();
+        } catch (RuntimeException e) {
+            log.error("Read state flush failed", e);
+        }
+    }
+
+    private void writePending() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        Map<Member, Long> batch = new HashMap<>();
+        for (Member member : List.copyOf(pendingWrites.keySet())) {
+            Long upTo = pendingWrites.remove(member);
+            if (upTo != null) {
+                batch.put(member, upTo);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            writeTransaction.executeWithoutResult(status -> batch.forEach((member, upTo) ->
+                    chatRoomMemberRepository.advanceLastRead(member.chatRoomId(), member.userId(), upTo, now)));
+        } catch (RuntimeException e) {
+            batch.forEach((member, upTo) -> pendingWrites.merge(member, upTo, Math::max));
+            throw e;
+        }
+    }
+
+    private void pushChanged() {
+        for (Long chatRoomId : List.copyOf(changed.keySet())) {
+            Range range = changed.remove(chatRoomId);
+            ReadWatermarks room = rooms.get(chatRoomId);
+            if (range == null || room == null) {
+                continue;
+            }
+            // Newest messages first; older ones beyond max-push-messages keep their last pushed count
+            List<Object[]> messages = messageRepository.findChatRoomMessageSenders(
+                    chatRoomId, range.from(), range.to(), PageRequest.of(0, maxPushMessages));
+
+            Map<String, Map<Long, Integer>> countsBySender = new HashMap<>();
+            for (Object[] row : messages) {
+                Long messageId = (Long) row[0];
+                countsBySender.computeIfAbsent((String) row[2], sender -> new LinkedHashMap<>())
+                        .put(messageId, room.readCount(messageId, (Long) row[1]));
+            }
+            int members = Math.max(room.memberCount() - 1, 0);
+            countsBySender.forEach((sender, counts) -> {
+                Map<String, Object> frame = new LinkedHashMap<>();
+                frame.put("type", "READ_COUNTS");
+                frame.put("chatRoomId", chatRoomId);
+                frame.put("members", members);
+                frame.put("counts", counts);
+                messagingTemplate.convertAndSendToUser(sender, READ_RECEIPT_QUEUE, frame);
+            });
+        }
+    }
+
+    /**
+     * "Read by readBy of members" (members excludes the sender)
+     */
+    public record ReadSummary(int readBy, int members) {
+    }
+
+    private record Member(Long chatRoomId, Long userId) {
+    }
+
+    /**
+     * Message ids in (from, to]
+     */
+    private record Range(long from, long to) {
+        Range union(Range other) {
+            return new Range(Math.min(from, other.from), Math.max(to, other.to));
+        }
+    }
+}
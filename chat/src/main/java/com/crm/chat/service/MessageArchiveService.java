@@ -0,0 +1,455 @@
+package com.crm.chat.service;
+
+import com.crm.chat.dto.MessageDTO;
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.MessageArchiveSegment;
+import com.crm.chat.entity.MessageArchiveSegment.ScopeType;
+import com.crm.chat.repository.MessageArchiveSegmentRepository;
+import com.crm.chat.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Hot/cold tiering for messages
+ * The messages table keeps the last few months (hot-months) so it stays small enough to live in the
+ * InnoDB buffer pool. Older months are moved, one month at a time, into a segment file on local disk:
+ * one gzip member of MessageDTO JSON lines per conversation / chat room, indexed by a
+ * MessageArchiveSegment row. History reads that run past the hot table decode the matching members.
+ * The file is written and synced before any row is deleted, and each scope's index row and deletes
+ * commit together, so an interrupted run only leaves a partly used file; the next run writes a new one.
+ * Message lists, history and search (MessageService) read both tiers; unread counts only see the hot
+ * table, so archived messages count as read.
+ */
+@Service
+@Slf4j
+public class MessageArchiveService {
+
+    private static final String SEGMENT_PREFIX = "messages-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final MessageRepository messageRepository;
+    private final MessageArchiveSegmentRepository segmentRepository;
+    private final JsonMapper jsonMapper;
+    private final TaskScheduler maintenanceScheduler;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate archiveTransaction;
+
+    private final Path archiveDir;
+    private final int hotMonths;
+    private final int batchSize;
+    private final boolean enabled;
+    private final String cron;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Decoded segments by id, least recently read evicted first
+    private final Map<Long, List<MessageDTO>> segmentCache;
+
+    public MessageArchiveService(MessageRepository messageRepository,
+                                 MessageArchiveSegmentRepository segmentRepository,
+                                 JsonMapper jsonMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 @Qualifier("maintenanceScheduler") TaskScheduler maintenanceScheduler,
+                                 @Value("${chat.archive.path:./archive/messages}") String archivePath,
+                                 @Value("${chat.archive.hot-months:3}") int hotMonths,
+                                 @Value("${chat.archive.batch-size:1000}") int batchSize,
+                                 @Value("${chat.archive.cache-size:64}") int cacheSize,
+                                 @Value("${chat.archive.enabled:false}") boolean enabled,
+                                 @Value("${chat.archive.cron:0 30 3 * * *}") String cron) {
+        this.messageRepository = messageRepository;
+        this.segmentRepository = segmentRepository;
+        this.jsonMapper = jsonMapper;
+        this.maintenanceScheduler = maintenanceScheduler;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.archiveTransaction = new TransactionTemplate(transactionManager);
+        this.archiveDir = Paths.get(archivePath);
+        this.hotMonths = Math.max(1, hotMonths);
+        this.batchSize = batchSize;
+        this.enabled = enabled;
+        this.cron = cron;
+        this.segmentCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<MessageDTO>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleArchiving() {
+        if (enabled) {
+            maintenanceScheduler.schedule(this::archiveExpiredMonths, new CronTrigger(cron));
+            log.info("Message archiving scheduled ({}), keeping {} months hot", cron, hotMonths);
+        }
+    }
+
+    // ==================== ARCHIVING ====================
+
+    /**
+     * Archive every month older than the hot window, oldest first
+     */
+    public void archiveExpiredMonths() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Message archiving already running, skipped");
+            return;
+        }
+        try {
+            LocalDateTime oldest = readTransaction.execute(status -> messageRepository.findOldestCreatedAt());
+            if (oldest == null) {
+                return;
+            }
+            YearMonth firstHot = YearMonth.from(hotWindowStart());
+            for (YearMonth month = YearMonth.from(oldest); month.isBefore(firstHot); month = month.plusMonths(1)) {
+                archiveMonth(month);
+            }
+        } catch (RuntimeException e) {
+            log.error("Message archiving failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Move one month of messages into a new segment file
+     * Soft-deleted messages are dropped rather than archived.
+     * @return number of messages removed from the messages table
+     */
+    public int archiveMonth(YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        List<Long> conversationIds = readTransaction.execute(status ->
+                messageRepository.findConversationIdsBetween(from, to));
+        List<Long> chatRoomIds = readTransaction.execute(status ->
+                messageRepository.findChatRoomIdsBetween(from, to));
+        if (conversationIds.isEmpty() && chatRoomIds.isEmpty()) {
+            return 0;
+        }
+
+        String fileName = SEGMENT_PREFIX + month + "-" + System.currentTimeMillis() + SEGMENT_SUFFIX;
+        List<Block> blocks = new ArrayList<>(conversationIds.size() + chatRoomIds.size());
+        try {
+            Files.createDirectories(archiveDir);
+            Path temp = archiveDir.resolve(fileName + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                for (Long conversationId : conversationIds) {
+                    blocks.add(writeBlock(file, ScopeType.CONVERSATION, conversationId, from, to));
+                }
+                for (Long chatRoomId : chatRoomIds) {
+                    blocks.add(writeBlock(file, ScopeType.CHAT_ROOM, chatRoomId, from, to));
+                }
+                file.getFD().sync();
+            }
+            Files.move(temp, archiveDir.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write archive segment " + fileName, e);
+        }
+
+        int removed = 0;
+        for (Block block : blocks) {
+            removed += archiveTransaction.execute(status -> commitBlock(block, month, fileName));
+        }
+        log.info("Archived {} messages of {} into {} ({} conversations, {} chat rooms)",
+                removed, month, fileName, conversationIds.size(), chatRoomIds.size());
+        return removed;
+    }
+
+    /**
+     * Append one scope's messages for the month as a gzip member, reading the table in id order
+     */
+    private Block writeBlock(FileOutputStream file, ScopeType scopeType, Long scopeId,
+                             LocalDateTime from, LocalDateTime to) throws IOException {
+        Block block = new Block(scopeType, scopeId, file.getChannel().position());
+        // Closing the gzip stream must not close the file
+        OutputStream unclosable = new FilterOutputStream(file) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (GZIPOutputStream gzip = new GZIPOutputStream(unclosable, 64 * 1024)) {
+            long afterId = 0;
+            List<Message> chunk;
+            do {
+                long lastId = afterId;
+                chunk = readTransaction.execute(status -> scopeType == ScopeType.CONVERSATION
+                        ? messageRepository.findConversationMessagesBetween(scopeId, from, to, lastId, PageRequest.of(0, batchSize))
+                        : messageRepository.findChatRoomMessagesBetween(scopeId, from, to, lastId, PageRequest.of(0, batchSize)));
+                for (Message message : chunk) {
+                    block.ids.add(message.getId());
+                    if (Boolean.TRUE.equals(message.getDeleted())) {
+                        continue;
+                    }
+                    gzip.write(jsonMapper.writeValueAsBytes(MessageDTO.fromEntity(message)));
+                    gzip.write('\n');
+                    block.include(message.getCreatedAt());
+                }
+                if (!chunk.isEmpty()) {
+                    afterId = chunk.get(chunk.size() - 1).getId();
+                }
+            } while (chunk.size() == batchSize);
+        }
+        block.length = file.getChannel().position() - block.offset;
+        return block;
+    }
+
+    /**
+     * Index the block and delete its rows, in one transaction
+     */
+    private int commitBlock(Block block, YearMonth month, String fileName) {
+        if (block.messageCount > 0) {
+            MessageArchiveSegment segment = new MessageArchiveSegment();
+            segment.setScopeType(block.scopeType);
+            segment.setScopeId(block.scopeId);
+            segment.setArchiveMonth(month.toString());
+            segment.setFileName(fileName);
+            segment.setFileOffset(block.offset);
+            segment.setLength(block.length);
+            segment.setMessageCount(block.messageCount);
+            segment.setFirstCreatedAt(block.firstCreatedAt);
+            segment.setLastCreatedAt(block.lastCreatedAt);
+            segment.setArchivedAt(LocalDateTime.now());
+            segmentRepository.save(segment);
+        }
+        int removed = 0;
+        for (int i = 0; i < block.ids.size(); i += batchSize) {
+            removed += messageRepository.deleteAllByIdIn(block.ids.subList(i, Math.min(i + batchSize, block.ids.size())));
+        }
+        return removed;
+    }
+
+    /**
+     * Start of the oldest month kept in the messages table
+     */
+    public LocalDateTime hotWindowStart() {
+        return YearMonth.now().minusMonths(hotMonths - 1).atDay(1).atStartOfDay();
+    }
+
+    // ==================== RETENTION ====================
+
+    /**
+     * Remove an archived block for retention: its index row goes first, then the segment file once no
+     * other row points into it
+     * @return the messages the block held, so the caller can clean up what they reference
+     */
+    public List<MessageDTO> dropSegment(MessageArchiveSegment segment) {
+        List<MessageDTO> messages;
+        try {
+            messages = readSegment(segment);
+        } catch (UncheckedIOException e) {
+            log.warn("Dropping unreadable archive block {} of {}", segment.getId(), segment.getFileName(), e);
+            messages = List.of();
+        }
+        archiveTransaction.executeWithoutResult(status -> segmentRepository.deleteById(segment.getId()));
+        synchronized (segmentCache) {
+            segmentCache.remove(segment.getId());
+        }
+
+        if (readTransaction.execute(status -> segmentRepository.countByFileName(segment.getFileName())) == 0) {
+            try {
+                Files.deleteIfExists(archiveDir.resolve(segment.getFileName()));
+                log.info("Deleted archive segment {}, no blocks left", segment.getFileName());
+            } catch (IOException e) {
+                log.warn("Failed to delete archive segment {}", segment.getFileName(), e);
+            }
+        }
+        return messages;
+    }
+
+    // ==================== HISTORY ====================
+
+    /**
+     * Archived messages of a conversation created before the given time, newest first
+     */
+    public List<MessageDTO> findConversationHistory(Long conversationId, LocalDateTime before, int limit) {
+        return findHistory(ScopeType.CONVERSATION, conversationId, before, limit);
+    }
+
+    /**
+     * Archived messages of a chat room created before the given time, newest first
+     */
+    public List<MessageDTO> findChatRoomHistory(Long chatRoomId, LocalDateTime before, int limit) {
+        return findHistory(ScopeType.CHAT_ROOM, chatRoomId, before, limit);
+    }
+
+    /**
+     * All archived messages of a conversation, oldest first
+     */
+    public List<MessageDTO> findConversationArchive(Long conversationId) {
+        return findArchive(ScopeType.CONVERSATION, conversationId);
+    }
+
+    /**
+     * All archived messages of a chat room, oldest first
+     */
+    public List<MessageDTO> findChatRoomArchive(Long chatRoomId) {
+        return findArchive(ScopeType.CHAT_ROOM, chatRoomId);
+    }
+
+    /**
+     * Archived messages of a conversation containing the query (ignoring case), newest first
+     */
+    public List<MessageDTO> searchConversationArchive(Long conversationId, String query) {
+        return search(findArchive(ScopeType.CONVERSATION, conversationId), query);
+    }
+
+    /**
+     * Archived messages of a chat room containing the query (ignoring case), newest first
+     */
+    public List<MessageDTO> searchChatRoomArchive(Long chatRoomId, String query) {
+        return search(findArchive(ScopeType.CHAT_ROOM, chatRoomId), query);
+    }
+
+    private List<MessageDTO> findArchive(ScopeType scopeType, Long scopeId) {
+        List<MessageDTO> archived = new ArrayList<>();
+        for (MessageArchiveSegment segment
+                : segmentRepository.findByScopeTypeAndScopeIdOrderByFirstCreatedAtAsc(scopeType, scopeId)) {
+            archived.addAll(readSegment(segment));
+        }
+        return archived;
+    }
+
+    private static List<MessageDTO> search(List<MessageDTO> oldestFirst, String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<MessageDTO> matches = new ArrayList<>();
+        for (int i = oldestFirst.size() - 1; i >= 0; i--) {
+            MessageDTO message = oldestFirst.get(i);
+            if (message.getContent() != null && message.getContent().toLowerCase(Locale.ROOT).contains(needle)) {
+                matches.add(message);
+            }
+        }
+        return matches;
+    }
+
+    private List<MessageDTO> findHistory(ScopeType scopeType, Long scopeId, LocalDateTime before, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<MessageDTO> history = new ArrayList<>(limit);
+        for (MessageArchiveSegment segment : segmentRepository.findSegmentsBefore(scopeType, scopeId, before)) {
+            List<MessageDTO> messages = readSegment(segment);
+            // Stored oldest first
+            for (int i = messages.size() - 1; i >= 0 && history.size() < limit; i--) {
+                MessageDTO message = messages.get(i);
+                if (message.getCreatedAt().isBefore(before)) {
+                    history.add(message);
+                }
+            }
+            if (history.size() >= limit) {
+                break;
+            }
+        }
+        return history;
+    }
+
+    private List<MessageDTO> readSegment(MessageArchiveSegment segment) {
+        synchronized (segmentCache) {
+            List<MessageDTO> cached = segmentCache.get(segment.getId());
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        byte[] compressed = new byte[Math.toIntExact(segment.getLength())];
+        List<MessageDTO> messages = new ArrayList<>(segment.getMessageCount());
+        try (FileChannel channel = FileChannel.open(archiveDir.resolve(segment.getFileName()), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+            long position = segment.getFileOffset();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Segment truncated at " + position);
+                }
+                position += read;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    messages.add(jsonMapper.readValue(line, MessageDTO.class));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive segment " + segment.getFileName()
+                    + " at " + segment.getFileOffset(), e);
+        }
+
+        List<MessageDTO> decoded = Collections.unmodifiableList(messages);
+        synchronized (segmentCache) {
+            segmentCache.put(segment.getId(), decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * One scope's gzip member while the segment file is being written
+     */
+    private static final class Block {
+        final ScopeType scopeType;
+        final Long scopeId;
+        final long offset;
+        final List<Long> ids = new ArrayList<>();
+        long length;
+        int messageCount;
+        LocalDateTime firstCreatedAt;
+        LocalDateTime lastCreatedAt;
+
+        Block(ScopeType scopeType, Long scopeId, long offset) {
+            this.scopeType = scopeType;
+            this.scopeId = scopeId;
+            this.offset = offset;
+        }
+
+        void include(LocalDateTime createdAt) {
+            messageCount++;
+            if (firstCreatedAt == null || createdAt.isBefore(firstCreatedAt)) {
+                firstCreatedAt = createdAt;
+            }
+            if (lastCreatedAt == null || createdAt.isAfter(lastCreatedAt)) {
+                lastCreatedAt = createdAt;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.crm.chat.service;
 
+import com.crm.chat.dto.MessageDTO;
 import com.crm.chat.entity.*;
 import com.crm.chat.repository.MessageRepository;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +24,7 @@ public class MessageService {
     private final ConversationService conversationService;
     private final ChatRoomService chatRoomService;
     private final UserService userService;
+    private final MessageArchiveService messageArchiveService;
 
     // Send message in one-to-one conversation
     public Message sendDirectMessage(Long senderId, Long conversationId, String content) {
@@ -84,9 +87,13 @@ public class MessageService {
         return message;
     }
 
-    // Get conversation messages
-    public List<Message> getConversationMessages(Long conversationId) {
-        return messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
+    /**
+     * All conversation messages, oldest first: archived months, then the hot table
+     */
+    public List<MessageDTO> getConversationMessages(Long conversationId) {
+        List<MessageDTO> messages = messageArchiveService.findConversationArchive(conversationId);
+        messages.addAll(toDTOs(messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId)));
+        return messages;
     }
 
     // Get conversation messages with pagination
@@ -95,9 +102,13 @@ public class MessageService {
         return messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
     }
 
-    // Get chat room messages
-    public List<Message> getChatRoomMessages(Long chatRoomId) {
-        return messageRepository.findByChatRoomIdOrderByCreatedAtAsc(chatRoomId);
+    /**
+     * All chat room messages, oldest first: archived months, then the hot table
+     */
+    public List<MessageDTO> getChatRoomMessages(Long chatRoomId) {
+        List<MessageDTO> messages = messageArchiveService.findChatRoomArchive(chatRoomId);
+        messages.addAll(toDTOs(messageRepository.findByChatRoomIdOrderByCreatedAtAsc(chatRoomId)));
+        return messages;
     }
 
     // Get chat room messages with pagination
@@ -106,6 +117,49 @@ public class MessageService {
         return messageRepository.findByChatRoomIdOrderByCreatedAtDesc(chatRoomId, pageable);
     }
 
+    // ==================== HISTORY ====================
+
+    /**
+     * Conversation messages created before the given time, newest first
+     * Reads the hot table and continues into the archive once it runs out.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getConversationHistory(Long conversationId, LocalDateTime before, int limit) {
+        List<MessageDTO> history = toDTOs(messageRepository.findConversationHistory(
+                conversationId, before, PageRequest.of(0, limit)));
+        if (history.size() < limit) {
+            history.addAll(messageArchiveService.findConversationHistory(
+                    conversationId, oldest(history, before), limit - history.size()));
+        }
+        return history;
+    }
+
+    /**
+     * Chat room messages created before the given time, newest first
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getChatRoomHistory(Long chatRoomId, LocalDateTime before, int limit) {
+        List<MessageDTO> history = toDTOs(messageRepository.findChatRoomHistory(
+                chatRoomId, before, PageRequest.of(0, limit)));
+        if (history.size() < limit) {
+            history.addAll(messageArchiveService.findChatRoomHistory(
+                    chatRoomId, oldest(history, before), limit - history.size()));
+        }
+        return history;
+    }
+
+    private static List<MessageDTO> toDTOs(List<Message> messages) {
+        List<MessageDTO> dtos = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            dtos.add(MessageDTO.fromEntity(message));
+        }
+        return dtos;
+    }
+
+    private static LocalDateTime oldest(List<MessageDTO> newestFirst, LocalDateTime before) {
+        return newestFirst.isEmpty() ? before : newestFirst.get(newestFirst.size() - 1).getCreatedAt();
+    }
+
     // Mark message as read
     public void markMessageAsRead(Long messageId) {
         Message message = messageRepository.findById(messageId)
@@ -140,6 +194,7 @@ public class MessageService {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
         message.setDeleted(true);
+        message.setDeletedAt(LocalDateTime.now());
         messageRepository.save(message);
     }
 
@@ -163,13 +218,18 @@ public class MessageService {
 
 
     /**
-     * Search messages based on chat type and ID
+     * Search messages based on chat type and ID, newest first (the hot table, then archived months)
      */
-    public List<Message> searchMessages(String chatType, Long chatId, String query) {
+    @Transactional(readOnly = true)
+    public List<MessageDTO> searchMessages(String chatType, Long chatId, String query) {
+        List<MessageDTO> matches;
         if ("direct".equalsIgnoreCase(chatType) || "conversation".equalsIgnoreCase(chatType)) {
-            return messageRepository.searchConversationMessages(chatId, query);
+            matches = toDTOs(messageRepository.searchConversationMessages(chatId, query));
+            matches.addAll(messageArchiveService.searchConversationArchive(chatId, query));
         } else {
-            return messageRepository.searchChatRoomMessages(chatId, query);
+            matches = toDTOs(messageRepository.searchChatRoomMessages(chatId, query));
+            matches.addAll(messageArchiveService.searchChatRoomArchive(chatId, query));
         }
+        return matches;
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.crm.chat.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latest of count new messages in one conversation, as sent in NOTIFICATIONS, NOTIFICATION_DIGEST and
+ * CATCH_UP frames; preview is null for silent items
+ */
+record NotificationItem(Long conversationId, Long senderId, String senderName, int count,
+                        Long messageId, LocalDateTime timestamp, boolean silent, String preview) {
+
+    NotificationItem then(NotificationItem next) {
+        return new NotificationItem(conversationId, next.senderId, next.senderName, count + next.count,
+                next.messageId, next.timestamp, next.silent, next.preview);
+    }
+
+    Map<String, Object> toFrame() {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("conversationId", conversationId);
+        frame.put("senderId", senderId);
+        frame.put("senderName", senderName);
+        frame.put("count", count);
+        frame.put("messageId", messageId);
+        frame.put("timestamp", timestamp.toString());
+        frame.put("silent", silent);
+        if (preview != null) {
+            frame.put("preview", preview);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,203 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.User;
+import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.presence.DeviceSessionRegistry;
+import com.crm.chat.presence.PresenceStatistics;
+import com.crm.chat.presence.UserStatusChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes new direct message notifications
+ * Each notification is classified from in-memory state only: the recipient's devices (DeviceSessionRegistry),
+ * conversation settings (ConversationSettingsService) and status (PresenceStatistics).
+ * - HIDDEN: the recipient hid the conversation, nothing is sent
+ * - OFFLINE: no connected device; the item goes to the recipient's CatchUpQueue instead (silent if muted)
+ * - DIGEST: the recipient is in DND / IN_MEETING; a silent item is sent and the conversation is counted in a
+ *   digest that goes out as one NOTIFICATION_DIGEST frame when they leave DND
+ * - SILENT: the conversation is muted; a silent item is sent
+ * - ALERT: an item with a preview of the message (at most preview-length characters)
+ * Silent items carry ids and counts but no content, so clients can ack delivery and badge the chat without
+ * alerting. Items for a user are coalesced per conversation and sent every batch-window as one NOTIFICATIONS
+ * frame on /user/queue/notifications.
+ */
+@Service
+@Slf4j
+public class NotificationRouter {
+
+    public static final String NOTIFICATION_QUEUE = "/queue/notifications";
+
+    public enum Route {
+        OFFLINE, HIDDEN, DIGEST, SILENT, ALERT
+    }
+
+    private final DeviceSessionRegistry deviceSessionRegistry;
+    private final ConversationSettingsService settingsService;
+    private final PresenceStatistics presenceStatistics;
+    private final CatchUpQueue catchUpQueue;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Duration batchWindow;
+    private final int previewLength;
+    private final Map<Route, Counter> routed = new EnumMap<>(Route.class);
+
+    // Username -> conversation id -> item, waiting for the next batch
+    private final Map<String, Map<Long, NotificationItem>> pending = new ConcurrentHashMap<>();
+    // Username -> conversation id -> what arrived while the user was in DND
+    private final Map<String, Map<Long, NotificationItem>> digests = new ConcurrentHashMap<>();
+
+    public NotificationRouter(DeviceSessionRegistry deviceSessionRegistry,
+                              ConversationSettingsService settingsService,
+                              PresenceStatistics presenceStatistics,
+                              CatchUpQueue catchUpQueue,
+                              SimpMessagingTemplate messagingTemplate,
+                              @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.notifications.batch-window:500ms}") Duration batchWindow,
+                              @Value("${chat.notifications.preview-length:120}") int previewLength) {
+        this.deviceSessionRegistry = deviceSessionRegistry;
+        this.settingsService = settingsService;
+        this.presenceStatistics = presenceStatistics;
+        this.catchUpQueue = catchUpQueue;
+        this.messagingTemplate = messagingTemplate;
+        this.taskScheduler = taskScheduler;
+        this.batchWindow = batchWindow;
+        this.previewLength = previewLength;
+        for (Route route : Route.values()) {
+            routed.put(route, Counter.builder("chat.notifications.routed")
+                    .description("New message notifications by routing decision")
+                    .tag("route", route.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleFlush() {
+        taskScheduler.scheduleWithFixedDelay(this::flush, batchWindow);
+    }
+
+    // ==================== ROUTING ====================
+
+    /**
+     * Queue the notification of a new direct message for its recipient
+     */
+    public Route route(User recipient, User sender, Message message) {
+        Route route = classify(recipient, sender);
+        routed.get(route).increment();
+        if (route == Route.HIDDEN) {
+            return route;
+        }
+        if (route == Route.OFFLINE) {
+            catchUpQueue.add(recipient, item(sender, message,
+                    settingsService.isMuted(recipient.getId(), sender.getId())));
+            return route;
+        }
+        NotificationItem item = item(sender, message, route != Route.ALERT);
+        pending.compute(recipient.getUsername(), (username, items) -> add(items, item));
+        if (route == Route.DIGEST) {
+            digests.compute(recipient.getUsername(), (username, items) -> add(items, item));
+        }
+        return route;
+    }
+
+    private Route classify(User recipient, User sender) {
+        if (settingsService.isHidden(recipient.getId(), sender.getId())) {
+            return Route.HIDDEN;
+        }
+        if (!deviceSessionRegistry.isOnline(recipient.getUsername())) {
+            return Route.OFFLINE;
+        }
+        UserStatus status = presenceStatistics.status(recipient.getId());
+        if (status != null && status.isDND()) {
+            return Route.DIGEST;
+        }
+        if (settingsService.isMuted(recipient.getId(), sender.getId())) {
+            return Route.SILENT;
+        }
+        return Route.ALERT;
+    }
+
+    private NotificationItem item(User sender, Message message, boolean silent) {
+        return new NotificationItem(message.getConversation().getId(), sender.getId(), sender.getFullName(), 1,
+                message.getId(), message.getCreatedAt(), silent, silent ? null : preview(message.getContent()));
+    }
+
+    private String preview(String content) {
+        if (content == null || content.length() <= previewLength) {
+            return content;
+        }
+        int end = Character.isHighSurrogate(content.charAt(previewLength - 1)) ? previewLength - 1 : previewLength;
+        return content.substring(0, end) + "…";
+    }
+
+    private static Map<Long, NotificationItem> add(Map<Long, NotificationItem> items, NotificationItem item) {
+        if (items == null) {
+            items = new LinkedHashMap<>();
+        }
+        items.merge(item.conversationId(), item, NotificationItem::then);
+        return items;
+    }
+
+    /**
+     * Send the digest of what arrived during DND once the user leaves it
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(UserStatusChangedEvent event) {
+        if (event.previous() == null || !event.previous().isDND() || event.status().isDND()) {
+            return;
+        }
+        Map<Long, NotificationItem> digest = digests.remove(event.username());
+        if (digest == null || !event.status().isVisible()) {
+            return;
+        }
+        List<Map<String, Object>> items = new ArrayList<>();
+        digest.values().forEach(item -> items.add(item.toFrame()));
+
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "NOTIFICATION_DIGEST");
+        frame.put("items", items);
+        messagingTemplate.convertAndSendToUser(event.username(), NOTIFICATION_QUEUE, frame);
+    }
+
+    // ==================== FLUSH ====================
+
+    void flush() {
+        for (String username : List.copyOf(pending.keySet())) {
+            Map<Long, NotificationItem> batch = pending.remove(username);
+            if (batch == null) {
+                continue;
+            }
+            List<Map<String, Object>> items = new ArrayList<>();
+            batch.values().forEach(item -> items.add(item.toFrame()));
+
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "NOTIFICATIONS");
+            frame.put("items", items);
+            try {
+                messagingTemplate.convertAndSendToUser(username, NOTIFICATION_QUEUE, frame);
+            } catch (RuntimeException e) {
+                log.warn("Error sending notifications to {}: {}", username, e.getMessage());
+            }
+        }
+    }
+}
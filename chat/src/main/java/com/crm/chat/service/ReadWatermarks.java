@@ -0,0 +1,91 @@
+package com.crm.chat.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Last-read message ids of the members of one chat room
+ * Kept as one watermark per member plus the same values in a sorted array, so "how many members have read
+ * message X" is a binary search (O(log N)) and moving a member's watermark shifts part of the array.
+ * Members that have read nothing have watermark 0.
+ */
+public class ReadWatermarks {
+
+    private final Map<Long, Long> byMember = new HashMap<>();
+    private long[] sorted;
+
+    public ReadWatermarks(Map<Long, Long> watermarks) {
+        sorted = new long[watermarks.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : watermarks.entrySet()) {
+            long watermark = entry.getValue() != null ? entry.getValue() : 0;
+            byMember.put(entry.getKey(), watermark);
+            sorted[i++] = watermark;
+        }
+        Arrays.sort(sorted);
+    }
+
+    /**
+     * Move a member's watermark forward
+     * @return false when the user is not a member or has already read that far
+     */
+    public synchronized boolean advance(Long userId, long upTo) {
+        Long current = byMember.get(userId);
+        if (current == null || upTo <= current) {
+            return false;
+        }
+        byMember.put(userId, upTo);
+
+        // Take the old value out and slide the values up to the new one down into its place
+        int from = lowerBound(current);
+        int to = lowerBound(upTo) - 1;
+        System.arraycopy(sorted, from + 1, sorted, from, to - from);
+        sorted[to] = upTo;
+        return true;
+    }
+
+    /**
+     * Watermark of a member, or -1 for a non-member
+     */
+    public synchronized long watermark(Long userId) {
+        return byMember.getOrDefault(userId, -1L);
+    }
+
+    public synchronized int memberCount() {
+        return sorted.length;
+    }
+
+    /**
+     * Number of members that have read a message
+     */
+    public synchronized int readCount(long messageId) {
+        return sorted.length - lowerBound(messageId);
+    }
+
+    /**
+     * Number of members other than the given one (the sender) that have read a message
+     */
+    public synchronized int readCount(long messageId, Long excludedUserId) {
+        int count = readCount(messageId);
+        Long excluded = byMember.get(excludedUserId);
+        return excluded != null && excluded >= messageId ? count - 1 : count;
+    }
+
+    /**
+     * Index of the first watermark >= value
+     */
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
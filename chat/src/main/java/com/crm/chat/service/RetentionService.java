@@ -0,0 +1,559 @@
+package com.crm.chat.service;
+
+import com.crm.chat.dto.MessageDTO;
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.MessageArchiveSegment;
+import com.crm.chat.entity.MessageArchiveSegment.ScopeType;
+import com.crm.chat.entity.RetentionCheckpoint;
+import com.crm.chat.entity.RetentionRule;
+import com.crm.chat.entity.RetentionRule.Target;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.repository.CallRepository;
+import com.crm.chat.repository.MessageArchiveSegmentRepository;
+import com.crm.chat.repository.MessageRepository;
+import com.crm.chat.repository.RetentionCheckpointRepository;
+import com.crm.chat.repository.RetentionRuleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Retention engine for messages, calls and uploads
+ * Rules (RetentionRule) give a retention period per target, as a default or per chat room; the
+ * chat.retention.* properties are the defaults when no default row exists. A scheduled run walks
+ * each table in primary-key order and deletes expired rows in batches of batch-size, each batch in
+ * its own short transaction together with its checkpoint, so locks are held only on the rows of one
+ * batch and an interrupted run resumes where it stopped. Between batches the run sleeps so it stays
+ * under duty-cycle of wall time, and it stops at max-run-time.
+ * Expired months already moved to the archive are dropped a block at a time, upload files go with the
+ * messages that reference them, recordings with their calls, and uploads no message references are
+ * purged after a grace period.
+ */
+@Service
+@Slf4j
+public class RetentionService {
+
+    private static final List<Call.CallStatus> FINISHED_CALLS = List.of(
+            Call.CallStatus.ENDED, Call.CallStatus.MISSED, Call.CallStatus.REJECTED, Call.CallStatus.FAILED);
+    // NOT IN () is not valid SQL; no row has id -1
+    private static final List<Long> NO_ROOMS = List.of(-1L);
+    private static final String UPLOAD_URL_PREFIX = "/uploads/";
+
+    private final MessageRepository messageRepository;
+    private final CallRepository callRepository;
+    private final CallParticipantRepository callParticipantRepository;
+    private final MessageArchiveSegmentRepository segmentRepository;
+    private final RetentionRuleRepository ruleRepository;
+    private final RetentionCheckpointRepository checkpointRepository;
+    private final MessageArchiveService messageArchiveService;
+    private final CallRecordingService callRecordingService;
+    private final MeterRegistry meterRegistry;
+    private final TaskScheduler maintenanceScheduler;
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate readTransaction;
+
+    private final boolean enabled;
+    private final String cron;
+    private final Map<Target, Integer> defaultDays = new EnumMap<>(Target.class);
+    private final int batchSize;
+    private final double dutyCycle;
+    private final Duration maxRunTime;
+    private final Path uploadDir;
+    private final Duration uploadGrace;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RetentionService(MessageRepository messageRepository,
+                            CallRepository callRepository,
+                            CallParticipantRepository callParticipantRepository,
+                            MessageArchiveSegmentRepository segmentRepository,
+                            RetentionRuleRepository ruleRepository,
+                            RetentionCheckpointRepository checkpointRepository,
+                            MessageArchiveService messageArchiveService,
+                            CallRecordingService callRecordingService,
+                            MeterRegistry meterRegistry,
+                            PlatformTransactionManager transactionManager,
+                            @Qualifier("maintenanceScheduler") TaskScheduler maintenanceScheduler,
+                            @Value("${chat.retention.enabled:false}") boolean enabled,
+                            @Value("${chat.retention.cron:0 0 4 * * *}") String cron,
+                            @Value("${chat.retention.messages-days:0}") int messagesDays,
+                            @Value("${chat.retention.deleted-messages-days:30}") int deletedMessagesDays,
+                            @Value("${chat.retention.calls-days:365}") int callsDays,
+                            @Value("${chat.retention.batch-size:500}") int batchSize,
+                            @Value("${chat.retention.duty-cycle:0.25}") double dutyCycle,
+                            @Value("${chat.retention.max-run-time:1h}") Duration maxRunTime,
+                            @Value("${chat.retention.upload-dir:src/main/resources/static/uploads}") String uploadDir,
+                            @Value("${chat.retention.upload-grace:24h}") Duration uploadGrace) {
+        this.messageRepository = messageRepository;
+        this.callRepository = callRepository;
+        this.callParticipantRepository = callParticipantRepository;
+        this.segmentRepository = segmentRepository;
+        this.ruleRepository = ruleRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.messageArchiveService = messageArchiveService;
+        this.callRecordingService = callRecordingService;
+        this.meterRegistry = meterRegistry;
+        this.maintenanceScheduler = maintenanceScheduler;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.cron = cron;
+        this.defaultDays.put(Target.MESSAGES, messagesDays);
+        this.defaultDays.put(Target.DELETED_MESSAGES, deletedMessagesDays);
+        this.defaultDays.put(Target.CALLS, callsDays);
+        this.batchSize = batchSize;
+        this.dutyCycle = Math.clamp(dutyCycle, 0.01, 1.0);
+        this.maxRunTime = maxRunTime;
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.uploadGrace = uploadGrace;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRetention() {
+        if (enabled) {
+            maintenanceScheduler.schedule(this::runRetention, new CronTrigger(cron));
+            log.info("Retention scheduled ({}), batches of {}, duty cycle {}", cron, batchSize, dutyCycle);
+        }
+    }
+
+    // ==================== RULES ====================
+
+    /**
+     * Effective retention of a chat room per target, in days (0 = kept forever)
+     */
+    public Map<Target, Integer> getChatRoomRetention(Long chatRoomId) {
+        Map<Target, Integer> days = new EnumMap<>(Target.class);
+        for (Target target : List.of(Target.MESSAGES, Target.CALLS)) {
+            days.put(target, ruleRepository.findByTargetAndChatRoomId(target, chatRoomId)
+                    .map(RetentionRule::getRetentionDays)
+                    .orElseGet(() -> defaultRetentionDays(target)));
+        }
+        return days;
+    }
+
+    /**
+     * Set how long a chat room keeps messages or calls; null removes the room's rule (back to the default)
+     */
+    public void setChatRoomRetention(Long chatRoomId, Target target, Integer days) {
+        if (target == Target.DELETED_MESSAGES) {
+            throw new RuntimeException("Deleted-message retention cannot be set per chat room");
+        }
+        if (days != null && days < 0) {
+            throw new RuntimeException("Retention days must be 0 (keep forever) or more");
+        }
+        batchTransaction.executeWithoutResult(status -> {
+            RetentionRule rule = ruleRepository.findByTargetAndChatRoomId(target, chatRoomId).orElse(null);
+            if (days == null) {
+                if (rule != null) {
+                    ruleRepository.delete(rule);
+                }
+                return;
+            }
+            if (rule == null) {
+                rule = new RetentionRule();
+                rule.setTarget(target);
+                rule.setChatRoomId(chatRoomId);
+            }
+            rule.setRetentionDays(days);
+            rule.setUpdatedAt(LocalDateTime.now());
+            ruleRepository.save(rule);
+        });
+    }
+
+    private int defaultRetentionDays(Target target) {
+        return ruleRepository.findByTargetAndChatRoomIdIsNull(target)
+                .map(RetentionRule::getRetentionDays)
+                .orElse(defaultDays.get(target));
+    }
+
+    // ==================== RUN ====================
+
+    /**
+     * One retention pass over every target
+     * @return rows (or files) reclaimed per task
+     */
+    public Map<String, Long> runRetention() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Retention already running, skipped");
+            return Map.of();
+        }
+        Run run = new Run(Instant.now().plus(maxRunTime));
+        try {
+            purgeMessages(run);
+            purgeDeletedMessages(run);
+            purgeCalls(run);
+            purgeOrphanUploads(run);
+        } catch (RuntimeException e) {
+            log.error("Retention run failed", e);
+        } finally {
+            running.set(false);
+        }
+        if (run.outOfTime()) {
+            log.warn("Retention stopped at max-run-time ({}), the next run resumes from the checkpoints", maxRunTime);
+        }
+        log.info("Retention reclaimed {}", run.reclaimed);
+        return run.reclaimed;
+    }
+
+    private void purgeMessages(Run run) {
+        List<RetentionRule> roomRules = readTransaction.execute(status ->
+                ruleRepository.findByTargetAndChatRoomIdIsNotNull(Target.MESSAGES));
+        for (RetentionRule rule : roomRules) {
+            if (rule.getRetentionDays() == 0) {
+                continue;
+            }
+            Long chatRoomId = rule.getChatRoomId();
+            LocalDateTime cutoff = cutoff(rule.getRetentionDays());
+            drain(run, "messages:room:" + chatRoomId, "messages", (afterId, page) ->
+                    deleteMessages(messageRepository.findExpiredChatRoomMessages(chatRoomId, cutoff, afterId, page)));
+            dropArchived(run, readTransaction.execute(status -> segmentRepository
+                    .findByScopeTypeAndScopeIdAndLastCreatedAtBefore(ScopeType.CHAT_ROOM, chatRoomId, cutoff)));
+        }
+
+        int days = readTransaction.execute(status -> defaultRetentionDays(Target.MESSAGES));
+        if (days == 0) {
+            return;
+        }
+        LocalDateTime cutoff = cutoff(days);
+        List<Long> excluded = chatRoomIds(roomRules);
+        drain(run, "messages", "messages", (afterId, page) ->
+                deleteMessages(messageRepository.findExpiredMessages(cutoff, excluded, afterId, page)));
+        Set<Long> excludedRooms = Set.copyOf(excluded);
+        dropArchived(run, readTransaction.execute(status -> segmentRepository.findByLastCreatedAtBefore(cutoff)).stream()
+                .filter(segment -> segment.getScopeType() != ScopeType.CHAT_ROOM
+                        || !excludedRooms.contains(segment.getScopeId()))
+                .toList());
+    }
+
+    private void purgeDeletedMessages(Run run) {
+        int days = readTransaction.execute(status -> defaultRetentionDays(Target.DELETED_MESSAGES));
+        LocalDateTime cutoff = cutoff(days);
+        drain(run, "deleted-messages", "deleted-messages", (afterId, page) ->
+                deleteMessages(messageRepository.findDeletedMessagesBefore(cutoff, afterId, page)));
+    }
+
+    private void purgeCalls(Run run) {
+        List<RetentionRule> roomRules = readTransaction.execute(status ->
+                ruleRepository.findByTargetAndChatRoomIdIsNotNull(Target.CALLS));
+        for (RetentionRule rule : roomRules) {
+            if (rule.getRetentionDays() == 0) {
+                continue;
+            }
+            Long chatRoomId = rule.getChatRoomId();
+            LocalDateTime cutoff = cutoff(rule.getRetentionDays());
+            drain(run, "calls:room:" + chatRoomId, "calls", (afterId, page) -> deleteCalls(
+                    callRepository.findExpiredChatRoomCalls(chatRoomId, FINISHED_CALLS, cutoff, afterId, page)));
+        }
+
+        int days = readTransaction.execute(status -> defaultRetentionDays(Target.CALLS));
+        if (days == 0) {
+            return;
+        }
+        LocalDateTime cutoff = cutoff(days);
+        List<Long> excluded = chatRoomIds(roomRules);
+        drain(run, "calls", "calls", (afterId, page) -> deleteCalls(
+                callRepository.findExpiredCalls(FINISHED_CALLS, cutoff, excluded, afterId, page)));
+    }
+
+    // ==================== BATCHES ====================
+
+    /**
+     * Run a task batch by batch from its checkpoint until a short batch ends the pass
+     */
+    private void drain(Run run, String task, String target, BatchStep step) {
+        long afterId = readTransaction.execute(status -> checkpointRepository.findById(task)
+                .map(RetentionCheckpoint::getLastId)
+                .orElse(0L));
+        Pageable page = PageRequest.of(0, batchSize);
+        while (!run.outOfTime()) {
+            long started = System.nanoTime();
+            long from = afterId;
+            Batch batch = batchTransaction.execute(status -> {
+                Batch next = step.next(from, page);
+                RetentionCheckpoint checkpoint = checkpointRepository.findById(task)
+                        .orElseGet(() -> new RetentionCheckpoint(task));
+                checkpoint.setLastId(next.scanned() < batchSize ? 0L : next.lastId());
+                checkpoint.setReclaimed(checkpoint.getReclaimed() + next.reclaimed());
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+                return next;
+            });
+            // Files only go once the rows pointing at them are gone for good
+            deleteUploads(batch.uploads());
+            deleteRecordings(run, batch.recordings());
+            run.reclaimed(task, batch.reclaimed());
+            reclaimedCounter(target).increment(batch.reclaimed());
+            if (batch.scanned() < batchSize) {
+                return;
+            }
+            afterId = batch.lastId();
+            run.pause(System.nanoTime() - started);
+        }
+    }
+
+    private Batch deleteMessages(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return Batch.EMPTY;
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<String> uploads = new ArrayList<>();
+        for (Object[] row : rows) {
+            ids.add((Long) row[0]);
+            String upload = uploadName((String) row[1]);
+            if (upload != null) {
+                uploads.add(upload);
+            }
+        }
+        int deleted = messageRepository.deleteAllByIdIn(ids);
+        return new Batch(rows.size(), ids.get(ids.size() - 1), deleted, uploads, List.of());
+    }
+
+    private Batch deleteCalls(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return Batch.EMPTY;
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        List<String> recordings = new ArrayList<>();
+        for (Object[] row : rows) {
+            ids.add((Long) row[0]);
+            if (row[1] != null) {
+                recordings.add((String) row[1]);
+            }
+        }
+        callParticipantRepository.deleteByCallIdIn(ids);
+        int deleted = callRepository.deleteAllByIdIn(ids);
+        return new Batch(rows.size(), ids.get(ids.size() - 1), deleted, List.of(), recordings);
+    }
+
+    /**
+     * Drop expired archive blocks; a block is dropped once its newest message is past the cutoff
+     */
+    private void dropArchived(Run run, List<MessageArchiveSegment> segments) {
+        for (MessageArchiveSegment segment : segments) {
+            if (run.outOfTime()) {
+                return;
+            }
+            long started = System.nanoTime();
+            List<String> uploads = new ArrayList<>();
+            for (MessageDTO message : messageArchiveService.dropSegment(segment)) {
+                String upload = uploadName(message.getContent());
+                if (upload != null) {
+                    uploads.add(upload);
+                }
+            }
+            deleteUploads(uploads);
+            run.reclaimed("archive", segment.getMessageCount());
+            reclaimedCounter("archived-messages").increment(segment.getMessageCount());
+            run.pause(System.nanoTime() - started);
+        }
+    }
+
+    // ==================== UPLOADS ====================
+
+    /**
+     * Delete upload files no message points at
+     * Only files from within the hot window are considered: older files may be referenced from the
+     * archive, and those go when retention drops the archived message. Files younger than the grace
+     * period are skipped, as their message may not be committed yet.
+     */
+    private void purgeOrphanUploads(Run run) {
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        LocalDateTime hotWindowStart = messageArchiveService.hotWindowStart();
+        Instant oldest = hotWindowStart.atZone(ZoneId.systemDefault()).toInstant();
+        Instant youngest = Instant.now().minus(uploadGrace);
+
+        Map<String, Long> candidates = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadDir)) {
+            for (Path file : files) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                Instant modified = attributes.lastModifiedTime().toInstant();
+                if (attributes.isRegularFile() && !modified.isBefore(oldest) && modified.isBefore(youngest)) {
+                    candidates.put(file.getFileName().toString(), attributes.size());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list uploads in {}", uploadDir, e);
+            return;
+        }
+
+        // Every message that can reference a candidate is in the hot table; scan it in id order
+        Pageable page = PageRequest.of(0, batchSize);
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            if (candidates.isEmpty()) {
+                return;
+            }
+            if (run.outOfTime()) {
+                // An unfinished scan cannot prove a file unreferenced
+                return;
+            }
+            long started = System.nanoTime();
+            long from = afterId;
+            rows = readTransaction.execute(status ->
+                    messageRepository.findUploadReferencesSince(hotWindowStart, from, page));
+            for (Object[] row : rows) {
+                candidates.remove(uploadName((String) row[1]));
+            }
+            if (!rows.isEmpty()) {
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+            }
+            run.pause(System.nanoTime() - started);
+        } while (rows.size() == batchSize);
+
+        long bytes = candidates.values().stream().mapToLong(Long::longValue).sum();
+        int deleted = deleteUploads(List.copyOf(candidates.keySet()));
+        run.reclaimed("uploads", deleted);
+        reclaimedCounter("uploads").increment(deleted);
+        Counter.builder("chat.retention.reclaimed.bytes")
+                .description("Bytes of upload files deleted by retention")
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * File name of an upload message ("/uploads/<name>"), or null for any other content
+     */
+    private static String uploadName(String content) {
+        if (content == null || !content.startsWith(UPLOAD_URL_PREFIX)) {
+            return null;
+        }
+        return content.substring(UPLOAD_URL_PREFIX.length());
+    }
+
+    private int deleteUploads(List<String> names) {
+        int deleted = 0;
+        for (String name : names) {
+            Path file = uploadDir.resolve(name).normalize();
+            if (!file.getParent().equals(uploadDir)) {
+                log.warn("Ignoring upload reference outside the upload directory: {}", name);
+                continue;
+            }
+            try {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete upload {}", file, e);
+            }
+        }
+        return deleted;
+    }
+
+    // ==================== RECORDINGS ====================
+
+    /**
+     * Delete the recording directories of purged calls
+     */
+    private void deleteRecordings(Run run, List<String> manifests) {
+        int deleted = 0;
+        for (String manifest : manifests) {
+            if (callRecordingService.deleteRecording(manifest)) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            run.reclaimed("recordings", deleted);
+            reclaimedCounter("recordings").increment(deleted);
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private static LocalDateTime cutoff(int days) {
+        return LocalDateTime.now().minusDays(days);
+    }
+
+    private static List<Long> chatRoomIds(List<RetentionRule> rules) {
+        List<Long> ids = rules.stream().map(RetentionRule::getChatRoomId).collect(Collectors.toList());
+        return ids.isEmpty() ? NO_ROOMS : ids;
+    }
+
+    private Counter reclaimedCounter(String target) {
+        return Counter.builder("chat.retention.reclaimed")
+                .description("Rows and files removed by retention")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    /**
+     * One batch, run inside its transaction: find up to page.size rows after afterId and delete them
+     */
+    @FunctionalInterface
+    private interface BatchStep {
+        Batch next(long afterId, Pageable page);
+    }
+
+    private record Batch(int scanned, long lastId, int reclaimed, List<String> uploads, List<String> recordings) {
+        static final Batch EMPTY = new Batch(0, 0, 0, List.of(), List.of());
+    }
+
+    /**
+     * Deadline, throttle and totals of one run
+     */
+    private final class Run {
+        final Instant deadline;
+        final Map<String, Long> reclaimed = new LinkedHashMap<>();
+
+        Run(Instant deadline) {
+            this.deadline = deadline;
+        }
+
+        boolean outOfTime() {
+            return Instant.now().isAfter(deadline);
+        }
+
+        void reclaimed(String task, long rows) {
+            reclaimed.merge(task, rows, Long::sum);
+        }
+
+        /**
+         * Sleep long enough that the work just done is at most duty-cycle of the elapsed time
+         */
+        void pause(long workNanos) {
+            long sleepNanos = (long) (workNanos * (1 - dutyCycle) / dutyCycle);
+            if (sleepNanos <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(Duration.ofNanos(sleepNanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Group-call ring fan-out
+ * Rings only room members with a live session who are not in DND, one targeted frame per user,
+ * and tracks each ring: unacknowledged rings time out quickly, unanswered rings after the ring
+ * timeout. Members that cannot be reached are recorded as MISSED up front, and the call itself
+ * is settled as MISSED/REJECTED the moment the last ring resolves without anyone picking up.
+ */
+@Service
+@Slf4j
+public class RingDispatcher {
+
+    private static final String CALL_QUEUE = "/queue/call";
+
+    private final CallService callService;
+    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final SimpUserRegistry simpUserRegistry;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Duration ackTimeout;
+    private final Duration ringTimeout;
+
+    private final Map<Long, CallRing> rings = new ConcurrentHashMap<>();
+
+    public RingDispatcher(CallService callService,
+                          ChatRoomMemberRepository chatRoomMemberRepository,
+                          SimpUserRegistry simpUserRegistry,
+                          SimpMessagingTemplate messagingTemplate,
+                          @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+                          @Value("${webrtc.call.ring-ack-timeout:10000}") long ackTimeoutMillis,
+                          @Value("${webrtc.call.ring-timeout:45000}") long ringTimeoutMillis) {
+        this.callService = callService;
+        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.simpUserRegistry = simpUserRegistry;
+        this.messagingTemplate = messagingTemplate;
+        this.taskScheduler = taskScheduler;
+        this.ackTimeout = Duration.ofMillis(ackTimeoutMillis);
+        this.ringTimeout = Duration.ofMillis(ringTimeoutMillis);
+    }
+
+    // ==================== RING ====================
+
+    /**
+     * Ring the members of a freshly initiated group call
+     * The caller receives the same frame so it learns the callId/roomId
+     */
+    public void ringGroupCall(Call call, User caller, Map<String, Object> notification) {
+        List<User> reachable = new ArrayList<>();
+        List<User> unreachable = new ArrayList<>();
+        for (User member : chatRoomMemberRepository.findActiveMemberUsersByChatRoomId(call.getChatRoom().getId())) {
+            if (member.getId().equals(caller.getId())) {
+                continue;
+            }
+            (isReachable(member) ? reachable : unreachable).add(member);
+        }
+
+        // Registered before any frame goes out so early acks and answers find their ring
+        CallRing ring = new CallRing(caller.getUsername());
+        for (User member : reachable) {
+            ring.pending.put(member.getId(), new PendingRing(member.getUsername()));
+        }
+        rings.put(call.getId(), ring);
+
+        Call recorded = callService.recordRingTargets(call.getId(), reachable, unreachable);
+        messagingTemplate.convertAndSendToUser(caller.getUsername(), CALL_QUEUE, notification);
+        if (recorded.hasEnded()) {
+            finish(recorded);
+            return;
+        }
+
+        Instant now = Instant.now();
+        ring.pending.forEach((userId, pending) -> {
+            pending.ackTimer = taskScheduler.schedule(
+                    () -> expire(call.getId(), userId, "UNDELIVERED"), now.plus(ackTimeout));
+            pending.ringTimer = taskScheduler.schedule(
+                    () -> expire(call.getId(), userId, "NO_ANSWER"), now.plus(ringTimeout));
+            messagingTemplate.convertAndSendToUser(pending.username, CALL_QUEUE, notification);
+        });
+
+        log.debug("Call {} ringing {} member(s), {} unreachable",
+                call.getId(), reachable.size(), unreachable.size());
+    }
+
+    /**
+     * The ring frame reached the member's device
+     */
+    public void acknowledge(Long callId, Long userId) {
+        CallRing ring = rings.get(callId);
+        PendingRing pending = ring != null ? ring.pending.get(userId) : null;
+        if (pending != null) {
+            cancelTimer(pending.ackTimer);
+        }
+    }
+
+    /**
+     * A member answered or declined; once the call has ended, every ring still pending is cancelled
+     */
+    public void resolve(Call call, Long userId) {
+        CallRing ring = rings.get(call.getId());
+        if (ring != null) {
+            PendingRing pending = ring.pending.remove(userId);
+            if (pending != null) {
+                pending.cancelTimers();
+            }
+        }
+        if (call.hasEnded()) {
+            finish(call);
+        }
+    }
+
+    /**
+     * The call ended (cancelled or left by everyone) while members may still be ringing
+     */
+    public void cancel(Call call) {
+        if (call.hasEnded()) {
+            finish(call);
+        }
+    }
+
+    // ==================== TIMEOUTS ====================
+
+    private void expire(Long callId, Long userId, String reason) {
+        CallRing ring = rings.get(callId);
+        PendingRing pending = ring != null ? ring.pending.remove(userId) : null;
+        if (pending == null) {
+            return;
+        }
+        pending.cancelTimers();
+
+        try {
+            Call call = callService.markParticipantMissed(callId, userId);
+            messagingTemplate.convertAndSendToUser(pending.username, CALL_QUEUE, frame("RING_CANCELLED", callId, reason));
+
+            Map<String, Object> missed = frame("PARTICIPANT_MISSED", callId, reason);
+            missed.put("userId", userId);
+            messagingTemplate.convertAndSendToUser(ring.callerUsername, CALL_QUEUE, missed);
+
+            if (call.hasEnded()) {
+                finish(call);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to expire ring of user {} for call {}", userId, callId, e);
+        }
+    }
+
+    private void finish(Call call) {
+        CallRing ring = rings.remove(call.getId());
+        if (ring == null) {
+            return;
+        }
+
+        String reason = call.getStatus().name();
+        ring.pending.forEach((userId, pending) -> {
+            pending.cancelTimers();
+            messagingTemplate.convertAndSendToUser(pending.username, CALL_QUEUE,
+                    frame("RING_CANCELLED", call.getId(), reason));
+        });
+
+        if (call.getStatus() == Call.CallStatus.MISSED) {
+            messagingTemplate.convertAndSendToUser(ring.callerUsername, CALL_QUEUE,
+                    frame("CALL_MISSED", call.getId(), reason));
+        }
+    }
+
+    // ==================== HELPER METHODS ====================
+
+    /**
+     * Reachable = at least one live STOMP session and not in Do Not Disturb
+     */
+    private boolean isReachable(User member) {
+        return simpUserRegistry.getUser(member.getUsername()) != null && !member.isDND();
+    }
+
+    private static Map<String, Object> frame(String type, Long callId, String reason) {
+        Map<String, Object> frame = new HashMap<>();
+        frame.put("type", type);
+        frame.put("callId", callId);
+        frame.put("reason", reason);
+        return frame;
+    }
+
+    private static void cancelTimer(ScheduledFuture<?> timer) {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Rings still outstanding for one call
+     */
+    private static final class CallRing {
+
+        private final String callerUsername;
+        private final Map<Long, PendingRing> pending = new ConcurrentHashMap<>();
+
+        private CallRing(String callerUsername) {
+            this.callerUsername = callerUsername;
+        }
+    }
+
+    /**
+     * One member's ring with its ack and answer timers
+     */
+    private static final class PendingRing {
+
+        private final String username;
+        private volatile ScheduledFuture<?> ackTimer;
+        private volatile ScheduledFuture<?> ringTimer;
+
+        private PendingRing(String username) {
+            this.username = username;
+        }
+
+        private void cancelTimers() {
+            cancelTimer(ackTimer);
+            cancelTimer(ringTimer);
+        }
+    }
+}
@@ -2,9 +2,16 @@ package com.crm.chat.service;
 
 import com.crm.chat.entity.User;
 import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.presence.PresenceStatistics;
+import com.crm.chat.presence.UserStatusChangedEvent;
 import com.crm.chat.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,6 +33,8 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PresenceStatistics presenceStatistics;
 
     // ============================================
     // USER REGISTRATION & AUTHENTICATION
@@ -50,7 +59,10 @@ public class UserService {
         user.setUpdatedAt(LocalDateTime.now());
 
         log.info("Registering new user: {} with status: {}", user.getUsername(), user.getStatus());
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserStatusChangedEvent(
+                saved.getId(), saved.getUsername(), saved.getFullName(), null, saved.getStatus()));
+        return saved;
     }
 
     /**
@@ -143,11 +155,17 @@ public class UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
         
+        UserStatus previous = user.getStatus();
         user.setStatus(status);
         user.setLastSeen(LocalDateTime.now());
         
         log.info("Updated user {} status to: {}", user.getUsername(), status);
         userRepository.save(user);
+
+        if (previous != status) {
+            eventPublisher.publishEvent(new UserStatusChangedEvent(
+                    user.getId(), user.getUsername(), user.getFullName(), previous, status));
+        }
     }
 
     /**
@@ -183,10 +201,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> getOnlineUsers() {
-        return userRepository.findByActiveTrue()
-            .stream()
-            .filter(User::isOnline)
-            .collect(Collectors.toList());
+        return userRepository.findAllById(presenceStatistics.userIds(UserStatus::isVisible));
     }
 
     // ============================================
@@ -330,10 +345,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> getAvailableUsers() {
-        return userRepository.findByActiveTrue()
-                .stream()
-                .filter(User::isAvailable)
-                .collect(Collectors.toList());
+        return userRepository.findAllById(presenceStatistics.userIds(UserStatus::isAvailable));
     }
 
     /**
@@ -341,16 +353,11 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> getBusyUsers() {
-        return userRepository.findByActiveTrue()
-                .stream()
-                .filter(user -> {
-                    UserStatus status = user.getStatus();
-                    return status == UserStatus.BUSY || 
-                           status == UserStatus.ENGAGED ||
-                           status == UserStatus.DND || 
-                           status == UserStatus.IN_MEETING;
-                })
-                .collect(Collectors.toList());
+        return userRepository.findAllById(presenceStatistics.userIds(status ->
+                status == UserStatus.BUSY ||
+                status == UserStatus.ENGAGED ||
+                status == UserStatus.DND ||
+                status == UserStatus.IN_MEETING));
     }
 
     /**
@@ -358,7 +365,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> getUsersByStatus(UserStatus status) {
-        return userRepository.findByStatus(status);
+        return userRepository.findAllById(presenceStatistics.userIds(status));
     }
 
     /**
@@ -406,13 +413,20 @@ public class UserService {
      * Set all users offline (for system maintenance)
      */
     public void setAllUsersOffline() {
-        List<User> allUsers = userRepository.findAll();
-        allUsers.forEach(user -> {
-            user.setStatus(UserStatus.OFFLINE);
-            user.setLastSeen(LocalDateTime.now());
-        });
-        userRepository.saveAll(allUsers);
-        log.info("Set all users to OFFLINE");
+        // One UPDATE instead of loading every user and writing each row back
+        int updated = userRepository.updateAllStatuses(UserStatus.OFFLINE, LocalDateTime.now());
+        presenceStatistics.moveAll(UserStatus.OFFLINE);
+        log.info("Set {} users to OFFLINE", updated);
+    }
+
+    /**
+     * Nobody is connected right after a start, so statuses left over from before a shutdown or crash
+     * are cleared; runs before PresenceStatistics seeds its counters from the table
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void resetStatusesOnStartup() {
+        setAllUsersOffline();
     }
 
     // ============================================
@@ -420,27 +434,30 @@ public class UserService {
     // ============================================
 
     /**
-     * Get count of users by status
+     * Get count of active users by status (live counter, no query)
      */
-    @Transactional(readOnly = true)
     public long countUsersByStatus(UserStatus status) {
-        return userRepository.findByStatus(status).size();
+        return presenceStatistics.count(status);
     }
 
     /**
-     * Get status distribution (for analytics)
+     * Get status distribution of active users (for analytics; live counters, no query)
      */
-    @Transactional(readOnly = true)
     public java.util.Map<UserStatus, Long> getStatusDistribution() {
-        List<User> allUsers = userRepository.findByActiveTrue();
-        return allUsers.stream()
-                .collect(Collectors.groupingBy(User::getStatus, Collectors.counting()));
+        return presenceStatistics.distribution();
     }
 
     // ============================================
     // HELPER METHODS
     // ============================================
 
+    /**
+     * Whether a user may pick this status themselves (OFFLINE follows their connections)
+     */
+    public boolean isSelectableStatus(UserStatus status) {
+        return status != null && status != UserStatus.OFFLINE;
+    }
+
     /**
      * Validate status string
      */
@@ -472,44 +489,4 @@ public class UserService {
                     UserStatus::getDisplayText
                 ));
     }
-
-    // ============================================
-    // AUTO STATUS UPDATES (Optional)
-    // ============================================
-
-    /**
-     * Auto-set users to AWAY if inactive for specified minutes
-     * Call this from a scheduled task
-     */
-    public void autoSetInactiveUsersToAway(int inactiveMinutes) {
-        LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(inactiveMinutes);
-        
-        List<User> activeUsers = userRepository.findByActiveTrue()
-                .stream()
-                .filter(user -> user.getStatus() == UserStatus.AVAILABLE || 
-                               user.getStatus() == UserStatus.AVAILABLE_COLLAB)
-                .filter(user -> user.getLastSeen() != null && 
-                               user.getLastSeen().isBefore(cutoffTime))
-                .collect(Collectors.toList());
-        
-        activeUsers.forEach(user -> {
-            user.setStatus(UserStatus.AWAY);
-            log.info("Auto-set user {} to AWAY due to inactivity", user.getUsername());
-        });
-        
-        if (!activeUsers.isEmpty()) {
-            userRepository.saveAll(activeUsers);
-            log.info("Auto-set {} users to AWAY due to inactivity", activeUsers.size());
-        }
-    }
-
-    /**
-     * Update user's last seen timestamp
-     */
-    public void updateLastSeen(Long userId) {
-        userRepository.findById(userId).ifPresent(user -> {
-            user.setLastSeen(LocalDateTime.now());
-            userRepository.save(user);
-        });
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package com.crm.chat.sfu;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format of media frames on the SFU relay socket
+ *
+ * Upstream (client -> server):   [flags:1][payload]
+ * Downstream (server -> client): [senderId:8][flags:1][payload]
+ *
+ * The low two bits of flags carry the track kind; the high bit marks an init segment
+ * (the first chunk after a client (re)starts its encoder), which a receiver needs to start decoding.
+ */
+public final class SfuFrame {
+
+    public static final int KIND_AUDIO = 0;
+    public static final int KIND_VIDEO = 1;
+    public static final int KIND_SCREEN = 2;
+
+    public static final int KIND_MASK = 0x03;
+    public static final int FLAG_INIT = 0x80;
+
+    public static final int DOWNSTREAM_HEADER_LENGTH = Long.BYTES + 1;
+
+    private SfuFrame() {
+    }
+
+    /**
+     * Track kind of an upstream frame, or -1 if the frame is empty
+     */
+    public static int kind(ByteBuffer upstream) {
+        if (!upstream.hasRemaining()) {
+            return -1;
+        }
+        return upstream.get(upstream.position()) & KIND_MASK;
+    }
+
+    /**
+     * Prefix an upstream frame with its sender id
+     * The payload is copied once: container buffers are reused after the handler returns,
+     * while the fan-out may still be queued on slow subscribers
+     */
+    public static ByteBuffer toDownstream(long senderId, ByteBuffer upstream) {
+        ByteBuffer frame = ByteBuffer.allocate(Long.BYTES + upstream.remaining());
+        frame.putLong(senderId);
+        frame.put(upstream.duplicate());
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,85 @@
+package com.crm.chat.sfu;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selective forwarding relay for group calls with SFU topology
+ * Holds one SfuRoom per active call roomId; rooms are created on first join and discarded
+ * only when the call ends, so a participant rejoining an empty room never races its removal
+ */
+@Component
+@Slf4j
+public class SfuRelay {
+
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final Map<String, SfuRoom> rooms = new ConcurrentHashMap<>();
+
+    public SfuRelay(@Value("${webrtc.sfu.send-time-limit:5000}") int sendTimeLimit,
+                    @Value("${webrtc.sfu.buffer-size-limit:2097152}") int bufferSizeLimit) {
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    public void join(String roomId, Long userId, WebSocketSession session) {
+        rooms.computeIfAbsent(roomId, id -> new SfuRoom(id, sendTimeLimit, bufferSizeLimit))
+                .join(userId, session);
+    }
+
+    /**
+     * Called when a participant's socket closes
+     */
+    public void leave(String roomId, Long userId, WebSocketSession session) {
+        SfuRoom room = rooms.get(roomId);
+        if (room != null) {
+            room.leave(userId, session);
+        }
+    }
+
+    /**
+     * Called when a participant leaves the call through signaling
+     */
+    public void removeParticipant(String roomId, Long userId) {
+        SfuRoom room = rooms.get(roomId);
+        if (room != null) {
+            room.remove(userId);
+        }
+    }
+
+    /**
+     * Called when the call ends
+     */
+    public void closeRoom(String roomId) {
+        SfuRoom room = rooms.remove(roomId);
+        if (room != null) {
+            room.close();
+            log.info("SFU room {} closed", roomId);
+        }
+    }
+
+    public void forward(String roomId, Long senderId, ByteBuffer upstream) {
+        SfuRoom room = rooms.get(roomId);
+        if (room != null) {
+            room.forward(senderId, upstream);
+        }
+    }
+
+    public void select(String roomId, Long subscriberId, Collection<Long> videoFrom) {
+        SfuRoom room = rooms.get(roomId);
+        if (room != null) {
+            room.select(subscriberId, videoFrom);
+        }
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+}
@@ -0,0 +1,204 @@
+package com.crm.chat.sfu;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One SFU call room (keyed by Call.roomId)
+ * Each participant has exactly one upstream socket; every frame it sends is fanned out
+ * to the other participants according to their video selection. Audio is always forwarded.
+ */
+@Slf4j
+public class SfuRoom {
+
+    private final String roomId;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final Map<Long, Peer> peers = new ConcurrentHashMap<>();
+
+    public SfuRoom(String roomId, int sendTimeLimit, int bufferSizeLimit) {
+        this.roomId = roomId;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public boolean isEmpty() {
+        return peers.isEmpty();
+    }
+
+    public Set<Long> getParticipantIds() {
+        return Set.copyOf(peers.keySet());
+    }
+
+    // ==================== MEMBERSHIP ====================
+
+    /**
+     * Attach a participant's socket; a second socket for the same user replaces the first
+     */
+    public void join(Long userId, WebSocketSession session) {
+        // Slow subscribers drop their oldest queued frames instead of stalling the sender
+        WebSocketSession outbound = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+
+        Peer previous = peers.put(userId, new Peer(userId, outbound));
+        if (previous != null) {
+            closeQuietly(previous, CloseStatus.NORMAL);
+        }
+
+        // Everyone already sending must restart their encoders so the newcomer gets init segments
+        requestKeyframes(peers.keySet(), userId);
+        log.debug("SFU room {}: user {} joined ({} peers)", roomId, userId, peers.size());
+    }
+
+    /**
+     * Detach a participant; only removes the given session so a replaced socket cannot evict its successor
+     */
+    public void leave(Long userId, WebSocketSession session) {
+        Peer peer = peers.get(userId);
+        if (peer != null && peer.isFor(session) && peers.remove(userId, peer)) {
+            log.debug("SFU room {}: user {} left ({} peers)", roomId, userId, peers.size());
+        }
+    }
+
+    /**
+     * Detach a participant regardless of which socket it is using
+     */
+    public void remove(Long userId) {
+        Peer peer = peers.remove(userId);
+        if (peer != null) {
+            closeQuietly(peer, CloseStatus.NORMAL);
+        }
+    }
+
+    /**
+     * Close every socket in the room
+     */
+    public void close() {
+        for (Long userId : peers.keySet()) {
+            remove(userId);
+        }
+    }
+
+    // ==================== FORWARDING ====================
+
+    /**
+     * Fan out one upstream frame from a sender to everyone else in the room
+     */
+    public void forward(Long senderId, ByteBuffer upstream) {
+        int kind = SfuFrame.kind(upstream);
+        if (kind < 0 || !peers.containsKey(senderId)) {
+            return;
+        }
+
+        ByteBuffer frame = SfuFrame.toDownstream(senderId, upstream);
+        for (Peer peer : peers.values()) {
+            if (peer.userId.equals(senderId)) {
+                continue;
+            }
+            if (kind != SfuFrame.KIND_AUDIO && !peer.wantsVideoFrom(senderId)) {
+                continue;
+            }
+            send(peer, new BinaryMessage(frame.duplicate()));
+        }
+    }
+
+    /**
+     * Limit which senders' video a subscriber receives (null or empty selection means everyone)
+     */
+    public void select(Long subscriberId, Collection<Long> videoFrom) {
+        Peer peer = peers.get(subscriberId);
+        if (peer == null) {
+            return;
+        }
+
+        Set<Long> previous = peer.videoFrom;
+        Set<Long> selection = videoFrom == null || videoFrom.isEmpty() ? null : Set.copyOf(videoFrom);
+        peer.videoFrom = selection;
+
+        // Newly selected senders need to restart their encoders for this subscriber to decode them
+        if (previous == null) {
+            return; // video from everyone was already flowing
+        }
+        Set<Long> added = new HashSet<>(selection != null ? selection : peers.keySet());
+        added.removeAll(previous);
+        requestKeyframes(added, subscriberId);
+    }
+
+    private void requestKeyframes(Collection<Long> senders, Long requesterId) {
+        TextMessage request = new TextMessage("{\"type\":\"KEYFRAME_REQUEST\",\"requesterId\":" + requesterId + "}");
+        for (Long senderId : senders) {
+            Peer sender = peers.get(senderId);
+            if (sender != null && !senderId.equals(requesterId)) {
+                send(sender, request);
+            }
+        }
+    }
+
+    private void send(Peer peer, WebSocketMessage<?> message) {
+        if (!peer.session.isOpen()) {
+            peers.remove(peer.userId, peer);
+            return;
+        }
+        try {
+            peer.session.sendMessage(message);
+        } catch (IOException | RuntimeException e) {
+            // Send time limit exceeded or socket broken: drop the subscriber, the client reconnects
+            log.warn("SFU room {}: dropping user {}: {}", roomId, peer.userId, e.getMessage());
+            peers.remove(peer.userId, peer);
+            closeQuietly(peer, CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    private void closeQuietly(Peer peer, CloseStatus status) {
+        try {
+            if (peer.session.isOpen()) {
+                peer.session.close(status);
+            }
+        } catch (IOException e) {
+            log.debug("SFU room {}: error closing socket of user {}: {}", roomId, peer.userId, e.getMessage());
+        }
+    }
+
+    /**
+     * A participant's outbound socket and video selection
+     */
+    private static final class Peer {
+
+        private final Long userId;
+        private final WebSocketSession session;
+        private volatile Set<Long> videoFrom; // null = all senders
+
+        private Peer(Long userId, WebSocketSession session) {
+            this.userId = userId;
+            this.session = session;
+        }
+
+        private boolean wantsVideoFrom(Long senderId) {
+            Set<Long> selection = videoFrom;
+            return selection == null || selection.contains(senderId);
+        }
+
+        private boolean isFor(WebSocketSession raw) {
+            return session instanceof ConcurrentWebSocketSessionDecorator decorator
+                    ? decorator.getDelegate() == raw
+                    : session == raw;
+        }
+    }
+}
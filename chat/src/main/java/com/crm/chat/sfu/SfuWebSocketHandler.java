@@ -0,0 +1,93 @@
+package com.crm.chat.sfu;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.User;
+import com.crm.chat.service.CallService;
+import com.crm.chat.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.security.Principal;
+
+/**
+ * Media socket of the SFU relay: ws(s)://host/sfu?roomId={Call.roomId}
+ * Each participant of an SFU group call opens exactly one of these and sends its encoded
+ * media as binary frames (see SfuFrame); signaling stays on the STOMP /app/call.* endpoints.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SfuWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final String ROOM_ID = "sfu.roomId";
+    private static final String USER_ID = "sfu.userId";
+
+    private final SfuRelay sfuRelay;
+    private final CallService callService;
+    private final UserService userService;
+
+    @Value("${webrtc.sfu.max-frame-size:1048576}")
+    private int maxFrameSize;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // Only this socket needs to hold a whole encoded media chunk (the container default is 8 KB)
+        session.setBinaryMessageSizeLimit(maxFrameSize);
+        Principal principal = session.getPrincipal();
+        String roomId = session.getUri() != null
+                ? UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst("roomId")
+                : null;
+
+        if (principal == null || roomId == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Authentication and roomId required"));
+            return;
+        }
+
+        User user = userService.findByUsername(principal.getName()).orElse(null);
+        Call call = callService.findByRoomId(roomId).orElse(null);
+
+        if (user == null || call == null || !call.isActive() || !call.isGroupCall()
+                || !call.usesSfu()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("No active SFU call for this room"));
+            return;
+        }
+        if (!callService.isCallMember(call.getId(), user.getId())) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Not a participant of this call"));
+            return;
+        }
+
+        session.getAttributes().put(ROOM_ID, roomId);
+        session.getAttributes().put(USER_ID, user.getId());
+        sfuRelay.join(roomId, user.getId(), session);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        String roomId = (String) session.getAttributes().get(ROOM_ID);
+        Long userId = (Long) session.getAttributes().get(USER_ID);
+        if (roomId != null && userId != null) {
+            sfuRelay.forward(roomId, userId, message.getPayload());
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("SFU socket {} transport error: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        String roomId = (String) session.getAttributes().get(ROOM_ID);
+        Long userId = (Long) session.getAttributes().get(USER_ID);
+        if (roomId != null && userId != null) {
+            sfuRelay.leave(roomId, userId, session);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.crm.chat.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-bucket histogram for one quality metric of one participant
+ * Keeps a lifetime histogram (for the end-of-call summary) and a ring of time slices
+ * (for the live rolling window). All arrays are allocated up front; recording never allocates.
+ * Not thread-safe: callers synchronize on the owning participant.
+ */
+public final class QualityHistogram {
+
+    private final QualityMetric metric;
+    private final long sliceMillis;
+    private final long[] total;
+    private final long[][] slices;
+    private final long[] sliceEpochs;
+    private final long[] sliceMax;
+
+    private long count;
+    private long sum;
+    private long max;
+
+    public QualityHistogram(QualityMetric metric, int sliceCount, long sliceMillis) {
+        this.metric = metric;
+        this.sliceMillis = sliceMillis;
+        this.total = new long[metric.bucketCount()];
+        this.slices = new long[sliceCount][metric.bucketCount()];
+        this.sliceEpochs = new long[sliceCount];
+        this.sliceMax = new long[sliceCount];
+        Arrays.fill(sliceEpochs, -1);
+    }
+
+    public void record(long value, long nowMillis) {
+        if (value < 0) {
+            return;
+        }
+        int bucket = metric.bucketOf(value);
+        total[bucket]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+
+        long epoch = nowMillis / sliceMillis;
+        int index = (int) (epoch % slices.length);
+        if (sliceEpochs[index] != epoch) {
+            // Slice belongs to an older window: reuse it in place
+            Arrays.fill(slices[index], 0);
+            sliceEpochs[index] = epoch;
+            sliceMax[index] = 0;
+        }
+        slices[index][bucket]++;
+        sliceMax[index] = Math.max(sliceMax[index], value);
+    }
+
+    /**
+     * Add lifetime bucket counts into an accumulator
+     */
+    public void addTotalTo(Accumulator accumulator) {
+        for (int i = 0; i < total.length; i++) {
+            accumulator.counts[i] += total[i];
+        }
+        accumulator.count += count;
+        accumulator.sum += sum;
+        accumulator.max = Math.max(accumulator.max, max);
+    }
+
+    /**
+     * Add the bucket counts of slices still inside the rolling window into an accumulator
+     */
+    public void addWindowTo(Accumulator accumulator, long nowMillis) {
+        long currentEpoch = nowMillis / sliceMillis;
+        for (int s = 0; s < slices.length; s++) {
+            if (sliceEpochs[s] < 0 || currentEpoch - sliceEpochs[s] >= slices.length) {
+                continue;
+            }
+            for (int i = 0; i < slices[s].length; i++) {
+                accumulator.counts[i] += slices[s][i];
+                accumulator.count += slices[s][i];
+            }
+            accumulator.max = Math.max(accumulator.max, sliceMax[s]);
+        }
+    }
+
+    /**
+     * Bucket counts merged across histograms (participants, or slices) of the same metric
+     */
+    public static final class Accumulator {
+
+        private final QualityMetric metric;
+        private final long[] counts;
+        private long count;
+        private long sum;
+        private long max;
+
+        public Accumulator(QualityMetric metric) {
+            this.metric = metric;
+            this.counts = new long[metric.bucketCount()];
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Upper bound of the bucket containing the given quantile
+         * For the overflow bucket the observed max is returned when known
+         */
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long bound = metric.upperBound(i);
+                    return bound >= 0 ? bound : max;
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Mean value; only meaningful for lifetime accumulators (window slices keep no sums)
+         */
+        public long average() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.crm.chat.telemetry;
+
+/**
+ * Call quality metrics reported by clients, with the fixed histogram bucket bounds used for each
+ * Values are integers in the metric's unit; the last bucket collects everything above the last bound
+ */
+public enum QualityMetric {
+
+    RTT("rtt", "ms", new long[]{25, 50, 75, 100, 150, 200, 300, 400, 600, 800, 1200, 2000}),
+    JITTER("jitter", "ms", new long[]{5, 10, 20, 30, 50, 75, 100, 150, 250}),
+    PACKET_LOSS("packetLoss", "permille", new long[]{0, 5, 10, 20, 30, 50, 80, 120, 200}),
+    BITRATE("bitrate", "kbps", new long[]{50, 100, 200, 400, 700, 1000, 1500, 2500, 4000});
+
+    private final String key;
+    private final String unit;
+    private final long[] bounds;
+
+    QualityMetric(String key, String unit, long[] bounds) {
+        this.key = key;
+        this.unit = unit;
+        this.bounds = bounds;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Number of buckets including the overflow bucket
+     */
+    public int bucketCount() {
+        return bounds.length + 1;
+    }
+
+    /**
+     * Bucket index for a value (binary search over the upper bounds)
+     */
+    public int bucketOf(long value) {
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (value <= bounds[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Upper bound of a bucket, or -1 for the overflow bucket
+     */
+    public long upperBound(int bucket) {
+        return bucket < bounds.length ? bounds[bucket] : -1;
+    }
+}
@@ -0,0 +1,111 @@
+package com.crm.chat.tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Writes spans to a local file, one JSON object per line
+ * Meant for single-node setups without a collector; grep by traceId to see a whole trace.
+ */
+@Slf4j
+public class JsonLinesSpanExporter implements SpanExporter {
+
+    private final Path file;
+    private BufferedWriter writer;
+
+    public JsonLinesSpanExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            if (writer == null) {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (SpanData span : spans) {
+                writer.write(toJson(span));
+                writer.newLine();
+            }
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.warn("Failed to write {} spans to {}: {}", spans.size(), file, e.getMessage());
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess(); // every export is flushed
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Failed to close span file {}: {}", file, e.getMessage());
+            }
+            writer = null;
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private static String toJson(SpanData span) {
+        StringBuilder json = new StringBuilder(256)
+                .append("{\"traceId\":\"").append(span.getTraceId()).append('"')
+                .append(",\"spanId\":\"").append(span.getSpanId()).append('"')
+                .append(",\"parentSpanId\":\"").append(span.getParentSpanId()).append('"')
+                .append(",\"name\":").append(quote(span.getName()))
+                .append(",\"kind\":\"").append(span.getKind()).append('"')
+                .append(",\"startEpochNanos\":").append(span.getStartEpochNanos())
+                .append(",\"durationMicros\":").append((span.getEndEpochNanos() - span.getStartEpochNanos()) / 1000)
+                .append(",\"status\":\"").append(span.getStatus().getStatusCode()).append('"')
+                .append(",\"attributes\":{");
+
+        boolean[] first = {true};
+        span.getAttributes().forEach((key, value) -> {
+            json.append(first[0] ? "" : ",").append(quote(key.getKey())).append(':').append(quote(String.valueOf(value)));
+            first[0] = false;
+        });
+        return json.append("}}").toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
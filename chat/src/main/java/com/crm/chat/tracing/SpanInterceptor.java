@@ -0,0 +1,70 @@
+package com.crm.chat.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Runs a service or repository method in a child span named "Type.method"
+ * Only calls inside a trace (STOMP message, HTTP request) get a span; startup and scheduled work stay untraced.
+ * Repositories are JDK proxies, so their span is named after the repository interface.
+ */
+final class SpanInterceptor implements MethodInterceptor {
+
+    private static final String INSTRUMENTATION = "com.crm.chat";
+
+    private final ObjectProvider<OpenTelemetry> openTelemetry;
+    private final boolean repository;
+    private volatile Tracer tracer;
+
+    SpanInterceptor(ObjectProvider<OpenTelemetry> openTelemetry, boolean repository) {
+        this.openTelemetry = openTelemetry;
+        this.repository = repository;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!Span.current().getSpanContext().isValid()) {
+            return invocation.proceed();
+        }
+
+        Span span = tracer().spanBuilder(type(invocation) + "." + invocation.getMethod().getName())
+                .setAttribute("code.namespace", invocation.getMethod().getDeclaringClass().getName())
+                .setAttribute("chat.layer", repository ? "repository" : "service")
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private String type(MethodInvocation invocation) {
+        if (repository && invocation.getThis() != null) {
+            Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(invocation.getThis());
+            if (interfaces.length > 0) {
+                return interfaces[0].getSimpleName();
+            }
+        }
+        return invocation.getMethod().getDeclaringClass().getSimpleName();
+    }
+
+    private Tracer tracer() {
+        Tracer current = tracer;
+        if (current == null) {
+            current = openTelemetry.getIfAvailable(OpenTelemetry::noop).getTracer(INSTRUMENTATION);
+            tracer = current;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,311 @@
+package com.crm.chat.tracing;
+
+import com.crm.chat.metrics.DestinationNames;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Channel interceptors that trace a STOMP message from frame receipt to the frames sent back out:
+ * - inbound:  "stomp /app/..." root span from receipt until every inbound handler is done; the
+ *             @MessageMapping call runs in a "stomp.handle" child span, so service/repository spans nest below it
+ * - broker:   "stomp.publish /topic/..." span around each messagingTemplate send, child of the current span
+ * - outbound: the publish span stays open until the last frame it produced has been written to a session
+ * Messages are matched across threads by their id header.
+ */
+@Component
+public class StompTracing {
+
+    private static final String INSTRUMENTATION = "com.crm.chat.stomp";
+    private static final AttributeKey<String> DESTINATION = AttributeKey.stringKey("messaging.destination.name");
+    private static final AttributeKey<String> SESSION = AttributeKey.stringKey("stomp.session");
+    private static final AttributeKey<String> USER = AttributeKey.stringKey("enduser.id");
+    private static final AttributeKey<Long> QUEUE_TIME = AttributeKey.longKey("stomp.queue_time_ms");
+    private static final AttributeKey<Long> RECIPIENTS = AttributeKey.longKey("stomp.recipients");
+    private static final AttributeKey<Long> OUTBOUND_WAIT = AttributeKey.longKey("stomp.outbound_wait_max_ms");
+
+    private final ObjectProvider<OpenTelemetry> openTelemetry;
+    private volatile Tracer tracer;
+
+    // Inbound messages still being handled, and outbound frames not yet written, by message id
+    private final Map<UUID, Inbound> inbound = new ConcurrentHashMap<>();
+    private final Map<UUID, Outbound> outbound = new ConcurrentHashMap<>();
+
+    // Open publish spans of the current thread (a /user send publishes again to the resolved session queue)
+    private static final ThreadLocal<Deque<Publish>> PUBLISHING = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<Scope> HANDLING = new ThreadLocal<>();
+
+    public StompTracing(ObjectProvider<OpenTelemetry> openTelemetry) {
+        this.openTelemetry = openTelemetry;
+    }
+
+    public ExecutorChannelInterceptor inboundInterceptor() {
+        return new InboundInterceptor();
+    }
+
+    public ExecutorChannelInterceptor brokerInterceptor() {
+        return new BrokerInterceptor();
+    }
+
+    public ExecutorChannelInterceptor outboundInterceptor() {
+        return new OutboundInterceptor();
+    }
+
+    private Tracer tracer() {
+        Tracer current = tracer;
+        if (current == null) {
+            current = openTelemetry.getIfAvailable(OpenTelemetry::noop).getTracer(INSTRUMENTATION);
+            tracer = current;
+        }
+        return current;
+    }
+
+    // ==================== INBOUND ====================
+
+    private final class InboundInterceptor implements ExecutorChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            UUID id = message.getHeaders().getId();
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (id == null || destination == null
+                    || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                    || !(channel instanceof ExecutorSubscribableChannel subscribable)) {
+                return message;
+            }
+
+            Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+            Span root = tracer().spanBuilder("stomp " + DestinationNames.normalize(destination))
+                    .setSpanKind(SpanKind.SERVER)
+                    .setNoParent()
+                    .setAttribute(DESTINATION, destination)
+                    .setAttribute(SESSION, String.valueOf(SimpMessageHeaderAccessor.getSessionId(message.getHeaders())))
+                    .setAttribute(USER, user != null ? user.getName() : "")
+                    .startSpan();
+            inbound.put(id, new Inbound(root, subscribable.getSubscribers().size(), System.nanoTime()));
+            return message;
+        }
+
+        @Override
+        public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+            // Handlers run on the channel executor; only a failed hand-off (queue full) ends the trace here
+            if (sent && ex == null) {
+                return;
+            }
+            Inbound state = message.getHeaders().getId() != null ? inbound.remove(message.getHeaders().getId()) : null;
+            if (state != null) {
+                state.root.setStatus(StatusCode.ERROR, ex != null ? ex.getMessage() : "not sent");
+                state.root.end();
+            }
+        }
+
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            Inbound state = message.getHeaders().getId() != null ? inbound.get(message.getHeaders().getId()) : null;
+            if (state == null || !(handler instanceof SimpAnnotationMethodMessageHandler)) {
+                return message;
+            }
+            Span handle = tracer().spanBuilder("stomp.handle")
+                    .setParent(Context.current().with(state.root))
+                    .setAttribute(QUEUE_TIME, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - state.received))
+                    .startSpan();
+            state.handle = handle;
+            HANDLING.set(handle.makeCurrent());
+            return message;
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+            UUID id = message.getHeaders().getId();
+            Inbound state = id != null ? inbound.get(id) : null;
+            if (state == null) {
+                return;
+            }
+            if (handler instanceof SimpAnnotationMethodMessageHandler && state.handle != null) {
+                Scope scope = HANDLING.get();
+                if (scope != null) {
+                    scope.close();
+                    HANDLING.remove();
+                }
+                if (ex != null) {
+                    state.handle.recordException(ex);
+                    state.handle.setStatus(StatusCode.ERROR);
+                    state.root.setStatus(StatusCode.ERROR);
+                }
+                state.handle.end();
+            }
+            if (state.pendingHandlers.decrementAndGet() <= 0 && inbound.remove(id, state)) {
+                state.root.end();
+            }
+        }
+    }
+
+    private static final class Inbound {
+
+        private final Span root;
+        private final AtomicInteger pendingHandlers;
+        private final long received;
+        private volatile Span handle;
+
+        private Inbound(Span root, int handlers, long received) {
+            this.root = root;
+            this.pendingHandlers = new AtomicInteger(handlers);
+            this.received = received;
+        }
+    }
+
+    // ==================== BROKER ====================
+
+    /**
+     * The broker channel is synchronous: preSend, the broker's fan-out to the outbound channel and
+     * afterSendCompletion all run on the thread calling messagingTemplate
+     */
+    private final class BrokerInterceptor implements ExecutorChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            Deque<Publish> publishing = PUBLISHING.get();
+            // Only traced work is followed; a resolved /user send is a child of the original publish
+            Context parent = publishing.isEmpty() ? Context.current() : Context.current().with(publishing.peek().span);
+            if (destination == null || !Span.fromContext(parent).getSpanContext().isValid()) {
+                publishing.push(Publish.NONE);
+                return message;
+            }
+            Span span = tracer().spanBuilder("stomp.publish " + DestinationNames.normalize(destination))
+                    .setSpanKind(SpanKind.PRODUCER)
+                    .setParent(parent)
+                    .setAttribute(DESTINATION, destination)
+                    .startSpan();
+            publishing.push(new Publish(span));
+            return message;
+        }
+
+        @Override
+        public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+            Deque<Publish> publishing = PUBLISHING.get();
+            Publish publish = publishing.poll();
+            if (publishing.isEmpty()) {
+                PUBLISHING.remove();
+            }
+            if (publish == null || publish == Publish.NONE) {
+                return;
+            }
+            if (ex != null) {
+                publish.span.recordException(ex);
+                publish.span.setStatus(StatusCode.ERROR);
+            }
+            publish.release();
+        }
+    }
+
+    private static final class Publish {
+
+        private static final Publish NONE = new Publish(Span.getInvalid());
+
+        private final Span span;
+        // The broker send itself plus every frame queued for a session
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicInteger recipients = new AtomicInteger();
+        private volatile long maxOutboundWait;
+
+        private Publish(Span span) {
+            this.span = span;
+        }
+
+        private synchronized void recordOutboundWait(long nanos) {
+            maxOutboundWait = Math.max(maxOutboundWait, nanos);
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() == 0) {
+                span.setAttribute(RECIPIENTS, (long) recipients.get());
+                span.setAttribute(OUTBOUND_WAIT, TimeUnit.NANOSECONDS.toMillis(maxOutboundWait));
+                span.end();
+            }
+        }
+    }
+
+    // ==================== OUTBOUND ====================
+
+    private final class OutboundInterceptor implements ExecutorChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            // Frames not produced by a broker send (CONNECTED, RECEIPT, ERROR, heartbeats) are not traced
+            Deque<Publish> publishing = PUBLISHING.get();
+            Publish publish = publishing.peek();
+            UUID id = message.getHeaders().getId();
+            if (publish == null || publish == Publish.NONE || id == null) {
+                if (publishing.isEmpty()) {
+                    PUBLISHING.remove();
+                }
+                return message;
+            }
+            publish.pending.incrementAndGet();
+            publish.recipients.incrementAndGet();
+            outbound.put(id, new Outbound(publish, System.nanoTime()));
+            return message;
+        }
+
+        @Override
+        public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+            if (!sent || ex != null) {
+                release(message, ex);
+            }
+        }
+
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            Outbound frame = message.getHeaders().getId() != null ? outbound.get(message.getHeaders().getId()) : null;
+            if (frame != null) {
+                frame.publish.recordOutboundWait(System.nanoTime() - frame.queued);
+            }
+            return message;
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+            release(message, ex);
+        }
+
+        private void release(Message<?> message, Exception ex) {
+            Outbound frame = message.getHeaders().getId() != null ? outbound.remove(message.getHeaders().getId()) : null;
+            if (frame == null) {
+                return;
+            }
+            if (ex != null) {
+                frame.publish.span.recordException(ex);
+                frame.publish.span.setStatus(StatusCode.ERROR);
+            }
+            frame.publish.release();
+        }
+    }
+
+    private record Outbound(Publish publish, long queued) {
+    }
+}
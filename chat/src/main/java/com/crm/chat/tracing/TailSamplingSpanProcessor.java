@@ -0,0 +1,204 @@
+package com.crm.chat.tracing;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tail sampling: spans are held per trace until its local root ends, then the whole trace is exported or dropped
+ * A trace is kept when the root took at least the slow threshold, any span failed, or it falls in the baseline ratio.
+ * Spans ending after their root (outbound frames still being written) follow the decision already made.
+ * Traces whose root never ends are decided by their own spans once they are older than the stale timeout.
+ */
+@Slf4j
+public class TailSamplingSpanProcessor implements SpanProcessor {
+
+    private static final int MAX_DECIDED = 10_000;
+    private static final Duration STALE_AFTER = Duration.ofMinutes(2);
+
+    private final SpanExporter exporter;
+    private final long slowThresholdNanos;
+    private final double baselineRatio;
+    private final int maxBufferedTraces;
+
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> decided = new LinkedHashMap<>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_DECIDED;
+        }
+    };
+    private final AtomicLong droppedSpans = new AtomicLong();
+
+    // Exports and stale sweeps run here, never on the thread ending the span
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "trace-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TailSamplingSpanProcessor(SpanExporter exporter, Duration slowThreshold, double baselineRatio,
+                                     int maxBufferedTraces) {
+        this.exporter = exporter;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.baselineRatio = baselineRatio;
+        this.maxBufferedTraces = maxBufferedTraces;
+        worker.scheduleWithFixedDelay(this::sweepStale, 30, 30, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        SpanData data = span.toSpanData();
+        String traceId = data.getTraceId();
+
+        Buffer buffer = buffers.get(traceId);
+        if (buffer == null) {
+            if (followDecision(traceId, data)) {
+                return;
+            }
+            if (buffers.size() >= maxBufferedTraces) {
+                droppedSpans.incrementAndGet();
+                return;
+            }
+            buffer = buffers.computeIfAbsent(traceId, id -> new Buffer());
+        }
+
+        SpanContext parent = data.getParentSpanContext();
+        boolean localRoot = !parent.isValid() || parent.isRemote();
+        synchronized (buffer) {
+            if (!buffer.decided) {
+                buffer.spans.add(data);
+                buffer.failed |= data.getStatus().getStatusCode() == StatusCode.ERROR;
+                if (localRoot) {
+                    boolean slow = data.getEndEpochNanos() - data.getStartEpochNanos() >= slowThresholdNanos;
+                    decide(traceId, buffer, slow || buffer.failed
+                            || ThreadLocalRandom.current().nextDouble() < baselineRatio);
+                }
+                return;
+            }
+        }
+        // The trace was decided while this span was ending
+        followDecision(traceId, data);
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private boolean followDecision(String traceId, SpanData data) {
+        Boolean keep;
+        synchronized (decided) {
+            keep = decided.get(traceId);
+        }
+        if (keep == null) {
+            return false;
+        }
+        if (keep) {
+            export(List.of(data));
+        }
+        return true;
+    }
+
+    /**
+     * Record the decision and release the buffer; called holding the buffer's lock
+     */
+    private void decide(String traceId, Buffer buffer, boolean keep) {
+        buffer.decided = true;
+        synchronized (decided) {
+            decided.put(traceId, keep);
+        }
+        buffers.remove(traceId, buffer);
+        if (keep) {
+            export(buffer.spans);
+        }
+    }
+
+    private void export(List<SpanData> spans) {
+        try {
+            worker.execute(() -> exporter.export(spans));
+        } catch (RuntimeException e) {
+            droppedSpans.addAndGet(spans.size()); // shutting down
+        }
+    }
+
+    private void sweepStale() {
+        long cutoff = System.nanoTime() - STALE_AFTER.toNanos();
+        buffers.forEach((traceId, buffer) -> {
+            if (buffer.created < cutoff) {
+                synchronized (buffer) {
+                    if (!buffer.decided) {
+                        long longest = 0;
+                        for (SpanData span : buffer.spans) {
+                            longest = Math.max(longest, span.getEndEpochNanos() - span.getStartEpochNanos());
+                        }
+                        decide(traceId, buffer, buffer.failed || longest >= slowThresholdNanos);
+                    }
+                }
+            }
+        });
+
+        long dropped = droppedSpans.getAndSet(0);
+        if (dropped > 0) {
+            log.warn("Dropped {} spans: more than {} traces in progress", dropped, maxBufferedTraces);
+        }
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        CompletableResultCode result = new CompletableResultCode();
+        try {
+            worker.execute(() -> exporter.flush().whenComplete(result::succeed));
+        } catch (RuntimeException e) {
+            result.fail();
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return exporter.shutdown();
+    }
+
+    private static final class Buffer {
+
+        private final long created = System.nanoTime();
+        private final List<SpanData> spans = new ArrayList<>();
+        private boolean failed;
+        private boolean decided;
+    }
+}
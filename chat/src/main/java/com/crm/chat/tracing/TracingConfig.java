@@ -0,0 +1,76 @@
+package com.crm.chat.tracing;
+
+import com.crm.chat.metrics.ApplicationPointcuts;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracing setup
+ * - HTTP requests get their server span from Spring Boot's observation support, STOMP messages from StompTracing
+ * - service and repository calls made inside a trace become child spans (infrastructure advisors, as in MetricsConfig)
+ * - head-sampled traces (management.tracing.sampling.probability, 0.1 by default) are recorded in full;
+ *   TailSamplingSpanProcessor decides per trace what reaches the span file (chat.tracing.file) and/or an OTLP
+ *   collector (chat.tracing.otlp-endpoint)
+ */
+@Configuration(proxyBeanMethods = false)
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+public class TracingConfig {
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor serviceTracingAdvisor(ObjectProvider<OpenTelemetry> openTelemetry) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                ApplicationPointcuts.services(),
+                new SpanInterceptor(openTelemetry, false));
+        // Inside the timing advisors, outside the transaction interceptor (commit is part of the span)
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return advisor;
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor repositoryTracingAdvisor(ObjectProvider<OpenTelemetry> openTelemetry) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                ApplicationPointcuts.repositories(),
+                new SpanInterceptor(openTelemetry, true));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return advisor;
+    }
+
+    /**
+     * Picked up by Spring Boot's tracer provider like any SpanProcessor bean; the exporters are owned by the
+     * processor (not beans) so that Boot does not also export every span unsampled
+     */
+    @Bean
+    public TailSamplingSpanProcessor tailSamplingSpanProcessor(
+            @Value("${chat.tracing.slow-threshold:500ms}") Duration slowThreshold,
+            @Value("${chat.tracing.baseline-ratio:0.01}") double baselineRatio,
+            @Value("${chat.tracing.max-buffered-traces:5000}") int maxBufferedTraces,
+            @Value("${chat.tracing.file:}") String file,
+            @Value("${chat.tracing.otlp-endpoint:}") String otlpEndpoint) {
+        List<SpanExporter> exporters = new ArrayList<>();
+        if (!file.isBlank()) {
+            exporters.add(new JsonLinesSpanExporter(Path.of(file)));
+        }
+        if (!otlpEndpoint.isBlank()) {
+            exporters.add(OtlpHttpSpanExporter.builder().setEndpoint(otlpEndpoint).build());
+        }
+        return new TailSamplingSpanProcessor(SpanExporter.composite(exporters), slowThreshold, baselineRatio,
+                maxBufferedTraces);
+    }
+}
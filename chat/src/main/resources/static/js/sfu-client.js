@@ -0,0 +1,217 @@
+/**
+ * SFU Relay Client
+ *
+ * Media path for group calls started with topology "SFU": instead of one RTCPeerConnection per
+ * participant, the local stream is encoded once (MediaRecorder) and sent over a single binary
+ * WebSocket to /sfu?roomId=..., and the server forwards it to the other participants.
+ *
+ * Frame format (see SfuFrame.java):
+ *   upstream   [flags:1][payload]
+ *   downstream [senderId:8][flags:1][payload]
+ *   flags: low 2 bits = kind (0 audio, 1 video, 2 screen), 0x80 = init segment
+ *
+ * Signaling (join/leave/toggles) stays on STOMP; only media goes through this socket.
+ */
+
+const SFU_KIND_AUDIO = 0;
+const SFU_KIND_VIDEO = 1;
+const SFU_KIND_SCREEN = 2;
+const SFU_FLAG_INIT = 0x80;
+const SFU_TIMESLICE_MS = 100;
+
+const SFU_MIME = {
+  [SFU_KIND_AUDIO]: "audio/webm;codecs=opus",
+  [SFU_KIND_VIDEO]: "video/webm;codecs=vp8",
+  [SFU_KIND_SCREEN]: "video/webm;codecs=vp8",
+};
+
+class SfuConnection {
+  constructor(roomId, { onRemoteStream, onRemoteStreamRemoved } = {}) {
+    this.roomId = roomId;
+    this.onRemoteStream = onRemoteStream;
+    this.onRemoteStreamRemoved = onRemoteStreamRemoved;
+
+    this.socket = null;
+    this.recorders = new Map(); // kind -> { recorder, stream, first }
+    this.pipelines = new Map(); // `${senderId}:${kind}` -> { mediaSource, sourceBuffer, element, queue }
+    this.restartTimer = null;
+  }
+
+  /**
+   * Open the relay socket and start sending the given streams
+   */
+  connect(localStream, screenStream) {
+    const scheme = window.location.protocol === "https:" ? "wss" : "ws";
+    this.socket = new WebSocket(
+      `${scheme}://${window.location.host}/sfu?roomId=${encodeURIComponent(this.roomId)}`,
+    );
+    this.socket.binaryType = "arraybuffer";
+
+    this.socket.onopen = () => {
+      console.log("SFU relay connected for room", this.roomId);
+      this.setStreams(localStream, screenStream);
+    };
+    this.socket.onmessage = (event) => {
+      if (typeof event.data === "string") {
+        this.handleControl(JSON.parse(event.data));
+      } else {
+        this.handleFrame(event.data);
+      }
+    };
+    this.socket.onclose = (event) => {
+      console.log("SFU relay closed:", event.code, event.reason);
+      this.stopRecorders();
+    };
+  }
+
+  /**
+   * (Re)start encoders for the current local media
+   */
+  setStreams(localStream, screenStream) {
+    this.stopRecorders();
+    this.localStream = localStream;
+    this.screenStream = screenStream;
+
+    if (localStream && localStream.getAudioTracks().length > 0) {
+      this.startRecorder(SFU_KIND_AUDIO, new MediaStream(localStream.getAudioTracks()));
+    }
+    if (localStream && localStream.getVideoTracks().length > 0) {
+      this.startRecorder(SFU_KIND_VIDEO, new MediaStream(localStream.getVideoTracks()));
+    }
+    if (screenStream && screenStream.getVideoTracks().length > 0) {
+      this.startRecorder(SFU_KIND_SCREEN, new MediaStream(screenStream.getVideoTracks()));
+    }
+  }
+
+  startRecorder(kind, stream) {
+    if (!MediaRecorder.isTypeSupported(SFU_MIME[kind])) {
+      console.warn("SFU: encoder not supported for", SFU_MIME[kind]);
+      return;
+    }
+    const entry = { stream, first: true, recorder: new MediaRecorder(stream, { mimeType: SFU_MIME[kind] }) };
+    entry.recorder.ondataavailable = async (event) => {
+      if (!event.data || event.data.size === 0) return;
+      if (!this.socket || this.socket.readyState !== WebSocket.OPEN) return;
+
+      const payload = new Uint8Array(await event.data.arrayBuffer());
+      const frame = new Uint8Array(payload.length + 1);
+      frame[0] = kind | (entry.first ? SFU_FLAG_INIT : 0);
+      frame.set(payload, 1);
+      entry.first = false;
+      this.socket.send(frame.buffer);
+    };
+    entry.recorder.start(SFU_TIMESLICE_MS);
+    this.recorders.set(kind, entry);
+  }
+
+  stopRecorders() {
+    this.recorders.forEach(({ recorder }) => {
+      if (recorder.state !== "inactive") recorder.stop();
+    });
+    this.recorders.clear();
+  }
+
+  /**
+   * Server control messages
+   */
+  handleControl(message) {
+    if (message.type === "KEYFRAME_REQUEST") {
+      // Coalesce bursts (several joins at once) into a single encoder restart
+      clearTimeout(this.restartTimer);
+      this.restartTimer = setTimeout(() => this.setStreams(this.localStream, this.screenStream), 250);
+    }
+  }
+
+  /**
+   * Incoming media frame from another participant
+   */
+  handleFrame(buffer) {
+    const view = new DataView(buffer);
+    const senderId = Number(view.getBigInt64(0));
+    const flags = view.getUint8(8);
+    const kind = flags & 0x03;
+    const payload = new Uint8Array(buffer, 9);
+    const key = `${senderId}:${kind}`;
+
+    if (flags & SFU_FLAG_INIT) {
+      this.resetPipeline(key, senderId, kind);
+    }
+    const pipeline = this.pipelines.get(key);
+    if (!pipeline) return; // waiting for an init segment
+
+    pipeline.queue.push(payload);
+    this.drain(pipeline);
+  }
+
+  resetPipeline(key, senderId, kind) {
+    this.removePipeline(key);
+
+    const element = document.createElement(kind === SFU_KIND_AUDIO ? "audio" : "video");
+    element.autoplay = true;
+    element.playsInline = true;
+    element.style.display = "none";
+    if (kind !== SFU_KIND_AUDIO) element.muted = true; // audio plays from its own element
+    document.body.appendChild(element);
+
+    const mediaSource = new MediaSource();
+    const pipeline = { mediaSource, sourceBuffer: null, element, queue: [] };
+    this.pipelines.set(key, pipeline);
+
+    mediaSource.addEventListener("sourceopen", () => {
+      pipeline.sourceBuffer = mediaSource.addSourceBuffer(SFU_MIME[kind]);
+      pipeline.sourceBuffer.mode = "sequence";
+      pipeline.sourceBuffer.addEventListener("updateend", () => this.drain(pipeline));
+      this.drain(pipeline);
+    });
+    element.src = URL.createObjectURL(mediaSource);
+    element.play().catch(() => {});
+
+    if (kind !== SFU_KIND_AUDIO && this.onRemoteStream) {
+      const capture = element.captureStream ? element.captureStream() : element.mozCaptureStream();
+      this.onRemoteStream(senderId, capture);
+    }
+  }
+
+  drain(pipeline) {
+    const { sourceBuffer, queue } = pipeline;
+    if (!sourceBuffer || sourceBuffer.updating || queue.length === 0) return;
+    try {
+      sourceBuffer.appendBuffer(queue.shift());
+    } catch (error) {
+      // Decoder fell behind (e.g. frames dropped by the relay); wait for the next init segment
+      console.warn("SFU: append failed, waiting for next keyframe:", error.message);
+      queue.length = 0;
+    }
+  }
+
+  removePipeline(key) {
+    const pipeline = this.pipelines.get(key);
+    if (!pipeline) return;
+    pipeline.element.pause();
+    URL.revokeObjectURL(pipeline.element.src);
+    pipeline.element.remove();
+    this.pipelines.delete(key);
+  }
+
+  /**
+   * Drop everything received from a participant who left
+   */
+  removeSender(senderId) {
+    [SFU_KIND_AUDIO, SFU_KIND_VIDEO, SFU_KIND_SCREEN].forEach((kind) =>
+      this.removePipeline(`${senderId}:${kind}`),
+    );
+    if (this.onRemoteStreamRemoved) this.onRemoteStreamRemoved(senderId);
+  }
+
+  close() {
+    clearTimeout(this.restartTimer);
+    this.stopRecorders();
+    Array.from(this.pipelines.keys()).forEach((key) => this.removePipeline(key));
+    if (this.socket) {
+      this.socket.close();
+      this.socket = null;
+    }
+  }
+}
+
+window.SfuConnection = SfuConnection;
@@ -68,6 +68,14 @@ class WebRTCManager {
     this.isInitiator = false;
     this.callType = null; // 'AUDIO', 'VIDEO', 'SCREEN_SHARE'
     this.callMode = null; // 'DIRECT', 'GROUP'
+    this.topology = null; // 'MESH', 'SFU' (group calls only)
+    this.sfu = null; // SfuConnection when the call is relayed by the server
+    this.statsTimer = null; // Periodic quality report to /app/call.stats
+    this.lastStats = new Map(); // Map<userId, previous counters> for per-interval deltas
+    this.recorder = null; // MediaRecorder of the local stream when server recording is on
+    this.recordingQueue = []; // Chunks waiting to be uploaded, in order
+    this.recordingSeq = 0; // Sequence number of the next chunk to upload
+    this.recordingUploading = false;
 
     // Event Handlers (to be set by UI code)
     this.onRemoteStream = null;
@@ -168,8 +176,8 @@ subscribeToSignaling() {
   }
 
   // Ensure startCall handles the media correctly based on type
-async startCall(chatType, chatId, callType) {
-    console.log(`🔥 WebRTC startCall: type=${callType}, chatType=${chatType}, chatId=${chatId}`);
+async startCall(chatType, chatId, callType, topology = 'MESH') {
+    console.log(`🔥 WebRTC startCall: type=${callType}, chatType=${chatType}, chatId=${chatId}, topology=${topology}`);
     
     // Cleanup any previous call
     this.cleanup();
@@ -212,8 +220,10 @@ async startCall(chatType, chatId, callType) {
             callData.conversationId = chatId;
             callData.recipientId = currentRecipient.id;
         } else {
-            // For group calls
+            // For group calls (SFU relays media through the server instead of a peer mesh)
             callData.chatRoomId = chatId;
+            callData.topology = topology;
+            this.topology = topology;
         }
 
         console.log('📤 Sending call initiation to backend:', callData);
@@ -383,6 +393,10 @@ async startCall(chatType, chatId, callType) {
           this.onConnectionStateChange(userId, peerConnection.connectionState);
         }
 
+        if (peerConnection.connectionState === "connected") {
+          this.startStatsReporting();
+        }
+
         // Handle disconnection
         if (
           peerConnection.connectionState === "disconnected" ||
@@ -611,10 +625,38 @@ async startCall(chatType, chatId, callType) {
 
     switch (data.type) {
       case "INCOMING_CALL":
-      case "INCOMING_GROUP_CALL":
         this.handleIncomingCall(data);
         break;
 
+      case "INCOMING_GROUP_CALL":
+        if (this.isInitiator && String(data.callerId) === document.getElementById('currentUserId').value) {
+          // Our own group call echoed back on the room topic: it carries the callId/roomId we need
+          this.currentCall = data;
+          this.topology = data.topology;
+          if (data.topology === 'SFU') this.connectSfu();
+        } else {
+          // Tell the server the ring reached this device, otherwise it is marked missed
+          this.stompClient.send("/app/call.ringAck", {}, JSON.stringify({ callId: data.callId }));
+          this.handleIncomingCall(data);
+        }
+        break;
+
+      case "RING_CANCELLED":
+        this.handleRingCancelled(data);
+        break;
+
+      case "CALL_MISSED":
+        if (this.onCallError) {
+          this.onCallError("No one answered the call");
+        }
+        this.endCall();
+        break;
+
+      case "PARTICIPANT_MISSED":
+      case "PARTICIPANT_REJECTED":
+        console.log("Participant did not join:", data.userName || data.userId, data.type);
+        break;
+
       case "USER_JOINED":
         this.handleUserJoined(data);
         break;
@@ -647,6 +689,7 @@ handleIncomingCall(data) {
     this.currentCall = data;
     this.callType = data.callType;
     this.callMode = data.callMode;
+    this.topology = data.topology || 'MESH';
     this.isInitiator = false;
 
     // Show incoming call modal
@@ -714,6 +757,8 @@ async acceptCall() {
         // For direct calls, create peer connection with caller
         if (this.callMode === 'DIRECT') {
             await this.createPeerConnection(this.currentCall.callerId);
+        } else if (this.topology === 'SFU') {
+            this.connectSfu();
         }
 
         console.log('✅ Call accepted successfully');
@@ -750,6 +795,9 @@ async acceptCall() {
   async handleUserJoined(data) {
     console.log("User joined call:", data.userName);
 
+    // The SFU relay forwards media to newcomers; no peer connection needed
+    if (this.sfu) return;
+
     // Create peer connection with new user
     if (this.isInitiator) {
       await this.createPeerConnection(data.userId);
@@ -765,6 +813,11 @@ async acceptCall() {
     console.log("User left call:", data.userName);
     this.removePeerConnection(data.userId);
 
+    if (this.sfu) {
+      this.sfu.removeSender(data.userId);
+      return;
+    }
+
     if (this.onRemoteStreamRemoved) {
       this.onRemoteStreamRemoved(data.userId);
     }
@@ -783,6 +836,21 @@ async acceptCall() {
     this.endCall();
   }
 
+  /**
+   * Stop ringing when the server withdraws a group-call ring that was not answered here
+   */
+  handleRingCancelled(data) {
+    const modal = document.getElementById('incoming-call-modal');
+    if (!this.currentCall || this.currentCall.callId !== data.callId
+        || !modal || !modal.classList.contains('active')) {
+      return;
+    }
+
+    console.log("Ring cancelled:", data.reason);
+    modal.classList.remove('active');
+    this.cleanup();
+  }
+
   /**
    * Handle media toggle notifications
    */
@@ -864,6 +932,10 @@ async acceptCall() {
       // Replace video track in all peer connections
       const screenTrack = this.screenStream.getVideoTracks()[0];
 
+      if (this.sfu) {
+        this.sfu.setStreams(this.localStream, this.screenStream);
+      }
+
       this.peerConnections.forEach((peerConnection, userId) => {
         const sender = peerConnection
           .getSenders()
@@ -929,6 +1001,10 @@ async acceptCall() {
 
       this.screenStream = null;
 
+      if (this.sfu) {
+        this.sfu.setStreams(this.localStream, null);
+      }
+
       // Notify server and other participants
       this.stompClient.send(
         "/app/call.toggleScreenShare",
@@ -968,6 +1044,143 @@ async acceptCall() {
     }
   }
 
+  /**
+   * Report call quality (RTT, jitter, packet loss, outgoing bitrate) every 5 seconds
+   */
+  startStatsReporting() {
+    if (this.statsTimer) return;
+    this.lastStats.clear();
+    this.statsTimer = setInterval(() => this.reportStats(), 5000);
+  }
+
+  stopStatsReporting() {
+    clearInterval(this.statsTimer);
+    this.statsTimer = null;
+    this.lastStats.clear();
+  }
+
+  async reportStats() {
+    if (!this.currentCall || this.peerConnections.size === 0) return;
+
+    const rtt = [];
+    const jitter = [];
+    const loss = [];
+    let bitrate = 0;
+    const now = Date.now();
+
+    for (const [userId, peerConnection] of this.peerConnections) {
+      const report = await peerConnection.getStats();
+      let bytesSent = 0;
+      let packetsLost = 0;
+      let packetsReceived = 0;
+
+      report.forEach((stat) => {
+        if (stat.type === "candidate-pair" && stat.nominated && stat.currentRoundTripTime !== undefined) {
+          rtt.push(stat.currentRoundTripTime * 1000);
+        } else if (stat.type === "inbound-rtp") {
+          if (stat.jitter !== undefined) jitter.push(stat.jitter * 1000);
+          packetsLost += stat.packetsLost || 0;
+          packetsReceived += stat.packetsReceived || 0;
+        } else if (stat.type === "outbound-rtp") {
+          bytesSent += stat.bytesSent || 0;
+        }
+      });
+
+      const previous = this.lastStats.get(userId);
+      if (previous) {
+        const lost = packetsLost - previous.packetsLost;
+        const received = packetsReceived - previous.packetsReceived;
+        if (lost + received > 0) loss.push((100 * Math.max(lost, 0)) / (lost + received));
+        bitrate += (8 * (bytesSent - previous.bytesSent)) / (now - previous.time); // bits/ms = kbps
+      }
+      this.lastStats.set(userId, { bytesSent, packetsLost, packetsReceived, time: now });
+    }
+
+    const average = (values) => values.reduce((a, b) => a + b, 0) / values.length;
+    const stats = { callId: this.currentCall.callId };
+    if (rtt.length) stats.rtt = average(rtt);
+    if (jitter.length) stats.jitter = average(jitter);
+    if (loss.length) stats.packetLoss = average(loss);
+    if (this.lastStats.size && bitrate > 0) stats.bitrate = bitrate;
+
+    this.stompClient.send("/app/call.stats", {}, JSON.stringify(stats));
+  }
+
+  /**
+   * Record the local stream on the server (requires webrtc.recording.enabled)
+   * MediaRecorder emits a chunk every 2 seconds; chunks are uploaded strictly in order
+   */
+  startRecording() {
+    if (this.recorder || !this.currentCall || !this.localStream) return;
+
+    this.recordingQueue = [];
+    this.recordingSeq = 0;
+    this.recorder = new MediaRecorder(this.localStream);
+    this.recorder.ondataavailable = (event) => {
+      if (event.data && event.data.size > 0) {
+        this.recordingQueue.push(event.data);
+        this.uploadRecordingChunks();
+      }
+    };
+    this.recorder.start(2000);
+  }
+
+  stopRecording() {
+    if (!this.recorder) return;
+    if (this.recorder.state !== "inactive") this.recorder.stop(); // flushes a final chunk
+    this.recorder = null;
+  }
+
+  async uploadRecordingChunks() {
+    if (this.recordingUploading || !this.currentCall) return;
+    this.recordingUploading = true;
+    const callId = this.currentCall.callId;
+
+    try {
+      while (this.recordingQueue.length) {
+        const response = await fetch(`/api/calls/${callId}/recording/chunks?seq=${this.recordingSeq}`, {
+          method: "POST",
+          headers: { "Content-Type": "application/octet-stream" },
+          body: this.recordingQueue[0],
+        });
+
+        if (response.ok) {
+          this.recordingQueue.shift();
+          this.recordingSeq++;
+        } else if (response.status === 503) {
+          // Server is saturated: back off and retry the same chunk
+          const retryAfter = Number(response.headers.get("Retry-After")) || 1;
+          await new Promise((resolve) => setTimeout(resolve, retryAfter * 1000));
+        } else {
+          console.warn("Recording upload stopped:", response.status);
+          this.recordingQueue = [];
+          this.stopRecording();
+        }
+      }
+    } catch (error) {
+      console.error("Recording upload failed:", error);
+    } finally {
+      this.recordingUploading = false;
+    }
+  }
+
+  /**
+   * Send and receive media through the server SFU relay instead of peer connections
+   */
+  connectSfu() {
+    if (this.sfu || !this.currentCall || !this.currentCall.roomId) return;
+
+    this.sfu = new SfuConnection(this.currentCall.roomId, {
+      onRemoteStream: (userId, stream) => {
+        if (this.onRemoteStream) this.onRemoteStream(userId, stream);
+      },
+      onRemoteStreamRemoved: (userId) => {
+        if (this.onRemoteStreamRemoved) this.onRemoteStreamRemoved(userId);
+      },
+    });
+    this.sfu.connect(this.localStream, this.screenStream);
+  }
+
   /**
    * Remove peer connection
    */
@@ -993,6 +1206,15 @@ async acceptCall() {
     });
     this.peerConnections.clear();
 
+    this.stopStatsReporting();
+    this.stopRecording();
+
+    // Close the SFU relay socket
+    if (this.sfu) {
+      this.sfu.close();
+      this.sfu = null;
+    }
+
     // Stop local streams
     if (this.localStream) {
       this.localStream.getTracks().forEach((track) => track.stop());
@@ -1009,6 +1231,7 @@ async acceptCall() {
     this.isInitiator = false;
     this.callType = null;
     this.callMode = null;
+    this.topology = null;
 
     console.log("Cleanup complete");
   }
@@ -0,0 +1,141 @@
+package com.crm.chat.datasource;
+
+import com.crm.chat.logging.LogContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two embedded H2 databases stand in for the primary and the replica; replication is simulated by
+ * copying the heartbeat row, and each database names itself so a query shows where it was routed
+ */
+class ReadWriteRoutingTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaGuard guard;
+    private SimpleMeterRegistry registry;
+    private JdbcTemplate routed;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDataSource = database("primary");
+        DataSource replicaDataSource = database("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        registry = new SimpleMeterRegistry();
+        guard = new ReplicaGuard(primaryDataSource, replicaDataSource, Duration.ofSeconds(5), registry);
+        DataSource routing = DataSourceRoutingConfig.routingDataSource(primaryDataSource, replicaDataSource, guard);
+        routed = new JdbcTemplate(routing);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        transactionManager.addListener(guard);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        LogContext.clear();
+    }
+
+    @Test
+    void readsStayOnPrimaryUntilReplicaReportsIn() {
+        assertThat(readOnlyServer()).isEqualTo("primary");
+        assertThat(guard.isReplicaUsable()).isFalse();
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplicaAndWritesUsePrimary() {
+        replicate();
+
+        assertThat(readOnlyServer()).isEqualTo("replica");
+        String writer = writeTransaction.execute(status -> server());
+        assertThat(writer).isEqualTo("primary");
+        assertThat(routed.queryForObject("SELECT name FROM server", String.class)).isEqualTo("primary");
+        assertThat(registry.get("chat.datasource.route").tags("route", "replica").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void writerReadsFromPrimaryUntilItsWriteHasReplicated() {
+        replicate();
+
+        LogContext.bind("alice", null);
+        writeTransaction.executeWithoutResult(status ->
+                routed.update("INSERT INTO notes (text) VALUES ('just sent')"));
+        assertThat(readOnlyServer()).isEqualTo("primary");
+
+        LogContext.bind("bob", null);
+        assertThat(readOnlyServer()).isEqualTo("replica");
+
+        sleepPastClockTick();
+        replicate();
+        LogContext.bind("alice", null);
+        assertThat(readOnlyServer()).isEqualTo("replica");
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() {
+        replicate();
+        assertThat(readOnlyServer()).isEqualTo("replica");
+
+        // The replica still has a heartbeat from a minute ago
+        replica.update("UPDATE replica_heartbeat SET beat_at = ?", System.currentTimeMillis() - 60_000);
+        guard.readReplicaHeartbeat();
+
+        assertThat(readOnlyServer()).isEqualTo("primary");
+        assertThat(registry.get("chat.datasource.replica.lag").gauge().value()).isGreaterThanOrEqualTo(60);
+    }
+
+    private String readOnlyServer() {
+        return readOnlyTransaction.execute(status -> server());
+    }
+
+    private String server() {
+        return routed.queryForObject("SELECT name FROM server", String.class);
+    }
+
+    /**
+     * Write a heartbeat on the primary and apply it to the replica, as replication would
+     */
+    private void replicate() {
+        guard.writeHeartbeat();
+        Long beat = primary.queryForObject("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+        replica.update("MERGE INTO replica_heartbeat (id, beat_at) KEY (id) VALUES (1, ?)", beat);
+        guard.readReplicaHeartbeat();
+    }
+
+    private static void sleepPastClockTick() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE server (name VARCHAR(20))");
+        jdbc.update("INSERT INTO server (name) VALUES (?)", name);
+        jdbc.execute("CREATE TABLE notes (id BIGINT AUTO_INCREMENT PRIMARY KEY, text VARCHAR(100))");
+        jdbc.execute("CREATE TABLE replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        return dataSource;
+    }
+}
@@ -0,0 +1,80 @@
+package com.crm.chat.presence;
+
+import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Seeds the statistics from a mocked repository and feeds them status events outside any transaction
+ */
+class PresenceStatisticsTest {
+
+    private SimpleMeterRegistry registry;
+    private PresenceStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findActiveUserStatuses()).thenReturn(List.of(
+                new Object[]{1L, UserStatus.AVAILABLE},
+                new Object[]{2L, UserStatus.BUSY},
+                new Object[]{3L, UserStatus.AVAILABLE}));
+        registry = new SimpleMeterRegistry();
+        statistics = new PresenceStatistics(userRepository, registry);
+        statistics.rebuild();
+    }
+
+    @Test
+    void seededFromTheDatabase() {
+        assertThat(statistics.count(UserStatus.AVAILABLE)).isEqualTo(2);
+        assertThat(statistics.userIds(UserStatus.BUSY)).containsExactly(2L);
+        assertThat(statistics.distribution())
+                .containsOnlyKeys(UserStatus.AVAILABLE, UserStatus.BUSY);
+    }
+
+    @Test
+    void statusChangeMovesTheUser() {
+        statistics.onStatusChanged(new UserStatusChangedEvent(1L, "alice", "Alice", UserStatus.AVAILABLE, UserStatus.DND));
+
+        assertThat(statistics.count(UserStatus.AVAILABLE)).isEqualTo(1);
+        assertThat(statistics.count(UserStatus.DND)).isEqualTo(1);
+        assertThat(statistics.userIds(UserStatus::isDND)).containsExactly(1L);
+        assertThat(registry.get("chat.presence.users").tag("status", "DND").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedOrStaleEventDoesNotDoubleCount() {
+        statistics.onStatusChanged(new UserStatusChangedEvent(2L, "bob", "Bob", UserStatus.BUSY, UserStatus.AWAY));
+        statistics.onStatusChanged(new UserStatusChangedEvent(2L, "bob", "Bob", UserStatus.BUSY, UserStatus.AWAY));
+
+        assertThat(statistics.count(UserStatus.AWAY)).isEqualTo(1);
+        assertThat(statistics.count(UserStatus.BUSY)).isZero();
+    }
+
+    @Test
+    void newUserIsCounted() {
+        statistics.onStatusChanged(new UserStatusChangedEvent(4L, "carol", "Carol", null, UserStatus.AVAILABLE));
+
+        assertThat(statistics.userIds(UserStatus.AVAILABLE)).containsExactlyInAnyOrder(1L, 3L, 4L);
+    }
+
+    @Test
+    void moveAllPutsEveryoneInOneStatus() {
+        statistics.moveAll(UserStatus.OFFLINE);
+
+        assertThat(statistics.distribution()).containsExactly(Map.entry(UserStatus.OFFLINE, 3L));
+        assertThat(statistics.userIds(UserStatus::isVisible)).isEmpty();
+
+        statistics.onStatusChanged(new UserStatusChangedEvent(2L, "bob", "Bob", UserStatus.OFFLINE, UserStatus.AVAILABLE));
+        assertThat(statistics.count(UserStatus.OFFLINE)).isEqualTo(2);
+    }
+}
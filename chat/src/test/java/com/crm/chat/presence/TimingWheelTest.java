@@ -0,0 +1,89 @@
+package com.crm.chat.presence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the wheel with explicit times, 100 ms ticks and 8 slots (one revolution = 800 ms)
+ */
+class TimingWheelTest {
+
+    private TimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel<>(Duration.ofMillis(100), 8, 0);
+    }
+
+    @Test
+    void keyExpiresOnceItsDeadlineHasPassed() {
+        wheel.schedule("alice", 250);
+
+        assertThat(wheel.advance(200)).isEmpty();
+        assertThat(wheel.advance(300)).containsExactly("alice");
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.advance(400)).isEmpty();
+    }
+
+    @Test
+    void rescheduleMovesTheDeadline() {
+        wheel.schedule("alice", 200);
+        wheel.schedule("alice", 500);
+
+        assertThat(wheel.deadline("alice")).isEqualTo(500);
+        assertThat(wheel.advance(300)).isEmpty();
+        assertThat(wheel.advance(500)).containsExactly("alice");
+    }
+
+    @Test
+    void scheduleIfAbsentKeepsTheExistingDeadline() {
+        wheel.schedule("alice", 200);
+
+        assertThat(wheel.scheduleIfAbsent("alice", 700)).isFalse();
+        assertThat(wheel.deadline("alice")).isEqualTo(200);
+        assertThat(wheel.scheduleIfAbsent("bob", 700)).isTrue();
+    }
+
+    @Test
+    void cancelledKeyNeverExpires() {
+        wheel.schedule("alice", 200);
+
+        assertThat(wheel.cancel("alice")).isTrue();
+        assertThat(wheel.cancel("alice")).isFalse();
+        assertThat(wheel.deadline("alice")).isEqualTo(-1);
+        assertThat(wheel.advance(1_000)).isEmpty();
+    }
+
+    @Test
+    void deadlineBeyondOneRevolutionWaitsForItsLap() {
+        wheel.schedule("alice", 1_000);
+
+        // Same slot as tick 10, visited at tick 2 first
+        assertThat(wheel.advance(200)).isEmpty();
+        assertThat(wheel.advance(900)).isEmpty();
+        assertThat(wheel.advance(1_000)).containsExactly("alice");
+    }
+
+    @Test
+    void largeJumpExpiresEverythingDue() {
+        wheel.schedule("alice", 300);
+        wheel.schedule("bob", 2_500);
+        wheel.schedule("carol", 10_000);
+
+        assertThat(wheel.advance(5_000)).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(wheel.deadline("carol")).isEqualTo(10_000);
+        assertThat(wheel.advance(10_000)).containsExactly("carol");
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextTick() {
+        wheel.advance(500);
+        wheel.schedule("alice", 100);
+
+        assertThat(wheel.advance(600)).containsExactly("alice");
+    }
+}
@@ -0,0 +1,91 @@
+package com.crm.chat.profiling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Feeds statements straight into the profiler, as ProfilingDataSource does after each execution
+ */
+class QueryProfilerTest {
+
+    private static final String SELECT_SENDER = "select u1_0.id,u1_0.username from users u1_0 where u1_0.id=?";
+
+    private SimpleMeterRegistry registry;
+    private QueryProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        profiler = new QueryProfiler(registry, Duration.ofMillis(100), 3, 0);
+    }
+
+    @Test
+    void shapeIgnoresLiteralsAndInListLength() {
+        assertThat(QueryProfiler.shape("select * from messages m1_0 where m1_0.id in (?, ?, ?)"))
+                .isEqualTo(QueryProfiler.shape("select * from messages m1_0 where m1_0.id in (?)"));
+        assertThat(QueryProfiler.shape("select *\n  from users where username = 'alice' and id = 42"))
+                .isEqualTo("select * from users where username = ? and id = ?");
+    }
+
+    @Test
+    void repeatedShapeIsReportedAsNPlusOne() {
+        profiler.begin("GET /api/chat/rooms");
+        for (int i = 0; i < 4; i++) {
+            profiler.record(SELECT_SENDER, 1_000);
+        }
+        profiler.record("select c1_0.id from chat_rooms c1_0", 1_000);
+        QueryProfiler.UnitSummary summary = profiler.end(null);
+
+        assertThat(summary.statements()).isEqualTo(5);
+        assertThat(summary.repeated()).containsEntry(QueryProfiler.shape(SELECT_SENDER), 4);
+        assertThat(registry.get("chat.db.nplusone").tag("endpoint", "GET /api/chat/rooms").counter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("chat.db.statements").summary().totalAmount()).isEqualTo(5);
+    }
+
+    @Test
+    void slowStatementsAreCountedPerEndpoint() {
+        profiler.begin("/app/chat.send");
+        profiler.record(SELECT_SENDER, Duration.ofMillis(150).toNanos());
+        profiler.end(null);
+
+        assertThat(registry.get("chat.db.slow").tag("endpoint", "/app/chat.send").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void budgetViolationsFailTheAssertion() {
+        profiler.setBudget("/app/chat.send", 2);
+        profiler.begin("/app/chat.send");
+        profiler.record(SELECT_SENDER, 1_000);
+        profiler.record("insert into messages (content) values (?)", 1_000);
+        profiler.record("update chat_rooms set updated_at=? where id=?", 1_000);
+        profiler.end(null);
+
+        assertThatThrownBy(profiler::assertWithinBudgets)
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("/app/chat.send ran 3 statements (budget 2)");
+
+        profiler.clearViolations();
+        profiler.assertWithinBudgets();
+    }
+
+    @Test
+    void withinBudgetChecksTheWorkOnThisThread() {
+        assertThat(profiler.withinBudget(2, () -> {
+            profiler.record(SELECT_SENDER, 1_000);
+            return "ok";
+        })).isEqualTo("ok");
+
+        assertThatThrownBy(() -> profiler.withinBudget(1, () -> {
+            profiler.record(SELECT_SENDER, 1_000);
+            profiler.record(SELECT_SENDER, 1_000);
+            return null;
+        })).isInstanceOf(AssertionError.class).hasMessageContaining("at most 1 statements but ran 2");
+    }
+}
@@ -0,0 +1,109 @@
+package com.crm.chat.recording;
+
+import com.crm.chat.recording.RecordingTrack.AppendResult;
+import com.crm.chat.recording.RecordingTrack.Segment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Segments of 10 bytes, chunks of at most 8, copied through a 4-byte transfer buffer
+ */
+class RecordingTrackTest {
+
+    @TempDir
+    Path directory;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(4);
+    private RecordingTrack track;
+
+    @BeforeEach
+    void setUp() {
+        track = new RecordingTrack(2L, directory, 10, 8);
+    }
+
+    @Test
+    void chunksAreAppendedInSequence() throws IOException {
+        assertThat(append(0, "abcdef")).isEqualTo(AppendResult.WRITTEN);
+        assertThat(append(1, "gh")).isEqualTo(AppendResult.WRITTEN);
+
+        assertThat(segment(1)).isEqualTo("abcdefgh");
+        assertThat(track.getNextSequence()).isEqualTo(2);
+        assertThat(track.getBytes()).isEqualTo(8);
+    }
+
+    @Test
+    void retriedChunkIsIgnored() throws IOException {
+        append(0, "abcdef");
+
+        assertThat(append(0, "xxxxxx")).isEqualTo(AppendResult.DUPLICATE);
+        assertThat(segment(1)).isEqualTo("abcdef");
+        assertThat(track.getNextSequence()).isEqualTo(1);
+    }
+
+    @Test
+    void chunkAfterAGapIsRefused() throws IOException {
+        append(0, "abcdef");
+
+        assertThat(append(2, "kl")).isEqualTo(AppendResult.OUT_OF_ORDER);
+        assertThat(segment(1)).isEqualTo("abcdef");
+        assertThat(track.getNextSequence()).isEqualTo(1);
+    }
+
+    @Test
+    void oversizedChunkLeavesTheSegmentUnchanged() throws IOException {
+        append(0, "abcdef");
+
+        assertThat(append(1, "123456789")).isEqualTo(AppendResult.TOO_LARGE);
+        assertThat(segment(1)).isEqualTo("abcdef");
+        assertThat(track.getNextSequence()).isEqualTo(1);
+        assertThat(track.getBytes()).isEqualTo(6);
+
+        // The retry of the same sequence lands where the oversized chunk started
+        assertThat(append(1, "ghij")).isEqualTo(AppendResult.WRITTEN);
+        assertThat(segment(1)).isEqualTo("abcdefghij");
+    }
+
+    @Test
+    void fullSegmentRotatesToTheNextFile() throws IOException {
+        append(0, "abcdef");
+        append(1, "ghij");
+        append(2, "kl");
+        track.close();
+
+        assertThat(segment(1)).isEqualTo("abcdefghij");
+        assertThat(segment(2)).isEqualTo("kl");
+        assertThat(track.getSegments())
+                .extracting(Segment::getFile, Segment::getFirstSequence, Segment::getLastSequence, Segment::getBytes)
+                .containsExactly(
+                        tuple("segment-00001.webm", 0L, 1L, 10L),
+                        tuple("segment-00002.webm", 2L, 2L, 2L));
+    }
+
+    @Test
+    void closedTrackRefusesChunks() throws IOException {
+        append(0, "abcdef");
+        track.close();
+
+        assertThat(append(1, "gh")).isEqualTo(AppendResult.CLOSED);
+        assertThat(segment(1)).isEqualTo("abcdef");
+    }
+
+    private AppendResult append(long sequence, String chunk) throws IOException {
+        return track.append(sequence, new ByteArrayInputStream(chunk.getBytes(StandardCharsets.US_ASCII)), buffer);
+    }
+
+    private String segment(int number) throws IOException {
+        return Files.readString(directory.resolve(String.format("segment-%05d.webm", number)), StandardCharsets.US_ASCII);
+    }
+}
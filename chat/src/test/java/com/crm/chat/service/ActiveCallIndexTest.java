@@ -0,0 +1,144 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.repository.CallRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Alice (1) calls in conversation 10 (call 100) or chat room 30 (call 200); Bob (2) and Carol (3) join
+ */
+class ActiveCallIndexTest {
+
+    private CallRepository callRepository;
+    private CallParticipantRepository callParticipantRepository;
+    private ActiveCallIndex index;
+
+    @BeforeEach
+    void setUp() {
+        callRepository = mock(CallRepository.class);
+        callParticipantRepository = mock(CallParticipantRepository.class);
+        index = new ActiveCallIndex(callRepository, callParticipantRepository);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rebuildIndexesActiveCallsWithTheirJoinedParticipants() {
+        when(callParticipantRepository.findJoinedUserIdsOfActiveCalls()).thenReturn(List.of(
+                new Object[]{100L, 2L}, new Object[]{200L, 3L}));
+        when(callRepository.findActiveCalls()).thenReturn(List.of(
+                directCall(100L, Call.CallStatus.ONGOING), roomCall(200L, Call.CallStatus.RINGING)));
+
+        index.rebuild();
+
+        assertThat(index.getActiveCallCount()).isEqualTo(2);
+        assertThat(index.findCallIdForConversation(10L)).contains(100L);
+        assertThat(index.findCallIdForChatRoom(30L)).contains(200L);
+        assertThat(index.findOngoingCallIdForUser(2L)).contains(100L);
+        // Carol is in call 200, but it is only ringing
+        assertThat(index.isUserInActiveCall(3L)).isFalse();
+    }
+
+    @Test
+    void transitionIsPublishedOnlyAfterCommit() {
+        Call call = directCall(100L, Call.CallStatus.ONGOING);
+        when(callParticipantRepository.findJoinedUserIdsByCallId(100L)).thenReturn(List.of(2L));
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.update(call);
+
+        assertThat(index.getActiveCallCount()).isZero();
+        commit();
+        assertThat(index.findOngoingCallIdForUser(1L)).contains(100L);
+        assertThat(index.findOngoingCallIdForUser(2L)).contains(100L);
+    }
+
+    @Test
+    void rolledBackTransitionIsNeverPublished() {
+        when(callParticipantRepository.findJoinedUserIdsByCallId(100L)).thenReturn(List.of(2L));
+        TransactionSynchronizationManager.initSynchronization();
+
+        index.update(directCall(100L, Call.CallStatus.ONGOING));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(index.getActiveCallCount()).isZero();
+        assertThat(index.isUserInActiveCall(2L)).isFalse();
+    }
+
+    @Test
+    void endedCallLeavesTheIndex() {
+        when(callParticipantRepository.findJoinedUserIdsByCallId(100L)).thenReturn(List.of(2L));
+        index.update(directCall(100L, Call.CallStatus.ONGOING));
+
+        index.update(directCall(100L, Call.CallStatus.ENDED));
+
+        assertThat(index.getActiveCallCount()).isZero();
+        assertThat(index.findCallIdForConversation(10L)).isEmpty();
+        assertThat(index.isUserInActiveCall(1L)).isFalse();
+        assertThat(index.isUserInActiveCall(2L)).isFalse();
+    }
+
+    @Test
+    void participantWhoLeftIsDroppedFromTheCall() {
+        when(callParticipantRepository.findJoinedUserIdsByCallId(200L))
+                .thenReturn(List.of(2L, 3L))
+                .thenReturn(List.of(3L));
+        index.update(roomCall(200L, Call.CallStatus.ONGOING));
+
+        index.update(roomCall(200L, Call.CallStatus.ONGOING));
+
+        assertThat(index.isUserInActiveCall(2L)).isFalse();
+        assertThat(index.findOngoingCallIdForUser(3L)).contains(200L);
+        assertThat(index.findCallIdForChatRoom(30L)).contains(200L);
+    }
+
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static Call directCall(Long id, Call.CallStatus status) {
+        Conversation conversation = new Conversation();
+        conversation.setId(10L);
+        Call call = call(id, status);
+        call.setConversation(conversation);
+        return call;
+    }
+
+    private static Call roomCall(Long id, Call.CallStatus status) {
+        ChatRoom chatRoom = new ChatRoom();
+        chatRoom.setId(30L);
+        Call call = call(id, status);
+        call.setChatRoom(chatRoom);
+        return call;
+    }
+
+    private static Call call(Long id, Call.CallStatus status) {
+        User caller = new User();
+        caller.setId(1L);
+        Call call = new Call();
+        call.setId(id);
+        call.setCaller(caller);
+        call.setStatus(status);
+        return call;
+    }
+}
@@ -0,0 +1,214 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.CallParticipant;
+import com.crm.chat.entity.CallParticipant.ParticipantStatus;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.DailyCallStats;
+import com.crm.chat.entity.User;
+import com.crm.chat.entity.UserCallStats;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.repository.CallRepository;
+import com.crm.chat.repository.DailyCallStatsRepository;
+import com.crm.chat.repository.UserCallStatsRepository;
+import com.crm.chat.service.CallStatisticsService.CallStatsDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Alice (1) calls Bob (2) directly, or Bob and Carol (3) in a group call
+ */
+class CallStatisticsServiceTest {
+
+    private final User alice = user(1L);
+    private final User bob = user(2L);
+    private final User carol = user(3L);
+    private final LocalDateTime at = LocalDateTime.of(2026, 3, 14, 10, 0);
+
+    private UserCallStatsRepository userCallStatsRepository;
+    private DailyCallStatsRepository dailyCallStatsRepository;
+    private CallRepository callRepository;
+    private CallParticipantRepository callParticipantRepository;
+    private CallStatisticsService service;
+    private long nextCallId = 100;
+
+    @BeforeEach
+    void setUp() {
+        userCallStatsRepository = mock(UserCallStatsRepository.class);
+        dailyCallStatsRepository = mock(DailyCallStatsRepository.class);
+        callRepository = mock(CallRepository.class);
+        callParticipantRepository = mock(CallParticipantRepository.class);
+        service = new CallStatisticsService(userCallStatsRepository, dailyCallStatsRepository, callRepository,
+                callParticipantRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void endedDirectCallCompletesForBothSides() {
+        Call call = directCall(Call.CallStatus.ENDED, 90);
+        List<CallParticipant> participants = List.of(participant(call, bob, ParticipantStatus.LEFT));
+
+        assertThat(CallStatisticsService.computeDeltas(call, participants))
+                .containsExactly(
+                        new CallStatsDelta(1L, at, Call.CallType.VIDEO, 0, 0, 1, 90),
+                        new CallStatsDelta(2L, at, Call.CallType.VIDEO, 0, 0, 1, 90));
+    }
+
+    @Test
+    void missedDirectCallIsMissedOnlyForTheCallee() {
+        Call call = directCall(Call.CallStatus.MISSED, null);
+
+        assertThat(CallStatisticsService.computeDeltas(call, List.of()))
+                .containsExactly(
+                        new CallStatsDelta(1L, at, Call.CallType.VIDEO, 0, 0, 0, 0),
+                        new CallStatsDelta(2L, at, Call.CallType.VIDEO, 1, 0, 0, 0));
+    }
+
+    @Test
+    void groupCallCountsEachParticipantByTheirOwnStatus() {
+        Call call = groupCall(Call.CallStatus.ENDED, 60);
+        List<CallParticipant> participants = List.of(
+                participant(call, bob, ParticipantStatus.REJECTED),
+                participant(call, carol, ParticipantStatus.INVITED));
+
+        assertThat(CallStatisticsService.computeDeltas(call, participants))
+                .containsExactlyInAnyOrder(
+                        new CallStatsDelta(1L, at, Call.CallType.AUDIO, 0, 0, 1, 60),
+                        new CallStatsDelta(2L, at, Call.CallType.AUDIO, 0, 1, 0, 0),
+                        new CallStatsDelta(3L, at, Call.CallType.AUDIO, 1, 0, 0, 0));
+    }
+
+    @Test
+    void firstCallOfAUserCreatesTheRows() {
+        Call call = directCall(Call.CallStatus.ENDED, 30);
+        when(callParticipantRepository.findByCallId(call.getId())).thenReturn(List.of());
+        when(userCallStatsRepository.increment(eq(1L), anyLong(), anyLong(), anyLong(), anyLong(),
+                anyLong(), anyLong(), anyLong(), any())).thenReturn(1);
+
+        service.recordCallEnded(call);
+
+        ArgumentCaptor<UserCallStats> created = ArgumentCaptor.forClass(UserCallStats.class);
+        verify(userCallStatsRepository).saveAndFlush(created.capture());
+        assertThat(created.getValue().getUserId()).isEqualTo(2L);
+        assertThat(created.getValue().getTotalCalls()).isEqualTo(1L);
+        assertThat(created.getValue().getCompletedCalls()).isEqualTo(1L);
+        assertThat(created.getValue().getTotalDuration()).isEqualTo(30L);
+        assertThat(created.getValue().getVideoCalls()).isEqualTo(1L);
+        assertThat(created.getValue().getLastCallAt()).isEqualTo(at);
+    }
+
+    @Test
+    void emptyRollupIsBackfilledFromFinishedCalls() {
+        Call first = directCall(Call.CallStatus.ENDED, 40);
+        Call second = directCall(Call.CallStatus.MISSED, null);
+        when(userCallStatsRepository.count()).thenReturn(0L);
+        when(callRepository.findByStatusInAfter(any(), eq(0L), any())).thenReturn(List.of(first, second));
+        when(callRepository.findByStatusInAfter(any(), eq(second.getId()), any())).thenReturn(List.of());
+        when(callParticipantRepository.findByCallIdIn(any())).thenReturn(List.of());
+
+        service.afterSingletonsInstantiated();
+
+        Map<Long, UserCallStats> users = saved(userCallStatsRepository);
+        assertThat(users.get(1L).getTotalCalls()).isEqualTo(2L);
+        assertThat(users.get(1L).getMissedCalls()).isZero();
+        assertThat(users.get(2L).getTotalCalls()).isEqualTo(2L);
+        assertThat(users.get(2L).getMissedCalls()).isEqualTo(1L);
+        assertThat(users.get(2L).getTotalDuration()).isEqualTo(40L);
+
+        ArgumentCaptor<Collection<DailyCallStats>> buckets = collectionCaptor();
+        verify(dailyCallStatsRepository).saveAll(buckets.capture());
+        assertThat(buckets.getValue()).hasSize(2)
+                .allSatisfy(bucket -> assertThat(bucket.getTotalCalls()).isEqualTo(2L));
+    }
+
+    @Test
+    void filledRollupIsNotBackfilled() {
+        when(userCallStatsRepository.count()).thenReturn(5L);
+
+        service.afterSingletonsInstantiated();
+
+        verify(callRepository, never()).findByStatusInAfter(any(), any(), any());
+        verify(userCallStatsRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void totalCallsIncludesCallsInProgress() {
+        UserCallStats stats = new UserCallStats(1L);
+        stats.setTotalCalls(4L);
+        when(userCallStatsRepository.findById(1L)).thenReturn(Optional.of(stats));
+        when(callRepository.countCallsInProgressForUser(1L)).thenReturn(1L);
+
+        assertThat(service.getStatistics(1L)).containsEntry("totalCalls", 5L);
+    }
+
+    private Map<Long, UserCallStats> saved(UserCallStatsRepository repository) {
+        ArgumentCaptor<Collection<UserCallStats>> saved = collectionCaptor();
+        verify(repository).saveAll(saved.capture());
+        Map<Long, UserCallStats> byUser = new HashMap<>();
+        saved.getValue().forEach(stats -> byUser.put(stats.getUserId(), stats));
+        return byUser;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> ArgumentCaptor<Collection<T>> collectionCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(Collection.class);
+    }
+
+    private Call directCall(Call.CallStatus status, Integer duration) {
+        Conversation conversation = new Conversation();
+        conversation.addParticipant(alice);
+        conversation.addParticipant(bob);
+        Call call = call(status, duration, Call.CallType.VIDEO);
+        call.setCallMode(Call.CallMode.DIRECT);
+        call.setConversation(conversation);
+        return call;
+    }
+
+    private Call groupCall(Call.CallStatus status, Integer duration) {
+        Call call = call(status, duration, Call.CallType.AUDIO);
+        call.setCallMode(Call.CallMode.GROUP);
+        return call;
+    }
+
+    private Call call(Call.CallStatus status, Integer duration, Call.CallType type) {
+        Call call = new Call();
+        call.setId(nextCallId++);
+        call.setCaller(alice);
+        call.setStatus(status);
+        call.setDuration(duration);
+        call.setCallType(type);
+        call.setCreatedAt(at);
+        return call;
+    }
+
+    private static CallParticipant participant(Call call, User user, ParticipantStatus status) {
+        CallParticipant participant = new CallParticipant();
+        participant.setCall(call);
+        participant.setUser(user);
+        participant.setStatus(status);
+        return participant;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
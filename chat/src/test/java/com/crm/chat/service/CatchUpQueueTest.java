@@ -0,0 +1,119 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.PendingNotification;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.PendingNotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bob (2) is offline; the queue keeps at most two conversations per user
+ */
+class CatchUpQueueTest {
+
+    private PendingNotificationRepository repository;
+    private CatchUpQueue queue;
+
+    private final User bob = new User();
+
+    @BeforeEach
+    void setUp() {
+        bob.setId(2L);
+        bob.setUsername("bob");
+        repository = mock(PendingNotificationRepository.class);
+        queue = new CatchUpQueue(repository, mock(TaskScheduler.class), mock(PlatformTransactionManager.class),
+                Duration.ofSeconds(5), 2);
+    }
+
+    @Test
+    void compactsPerConversationAndDrainsOnce() {
+        queue.add(bob, item(10L, 100L, "first"));
+        queue.add(bob, item(10L, 101L, "second"));
+
+        List<Map<String, Object>> items = items(queue.drain("bob"));
+        assertThat(items).hasSize(1);
+        assertThat(items.get(0))
+                .containsEntry("count", 2)
+                .containsEntry("messageId", 101L)
+                .containsEntry("preview", "second");
+        assertThat(items(queue.drain("bob"))).isEmpty();
+    }
+
+    @Test
+    void dropsTheConversationUpdatedLongestAgo() {
+        queue.add(bob, item(10L, 100L, "a"));
+        queue.add(bob, item(11L, 101L, "b"));
+        queue.add(bob, item(10L, 102L, "c"));
+        queue.add(bob, item(12L, 103L, "d"));
+
+        assertThat(items(queue.drain("bob"))).extracting(item -> item.get("conversationId"))
+                .containsExactly(10L, 12L);
+    }
+
+    @Test
+    void flushReplacesTheUsersRows() {
+        queue.add(bob, item(10L, 100L, "a"));
+        queue.add(bob, item(10L, 101L, "b"));
+        queue.flush();
+
+        ArgumentCaptor<List<PendingNotification>> rows = rowsCaptor();
+        verify(repository).deleteByUserIdIn(Set.of(2L));
+        verify(repository).saveAll(rows.capture());
+        assertThat(rows.getValue()).singleElement()
+                .satisfies(row -> {
+                    assertThat(row.getUserId()).isEqualTo(2L);
+                    assertThat(row.getMessageCount()).isEqualTo(2);
+                    assertThat(row.getLastMessageId()).isEqualTo(101L);
+                });
+    }
+
+    @Test
+    void loadsStoredRowsUnderTheirUsername() {
+        PendingNotification stored = new PendingNotification();
+        stored.setUserId(2L);
+        stored.setConversationId(10L);
+        stored.setSenderId(1L);
+        stored.setSenderName("Alice");
+        stored.setMessageCount(3);
+        stored.setLastMessageId(90L);
+        stored.setLastMessageAt(LocalDateTime.now());
+        stored.setSilent(true);
+        when(repository.findAllWithUsername()).thenReturn(List.<Object[]>of(new Object[]{stored, "bob"}));
+
+        queue.load();
+        queue.add(bob, item(10L, 100L, "new"));
+
+        assertThat(items(queue.drain("bob")).get(0))
+                .containsEntry("count", 4)
+                .containsEntry("messageId", 100L);
+    }
+
+    private static NotificationItem item(Long conversationId, Long messageId, String preview) {
+        return new NotificationItem(conversationId, 1L, "Alice", 1, messageId, LocalDateTime.now(), false, preview);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> items(Map<String, Object> frame) {
+        assertThat(frame).containsEntry("type", "CATCH_UP");
+        return (List<Map<String, Object>>) frame.get("items");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<PendingNotification>> rowsCaptor() {
+        return ArgumentCaptor.forClass((Class<List<PendingNotification>>) (Class<?>) List.class);
+    }
+}
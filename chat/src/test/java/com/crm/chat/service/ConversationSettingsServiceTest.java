@@ -0,0 +1,128 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.ConversationSettings;
+import com.crm.chat.repository.ConversationSettingsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * User 1 has muted user 2; runs outside any transaction, so changes reach the cache immediately
+ */
+class ConversationSettingsServiceTest {
+
+    private ConversationSettingsRepository repository;
+    private ConversationSettingsService service;
+
+    @BeforeEach
+    void setUp() {
+        ConversationSettings muted = new ConversationSettings();
+        muted.setUserId(1L);
+        muted.setOtherUserId(2L);
+        muted.setIsMuted(true);
+        muted.setMutedAt(LocalDateTime.now());
+
+        repository = mock(ConversationSettingsRepository.class);
+        when(repository.findByUserId(1L)).thenReturn(List.of(muted));
+        when(repository.updatePinned(any(), any(), any(), any(), any())).thenReturn(1);
+        service = new ConversationSettingsService(repository, 100);
+    }
+
+    @Test
+    void flagChecksLoadTheUserOnce() {
+        assertThat(service.isMuted(1L, 2L)).isTrue();
+        assertThat(service.isMuted(1L, 3L)).isFalse();
+        assertThat(service.isPinned(1L, 2L)).isFalse();
+        assertThat(service.getAllSettings(1L)).hasSize(1);
+
+        verify(repository, times(1)).findByUserId(1L);
+    }
+
+    @Test
+    void existingRowIsUpdatedInPlace() {
+        service.pinConversation(1L, 2L);
+
+        verify(repository).updatePinned(eq(1L), eq(2L), eq(true), any(), any());
+        verify(repository, never()).save(any());
+        assertThat(service.isPinned(1L, 2L)).isTrue();
+        assertThat(service.isMuted(1L, 2L)).isTrue();
+        assertThat(service.getPinnedConversations(1L)).extracting("otherUserId").containsExactly(2L);
+    }
+
+    @Test
+    void firstChangeInsertsARow() {
+        service.hideConversation(1L, 3L);
+
+        verify(repository).save(any(ConversationSettings.class));
+        assertThat(service.isHidden(1L, 3L)).isTrue();
+    }
+
+    @Test
+    void unchangedValueIsNotWritten() {
+        service.muteConversation(1L, 2L);
+        service.unpinConversation(1L, 2L);
+
+        verify(repository, never()).updateMuted(any(), any(), any(), any(), any());
+        verify(repository, never()).updatePinned(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void concurrentFirstChangesInsertOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Object>> hides = Collections.nCopies(8,
+                    Executors.callable(() -> service.hideConversation(1L, 3L)));
+            for (Future<Object> hide : executor.invokeAll(hides)) {
+                hide.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(repository, times(1)).save(any(ConversationSettings.class));
+        assertThat(service.isHidden(1L, 3L)).isTrue();
+    }
+
+    @Test
+    void rolledBackChangeEvictsTheUser() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.pinConversation(1L, 2L);
+            assertThat(service.isPinned(1L, 2L)).isTrue();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(service.isPinned(1L, 2L)).isFalse();
+        verify(repository, times(2)).findByUserId(1L);
+    }
+
+    @Test
+    void deleteEvictsTheUser() {
+        service.isMuted(1L, 2L);
+        service.deleteUserSettings(1L);
+        service.isMuted(1L, 2L);
+
+        verify(repository, times(2)).findByUserId(1L);
+    }
+}
@@ -0,0 +1,171 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Message.DeliveryStatus;
+import com.crm.chat.presence.DeviceSessionRegistry;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import com.crm.chat.repository.MessageRepository;
+import com.crm.chat.repository.UserRepository;
+import com.crm.chat.service.DeliveryService.ChatRef;
+import com.crm.chat.service.DeliveryService.ChatType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bob (2) and Carol (3) acknowledge messages Alice sent in conversation 10 and chat room 30
+ */
+class DeliveryServiceTest {
+
+    private static final ChatRef CONVERSATION = new ChatRef(ChatType.CONVERSATION, 10L);
+    private static final ChatRef CHAT_ROOM = new ChatRef(ChatType.CHATROOM, 30L);
+
+    private DeviceSessionRegistry deviceSessionRegistry;
+    private MessageRepository messageRepository;
+    private ChatRoomMemberRepository chatRoomMemberRepository;
+    private SimpMessagingTemplate messagingTemplate;
+    private DeliveryService service;
+
+    @BeforeEach
+    void setUp() {
+        deviceSessionRegistry = mock(DeviceSessionRegistry.class);
+        messageRepository = mock(MessageRepository.class);
+        chatRoomMemberRepository = mock(ChatRoomMemberRepository.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        UserRepository userRepository = mock(UserRepository.class);
+
+        when(deviceSessionRegistry.markDelivered(anyString(), anyString(), anyLong())).thenReturn(true);
+        when(userRepository.findIdsByUsernameIn(any())).thenReturn(List.of(
+                new Object[]{"bob", 2L}, new Object[]{"carol", 3L}));
+
+        service = new DeliveryService(deviceSessionRegistry, messageRepository, chatRoomMemberRepository,
+                userRepository, messagingTemplate, mock(TaskScheduler.class),
+                mock(PlatformTransactionManager.class), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void conversationIsDeliveredUpToTheRecipientsHighestAck() {
+        when(messageRepository.findUndeliveredConversationSenders(10L, 2L, 7L, DeliveryStatus.SENT))
+                .thenReturn(senders(new Object[]{"alice", 7L}));
+
+        service.acknowledge("bob", "phone", CONVERSATION, 5);
+        service.acknowledge("bob", "laptop", CONVERSATION, 7);
+        service.flush();
+
+        verify(messageRepository).markConversationDelivered(eq(10L), eq(2L), eq(7L), any(),
+                eq(DeliveryStatus.SENT), eq(DeliveryStatus.DELIVERED));
+        assertThat(frames("alice")).extracting(frame -> frame.get("chatType"), frame -> frame.get("upTo"))
+                .containsExactly(tuple("conversation", 7L));
+    }
+
+    @Test
+    void chatRoomIsDeliveredUpToTheLowestMemberWatermark() {
+        when(chatRoomMemberRepository.advanceLastDelivered(30L, 2L, 12L)).thenReturn(1);
+        when(chatRoomMemberRepository.findDeliveredWatermark(30L)).thenReturn(9L);
+        when(messageRepository.findUndeliveredChatRoomSenders(30L, 9L, DeliveryStatus.SENT))
+                .thenReturn(senders(new Object[]{"alice", 9L}));
+
+        service.acknowledge("bob", "phone", CHAT_ROOM, 12);
+        service.flush();
+
+        verify(messageRepository).markChatRoomDelivered(eq(30L), eq(9L), any(),
+                eq(DeliveryStatus.SENT), eq(DeliveryStatus.DELIVERED));
+        assertThat(frames("alice")).extracting(frame -> frame.get("chatType"), frame -> frame.get("upTo"))
+                .containsExactly(tuple("chatroom", 9L));
+    }
+
+    @Test
+    void watermarkThatDoesNotAdvanceMarksNothing() {
+        when(chatRoomMemberRepository.advanceLastDelivered(30L, 2L, 12L)).thenReturn(0);
+
+        service.acknowledge("bob", "phone", CHAT_ROOM, 12);
+        service.flush();
+
+        verify(chatRoomMemberRepository, never()).findDeliveredWatermark(anyLong());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void deviceAckBehindItsWatermarkIsNotQueued() {
+        when(deviceSessionRegistry.markDelivered("phone", CONVERSATION.key(), 3L)).thenReturn(false);
+
+        service.acknowledge("bob", "phone", CONVERSATION, 3);
+        service.flush();
+
+        verify(messageRepository, never()).findUndeliveredConversationSenders(any(), any(), any(), any());
+    }
+
+    @Test
+    void failedFlushIsRequeuedForTheNextFlush() {
+        when(messageRepository.findUndeliveredConversationSenders(10L, 2L, 7L, DeliveryStatus.SENT))
+                .thenReturn(senders(new Object[]{"alice", 7L}));
+        when(messageRepository.markConversationDelivered(any(), any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("lock wait timeout"))
+                .thenReturn(1);
+
+        service.acknowledge("bob", "phone", CONVERSATION, 7);
+        service.flush();
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+
+        service.flush();
+        verify(messageRepository, times(2)).markConversationDelivered(eq(10L), eq(2L), eq(7L), any(),
+                eq(DeliveryStatus.SENT), eq(DeliveryStatus.DELIVERED));
+        assertThat(frames("alice")).hasSize(1);
+    }
+
+    @Test
+    void senderGetsOneFramePerChatForTheWholeFlush() {
+        when(chatRoomMemberRepository.advanceLastDelivered(eq(30L), anyLong(), eq(20L))).thenReturn(1);
+        when(chatRoomMemberRepository.findDeliveredWatermark(30L)).thenReturn(20L);
+        when(messageRepository.findUndeliveredChatRoomSenders(30L, 20L, DeliveryStatus.SENT))
+                .thenReturn(senders(new Object[]{"alice", 18L}, new Object[]{"dave", 20L}));
+        when(messageRepository.findUndeliveredConversationSenders(10L, 2L, 4L, DeliveryStatus.SENT))
+                .thenReturn(senders(new Object[]{"alice", 4L}));
+
+        service.acknowledge("bob", "phone", CHAT_ROOM, 20);
+        service.acknowledge("carol", "tablet", CHAT_ROOM, 20);
+        service.acknowledge("bob", "phone", CONVERSATION, 4);
+        service.flush();
+
+        // Both members moved the room's watermark, but it is looked up and marked once
+        verify(chatRoomMemberRepository).findDeliveredWatermark(30L);
+        verify(messageRepository).markChatRoomDelivered(eq(30L), eq(20L), any(), any(), any());
+        assertThat(frames("alice")).extracting(frame -> frame.get("chatId"), frame -> frame.get("upTo"))
+                .containsExactlyInAnyOrder(tuple(30L, 18L), tuple(10L, 4L));
+        assertThat(frames("dave")).extracting(frame -> frame.get("upTo")).containsExactly(20L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> frames(String sender) {
+        ArgumentCaptor<Object> frames = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeast(0))
+                .convertAndSendToUser(eq(sender), eq(DeliveryService.DELIVERY_QUEUE), frames.capture());
+        List<Map<String, Object>> result = new ArrayList<>();
+        frames.getAllValues().forEach(frame -> result.add((Map<String, Object>) frame));
+        return result;
+    }
+
+    private static List<Object[]> senders(Object[]... rows) {
+        return List.of(rows);
+    }
+}
@@ -0,0 +1,200 @@
+package com.crm.chat.service;
+
+import com.crm.chat.dto.MessageDTO;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.MessageArchiveSegment;
+import com.crm.chat.entity.MessageArchiveSegment.ScopeType;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.MessageArchiveSegmentRepository;
+import com.crm.chat.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * January 2025 holds conversation 10 (three messages, the second soft-deleted) and chat room 30 (one message)
+ */
+class MessageArchiveServiceTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 1);
+
+    @TempDir
+    Path archiveDir;
+
+    private MessageRepository messageRepository;
+    private MessageArchiveSegmentRepository segmentRepository;
+    private MessageArchiveService service;
+    private final List<MessageArchiveSegment> segments = new ArrayList<>();
+    private final List<Long> deletedIds = new ArrayList<>();
+
+    private final User alice = user();
+    private final Conversation conversation = new Conversation();
+    private final ChatRoom chatRoom = new ChatRoom();
+
+    @BeforeEach
+    void setUp() {
+        conversation.setId(10L);
+        chatRoom.setId(30L);
+        messageRepository = mock(MessageRepository.class);
+        segmentRepository = mock(MessageArchiveSegmentRepository.class);
+
+        when(messageRepository.findConversationIdsBetween(any(), any())).thenReturn(List.of(10L));
+        when(messageRepository.findChatRoomIdsBetween(any(), any())).thenReturn(List.of(30L));
+        when(messageRepository.findConversationMessagesBetween(eq(10L), any(), any(), eq(0L), any()))
+                .thenReturn(List.of(
+                        message(1L, "Happy new year", day(1)),
+                        deleted(message(2L, "oops", day(2))),
+                        message(3L, "See you at the review", day(20))));
+        when(messageRepository.findChatRoomMessagesBetween(eq(30L), any(), any(), eq(0L), any()))
+                .thenReturn(List.of(inChatRoom(message(4L, "Release notes are up", day(5)))));
+        when(messageRepository.deleteAllByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            deletedIds.addAll(ids);
+            return ids.size();
+        });
+        when(segmentRepository.save(any())).thenAnswer(invocation -> {
+            MessageArchiveSegment segment = invocation.getArgument(0);
+            segment.setId((long) segments.size() + 1);
+            segments.add(segment);
+            return segment;
+        });
+        when(segmentRepository.findByScopeTypeAndScopeIdOrderByFirstCreatedAtAsc(any(), anyLong()))
+                .thenAnswer(invocation -> scope(invocation.getArgument(0), invocation.getArgument(1)));
+        when(segmentRepository.findSegmentsBefore(any(), anyLong(), any()))
+                .thenAnswer(invocation -> scope(invocation.getArgument(0), invocation.getArgument(1)));
+
+        service = new MessageArchiveService(messageRepository, segmentRepository, JsonMapper.builder().build(),
+                mock(PlatformTransactionManager.class), mock(TaskScheduler.class),
+                archiveDir.toString(), 3, 100, 8, true, "0 30 3 * * *");
+    }
+
+    @Test
+    void archiveMonthWritesOneFileAndDeletesEveryRow() throws Exception {
+        assertThat(service.archiveMonth(MONTH)).isEqualTo(4);
+
+        assertThat(deletedIds).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+        assertThat(segments).hasSize(2);
+        MessageArchiveSegment conversationSegment = segments.get(0);
+        assertThat(conversationSegment.getScopeType()).isEqualTo(ScopeType.CONVERSATION);
+        assertThat(conversationSegment.getArchiveMonth()).isEqualTo("2025-01");
+        assertThat(conversationSegment.getMessageCount()).isEqualTo(2);
+        assertThat(conversationSegment.getFirstCreatedAt()).isEqualTo(day(1));
+        assertThat(conversationSegment.getLastCreatedAt()).isEqualTo(day(20));
+        assertThat(segments.get(1).getFileName()).isEqualTo(conversationSegment.getFileName());
+
+        try (var files = Files.list(archiveDir)) {
+            assertThat(files).extracting(path -> path.getFileName().toString())
+                    .containsExactly(conversationSegment.getFileName());
+        }
+        verify(segmentRepository).save(conversationSegment);
+    }
+
+    @Test
+    void emptyMonthWritesNothing() throws Exception {
+        when(messageRepository.findConversationIdsBetween(any(), any())).thenReturn(List.of());
+        when(messageRepository.findChatRoomIdsBetween(any(), any())).thenReturn(List.of());
+
+        assertThat(service.archiveMonth(MONTH)).isZero();
+        try (var files = Files.list(archiveDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void archivedMessagesReadBackWithoutTheDeletedOne() {
+        service.archiveMonth(MONTH);
+
+        assertThat(service.findConversationArchive(10L))
+                .extracting(MessageDTO::getId, MessageDTO::getContent)
+                .containsExactly(
+                        tuple(1L, "Happy new year"),
+                        tuple(3L, "See you at the review"));
+        assertThat(service.findChatRoomArchive(30L)).extracting(MessageDTO::getChatRoomId).containsExactly(30L);
+    }
+
+    @Test
+    void historyPagesNewestFirstBeforeAPointInTime() {
+        service.archiveMonth(MONTH);
+
+        assertThat(service.findConversationHistory(10L, day(25), 1))
+                .extracting(MessageDTO::getId).containsExactly(3L);
+        assertThat(service.findConversationHistory(10L, day(20), 5))
+                .extracting(MessageDTO::getId).containsExactly(1L);
+    }
+
+    @Test
+    void searchIgnoresCase() {
+        service.archiveMonth(MONTH);
+
+        assertThat(service.searchConversationArchive(10L, "REVIEW"))
+                .extracting(MessageDTO::getId).containsExactly(3L);
+        assertThat(service.searchConversationArchive(10L, "oops")).isEmpty();
+        assertThat(service.searchChatRoomArchive(30L, "notes")).extracting(MessageDTO::getId).containsExactly(4L);
+    }
+
+    private List<MessageArchiveSegment> scope(ScopeType scopeType, Long scopeId) {
+        return segments.stream()
+                .filter(segment -> segment.getScopeType() == scopeType && segment.getScopeId().equals(scopeId))
+                .toList();
+    }
+
+    private Message message(Long id, String content, LocalDateTime createdAt) {
+        Message message = new Message();
+        message.setId(id);
+        message.setSender(alice);
+        message.setConversation(conversation);
+        message.setContent(content);
+        message.setType(Message.MessageType.TEXT);
+        message.setDeliveryStatus(Message.DeliveryStatus.READ);
+        message.setIsRead(true);
+        message.setIsDelivered(true);
+        message.setDeleted(false);
+        message.setCreatedAt(createdAt);
+        return message;
+    }
+
+    private Message inChatRoom(Message message) {
+        message.setConversation(null);
+        message.setChatRoom(chatRoom);
+        return message;
+    }
+
+    private static Message deleted(Message message) {
+        message.setDeleted(true);
+        return message;
+    }
+
+    private static LocalDateTime day(int dayOfMonth) {
+        return MONTH.atDay(dayOfMonth).atTime(9, 0);
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("alice");
+        user.setFullName("Alice");
+        return user;
+    }
+}
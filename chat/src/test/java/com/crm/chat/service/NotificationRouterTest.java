@@ -0,0 +1,161 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Conversation;
+import com.crm.chat.entity.Message;
+import com.crm.chat.entity.User;
+import com.crm.chat.entity.User.UserStatus;
+import com.crm.chat.presence.DeviceSessionRegistry;
+import com.crm.chat.presence.PresenceStatistics;
+import com.crm.chat.presence.UserStatusChangedEvent;
+import com.crm.chat.service.NotificationRouter.Route;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bob (2) is online and receives direct messages from Alice (1) in conversation 10
+ */
+class NotificationRouterTest {
+
+    private DeviceSessionRegistry devices;
+    private ConversationSettingsService settings;
+    private PresenceStatistics presence;
+    private CatchUpQueue catchUpQueue;
+    private SimpMessagingTemplate messagingTemplate;
+    private NotificationRouter router;
+
+    private final User alice = user(1L, "alice", "Alice");
+    private final User bob = user(2L, "bob", "Bob");
+    private final Conversation conversation = new Conversation();
+    private long nextMessageId = 100;
+
+    @BeforeEach
+    void setUp() {
+        conversation.setId(10L);
+        devices = mock(DeviceSessionRegistry.class);
+        settings = mock(ConversationSettingsService.class);
+        presence = mock(PresenceStatistics.class);
+        catchUpQueue = mock(CatchUpQueue.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        when(devices.isOnline("bob")).thenReturn(true);
+        when(presence.status(2L)).thenReturn(UserStatus.AVAILABLE);
+        router = new NotificationRouter(devices, settings, presence, catchUpQueue, messagingTemplate, mock(TaskScheduler.class),
+                new SimpleMeterRegistry(), Duration.ofMillis(500), 5);
+    }
+
+    @Test
+    void messagesInOneWindowAreCoalescedWithAPreviewOfTheLatest() {
+        assertThat(router.route(bob, alice, message("hi"))).isEqualTo(Route.ALERT);
+        router.route(bob, alice, message("how are you doing"));
+        router.flush();
+
+        List<Map<String, Object>> items = sentItems("bob");
+        assertThat(items).hasSize(1);
+        assertThat(items.get(0))
+                .containsEntry("count", 2)
+                .containsEntry("messageId", 101L)
+                .containsEntry("silent", false)
+                .containsEntry("preview", "how a…");
+    }
+
+    @Test
+    void mutedConversationGetsSilentItemsWithoutContent() {
+        when(settings.isMuted(2L, 1L)).thenReturn(true);
+
+        assertThat(router.route(bob, alice, message("secret"))).isEqualTo(Route.SILENT);
+        router.flush();
+
+        assertThat(sentItems("bob").get(0))
+                .containsEntry("silent", true)
+                .doesNotContainKey("preview");
+    }
+
+    @Test
+    void hiddenConversationSendsNothing() {
+        when(settings.isHidden(2L, 1L)).thenReturn(true);
+        assertThat(router.route(bob, alice, message("hi"))).isEqualTo(Route.HIDDEN);
+
+        router.flush();
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        verify(catchUpQueue, never()).add(any(), any());
+    }
+
+    @Test
+    void offlineRecipientIsQueuedForCatchUp() {
+        when(devices.isOnline("bob")).thenReturn(false);
+        assertThat(router.route(bob, alice, message("hi"))).isEqualTo(Route.OFFLINE);
+
+        router.flush();
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        verify(catchUpQueue).add(eq(bob), any(NotificationItem.class));
+    }
+
+    @Test
+    void dndCollectsADigestSentWhenItEnds() {
+        when(presence.status(2L)).thenReturn(UserStatus.DND);
+        assertThat(router.route(bob, alice, message("one"))).isEqualTo(Route.DIGEST);
+        router.route(bob, alice, message("two"));
+        router.flush();
+        assertThat(sentItems("bob").get(0)).containsEntry("silent", true);
+
+        router.onStatusChanged(new UserStatusChangedEvent(2L, "bob", "Bob", UserStatus.DND, UserStatus.AVAILABLE));
+
+        Map<String, Object> digest = lastFrame("bob");
+        assertThat(digest).containsEntry("type", "NOTIFICATION_DIGEST");
+        assertThat(items(digest).get(0)).containsEntry("count", 2);
+    }
+
+    private Message message(String content) {
+        Message message = new Message();
+        message.setId(nextMessageId++);
+        message.setConversation(conversation);
+        message.setContent(content);
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    private List<Map<String, Object>> sentItems(String username) {
+        Map<String, Object> frame = lastFrame(username);
+        assertThat(frame).containsEntry("type", "NOTIFICATIONS");
+        return items(frame);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastFrame(String username) {
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce())
+                .convertAndSendToUser(eq(username), eq(NotificationRouter.NOTIFICATION_QUEUE), frame.capture());
+        return (Map<String, Object>) frame.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> items(Map<String, Object> frame) {
+        return (List<Map<String, Object>>) frame.get("items");
+    }
+
+    private static User user(Long id, String username, String fullName) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setFullName(fullName);
+        return user;
+    }
+}
@@ -0,0 +1,70 @@
+package com.crm.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Four members: 1 has read up to 10, 2 up to 20, 3 up to 30, 4 nothing yet
+ */
+class ReadWatermarksTest {
+
+    private ReadWatermarks watermarks;
+
+    @BeforeEach
+    void setUp() {
+        Map<Long, Long> initial = new HashMap<>();
+        initial.put(1L, 10L);
+        initial.put(2L, 20L);
+        initial.put(3L, 30L);
+        initial.put(4L, null);
+        watermarks = new ReadWatermarks(initial);
+    }
+
+    @Test
+    void countsMembersAtOrPastAMessage() {
+        assertThat(watermarks.memberCount()).isEqualTo(4);
+        assertThat(watermarks.readCount(5)).isEqualTo(3);
+        assertThat(watermarks.readCount(20)).isEqualTo(2);
+        assertThat(watermarks.readCount(21)).isEqualTo(1);
+        assertThat(watermarks.readCount(31)).isZero();
+    }
+
+    @Test
+    void senderIsNotCountedAsReader() {
+        assertThat(watermarks.readCount(15, 3L)).isEqualTo(1);
+        assertThat(watermarks.readCount(25, 1L)).isEqualTo(1);
+    }
+
+    @Test
+    void advanceMovesOnlyForward() {
+        assertThat(watermarks.advance(4L, 25)).isTrue();
+        assertThat(watermarks.readCount(21)).isEqualTo(2);
+        assertThat(watermarks.watermark(4L)).isEqualTo(25);
+
+        assertThat(watermarks.advance(4L, 25)).isFalse();
+        assertThat(watermarks.advance(3L, 12)).isFalse();
+        assertThat(watermarks.readCount(30)).isEqualTo(1);
+    }
+
+    @Test
+    void advancePastEveryoneKeepsOrder() {
+        watermarks.advance(1L, 40);
+        watermarks.advance(2L, 35);
+
+        assertThat(watermarks.readCount(31)).isEqualTo(2);
+        assertThat(watermarks.readCount(36)).isEqualTo(1);
+        assertThat(watermarks.readCount(11)).isEqualTo(3);
+    }
+
+    @Test
+    void nonMemberIsIgnored() {
+        assertThat(watermarks.advance(99L, 50)).isFalse();
+        assertThat(watermarks.watermark(99L)).isEqualTo(-1);
+        assertThat(watermarks.readCount(5, 99L)).isEqualTo(3);
+    }
+}
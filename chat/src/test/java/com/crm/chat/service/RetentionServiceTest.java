@@ -0,0 +1,169 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.RetentionCheckpoint;
+import com.crm.chat.repository.CallParticipantRepository;
+import com.crm.chat.repository.CallRepository;
+import com.crm.chat.repository.MessageArchiveSegmentRepository;
+import com.crm.chat.repository.MessageRepository;
+import com.crm.chat.repository.RetentionCheckpointRepository;
+import com.crm.chat.repository.RetentionRuleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batches of two rows, no throttling; messages are kept forever unless a test says otherwise, so only
+ * deleted messages, calls and uploads are purged
+ */
+class RetentionServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @TempDir
+    Path uploadDir;
+
+    private MessageRepository messageRepository;
+    private CallRepository callRepository;
+    private CallParticipantRepository callParticipantRepository;
+    private RetentionCheckpointRepository checkpointRepository;
+    private MessageArchiveService messageArchiveService;
+    private CallRecordingService callRecordingService;
+    private final Map<String, RetentionCheckpoint> checkpoints = new HashMap<>();
+    private final List<Long> savedLastIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        messageRepository = mock(MessageRepository.class);
+        callRepository = mock(CallRepository.class);
+        callParticipantRepository = mock(CallParticipantRepository.class);
+        checkpointRepository = mock(RetentionCheckpointRepository.class);
+        messageArchiveService = mock(MessageArchiveService.class);
+        callRecordingService = mock(CallRecordingService.class);
+
+        when(messageRepository.deleteAllByIdIn(any())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).size());
+        when(callRepository.deleteAllByIdIn(any())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).size());
+        when(checkpointRepository.findById(any())).thenAnswer(invocation ->
+                Optional.ofNullable(checkpoints.get(invocation.<String>getArgument(0))));
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> {
+            RetentionCheckpoint checkpoint = invocation.getArgument(0);
+            checkpoints.put(checkpoint.getTask(), checkpoint);
+            savedLastIds.add(checkpoint.getLastId());
+            return checkpoint;
+        });
+        when(messageArchiveService.hotWindowStart()).thenReturn(LocalDateTime.now().minusDays(90));
+    }
+
+    @Test
+    void deletedMessagesArePurgedBatchByBatch() {
+        when(messageRepository.findDeletedMessagesBefore(any(), eq(0L), any()))
+                .thenReturn(rows(new Object[]{1L, "hi"}, new Object[]{2L, "/uploads/a.png"}));
+        when(messageRepository.findDeletedMessagesBefore(any(), eq(2L), any()))
+                .thenReturn(rows(new Object[]{5L, "bye"}));
+
+        Map<String, Long> reclaimed = service(0).runRetention();
+
+        assertThat(reclaimed).containsEntry("deleted-messages", 3L);
+        verify(messageRepository).deleteAllByIdIn(List.of(1L, 2L));
+        verify(messageRepository).deleteAllByIdIn(List.of(5L));
+        // A full batch moves the checkpoint forward, the short batch that ends the pass resets it
+        assertThat(savedLastIds).containsExactly(2L, 0L);
+        assertThat(checkpoints.get("deleted-messages").getReclaimed()).isEqualTo(3L);
+    }
+
+    @Test
+    void interruptedPassResumesFromTheCheckpoint() {
+        RetentionCheckpoint checkpoint = new RetentionCheckpoint("deleted-messages");
+        checkpoint.setLastId(42L);
+        checkpoint.setReclaimed(10L);
+        checkpoints.put(checkpoint.getTask(), checkpoint);
+        when(messageRepository.findDeletedMessagesBefore(any(), eq(42L), any()))
+                .thenReturn(rows(new Object[]{43L, "late"}));
+
+        service(0).runRetention();
+
+        verify(messageRepository, never()).findDeletedMessagesBefore(any(), eq(0L), any());
+        verify(messageRepository).deleteAllByIdIn(List.of(43L));
+        assertThat(checkpoints.get("deleted-messages").getLastId()).isZero();
+        assertThat(checkpoints.get("deleted-messages").getReclaimed()).isEqualTo(11L);
+    }
+
+    @Test
+    void purgedCallsTakeTheirRecordingWithThem() {
+        when(callRepository.findExpiredCalls(any(), any(), any(), eq(0L), any()))
+                .thenReturn(rows(new Object[]{7L, "room-7/manifest.json"}, new Object[]{8L, null}));
+        when(callRepository.findExpiredCalls(any(), any(), any(), eq(8L), any())).thenReturn(List.of());
+        when(callRecordingService.deleteRecording("room-7/manifest.json")).thenReturn(true);
+
+        Map<String, Long> reclaimed = service(365).runRetention();
+
+        verify(callParticipantRepository).deleteByCallIdIn(List.of(7L, 8L));
+        verify(callRepository).deleteAllByIdIn(List.of(7L, 8L));
+        verify(callRecordingService).deleteRecording("room-7/manifest.json");
+        assertThat(reclaimed).containsEntry("calls", 2L).containsEntry("recordings", 1L);
+    }
+
+    @Test
+    void onlyUnreferencedUploadsPastTheGracePeriodAreDeleted() throws Exception {
+        Instant twoDaysAgo = Instant.now().minus(Duration.ofDays(2));
+        Path orphan = upload("orphan.png", twoDaysAgo);
+        Path referenced = upload("referenced.png", twoDaysAgo);
+        Path fresh = upload("fresh.png", Instant.now());
+        Path archived = upload("archived.png", Instant.now().minus(Duration.ofDays(120)));
+        when(messageRepository.findUploadReferencesSince(any(), anyLong(), any()))
+                .thenReturn(rows(new Object[]{9L, "/uploads/referenced.png"}));
+
+        Map<String, Long> reclaimed = service(0).runRetention();
+
+        assertThat(orphan).doesNotExist();
+        assertThat(referenced).exists();
+        assertThat(fresh).exists();
+        assertThat(archived).exists();
+        assertThat(reclaimed).containsEntry("uploads", 1L);
+    }
+
+    private RetentionService service(int callsDays) {
+        return new RetentionService(messageRepository, callRepository, callParticipantRepository,
+                mock(MessageArchiveSegmentRepository.class), mock(RetentionRuleRepository.class),
+                checkpointRepository, messageArchiveService, callRecordingService, new SimpleMeterRegistry(),
+                mock(PlatformTransactionManager.class), mock(TaskScheduler.class),
+                true, "0 0 4 * * *", 0, 30, callsDays, BATCH_SIZE, 1.0, Duration.ofMinutes(5),
+                uploadDir.toString(), Duration.ofHours(24));
+    }
+
+    private Path upload(String name, Instant modified) throws Exception {
+        Path file = Files.writeString(uploadDir.resolve(name), name);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+        return file;
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return List.of(rows);
+    }
+}
@@ -0,0 +1,188 @@
+package com.crm.chat.service;
+
+import com.crm.chat.entity.Call;
+import com.crm.chat.entity.ChatRoom;
+import com.crm.chat.entity.User;
+import com.crm.chat.repository.ChatRoomMemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Alice (1) starts group call 100 in chat room 30; Bob (2) and Carol (3) are online, Dave (4) is offline
+ * and Erin (5) is in Do Not Disturb. Ack timeout 1s, ring timeout 30s.
+ */
+class RingDispatcherTest {
+
+    private static final Map<String, Object> NOTIFICATION = Map.of("type", "INCOMING_CALL", "callId", 100L);
+
+    private final User alice = user(1L, "alice");
+    private final User bob = user(2L, "bob");
+    private final User carol = user(3L, "carol");
+    private final User dave = user(4L, "dave");
+    private final User erin = user(5L, "erin");
+
+    private CallService callService;
+    private ChatRoomMemberRepository chatRoomMemberRepository;
+    private SimpMessagingTemplate messagingTemplate;
+    private RingDispatcher dispatcher;
+    private final List<Timer> timers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        callService = mock(CallService.class);
+        chatRoomMemberRepository = mock(ChatRoomMemberRepository.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        SimpUserRegistry simpUserRegistry = mock(SimpUserRegistry.class);
+        TaskScheduler taskScheduler = mock(TaskScheduler.class);
+
+        erin.setDND();
+        for (User online : List.of(alice, bob, carol, erin)) {
+            when(simpUserRegistry.getUser(online.getUsername())).thenReturn(mock(SimpUser.class));
+        }
+        when(taskScheduler.schedule(any(Runnable.class), any(Instant.class))).thenAnswer(invocation -> {
+            ScheduledFuture<?> future = mock(ScheduledFuture.class);
+            timers.add(new Timer(invocation.getArgument(1), invocation.getArgument(0), future));
+            return future;
+        });
+
+        dispatcher = new RingDispatcher(callService, chatRoomMemberRepository, simpUserRegistry,
+                messagingTemplate, taskScheduler, 1000, 30000);
+    }
+
+    @Test
+    void onlyReachableMembersAreRung() {
+        ring(List.of(alice, bob, dave, erin), Call.CallStatus.RINGING);
+
+        verify(callService).recordRingTargets(100L, List.of(bob), List.of(dave, erin));
+        assertThat(recipients()).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(timers).hasSize(2);
+    }
+
+    @Test
+    void nobodyReachableSettlesTheCallAtOnce() {
+        ring(List.of(alice, dave), Call.CallStatus.MISSED);
+
+        assertThat(timers).isEmpty();
+        assertThat(frames("alice")).extracting(frame -> frame.get("type"))
+                .containsExactly("INCOMING_CALL", "CALL_MISSED");
+    }
+
+    @Test
+    void unacknowledgedRingsTimeOutAndSettleTheCall() {
+        ring(List.of(alice, bob, carol), Call.CallStatus.RINGING);
+        when(callService.markParticipantMissed(eq(100L), anyLong()))
+                .thenReturn(call(Call.CallStatus.RINGING))
+                .thenReturn(call(Call.CallStatus.MISSED));
+
+        ackTimers().forEach(timer -> timer.task().run());
+
+        verify(callService).markParticipantMissed(100L, 2L);
+        verify(callService).markParticipantMissed(100L, 3L);
+        assertThat(frames("bob")).extracting(frame -> frame.get("type"), frame -> frame.get("reason"))
+                .containsExactly(tuple("INCOMING_CALL", null), tuple("RING_CANCELLED", "UNDELIVERED"));
+        assertThat(frames("alice")).extracting(frame -> frame.get("type"))
+                .containsExactly("INCOMING_CALL", "PARTICIPANT_MISSED", "PARTICIPANT_MISSED", "CALL_MISSED");
+        // Every timer of a settled ring is cancelled
+        timers.forEach(timer -> verify(timer.future(), atLeast(1)).cancel(false));
+    }
+
+    @Test
+    void acknowledgedRingTimesOutWhenUnanswered() {
+        ring(List.of(alice, bob), Call.CallStatus.RINGING);
+        when(callService.markParticipantMissed(100L, 2L)).thenReturn(call(Call.CallStatus.MISSED));
+
+        dispatcher.acknowledge(100L, 2L);
+        verify(ackTimers().get(0).future()).cancel(false);
+        ringTimers().get(0).task().run();
+
+        assertThat(frames("bob")).extracting(frame -> frame.get("reason")).containsExactly(null, "NO_ANSWER");
+        assertThat(frames("alice")).extracting(frame -> frame.get("type"))
+                .containsExactly("INCOMING_CALL", "PARTICIPANT_MISSED", "CALL_MISSED");
+    }
+
+    @Test
+    void answeredRingDoesNotTimeOut() {
+        ring(List.of(alice, bob), Call.CallStatus.RINGING);
+
+        dispatcher.resolve(call(Call.CallStatus.ONGOING), 2L);
+        timers.forEach(timer -> timer.task().run());
+
+        verify(callService, never()).markParticipantMissed(any(), any());
+        assertThat(frames("bob")).hasSize(1);
+    }
+
+    private void ring(List<User> members, Call.CallStatus recordedStatus) {
+        when(chatRoomMemberRepository.findActiveMemberUsersByChatRoomId(30L)).thenReturn(members);
+        when(callService.recordRingTargets(eq(100L), any(), any())).thenReturn(call(recordedStatus));
+        dispatcher.ringGroupCall(call(Call.CallStatus.RINGING), alice, NOTIFICATION);
+    }
+
+    private List<Timer> ackTimers() {
+        Instant first = timers.stream().map(Timer::at).min(Comparator.naturalOrder()).orElseThrow();
+        return timers.stream().filter(timer -> timer.at().isBefore(first.plusSeconds(10))).toList();
+    }
+
+    private List<Timer> ringTimers() {
+        List<Timer> ack = ackTimers();
+        return timers.stream().filter(timer -> !ack.contains(timer)).toList();
+    }
+
+    private List<String> recipients() {
+        ArgumentCaptor<String> usernames = ArgumentCaptor.forClass(String.class);
+        verify(messagingTemplate, atLeast(0))
+                .convertAndSendToUser(usernames.capture(), eq("/queue/call"), any(Object.class));
+        return usernames.getAllValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> frames(String username) {
+        ArgumentCaptor<Object> frames = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeast(0))
+                .convertAndSendToUser(eq(username), eq("/queue/call"), frames.capture());
+        return frames.getAllValues().stream().map(frame -> (Map<String, Object>) frame).toList();
+    }
+
+    private static Call call(Call.CallStatus status) {
+        ChatRoom chatRoom = new ChatRoom();
+        chatRoom.setId(30L);
+        Call call = new Call();
+        call.setId(100L);
+        call.setCallMode(Call.CallMode.GROUP);
+        call.setChatRoom(chatRoom);
+        call.setStatus(status);
+        return call;
+    }
+
+    private static User user(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+
+    private record Timer(Instant at, Runnable task, ScheduledFuture<?> future) {
+    }
+}
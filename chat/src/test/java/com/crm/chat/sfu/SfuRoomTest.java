@@ -0,0 +1,176 @@
+package com.crm.chat.sfu;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exercises the relay with in-process loopback peers standing in for browser sockets
+ */
+class SfuRoomTest {
+
+    private SfuRoom room;
+
+    @BeforeEach
+    void setUp() {
+        room = new SfuRoom("room-1", 5000, 1024 * 1024);
+    }
+
+    @Test
+    void forwardsAudioToEveryoneButTheSender() {
+        LoopbackPeer alice = LoopbackPeer.join(room, 1L);
+        LoopbackPeer bob = LoopbackPeer.join(room, 2L);
+        LoopbackPeer carol = LoopbackPeer.join(room, 3L);
+
+        alice.send(room, SfuFrame.KIND_AUDIO, "hello");
+
+        assertThat(alice.frames()).isEmpty();
+        assertThat(bob.frames()).containsExactly(new Frame(1L, SfuFrame.KIND_AUDIO, "hello"));
+        assertThat(carol.frames()).containsExactly(new Frame(1L, SfuFrame.KIND_AUDIO, "hello"));
+    }
+
+    @Test
+    void videoSelectionFiltersVideoButNotAudio() {
+        LoopbackPeer alice = LoopbackPeer.join(room, 1L);
+        LoopbackPeer bob = LoopbackPeer.join(room, 2L);
+        LoopbackPeer carol = LoopbackPeer.join(room, 3L);
+
+        room.select(3L, List.of(1L));
+
+        alice.send(room, SfuFrame.KIND_VIDEO, "a-video");
+        bob.send(room, SfuFrame.KIND_VIDEO, "b-video");
+        bob.send(room, SfuFrame.KIND_AUDIO, "b-audio");
+
+        assertThat(carol.frames()).containsExactly(
+                new Frame(1L, SfuFrame.KIND_VIDEO, "a-video"),
+                new Frame(2L, SfuFrame.KIND_AUDIO, "b-audio"));
+        assertThat(alice.frames()).containsExactly(
+                new Frame(2L, SfuFrame.KIND_VIDEO, "b-video"),
+                new Frame(2L, SfuFrame.KIND_AUDIO, "b-audio"));
+    }
+
+    @Test
+    void newcomerTriggersKeyframeRequestsFromExistingSenders() {
+        LoopbackPeer alice = LoopbackPeer.join(room, 1L);
+        LoopbackPeer bob = LoopbackPeer.join(room, 2L);
+
+        assertThat(alice.controls()).containsExactly("{\"type\":\"KEYFRAME_REQUEST\",\"requesterId\":2}");
+        assertThat(bob.controls()).isEmpty();
+    }
+
+    @Test
+    void closingAReplacedSocketDoesNotEvictItsSuccessor() {
+        LoopbackPeer first = LoopbackPeer.join(room, 1L);
+        LoopbackPeer second = LoopbackPeer.join(room, 1L);
+        LoopbackPeer bob = LoopbackPeer.join(room, 2L);
+
+        room.leave(1L, first.session);
+        bob.send(room, SfuFrame.KIND_AUDIO, "still-there");
+
+        assertThat(room.getParticipantIds()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(second.frames()).containsExactly(new Frame(2L, SfuFrame.KIND_AUDIO, "still-there"));
+        assertThat(first.frames()).isEmpty();
+    }
+
+    @Test
+    void brokenSubscriberIsDroppedWithoutAffectingOthers() throws IOException {
+        LoopbackPeer alice = LoopbackPeer.join(room, 1L);
+        LoopbackPeer bob = LoopbackPeer.join(room, 2L);
+        LoopbackPeer carol = LoopbackPeer.join(room, 3L);
+        doThrow(new IOException("broken pipe")).when(bob.session).sendMessage(any());
+
+        alice.send(room, SfuFrame.KIND_AUDIO, "one");
+        alice.send(room, SfuFrame.KIND_AUDIO, "two");
+
+        assertThat(room.getParticipantIds()).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(carol.frames()).extracting(Frame::payload).containsExactly("one", "two");
+    }
+
+    @Test
+    void emptyAndUnknownSenderFramesAreIgnored() {
+        LoopbackPeer alice = LoopbackPeer.join(room, 1L);
+
+        room.forward(1L, ByteBuffer.allocate(0));
+        room.forward(99L, upstream(SfuFrame.KIND_AUDIO, "intruder"));
+
+        assertThat(alice.frames()).isEmpty();
+    }
+
+    private static ByteBuffer upstream(int kind, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+        buffer.put((byte) kind).put(bytes).flip();
+        return buffer;
+    }
+
+    private record Frame(long senderId, int kind, String payload) {
+    }
+
+    /**
+     * A fake browser socket that records everything the relay sends to it
+     */
+    private static final class LoopbackPeer {
+
+        private final Long userId;
+        private final WebSocketSession session = mock(WebSocketSession.class);
+        private final List<WebSocketMessage<?>> received = new CopyOnWriteArrayList<>();
+
+        private LoopbackPeer(Long userId) throws IOException {
+            this.userId = userId;
+            when(session.getId()).thenReturn("session-" + userId + "-" + System.nanoTime());
+            when(session.isOpen()).thenReturn(true);
+            doAnswer(invocation -> received.add(invocation.getArgument(0))).when(session).sendMessage(any());
+        }
+
+        static LoopbackPeer join(SfuRoom room, Long userId) {
+            try {
+                LoopbackPeer peer = new LoopbackPeer(userId);
+                room.join(userId, peer.session);
+                return peer;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void send(SfuRoom room, int kind, String payload) {
+            room.forward(userId, upstream(kind, payload));
+        }
+
+        List<Frame> frames() {
+            return received.stream()
+                    .filter(BinaryMessage.class::isInstance)
+                    .map(message -> {
+                        ByteBuffer frame = ((BinaryMessage) message).getPayload().duplicate();
+                        long senderId = frame.getLong();
+                        int kind = frame.get() & SfuFrame.KIND_MASK;
+                        byte[] payload = new byte[frame.remaining()];
+                        frame.get(payload);
+                        return new Frame(senderId, kind, new String(payload, StandardCharsets.UTF_8));
+                    })
+                    .toList();
+        }
+
+        List<String> controls() {
+            return received.stream()
+                    .filter(TextMessage.class::isInstance)
+                    .map(message -> ((TextMessage) message).getPayload())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.crm.chat.telemetry;
+
+import com.crm.chat.telemetry.QualityHistogram.Accumulator;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RTT histograms with a rolling window of three one-second slices
+ */
+class QualityHistogramTest {
+
+    private final QualityHistogram histogram = new QualityHistogram(QualityMetric.RTT, 3, 1000);
+
+    @Test
+    void percentileIsTheUpperBoundOfItsBucket() {
+        for (int i = 0; i < 9; i++) {
+            histogram.record(20, 0);
+        }
+        histogram.record(180, 0);
+
+        Accumulator total = total();
+        assertThat(total.getCount()).isEqualTo(10);
+        assertThat(total.percentile(0.5)).isEqualTo(25);
+        assertThat(total.percentile(0.9)).isEqualTo(25);
+        assertThat(total.percentile(0.95)).isEqualTo(200);
+        assertThat(total.average()).isEqualTo(36);
+        assertThat(total.getMax()).isEqualTo(180);
+    }
+
+    @Test
+    void overflowBucketReportsTheObservedMax() {
+        histogram.record(100, 0);
+        histogram.record(5000, 0);
+
+        assertThat(total().percentile(0.99)).isEqualTo(5000);
+    }
+
+    @Test
+    void emptyAndNegativeSamplesReportNothing() {
+        histogram.record(-1, 0);
+
+        assertThat(total().getCount()).isZero();
+        assertThat(total().percentile(0.5)).isZero();
+        assertThat(total().average()).isZero();
+    }
+
+    @Test
+    void windowDropsSlicesOlderThanTheWindow() {
+        histogram.record(30, 0);
+        histogram.record(60, 1000);
+        histogram.record(100, 2500);
+
+        assertThat(window(2500).getCount()).isEqualTo(3);
+        Accumulator later = window(3000);
+        assertThat(later.getCount()).isEqualTo(2);
+        assertThat(later.percentile(0.5)).isEqualTo(75);
+        assertThat(later.getMax()).isEqualTo(100);
+        assertThat(window(5000).getCount()).isZero();
+        assertThat(total().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void reusedSliceStartsEmpty() {
+        histogram.record(500, 0);
+        histogram.record(60, 3000);
+
+        Accumulator window = window(3000);
+        assertThat(window.getCount()).isEqualTo(1);
+        assertThat(window.getMax()).isEqualTo(60);
+        assertThat(total().getMax()).isEqualTo(500);
+    }
+
+    private Accumulator total() {
+        Accumulator accumulator = new Accumulator(QualityMetric.RTT);
+        histogram.addTotalTo(accumulator);
+        return accumulator;
+    }
+
+    private Accumulator window(long nowMillis) {
+        Accumulator accumulator = new Accumulator(QualityMetric.RTT);
+        histogram.addWindowTo(accumulator, nowMillis);
+        return accumulator;
+    }
+}